@@ -21,6 +21,7 @@ plugins {
     alias(libs.plugins.shadow)
     id("build.browser-test")
     id("build.java-module")
+    id("build.jmh")
     id("build.publish")
     id("java-test-fixtures")
 }
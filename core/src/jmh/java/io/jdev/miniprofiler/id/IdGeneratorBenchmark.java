@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of generating timing ids with {@link IdGenerator#FAST} against
+ * {@link IdGenerator#SECURE}, both on a single thread and with several threads
+ * generating at once, which is where the shared {@code SecureRandom} behind
+ * {@link UUID#randomUUID()} suffers from contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    @Param({"fast", "secure"})
+    public String generator;
+
+    private IdGenerator idGenerator;
+
+    @Setup
+    public void setup() {
+        idGenerator = "secure".equals(generator) ? IdGenerator.SECURE : IdGenerator.FAST;
+    }
+
+    @Benchmark
+    public UUID generate() {
+        return idGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID generateContended() {
+        return idGenerator.generate();
+    }
+
+    @Benchmark
+    public String generateAndFormat() {
+        return idGenerator.generate().toString();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.DefaultProfilerProvider;
+import io.jdev.miniprofiler.ProfileLevel;
+import io.jdev.miniprofiler.QueryAggregation;
+import io.jdev.miniprofiler.Timing;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialising and loading a stored session of roughly one and four megabytes.
+ *
+ * <p>{@code treeParse} only parses the JSON into json-simple objects, which is the first half of
+ * what loading used to cost, so it is a lower bound for the old approach; {@code streamingLoad}
+ * builds the whole profiler. Run with {@code -Pjmh.args="-prof gc"} to compare allocation per
+ * operation as well as time.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProfilerJsonBenchmark {
+
+    // each step holds 20 queries and serialises to about 8kB
+    @Param({"128", "512"})
+    public int steps;
+
+    private ProfilerImpl profiler;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        DefaultProfilerProvider provider = new DefaultProfilerProvider();
+        // every query is kept, so that the document is the size it says
+        provider.setQueryAggregation(QueryAggregation.NONE);
+        profiler = new ProfilerImpl("/benchmark", ProfileLevel.Info, provider);
+        for (int i = 0; i < steps; i++) {
+            Timing step = profiler.step("step " + i);
+            for (int j = 0; j < 20; j++) {
+                profiler.addCustomTiming("sql", "Query",
+                    "select id, name, description, created_at from items where owner_id = ? and status = 'active' /* " + j + " */", 1);
+            }
+            step.stop();
+        }
+        profiler.stop();
+        json = profiler.toJSONString();
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String serialiseToString() {
+        return profiler.toJSONString();
+    }
+
+    @Benchmark
+    public void serialiseToStream(Blackhole blackhole) throws IOException {
+        profiler.writeUiJson(new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+
+    @Benchmark
+    public Object treeParse() throws ParseException {
+        return JSONValue.parseWithException(json);
+    }
+
+    @Benchmark
+    public ProfilerImpl streamingLoad() {
+        return ProfilerImpl.fromJson(new ByteArrayInputStream(jsonBytes));
+    }
+}
@@ -16,13 +16,18 @@
 
 package io.jdev.miniprofiler;
 
+import io.jdev.miniprofiler.format.CachingCommandFormatter;
 import io.jdev.miniprofiler.format.CommandFormatter;
 import io.jdev.miniprofiler.format.CommandFormatterLocator;
+import io.jdev.miniprofiler.id.IdGenerator;
 import io.jdev.miniprofiler.internal.NullProfiler;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.sampling.RetentionPolicy;
+import io.jdev.miniprofiler.sampling.SamplingPolicy;
 import io.jdev.miniprofiler.storage.Storage;
 import io.jdev.miniprofiler.storage.StorageExpiryService;
 import io.jdev.miniprofiler.storage.StorageLocator;
+import io.jdev.miniprofiler.time.ProfilerClock;
 import io.jdev.miniprofiler.user.UserProvider;
 import io.jdev.miniprofiler.user.UserProviderLocator;
 
@@ -46,7 +51,17 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
 
     private volatile Storage storage;
     private volatile Map<String, CommandFormatter> commandFormatters = new ConcurrentHashMap<>();
+    // commandFormatters wrapped in result caches; cleared whenever the formatters or cache size change
+    private final Map<String, CommandFormatter> cachingCommandFormatters = new ConcurrentHashMap<>();
+    private volatile Integer commandFormatterCacheSize;
+    private volatile Boolean commandFormattingDeferred;
     private volatile UserProvider userProvider;
+    private volatile SamplingPolicy samplingPolicy;
+    private volatile RetentionPolicy retentionPolicy;
+    private volatile IdGenerator idGenerator;
+    private volatile ProfilerClock clock = ProfilerClock.SYSTEM;
+    private volatile SessionLimits sessionLimits;
+    private volatile QueryAggregation queryAggregation;
     private String machineName = getDefaultHostname();
     private ProfilerUiConfig uiConfig;
     private final AtomicBoolean closed = new AtomicBoolean(false);
@@ -149,6 +164,9 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
     /**
      * Start a new profiling session with the given level, root name and UUID.
      *
+     * <p>If the {@linkplain #getSamplingPolicy() sampling policy} declines the session, no profiler
+     * is created and {@link NullProfiler#INSTANCE} is returned.</p>
+     *
      * @param id       the UUID to use
      * @param rootName the name of the root timing step. This might often be the uri of the current request.
      * @param level    the level of the profiling session
@@ -156,6 +174,9 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
      */
     @Override
     public Profiler start(UUID id, String rootName, ProfileLevel level) {
+        if (!getSamplingPolicy().shouldSample(rootName)) {
+            return NullProfiler.INSTANCE;
+        }
         ProfilerImpl profiler = new ProfilerImpl(id, rootName, rootName, level, this);
         profiler.setMachineName(machineName);
         String user = getUserProvider().getUser();
@@ -183,6 +204,9 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
     /**
      * Marks the given profiling session as stopped.
      *
+     * <p>Unless discarded, the session is saved if the {@linkplain #getRetentionPolicy() retention policy}
+     * decides it is worth keeping.</p>
+     *
      * @param profilingSession the profiler to register as stopped
      * @param discardResults   When true, clears the miniprofiler for this request, allowing profiling to
      *                         be prematurely stopped and discarded. Useful for when a specific route does not need to be profiled.
@@ -196,7 +220,7 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
             profilingSession.setUser(currentUser);
         }
         profilerStopped(profilingSession);
-        if (!discardResults) {
+        if (!discardResults && getRetentionPolicy().shouldRetain(profilingSession)) {
             saveProfiler(profilingSession);
         }
     }
@@ -240,6 +264,11 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
      * disables automatic expiry. The cleanup interval defaults to one hour but can be overridden
      * via {@code storage.expiry.cleanupInterval} or {@link #setExpiryCleanupInterval(Duration)}.</p>
      *
+     * <p>Storages that support it are expired in batches of {@code storage.expiry.batchSize}
+     * sessions (default 1000), pausing {@code storage.expiry.batchPauseMillis} between batches
+     * (default 100) and stopping each run after {@code storage.expiry.maxRunSeconds} (default 300,
+     * zero for no limit). See {@link StorageExpiryService}.</p>
+     *
      * @param expiryMaxAgeDays the maximum age of profiling sessions in days; zero or negative disables expiry
      */
     public void setExpiryMaxAgeDays(int expiryMaxAgeDays) {
@@ -259,6 +288,15 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
         maybeStartExpiryService();
     }
 
+    /**
+     * Returns the service expiring old sessions, for its progress counts.
+     *
+     * @return the expiry service, or {@code null} if expiry isn't enabled
+     */
+    public StorageExpiryService getExpiryService() {
+        return expiryService;
+    }
+
     /**
      * Return the current storage implementation.
      *
@@ -288,20 +326,252 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
      * <p>If no formatter has been explicitly set for the given type,
      * one is discovered via {@link CommandFormatterLocator#findFormatter(String)}
      * and cached for future lookups.</p>
+     *
+     * <p>The returned formatter caches its results by command text, up to
+     * {@link #getCommandFormatterCacheSize()} commands per type.</p>
      */
     @Override
     public CommandFormatter getCommandFormatter(String type) {
-        return commandFormatters.computeIfAbsent(type, CommandFormatterLocator::findFormatter);
+        return cachingCommandFormatters.computeIfAbsent(type, t -> CachingCommandFormatter.wrap(
+            commandFormatters.computeIfAbsent(t, CommandFormatterLocator::findFormatter),
+            getCommandFormatterCacheSize()));
     }
 
     @Override
     public void setCommandFormatters(Map<String, CommandFormatter> formatters) {
         this.commandFormatters = new ConcurrentHashMap<>(formatters);
+        cachingCommandFormatters.clear();
     }
 
     @Override
     public void setCommandFormatter(String type, CommandFormatter formatter) {
         commandFormatters.put(type, formatter);
+        cachingCommandFormatters.remove(type);
+    }
+
+    /**
+     * Returns the number of formatted commands cached per custom timing type.
+     *
+     * <p>If not explicitly set via {@link #setCommandFormatterCacheSize(int)}, this is read from the
+     * {@code format.cacheSize} configuration property, defaulting to
+     * {@link CachingCommandFormatter#DEFAULT_MAX_ENTRIES}. Zero disables the cache.</p>
+     *
+     * @return the cache size
+     */
+    public int getCommandFormatterCacheSize() {
+        if (commandFormatterCacheSize == null) {
+            synchronized (this) {
+                if (commandFormatterCacheSize == null) {
+                    commandFormatterCacheSize = new MiniProfilerConfig()
+                        .getProperty("format.cacheSize", CachingCommandFormatter.DEFAULT_MAX_ENTRIES);
+                }
+            }
+        }
+        return commandFormatterCacheSize;
+    }
+
+    /**
+     * Sets the number of formatted commands cached per custom timing type. Zero disables the cache.
+     *
+     * @param commandFormatterCacheSize the cache size
+     */
+    public void setCommandFormatterCacheSize(int commandFormatterCacheSize) {
+        this.commandFormatterCacheSize = commandFormatterCacheSize;
+        cachingCommandFormatters.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If not explicitly set via {@link #setCommandFormattingDeferred(boolean)}, this is read
+     * from the {@code format.deferred} configuration property, defaulting to {@code false}.</p>
+     */
+    @Override
+    public boolean isCommandFormattingDeferred() {
+        if (commandFormattingDeferred == null) {
+            synchronized (this) {
+                if (commandFormattingDeferred == null) {
+                    commandFormattingDeferred = new MiniProfilerConfig().getProperty("format.deferred", false);
+                }
+            }
+        }
+        return commandFormattingDeferred;
+    }
+
+    /**
+     * Sets whether command formatting is deferred until a session's results are displayed.
+     *
+     * @param commandFormattingDeferred whether to defer formatting
+     */
+    public void setCommandFormattingDeferred(boolean commandFormattingDeferred) {
+        this.commandFormattingDeferred = commandFormattingDeferred;
+    }
+
+    /**
+     * Returns the policy deciding which sessions are profiled.
+     *
+     * <p>If no policy has been explicitly set via {@link #setSamplingPolicy(SamplingPolicy)},
+     * the first call builds one from {@link MiniProfilerConfig} using
+     * {@link SamplingPolicy#fromConfig(MiniProfilerConfig)}. With no configuration present,
+     * every session is profiled.</p>
+     *
+     * @return the current sampling policy
+     */
+    public SamplingPolicy getSamplingPolicy() {
+        if (samplingPolicy == null) {
+            synchronized (this) {
+                if (samplingPolicy == null) {
+                    samplingPolicy = SamplingPolicy.fromConfig(new MiniProfilerConfig());
+                }
+            }
+        }
+        return samplingPolicy;
+    }
+
+    /**
+     * Sets the policy deciding which sessions are profiled. Sessions that are not
+     * sampled get a {@link NullProfiler}, so they cost almost nothing.
+     *
+     * @param samplingPolicy the sampling policy to use
+     */
+    public void setSamplingPolicy(SamplingPolicy samplingPolicy) {
+        this.samplingPolicy = samplingPolicy;
+    }
+
+    /**
+     * Returns the policy deciding which finished sessions are saved to storage.
+     *
+     * <p>If no policy has been explicitly set via {@link #setRetentionPolicy(RetentionPolicy)},
+     * the first call builds one from {@link MiniProfilerConfig} using
+     * {@link RetentionPolicy#fromConfig(MiniProfilerConfig)}. With no configuration present,
+     * every session is saved.</p>
+     *
+     * @return the current retention policy
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        if (retentionPolicy == null) {
+            synchronized (this) {
+                if (retentionPolicy == null) {
+                    retentionPolicy = RetentionPolicy.fromConfig(new MiniProfilerConfig());
+                }
+            }
+        }
+        return retentionPolicy;
+    }
+
+    /**
+     * Sets the policy deciding which finished sessions are saved to storage.
+     *
+     * @param retentionPolicy the retention policy to use
+     */
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    /**
+     * Returns the generator used for timing and custom timing ids.
+     *
+     * <p>If no generator has been explicitly set via {@link #setIdGenerator(IdGenerator)},
+     * the first call builds one from {@link MiniProfilerConfig} using
+     * {@link IdGenerator#fromConfig(MiniProfilerConfig)}. With no configuration present,
+     * this is {@link IdGenerator#FAST}.</p>
+     *
+     * @return the current id generator
+     */
+    @Override
+    public IdGenerator getIdGenerator() {
+        if (idGenerator == null) {
+            synchronized (this) {
+                if (idGenerator == null) {
+                    idGenerator = IdGenerator.fromConfig(new MiniProfilerConfig());
+                }
+            }
+        }
+        return idGenerator;
+    }
+
+    /**
+     * Sets the generator used for timing and custom timing ids.
+     *
+     * @param idGenerator the id generator to use
+     */
+    public void setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public ProfilerClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets the clock used to time sessions. Defaults to {@link ProfilerClock#SYSTEM}.
+     *
+     * @param clock the clock to use
+     */
+    public void setClock(ProfilerClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the limits applied to each session started by this provider.
+     *
+     * <p>If not set explicitly, the limits are read on first access via
+     * {@link SessionLimits#fromConfig(MiniProfilerConfig)}. With no configuration present,
+     * this is {@link SessionLimits#UNLIMITED}, as for any other provider.</p>
+     *
+     * @return the current session limits
+     */
+    @Override
+    public SessionLimits getSessionLimits() {
+        if (sessionLimits == null) {
+            synchronized (this) {
+                if (sessionLimits == null) {
+                    sessionLimits = SessionLimits.fromConfig(new MiniProfilerConfig());
+                }
+            }
+        }
+        return sessionLimits;
+    }
+
+    /**
+     * Sets the limits applied to each session started from now on.
+     *
+     * @param sessionLimits the limits to use, or {@link SessionLimits#UNLIMITED} for none
+     */
+    public void setSessionLimits(SessionLimits sessionLimits) {
+        this.sessionLimits = sessionLimits;
+    }
+
+    /**
+     * Returns how repeated custom timings are folded together when sessions are serialised.
+     *
+     * <p>If not set explicitly, the settings are read on first access via
+     * {@link QueryAggregation#fromConfig(MiniProfilerConfig)}. With no configuration present,
+     * this is {@link QueryAggregation#DEFAULT}, which flags repeated queries but keeps every
+     * timing.</p>
+     *
+     * @return the current query aggregation settings
+     */
+    @Override
+    public QueryAggregation getQueryAggregation() {
+        if (queryAggregation == null) {
+            synchronized (this) {
+                if (queryAggregation == null) {
+                    queryAggregation = QueryAggregation.fromConfig(new MiniProfilerConfig());
+                }
+            }
+        }
+        return queryAggregation;
+    }
+
+    /**
+     * Sets how repeated custom timings are folded together when sessions are serialised.
+     *
+     * @param queryAggregation the settings to use, or {@link QueryAggregation#NONE} to keep every timing
+     */
+    public void setQueryAggregation(QueryAggregation queryAggregation) {
+        this.queryAggregation = queryAggregation;
     }
 
     /**
@@ -421,9 +691,15 @@ public abstract class BaseProfilerProvider implements ProfilerProvider {
                     cleanupInterval = Duration.ofHours(intervalHours);
                 }
             }
+            int batchSize = config.getProperty("storage.expiry.batchSize", StorageExpiryService.DEFAULT_BATCH_SIZE);
+            Duration batchPause = Duration.ofMillis(config.getProperty("storage.expiry.batchPauseMillis",
+                (int) StorageExpiryService.DEFAULT_BATCH_PAUSE.toMillis()));
+            Duration runBudget = Duration.ofSeconds(config.getProperty("storage.expiry.maxRunSeconds",
+                (int) StorageExpiryService.DEFAULT_RUN_BUDGET.getSeconds()));
             StorageExpiryService old = this.expiryService;
             this.expiryService = new StorageExpiryService(storage, maxAge,
-                cleanupInterval != null ? cleanupInterval : StorageExpiryService.DEFAULT_SCHEDULE_INTERVAL);
+                cleanupInterval != null ? cleanupInterval : StorageExpiryService.DEFAULT_SCHEDULE_INTERVAL,
+                batchSize, batchPause, runBudget);
             if (old != null) {
                 old.close();
             }
@@ -17,8 +17,10 @@
 package io.jdev.miniprofiler;
 
 import io.jdev.miniprofiler.format.CommandFormatter;
+import io.jdev.miniprofiler.id.IdGenerator;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
 import io.jdev.miniprofiler.storage.Storage;
+import io.jdev.miniprofiler.time.ProfilerClock;
 import io.jdev.miniprofiler.user.UserProvider;
 
 import java.util.Map;
@@ -119,6 +121,31 @@ public abstract class DelegatingProfilerProvider implements ProfilerProvider {
         getDelegate().setCommandFormatter(type, formatter);
     }
 
+    @Override
+    public boolean isCommandFormattingDeferred() {
+        return getDelegate().isCommandFormattingDeferred();
+    }
+
+    @Override
+    public IdGenerator getIdGenerator() {
+        return getDelegate().getIdGenerator();
+    }
+
+    @Override
+    public ProfilerClock getClock() {
+        return getDelegate().getClock();
+    }
+
+    @Override
+    public SessionLimits getSessionLimits() {
+        return getDelegate().getSessionLimits();
+    }
+
+    @Override
+    public QueryAggregation getQueryAggregation() {
+        return getDelegate().getQueryAggregation();
+    }
+
     @Override
     public UserProvider getUserProvider() {
         return getDelegate().getUserProvider();
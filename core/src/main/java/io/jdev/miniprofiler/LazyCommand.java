@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler;
+
+/**
+ * The text of a custom timing's command, built only when something first asks for it.
+ *
+ * <p>Most profiling sessions are never viewed, so a command that is expensive to render, such as
+ * SQL with its bound parameters interpolated, can be passed to
+ * {@link Profiler#addLazyCustomTiming(String, String, LazyCommand, long)} instead of a string.
+ * The command is rendered once, the first time the timing's command string is read or the session is
+ * serialised, which may be on a different thread and well after the timing was recorded. Implementations
+ * should therefore hold an immutable snapshot of whatever they need, rather than live objects.</p>
+ */
+@FunctionalInterface
+public interface LazyCommand {
+
+    /**
+     * Builds the command text, e.g. {@code "select * from foo where id = 42"}.
+     *
+     * @return the command text
+     */
+    String render();
+
+}
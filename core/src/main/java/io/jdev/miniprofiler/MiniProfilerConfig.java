@@ -112,6 +112,18 @@ public class MiniProfilerConfig {
         return (f != null && f.value != null) ? Integer.parseInt(f.value) : defaultValue;
     }
 
+    /**
+     * Returns the double property value, or {@code defaultValue} if not set or set to a null marker.
+     *
+     * @param key          the property key (without the {@code miniprofiler.} prefix)
+     * @param defaultValue the value to return if the property is not found or is a null marker
+     * @return the property value, or {@code defaultValue}
+     */
+    public double getProperty(String key, double defaultValue) {
+        Found f = find(key);
+        return (f != null && f.value != null) ? Double.parseDouble(f.value) : defaultValue;
+    }
+
     /**
      * Returns the enum property value, or {@code defaultValue} if not set.
      * Matching is case-insensitive. A null-marker value returns {@code null}.
@@ -17,9 +17,12 @@
 package io.jdev.miniprofiler;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a single profiling session.
@@ -148,6 +151,55 @@ public interface Profiler extends Closeable {
      */
     void addCustomTiming(String type, String executeType, String command, long duration);
 
+    /**
+     * Add a query timing inside the current timing step whose command text is only rendered if
+     * it is needed, either because the command string is read or because the session is saved
+     * or viewed. Use this when building the command is expensive compared to the timing itself.
+     *
+     * <p>The default implementation renders the command straight away.</p>
+     *
+     * @param type        the type of query, e.g. sql, memcache etc
+     * @param executeType the type of command executed, e.g. read, fetch, update etc
+     * @param command     the query to save, rendered at most once
+     * @param duration    how long it took, in milliseconds
+     */
+    default void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+        addCustomTiming(type, executeType, command != null ? command.render() : null, duration);
+    }
+
+    /**
+     * Add a query timing inside the current timing step, with a duration measured in the given unit.
+     * Use this when the duration was measured with {@link System#nanoTime()}, so that queries taking
+     * less than a millisecond keep their sub-millisecond duration.
+     *
+     * <p>The default implementation truncates the duration to whole milliseconds.</p>
+     *
+     * @param type        the type of query, e.g. sql, memcache etc
+     * @param executeType the type of command executed, e.g. read, fetch, update etc
+     * @param command     the query to save
+     * @param duration    how long it took
+     * @param unit        the unit of {@code duration}
+     */
+    default void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+        addCustomTiming(type, executeType, command, unit.toMillis(duration));
+    }
+
+    /**
+     * Add a query timing inside the current timing step whose command text is only rendered if
+     * it is needed, with a duration measured in the given unit.
+     *
+     * <p>The default implementation truncates the duration to whole milliseconds.</p>
+     *
+     * @param type        the type of query, e.g. sql, memcache etc
+     * @param executeType the type of command executed, e.g. read, fetch, update etc
+     * @param command     the query to save, rendered at most once
+     * @param duration    how long it took
+     * @param unit        the unit of {@code duration}
+     */
+    default void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+        addLazyCustomTiming(type, executeType, command, unit.toMillis(duration));
+    }
+
     /**
      * Starts a custom timing under this timing.
      *
@@ -258,6 +310,17 @@ public interface Profiler extends Closeable {
      */
     String asUiJson();
 
+    /**
+     * Writes the same JSON as {@link #asUiJson()} to the given writer. Implementations may
+     * stream the document rather than building it as a string first.
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    default void writeUiJson(Writer out) throws IOException {
+        out.write(asUiJson());
+    }
+
     /**
      * Render a plain test version of this profiler, for logging
      *
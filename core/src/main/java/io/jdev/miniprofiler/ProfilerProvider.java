@@ -17,9 +17,11 @@
 package io.jdev.miniprofiler;
 
 import io.jdev.miniprofiler.format.CommandFormatter;
+import io.jdev.miniprofiler.id.IdGenerator;
 import io.jdev.miniprofiler.internal.NullProfiler;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
 import io.jdev.miniprofiler.storage.Storage;
+import io.jdev.miniprofiler.time.ProfilerClock;
 import io.jdev.miniprofiler.user.UserProvider;
 
 import java.util.Map;
@@ -183,6 +185,58 @@ public interface ProfilerProvider extends AutoCloseable {
      */
     void setCommandFormatter(String type, CommandFormatter formatter);
 
+    /**
+     * Returns whether formatting of custom timing commands is deferred until a session's results
+     * are displayed. When deferred, sessions are stored with their raw commands, and the results
+     * handlers format them with {@link ProfilerImpl#formatCommands(ProfilerProvider)} only when
+     * a session is actually viewed. Default: {@code false}.
+     *
+     * @return whether command formatting is deferred
+     */
+    default boolean isCommandFormattingDeferred() {
+        return false;
+    }
+
+    /**
+     * Returns the {@link IdGenerator} used for the ids of timing steps and custom timings
+     * in sessions started by this provider. Default: {@link IdGenerator#FAST}.
+     *
+     * @return the id generator
+     */
+    default IdGenerator getIdGenerator() {
+        return IdGenerator.FAST;
+    }
+
+    /**
+     * Returns the {@link ProfilerClock} used to time sessions started by this provider.
+     * Default: {@link ProfilerClock#SYSTEM}.
+     *
+     * @return the clock
+     */
+    default ProfilerClock getClock() {
+        return ProfilerClock.SYSTEM;
+    }
+
+    /**
+     * Returns the {@link SessionLimits} applied to sessions started by this provider.
+     * Default: {@link SessionLimits#UNLIMITED}.
+     *
+     * @return the session limits
+     */
+    default SessionLimits getSessionLimits() {
+        return SessionLimits.UNLIMITED;
+    }
+
+    /**
+     * Returns how repeated custom timings are folded together in sessions started by this provider.
+     * Default: {@link QueryAggregation#NONE}.
+     *
+     * @return the query aggregation settings
+     */
+    default QueryAggregation getQueryAggregation() {
+        return QueryAggregation.NONE;
+    }
+
     /**
      * Returns the {@link UserProvider} associated with this provider.
      *
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler;
+
+import java.io.Serializable;
+
+/**
+ * Controls how repeated custom timings within one step are folded together when a session is
+ * serialised, and when a session is flagged as repeating a query too often.
+ *
+ * <p>Within each step, custom timings are grouped by type and command. SQL commands are
+ * grouped by their {@link io.jdev.miniprofiler.sql.SqlFingerprint fingerprint}, so a statement
+ * run in a loop with different values forms a single group. A group of at least
+ * {@link #getMinCount()} timings is written as one entry with the first timing's command and
+ * start, the total duration, and its {@code Count}, {@code MinDurationMilliseconds} and
+ * {@code MaxDurationMilliseconds}. A group of at least {@link #getRepeatThreshold()} timings
+ * is also listed in the session's {@code RepeatedQueries}, which usually points straight at an
+ * N+1 query.</p>
+ *
+ * <p>Aggregation affects the serialised session, and so also what storages keep: the commands
+ * and durations of the folded timings other than the first are not stored, so folding is off
+ * unless a minimum count is configured. {@link Timing#getCustomTimings()} still returns every
+ * timing of a live session. A value of less than two turns the corresponding behaviour off.</p>
+ */
+public final class QueryAggregation implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    /** The default smallest group of repeated timings that is folded into one entry: none are folded. */
+    public static final int DEFAULT_MIN_COUNT = 0;
+
+    /** The default number of repeats of a query within one step for the session to be flagged. */
+    public static final int DEFAULT_REPEAT_THRESHOLD = 20;
+
+    /** Neither aggregates nor flags anything. */
+    public static final QueryAggregation NONE = new QueryAggregation(0, 0);
+
+    /** The default settings, which flag repeated queries but don't fold any timings. */
+    public static final QueryAggregation DEFAULT = new QueryAggregation(DEFAULT_MIN_COUNT, DEFAULT_REPEAT_THRESHOLD);
+
+    /** The smallest group of repeated timings within a step to fold into one entry, or 0 to never fold. */
+    private final int minCount;
+    /** The number of repeats of a query within a step at which the session is flagged, or 0 to never flag. */
+    private final int repeatThreshold;
+
+    /**
+     * Creates new settings. Values less than two turn the corresponding behaviour off.
+     *
+     * @param minCount        the smallest group of repeated timings within a step to fold into one entry
+     * @param repeatThreshold the number of repeats of a query within a step for the session to be flagged
+     */
+    public QueryAggregation(int minCount, int repeatThreshold) {
+        this.minCount = minCount < 2 ? 0 : minCount;
+        this.repeatThreshold = repeatThreshold < 2 ? 0 : repeatThreshold;
+    }
+
+    /**
+     * Returns the smallest group of repeated timings within a step that is folded into one entry.
+     *
+     * @return the minimum group size, or 0 if timings are never folded together
+     */
+    public int getMinCount() {
+        return minCount;
+    }
+
+    /**
+     * Returns the number of repeats of a query within one step at which the session is flagged.
+     *
+     * @return the threshold, or 0 if sessions are never flagged
+     */
+    public int getRepeatThreshold() {
+        return repeatThreshold;
+    }
+
+    /**
+     * Builds settings from the given configuration. The recognised keys (without the
+     * system-property prefix) are {@code aggregation.minCount} and {@code aggregation.repeatThreshold}.
+     * Any key not set takes its default value.
+     *
+     * @param config the configuration to read
+     * @return the configured settings
+     */
+    public static QueryAggregation fromConfig(MiniProfilerConfig config) {
+        return new QueryAggregation(
+            config.getProperty("aggregation.minCount", DEFAULT_MIN_COUNT),
+            config.getProperty("aggregation.repeatThreshold", DEFAULT_REPEAT_THRESHOLD));
+    }
+
+    @Override
+    public String toString() {
+        return "QueryAggregation{minCount=" + minCount + ", repeatThreshold=" + repeatThreshold + '}';
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler;
+
+import java.io.Serializable;
+
+/**
+ * Caps on how much a single profiling session records, so that one runaway request
+ * (a batch job, or an ORM issuing thousands of queries) can't dominate storage or
+ * produce an enormous JSON document.
+ *
+ * <p>Once a session has recorded {@link #getMaxSteps()} steps, or
+ * {@link #getMaxCustomTimingsPerType()} custom timings of one type, further entries are
+ * not kept individually. Instead they are counted in a per-type overflow summary
+ * holding their count, total and maximum duration. Commands longer than
+ * {@link #getMaxCommandLength()} characters are cut short. A session that has hit any of
+ * these limits is marked as truncated in its JSON.</p>
+ *
+ * <p>A limit of zero or less means no limit. Sessions aren't limited unless limits are set on
+ * the provider or configured; {@link #RECOMMENDED} suits most applications.</p>
+ */
+public final class SessionLimits implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    /** The recommended maximum number of steps per session. */
+    public static final int RECOMMENDED_MAX_STEPS = 10000;
+
+    /** The recommended maximum number of custom timings of each type per session. */
+    public static final int RECOMMENDED_MAX_CUSTOM_TIMINGS_PER_TYPE = 10000;
+
+    /** The recommended maximum length of a custom timing's command, in characters. */
+    public static final int RECOMMENDED_MAX_COMMAND_LENGTH = 10000;
+
+    /** No limits at all, which is the default. */
+    public static final SessionLimits UNLIMITED = new SessionLimits(0, 0, 0);
+
+    /** The recommended limits. */
+    public static final SessionLimits RECOMMENDED = new SessionLimits(RECOMMENDED_MAX_STEPS,
+        RECOMMENDED_MAX_CUSTOM_TIMINGS_PER_TYPE, RECOMMENDED_MAX_COMMAND_LENGTH);
+
+    /** The maximum number of steps per session, not counting the root step, or 0 for no limit. */
+    private final int maxSteps;
+    /** The maximum number of custom timings of each type per session, or 0 for no limit. */
+    private final int maxCustomTimingsPerType;
+    /** The maximum length of a custom timing's command in characters, or 0 for no limit. */
+    private final int maxCommandLength;
+
+    /**
+     * Creates a new set of limits. A limit of zero or less means no limit.
+     *
+     * @param maxSteps                the maximum number of steps, not counting the root step
+     * @param maxCustomTimingsPerType the maximum number of custom timings of each type
+     * @param maxCommandLength        the maximum length of a custom timing's command, in characters
+     */
+    public SessionLimits(int maxSteps, int maxCustomTimingsPerType, int maxCommandLength) {
+        this.maxSteps = Math.max(0, maxSteps);
+        this.maxCustomTimingsPerType = Math.max(0, maxCustomTimingsPerType);
+        this.maxCommandLength = Math.max(0, maxCommandLength);
+    }
+
+    /**
+     * Returns the maximum number of steps per session, not counting the root step.
+     *
+     * @return the maximum, or 0 for no limit
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Returns the maximum number of custom timings of each type per session.
+     *
+     * @return the maximum, or 0 for no limit
+     */
+    public int getMaxCustomTimingsPerType() {
+        return maxCustomTimingsPerType;
+    }
+
+    /**
+     * Returns the maximum length of a custom timing's command, in characters.
+     *
+     * @return the maximum, or 0 for no limit
+     */
+    public int getMaxCommandLength() {
+        return maxCommandLength;
+    }
+
+    /**
+     * Builds limits from the given configuration. The recognised keys (without the
+     * system-property prefix) are {@code limits.maxSteps}, {@code limits.maxCustomTimingsPerType}
+     * and {@code limits.maxCommandLength}. Any key not set means no limit of that kind.
+     *
+     * @param config the configuration to read
+     * @return the configured limits
+     */
+    public static SessionLimits fromConfig(MiniProfilerConfig config) {
+        return new SessionLimits(
+            config.getProperty("limits.maxSteps", 0),
+            config.getProperty("limits.maxCustomTimingsPerType", 0),
+            config.getProperty("limits.maxCommandLength", 0));
+    }
+
+    @Override
+    public String toString() {
+        return "SessionLimits{maxSteps=" + maxSteps + ", maxCustomTimingsPerType=" + maxCustomTimingsPerType
+            + ", maxCommandLength=" + maxCommandLength + '}';
+    }
+}
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a step to be timed / profiled.
@@ -139,6 +140,45 @@ public interface Timing extends Closeable {
      */
     void addCustomTiming(String type, String executeType, String command, long duration);
 
+    /**
+     * Add a custom timing to this timing, rendering its command only if something reads it.
+     * The default implementation renders the command straight away.
+     * @param type type of timing, e.g. "sql"
+     * @param executeType what type of execution, e.g. "query"
+     * @param command renders e.g. "select * from foo", at most once
+     * @param duration how long the command took
+     */
+    default void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+        addCustomTiming(type, executeType, command != null ? command.render() : null, duration);
+    }
+
+    /**
+     * Add a custom timing to this timing, with a duration measured in the given unit.
+     * The default implementation truncates the duration to whole milliseconds.
+     * @param type type of timing, e.g. "sql"
+     * @param executeType what type of execution, e.g. "query"
+     * @param command e.g. "select * from foo"
+     * @param duration how long the command took
+     * @param unit the unit of {@code duration}
+     */
+    default void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+        addCustomTiming(type, executeType, command, unit.toMillis(duration));
+    }
+
+    /**
+     * Add a custom timing to this timing, rendering its command only if something reads it,
+     * with a duration measured in the given unit.
+     * The default implementation truncates the duration to whole milliseconds.
+     * @param type type of timing, e.g. "sql"
+     * @param executeType what type of execution, e.g. "query"
+     * @param command renders e.g. "select * from foo", at most once
+     * @param duration how long the command took
+     * @param unit the unit of {@code duration}
+     */
+    default void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+        addLazyCustomTiming(type, executeType, command, unit.toMillis(duration));
+    }
+
     /**
      * Starts a custom timing under this timing.
      *
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.format;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link CommandFormatter} that remembers the formatted form of the commands it has seen.
+ *
+ * <p>Parametrised statements repeat across requests, so caching by the raw command text saves
+ * re-running an expensive formatter such as {@link io.jdev.miniprofiler.sql.SqlCommandFormatter}.
+ * The cache holds at most {@code maxEntries} commands; once full, an arbitrary tenth of the
+ * entries is dropped to make room. Commands longer than {@link #MAX_CACHED_COMMAND_LENGTH}
+ * characters are formatted but not cached.</p>
+ */
+public final class CachingCommandFormatter implements CommandFormatter {
+
+    /** The number of commands cached per formatter unless configured otherwise. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** Commands longer than this are not cached, so that a few huge statements can't pin lots of memory. */
+    public static final int MAX_CACHED_COMMAND_LENGTH = 8192;
+
+    private final CommandFormatter delegate;
+    private final int maxEntries;
+    private final ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a caching formatter.
+     *
+     * @param delegate   the formatter to cache the results of
+     * @param maxEntries the maximum number of commands to cache
+     */
+    public CachingCommandFormatter(CommandFormatter delegate, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Wraps the given formatter in a cache, unless caching is disabled, the formatter doesn't
+     * change commands or it is already cached.
+     *
+     * @param formatter  the formatter to wrap
+     * @param maxEntries the maximum number of commands to cache, or zero to disable caching
+     * @return a caching formatter, or {@code formatter} itself
+     */
+    public static CommandFormatter wrap(CommandFormatter formatter, int maxEntries) {
+        if (maxEntries <= 0 || formatter instanceof NoopCommandFormatter || formatter instanceof CachingCommandFormatter) {
+            return formatter;
+        }
+        return new CachingCommandFormatter(formatter, maxEntries);
+    }
+
+    @Override
+    public String format(String command) {
+        if (command == null || command.length() > MAX_CACHED_COMMAND_LENGTH) {
+            return delegate.format(command);
+        }
+        String formatted = cache.get(command);
+        if (formatted == null) {
+            formatted = delegate.format(command);
+            if (cache.size() >= maxEntries) {
+                evict();
+            }
+            cache.put(command, formatted);
+        }
+        return formatted;
+    }
+
+    @Override
+    public boolean supports(String type) {
+        return delegate.supports(type);
+    }
+
+    /**
+     * Returns the formatter whose results are cached.
+     *
+     * @return the underlying formatter
+     */
+    public CommandFormatter getDelegate() {
+        return delegate;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private void evict() {
+        int toRemove = Math.max(1, maxEntries / 10);
+        Iterator<String> keys = cache.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.id;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+
+import java.util.UUID;
+
+/**
+ * Generates the identifiers given to timing steps and custom timings.
+ *
+ * <p>A busy request can create thousands of timings, each of which needs an id that is
+ * unique within its profiling session. {@link UUID#randomUUID()} draws from a shared
+ * {@link java.security.SecureRandom}, which is both slow and a point of contention between
+ * request threads, and nothing about a timing id needs to be unguessable. The default
+ * generator, {@link #FAST}, produces version 4 UUIDs from the calling thread's
+ * {@link java.util.concurrent.ThreadLocalRandom} instead.</p>
+ *
+ * <p>Whatever the generator, ids are still {@link UUID}s, so they serialise to the same string
+ * format the UI expects.</p>
+ *
+ * <p>Session ids are not produced by this generator. They appear in URLs used to load stored
+ * results, so they continue to come from {@link UUID#randomUUID()}.</p>
+ *
+ * <p>Implementations must be thread-safe, as they are shared across all requests.</p>
+ */
+public interface IdGenerator {
+
+    /** Generates version 4 UUIDs from {@link java.util.concurrent.ThreadLocalRandom}. This is the default. */
+    IdGenerator FAST = ThreadLocalRandomIdGenerator.INSTANCE;
+
+    /** Generates ids using {@link UUID#randomUUID()}. */
+    IdGenerator SECURE = UUID::randomUUID;
+
+    /**
+     * Returns a new identifier.
+     *
+     * @return the new id, never null
+     */
+    UUID generate();
+
+    /**
+     * Builds a generator from the given configuration. The recognised key (without the
+     * system-property prefix) is {@code ids.secureRandom}, which when {@code true} selects
+     * {@link #SECURE}. The default is {@link #FAST}.
+     *
+     * @param config the configuration to read
+     * @return the configured generator
+     */
+    static IdGenerator fromConfig(MiniProfilerConfig config) {
+        return config.getProperty("ids.secureRandom", false) ? SECURE : FAST;
+    }
+}
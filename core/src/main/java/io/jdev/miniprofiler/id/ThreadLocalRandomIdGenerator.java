@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link IdGenerator} producing version 4 (random) UUIDs from the calling thread's
+ * {@link ThreadLocalRandom}.
+ *
+ * <p>The ids have the same layout as those from {@link UUID#randomUUID()}, but are not
+ * cryptographically strong, and generating one involves no locking or shared state.</p>
+ */
+public final class ThreadLocalRandomIdGenerator implements IdGenerator {
+
+    /** The shared instance. */
+    public static final ThreadLocalRandomIdGenerator INSTANCE = new ThreadLocalRandomIdGenerator();
+
+    private ThreadLocalRandomIdGenerator() {
+    }
+
+    @Override
+    public UUID generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = random.nextLong();
+        long lsb = random.nextLong();
+        msb = (msb & 0xffffffffffff0fffL) | 0x0000000000004000L; // version 4
+        lsb = (lsb & 0x3fffffffffffffffL) | 0x8000000000000000L; // IETF variant
+        return new UUID(msb, lsb);
+    }
+}
@@ -19,6 +19,7 @@ package io.jdev.miniprofiler.internal;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -61,6 +62,45 @@ public class ClientTiming implements Jsonable {
         return new ClientTiming(name, start, duration);
     }
 
+    static ClientTiming fromJson(JsonReader in) throws IOException {
+        String name = null;
+        long start = 0;
+        Long duration = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Name":
+                    name = in.nextString();
+                    break;
+                case "Start":
+                    start = in.nextNumber().longValue();
+                    break;
+                case "Duration":
+                    Number value = in.nextNumber();
+                    duration = value != null ? value.longValue() : null;
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new ClientTiming(name, start, duration);
+    }
+
+    static List<ClientTiming> listFromJson(JsonReader in) throws IOException {
+        if (in.peek() == JsonReader.Token.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<ClientTiming> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(fromJson(in));
+        }
+        in.endArray();
+        return result.isEmpty() ? null : result;
+    }
+
     @SuppressWarnings("unchecked")
     public static List<ClientTiming> listFromJson(JSONArray array) {
         if (array == null || array.isEmpty()) {
@@ -83,4 +123,15 @@ public class ClientTiming implements Jsonable {
         }
         return map;
     }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("Name").value(name);
+        out.name("Start").value(start);
+        if (duration != null) {
+            out.name("Duration").value(duration);
+        }
+        out.endObject();
+    }
 }
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.LazyCommand;
+import io.jdev.miniprofiler.sql.SqlFingerprint;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Flat storage for all of the custom timings in one profiling session.
+ *
+ * <p>A SQL-heavy request can record tens of thousands of custom timings. Rather than an object
+ * graph per timing, each one is a slot in a set of parallel primitive columns, and the type,
+ * execute type and command strings are interned into a per-session string table, so repeated
+ * statements (as in an N+1 query pattern) are held once. {@link CustomTimingImpl} instances are
+ * only lightweight views onto a slot, created when the public API or JSON rendering asks for them.</p>
+ *
+ * <p>Columns are allocated in chunks that double in size, so small sessions stay small.
+ * Appending is lock-free apart from growing the chunk directory and adding a new string to
+ * the string table. The custom timings of each step form a linked list through the
+ * {@code next} column, which {@link TimingImpl} appends to; following that list is what
+ * publishes a slot's contents to other threads.</p>
+ *
+ * <p>A command may also be recorded as a {@link LazyCommand}, which is held in the slot until the
+ * command is first read and only then rendered and interned.</p>
+ */
+final class CustomTimingArena implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    static final int NONE = -1;
+
+    private static final int FIRST_CHUNK_SIZE = 16;
+    // the columns of one slot: three longs, an atomic long, three ints, two atomic ints and a reference
+    private static final int SLOT_BYTES = 4 * 8 + 5 * 4 + 4;
+    // a string table entry: the String and its array headers, plus the map entry and boxed index
+    private static final int STRING_OVERHEAD_BYTES = 40 + 48;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    private final ConcurrentMap<String, Integer> stringIndexes = new ConcurrentHashMap<>();
+    private volatile String[] strings = new String[16];
+    private int stringCount;
+
+    // count, min and max duration of slots loaded from a serialised group of repeated timings, by slot
+    private volatile ConcurrentMap<Integer, long[]> aggregates;
+    // SQL fingerprints by command, computed when repeated statements are grouped
+    private transient volatile ConcurrentMap<String, String> fingerprints;
+
+    /**
+     * Returns the number of custom timings recorded.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Records a new custom timing. The returned slot is not reachable by other threads until it has
+     * been linked into a step's list with {@link #setNext(int, int)} or by the step's own head index.
+     *
+     * @return the slot index
+     */
+    int add(UUID id, String type, String executeType, String command, long startNanoseconds, long durationNanoseconds) {
+        return add(id, type, executeType, intern(command), null, startNanoseconds, durationNanoseconds);
+    }
+
+    /**
+     * Records a new custom timing whose command is rendered the first time it is read.
+     *
+     * @return the slot index
+     */
+    int addLazy(UUID id, String type, String executeType, LazyCommand command, long startNanoseconds, long durationNanoseconds) {
+        return add(id, type, executeType, NONE, command, startNanoseconds, durationNanoseconds);
+    }
+
+    private int add(UUID id, String type, String executeType, int command, LazyCommand lazyCommand,
+                    long startNanoseconds, long durationNanoseconds) {
+        int index = size.getAndIncrement();
+        Chunk chunk = chunkFor(index);
+        int offset = offsetInChunk(index);
+        chunk.idMsb[offset] = id.getMostSignificantBits();
+        chunk.idLsb[offset] = id.getLeastSignificantBits();
+        chunk.type[offset] = intern(type);
+        chunk.executeType[offset] = intern(executeType);
+        chunk.command[offset] = command;
+        chunk.lazyCommand.set(offset, lazyCommand);
+        chunk.start[offset] = startNanoseconds;
+        chunk.duration.set(offset, durationNanoseconds);
+        chunk.formattedCommand.set(offset, NONE);
+        chunk.next.set(offset, NONE);
+        return index;
+    }
+
+    UUID getId(int index) {
+        int offset = offsetInChunk(index);
+        Chunk chunk = chunkFor(index);
+        return new UUID(chunk.idMsb[offset], chunk.idLsb[offset]);
+    }
+
+    String getType(int index) {
+        return string(chunkFor(index).type[offsetInChunk(index)]);
+    }
+
+    String getExecuteType(int index) {
+        return string(chunkFor(index).executeType[offsetInChunk(index)]);
+    }
+
+    /**
+     * Returns the command, rendering it first if it was recorded as a {@link LazyCommand}.
+     */
+    String getCommand(int index) {
+        Chunk chunk = chunkFor(index);
+        int offset = offsetInChunk(index);
+        LazyCommand lazyCommand = chunk.lazyCommand.get(offset);
+        if (lazyCommand != null) {
+            // two threads may both render the same command, which is harmless; the command column
+            // is written before the lazy command is cleared, so anyone who sees it cleared sees the command
+            String rendered = lazyCommand.render();
+            chunk.command[offset] = intern(rendered);
+            chunk.lazyCommand.set(offset, null);
+            return rendered;
+        }
+        return string(chunk.command[offset]);
+    }
+
+    /**
+     * Returns the command as formatted for display, or {@code null} if it has not been formatted yet.
+     */
+    String getFormattedCommand(int index) {
+        return string(chunkFor(index).formattedCommand.get(offsetInChunk(index)));
+    }
+
+    void setFormattedCommand(int index, String formatted) {
+        chunkFor(index).formattedCommand.set(offsetInChunk(index), formatted != null ? intern(formatted) : NONE);
+    }
+
+    /**
+     * Records that the given slot stands for a group of repeated timings, whose total duration is the slot's duration.
+     */
+    void setAggregate(int index, long count, long minDurationNanoseconds, long maxDurationNanoseconds) {
+        ConcurrentMap<Integer, long[]> current = aggregates;
+        if (current == null) {
+            synchronized (this) {
+                current = aggregates;
+                if (current == null) {
+                    current = new ConcurrentHashMap<>();
+                    aggregates = current;
+                }
+            }
+        }
+        current.put(index, new long[] {count, minDurationNanoseconds, maxDurationNanoseconds});
+    }
+
+    /**
+     * Returns the number of timings the slot stands for, which is 1 unless it was loaded from a group.
+     */
+    long getCount(int index) {
+        long[] aggregate = aggregate(index);
+        return aggregate != null ? aggregate[0] : 1;
+    }
+
+    long getMinDurationNanoseconds(int index) {
+        long[] aggregate = aggregate(index);
+        return aggregate != null ? aggregate[1] : getDurationNanoseconds(index);
+    }
+
+    long getMaxDurationNanoseconds(int index) {
+        long[] aggregate = aggregate(index);
+        return aggregate != null ? aggregate[2] : getDurationNanoseconds(index);
+    }
+
+    private long[] aggregate(int index) {
+        ConcurrentMap<Integer, long[]> current = aggregates;
+        return current != null ? current.get(index) : null;
+    }
+
+    /**
+     * Returns the {@link SqlFingerprint} of the slot's command, computed once per distinct command.
+     */
+    String getFingerprint(int index) {
+        String command = getCommand(index);
+        if (command == null) {
+            return null;
+        }
+        ConcurrentMap<String, String> current = fingerprints;
+        if (current == null) {
+            synchronized (this) {
+                current = fingerprints;
+                if (current == null) {
+                    current = new ConcurrentHashMap<>();
+                    fingerprints = current;
+                }
+            }
+        }
+        String fingerprint = current.get(command);
+        if (fingerprint == null) {
+            fingerprint = SqlFingerprint.of(command);
+            current.putIfAbsent(command, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    long getStartNanoseconds(int index) {
+        return chunkFor(index).start[offsetInChunk(index)];
+    }
+
+    long getDurationNanoseconds(int index) {
+        return chunkFor(index).duration.get(offsetInChunk(index));
+    }
+
+    /**
+     * Sets the duration of a running custom timing. Has no effect if it was already stopped.
+     */
+    void stop(int index, long durationNanoseconds) {
+        chunkFor(index).duration.compareAndSet(offsetInChunk(index), -1, durationNanoseconds);
+    }
+
+    int getNext(int index) {
+        return chunkFor(index).next.get(offsetInChunk(index));
+    }
+
+    void setNext(int index, int next) {
+        chunkFor(index).next.set(offsetInChunk(index), next);
+    }
+
+    // Chunk k holds FIRST_CHUNK_SIZE << k slots, so its first slot is FIRST_CHUNK_SIZE * (2^k - 1)
+    private static int chunkNumber(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index / FIRST_CHUNK_SIZE + 1);
+    }
+
+    private static int offsetInChunk(int index) {
+        return index - FIRST_CHUNK_SIZE * ((1 << chunkNumber(index)) - 1);
+    }
+
+    private Chunk chunkFor(int index) {
+        int number = chunkNumber(index);
+        Chunk[] current = chunks;
+        if (number < current.length) {
+            return current[number];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (number >= current.length) {
+                Chunk[] grown = Arrays.copyOf(current, number + 1);
+                for (int i = current.length; i <= number; i++) {
+                    grown[i] = new Chunk(FIRST_CHUNK_SIZE << i);
+                }
+                chunks = grown;
+                current = grown;
+            }
+            return current[number];
+        }
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer existing = stringIndexes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (stringIndexes) {
+            existing = stringIndexes.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int index = stringCount++;
+            String[] current = strings;
+            if (index == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[index] = value;
+            strings = current;
+            stringIndexes.put(value, index);
+            return index;
+        }
+    }
+
+    // lazy commands are not serializable, so render them all before writing the columns
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        for (int i = 0, n = size(); i < n; i++) {
+            getCommand(i);
+        }
+        out.defaultWriteObject();
+    }
+
+    private String string(int index) {
+        return index == NONE ? null : strings[index];
+    }
+
+    /**
+     * Returns a rough estimate of the heap held by the columns and the string table.
+     */
+    long estimatedSize() {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += (long) chunk.idMsb.length * SLOT_BYTES;
+        }
+        for (String value : strings) {
+            if (value != null) {
+                total += STRING_OVERHEAD_BYTES + 2L * value.length();
+            }
+        }
+        return total;
+    }
+
+    private static final class Chunk implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        final long[] idMsb;
+        final long[] idLsb;
+        final long[] start;
+        final AtomicLongArray duration;
+        final int[] type;
+        final int[] executeType;
+        final int[] command;
+        // set until a lazily recorded command is first read
+        final AtomicReferenceArray<LazyCommand> lazyCommand;
+        // written once the command has been formatted for display, which may happen on any thread
+        final AtomicIntegerArray formattedCommand;
+        final AtomicIntegerArray next;
+
+        Chunk(int size) {
+            idMsb = new long[size];
+            idLsb = new long[size];
+            start = new long[size];
+            duration = new AtomicLongArray(size);
+            type = new int[size];
+            executeType = new int[size];
+            command = new int[size];
+            lazyCommand = new AtomicReferenceArray<>(size);
+            formattedCommand = new AtomicIntegerArray(size);
+            next = new AtomicIntegerArray(size);
+        }
+    }
+}
@@ -17,111 +17,306 @@
 package io.jdev.miniprofiler.internal;
 
 import io.jdev.miniprofiler.CustomTiming;
-import org.json.simple.JSONObject;
+import io.jdev.miniprofiler.LazyCommand;
+import io.jdev.miniprofiler.ProfilerProvider;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * A view onto one custom timing held in its session's {@link CustomTimingArena}.
+ *
+ * <p>Views are cheap and created on demand, so two views of the same timing are
+ * {@linkplain #equals(Object) equal} but not necessarily the same instance.</p>
+ */
 class CustomTimingImpl implements CustomTiming, Serializable, Jsonable {
     private static final long serialVersionUID = 1;
 
-    private final TimingInternal parentTiming;
-    private final UUID id;
-    private final String type;
-    private final String executeType;
-    private final String commandString;
-    private final long startMilliseconds;
-    private Long durationMilliseconds;
+    private final TimingImpl parentTiming;
+    private final int index;
     // TODO: stack traces
     // TODO FirstFetchDurationMilliseconds
 
-    private CustomTimingImpl(UUID id, TimingInternal parentTiming, String type, String executeType, String commandString, long startMilliseconds, Long durationMilliseconds) {
-        this.id = id;
+    CustomTimingImpl(TimingImpl parentTiming, int index) {
         this.parentTiming = parentTiming;
-        this.type = type;
-        this.executeType = executeType;
-        this.commandString = commandString;
-        this.startMilliseconds = startMilliseconds;
-        this.durationMilliseconds = durationMilliseconds;
+        this.index = index;
     }
 
-    private CustomTimingImpl(TimingInternal parentTiming, String type, String executeType, String commandString, long startMilliseconds, Long durationMilliseconds) {
-        this(UUID.randomUUID(), parentTiming, type, executeType, commandString, startMilliseconds, durationMilliseconds);
+    // Records a new custom timing against the parent step and returns its arena slot
+    private static int record(TimingImpl parentTiming, UUID id, String type, String executeType, String commandString,
+                              long startNanoseconds, long durationNanoseconds) {
+        int index = parentTiming.getProfiler().getCustomTimingArena()
+            .add(id, type, executeType, commandString, startNanoseconds, durationNanoseconds);
+        parentTiming.linkCustomTiming(index);
+        return index;
     }
 
-    static CustomTimingImpl fromJson(TimingInternal parent, JSONObject obj) {
-        UUID id = UUID.fromString((String) obj.get("Id"));
-        String executeType = (String) obj.get("ExecuteType");
-        String commandString = (String) obj.get("CommandString");
-        long startMilliseconds = ((Number) obj.get("StartMilliseconds")).longValue();
-        Long durationMilliseconds = obj.get("DurationMilliseconds") != null
-            ? ((Number) obj.get("DurationMilliseconds")).longValue() : null;
-        return new CustomTimingImpl(id, parent, null, executeType, commandString, startMilliseconds, durationMilliseconds);
+    private static CustomTimingImpl create(TimingImpl parentTiming, String type, String executeType, String commandString,
+                                           long startNanoseconds, long durationNanoseconds) {
+        ProfilerImpl profiler = parentTiming.getProfiler();
+        UUID id = profiler.getIdGenerator().generate();
+        String limitedCommand = profiler.getBudget().limitCommand(commandString);
+        return new CustomTimingImpl(parentTiming, record(parentTiming, id, type, executeType, limitedCommand, startNanoseconds, durationNanoseconds));
     }
 
-    static CustomTimingImpl forDuration(TimingImpl parentTiming, String type, String executeType, String command, long duration) {
-        return forDurationFrom(parentTiming, type, executeType, command, duration, System.currentTimeMillis());
+    // Reads one stored custom timing straight into the arena
+    static void fromJson(TimingImpl parent, String type, JsonReader in) throws IOException {
+        UUID id = null;
+        String executeType = null;
+        String commandString = null;
+        Number start = null;
+        Number duration = null;
+        Number count = null;
+        Number min = null;
+        Number max = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "ExecuteType":
+                    executeType = in.nextString();
+                    break;
+                case "CommandString":
+                    commandString = in.nextString();
+                    break;
+                case "StartMilliseconds":
+                    start = in.nextNumber();
+                    break;
+                case "DurationMilliseconds":
+                    duration = in.nextNumber();
+                    break;
+                case "Count":
+                    count = in.nextNumber();
+                    break;
+                case "MinDurationMilliseconds":
+                    min = in.nextNumber();
+                    break;
+                case "MaxDurationMilliseconds":
+                    max = in.nextNumber();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        if (id == null || start == null) {
+            throw new IllegalArgumentException("Custom timing JSON needs an Id and StartMilliseconds");
+        }
+        int index = record(parent, id, type, executeType, commandString, Durations.jsonToNanos(start),
+            duration != null ? Durations.jsonToNanos(duration) : -1);
+        if (count != null && count.longValue() > 1 && min != null && max != null) {
+            parent.getProfiler().getCustomTimingArena()
+                .setAggregate(index, count.longValue(), Durations.jsonToNanos(min), Durations.jsonToNanos(max));
+        }
+    }
+
+    /**
+     * Records a custom timing that has just finished, without creating a view for it.
+     * Once the session has as many timings of the type as it may keep, the timing is
+     * only counted in the type's overflow summary.
+     */
+    static void recordForDuration(TimingImpl parentTiming, String type, String executeType, String command, long durationNanoseconds) {
+        ProfilerImpl profiler = parentTiming.getProfiler();
+        SessionBudget budget = profiler.getBudget();
+        if (!budget.tryAddCustomTiming(type)) {
+            budget.overflowCustomTiming(type, durationNanoseconds);
+            return;
+        }
+        long end = profiler.nanosSinceStart();
+        record(parentTiming, profiler.getIdGenerator().generate(), type, executeType, budget.limitCommand(command),
+            end - durationNanoseconds, durationNanoseconds);
+    }
+
+    /**
+     * Records a custom timing that has just finished, keeping its command unrendered until it is read.
+     */
+    static void recordLazilyForDuration(TimingImpl parentTiming, String type, String executeType, LazyCommand command,
+                                        long durationNanoseconds) {
+        ProfilerImpl profiler = parentTiming.getProfiler();
+        SessionBudget budget = profiler.getBudget();
+        if (!budget.tryAddCustomTiming(type)) {
+            budget.overflowCustomTiming(type, durationNanoseconds);
+            return;
+        }
+        long end = profiler.nanosSinceStart();
+        int index = profiler.getCustomTimingArena().addLazy(profiler.getIdGenerator().generate(), type, executeType,
+            budget.limitCommand(command), end - durationNanoseconds, durationNanoseconds);
+        parentTiming.linkCustomTiming(index);
     }
 
     static CustomTimingImpl forDurationFrom(TimingImpl parentTiming, String type, String executeType, String command, long duration, long start) {
-        return new CustomTimingImpl(parentTiming, type, executeType, command, relativeToProfilerStart(parentTiming, start) - duration, duration);
+        long durationNanoseconds = Durations.millisToNanos(duration);
+        return create(parentTiming, type, executeType, command, relativeToProfilerStart(parentTiming, start) - durationNanoseconds, durationNanoseconds);
     }
 
-    static CustomTimingImpl fromNow(TimingImpl parentTiming, String type, String executeType, String command) {
-        return from(parentTiming, type, executeType, command, System.currentTimeMillis());
+    static CustomTiming fromNow(TimingImpl parentTiming, String type, String executeType, String command) {
+        if (!parentTiming.getProfiler().getBudget().tryAddCustomTiming(type)) {
+            return new OverflowCustomTiming(parentTiming.getProfiler(), type, executeType, command);
+        }
+        return create(parentTiming, type, executeType, command, parentTiming.getProfiler().nanosSinceStart(), -1);
     }
 
     static CustomTimingImpl from(TimingImpl parentTiming, String type, String executeType, String command, long start) {
-        return new CustomTimingImpl(parentTiming, type, executeType, command, relativeToProfilerStart(parentTiming, start), null);
+        return create(parentTiming, type, executeType, command, relativeToProfilerStart(parentTiming, start), -1);
     }
 
+    // converts a wall-clock time in epoch millis to nanos since the profiler started
     private static long relativeToProfilerStart(TimingInternal parentTiming, long time) {
-        return time - parentTiming.getProfiler().getStarted();
+        return Durations.millisToNanos(time - parentTiming.getProfiler().getStarted());
+    }
+
+    private CustomTimingArena arena() {
+        return parentTiming.getProfiler().getCustomTimingArena();
     }
 
     @Override
     public Map<String, Object> toJson() {
+        CustomTimingArena arena = arena();
+        long count = arena.getCount(index);
+        return toJson(parentTiming, index, arena.getDurationNanoseconds(index), count,
+            count > 1 ? arena.getMinDurationNanoseconds(index) : -1, count > 1 ? arena.getMaxDurationNanoseconds(index) : -1);
+    }
+
+    /**
+     * Returns the map view of a group of repeated custom timings written as one entry, as
+     * {@link #writeAggregateJson} writes it.
+     */
+    static Map<String, Object> aggregateToJson(TimingImpl parentTiming, int index, long count,
+                                               long totalNanoseconds, long minNanoseconds, long maxNanoseconds) {
+        return toJson(parentTiming, index, totalNanoseconds, count, minNanoseconds, maxNanoseconds);
+    }
+
+    private static Map<String, Object> toJson(TimingImpl parentTiming, int index, long durationNanoseconds,
+                                              long count, long minNanoseconds, long maxNanoseconds) {
+        CustomTimingArena arena = parentTiming.getProfiler().getCustomTimingArena();
         Map<String, Object> map = new LinkedHashMap<>();
-        map.put("Id", id.toString());
+        map.put("Id", arena.getId(index).toString());
+        String executeType = arena.getExecuteType(index);
         if (executeType != null) {
             map.put("ExecuteType", executeType);
         }
-        map.put("CommandString", formatCommandString());
-        map.put("StartMilliseconds", getStartMilliseconds());
-        map.put("DurationMilliseconds", durationMilliseconds);
+        map.put("CommandString", displayCommand(parentTiming.getProfiler(), index));
+        map.put("StartMilliseconds", Durations.nanosToJson(arena.getStartNanoseconds(index)));
+        map.put("DurationMilliseconds", durationNanoseconds >= 0 ? Durations.nanosToJson(durationNanoseconds) : null);
         map.put("StackTraceSnippet", "");
+        if (count > 1) {
+            map.put("Count", count);
+            map.put("MinDurationMilliseconds", Durations.nanosToJson(minNanoseconds));
+            map.put("MaxDurationMilliseconds", Durations.nanosToJson(maxNanoseconds));
+        }
         return map;
     }
 
-    private String formatCommandString() {
-        if (type == null) {
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        writeJson(out, parentTiming, index);
+    }
+
+    // Writes the custom timing in the given slot straight from the arena, without a view
+    static void writeJson(JsonWriter out, TimingImpl parentTiming, int index) throws IOException {
+        CustomTimingArena arena = parentTiming.getProfiler().getCustomTimingArena();
+        long count = arena.getCount(index);
+        writeJson(out, parentTiming, index, arena.getDurationNanoseconds(index), count,
+            count > 1 ? arena.getMinDurationNanoseconds(index) : -1, count > 1 ? arena.getMaxDurationNanoseconds(index) : -1);
+    }
+
+    /**
+     * Writes a group of repeated custom timings as one entry, with the id, command and start of the
+     * timing in the given slot and the total duration of the group.
+     */
+    static void writeAggregateJson(JsonWriter out, TimingImpl parentTiming, int index, long count,
+                                   long totalNanoseconds, long minNanoseconds, long maxNanoseconds) throws IOException {
+        writeJson(out, parentTiming, index, totalNanoseconds, count, minNanoseconds, maxNanoseconds);
+    }
+
+    private static void writeJson(JsonWriter out, TimingImpl parentTiming, int index, long durationNanoseconds,
+                                  long count, long minNanoseconds, long maxNanoseconds) throws IOException {
+        CustomTimingArena arena = parentTiming.getProfiler().getCustomTimingArena();
+        out.beginObject();
+        out.name("Id").value(arena.getId(index).toString());
+        String executeType = arena.getExecuteType(index);
+        if (executeType != null) {
+            out.name("ExecuteType").value(executeType);
+        }
+        out.name("CommandString").value(displayCommand(parentTiming.getProfiler(), index));
+        out.name("StartMilliseconds").value(Durations.nanosToJson(arena.getStartNanoseconds(index)));
+        out.name("DurationMilliseconds");
+        if (durationNanoseconds >= 0) {
+            out.value(Durations.nanosToJson(durationNanoseconds));
+        } else {
+            out.nullValue();
+        }
+        out.name("StackTraceSnippet").value("");
+        if (count > 1) {
+            out.name("Count").value(count);
+            out.name("MinDurationMilliseconds").value(Durations.nanosToJson(minNanoseconds));
+            out.name("MaxDurationMilliseconds").value(Durations.nanosToJson(maxNanoseconds));
+        }
+        out.endObject();
+    }
+
+    // Returns the command as it should be shown, formatting it at most once per custom timing
+    private static String displayCommand(ProfilerImpl profiler, int index) {
+        CustomTimingArena arena = profiler.getCustomTimingArena();
+        String formatted = arena.getFormattedCommand(index);
+        if (formatted != null) {
+            return formatted;
+        }
+        if (!profiler.hasUnformattedCommands()) {
             // Deserialized from JSON — command string is already formatted
-            return commandString;
+            return arena.getCommand(index);
         }
-        return parentTiming.getProfiler().getProfilerProvider()
-            .getCommandFormatter(type)
-            .format(commandString);
+        ProfilerProvider provider = profiler.getProfilerProvider();
+        if (provider == null || provider.isCommandFormattingDeferred()) {
+            return arena.getCommand(index);
+        }
+        return formatCommand(provider, arena, index);
+    }
+
+    static String formatCommand(ProfilerProvider provider, CustomTimingArena arena, int index) {
+        String formatted = arena.getFormattedCommand(index);
+        if (formatted == null) {
+            formatted = provider.getCommandFormatter(arena.getType(index)).format(arena.getCommand(index));
+            arena.setFormattedCommand(index, formatted);
+        }
+        return formatted;
     }
 
     public UUID getId() {
-        return id;
+        return arena().getId(index);
+    }
+
+    String getType() {
+        return arena().getType(index);
     }
 
     @Override
     public String getCommandString() {
-        return commandString;
+        return arena().getCommand(index);
     }
 
     @Override
     public String getExecuteType() {
-        return executeType;
+        return arena().getExecuteType(index);
     }
 
     @Override
     public long getStartMilliseconds() {
-        return startMilliseconds;
+        return Durations.nanosToMillis(getStartNanoseconds());
+    }
+
+    /**
+     * Returns the start of this timing in nanoseconds, relative to the start of the profiling session.
+     *
+     * @return the start offset in nanoseconds
+     */
+    public long getStartNanoseconds() {
+        return arena().getStartNanoseconds(index);
     }
 
     @Override
@@ -131,17 +326,48 @@ class CustomTimingImpl implements CustomTiming, Serializable, Jsonable {
 
     @Override
     public void stop() {
-        stop(System.currentTimeMillis());
+        CustomTimingArena arena = arena();
+        if (arena.getDurationNanoseconds(index) < 0) {
+            arena.stop(index, Math.max(0, parentTiming.getProfiler().nanosSinceStart() - arena.getStartNanoseconds(index)));
+        }
     }
 
     void stop(long at) {
-        if (this.durationMilliseconds == null) {
-            this.durationMilliseconds = relativeToProfilerStart(parentTiming, at) - startMilliseconds;
+        CustomTimingArena arena = arena();
+        if (arena.getDurationNanoseconds(index) < 0) {
+            arena.stop(index, Math.max(0, relativeToProfilerStart(parentTiming, at) - arena.getStartNanoseconds(index)));
         }
     }
 
     @Override
     public Long getDurationMilliseconds() {
-        return durationMilliseconds;
+        long durationNanoseconds = getDurationNanoseconds();
+        return durationNanoseconds >= 0 ? Durations.nanosToMillis(durationNanoseconds) : null;
+    }
+
+    /**
+     * Returns the duration of this timing in nanoseconds.
+     *
+     * @return the duration, or -1 if the timing has not been stopped
+     */
+    public long getDurationNanoseconds() {
+        return arena().getDurationNanoseconds(index);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CustomTimingImpl)) {
+            return false;
+        }
+        CustomTimingImpl other = (CustomTimingImpl) o;
+        return index == other.index && arena() == other.arena();
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
     }
 }
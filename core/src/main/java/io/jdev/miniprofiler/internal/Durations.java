@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+/**
+ * Conversions between the nanosecond values held by timings and the millisecond
+ * values exposed through the public API and the UI JSON.
+ */
+final class Durations {
+
+    static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private Durations() {
+    }
+
+    static long millisToNanos(long millis) {
+        return millis * NANOS_PER_MILLI;
+    }
+
+    static long nanosToMillis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Renders nanoseconds as fractional milliseconds for the UI, truncated to whole microseconds
+     * so that values read back by {@link #jsonToNanos(Object)} give the same whole milliseconds.
+     */
+    static double nanosToJson(long nanos) {
+        return (nanos / 1000L) / 1000.0d;
+    }
+
+    /**
+     * Reads a millisecond value from stored JSON, which may be a whole number (as written by
+     * older versions) or a fractional one.
+     */
+    static long jsonToNanos(Object millis) {
+        if (millis instanceof Long || millis instanceof Integer) {
+            return millisToNanos(((Number) millis).longValue());
+        }
+        return Math.round(((Number) millis).doubleValue() * NANOS_PER_MILLI);
+    }
+}
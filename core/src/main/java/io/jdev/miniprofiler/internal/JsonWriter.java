@@ -0,0 +1,248 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes JSON straight to a {@link Writer}, without building an intermediate map or string.
+ *
+ * <p>The output is byte-for-byte what json-simple produces for the equivalent maps and lists:
+ * no whitespace, the same string escaping (including {@code \/}) and the same number formatting.
+ * Callers are responsible for emitting names and values in a valid order.</p>
+ */
+final class JsonWriter {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Writer out;
+    // whether the container at each nesting depth has had a member written yet
+    private boolean[] hasMembers = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(String.valueOf(name));
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    JsonWriter value(Long value) throws IOException {
+        return value == null ? nullValue() : value(value.longValue());
+    }
+
+    JsonWriter value(double value) throws IOException {
+        beforeValue();
+        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter value(Jsonable value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        value.writeJson(this);
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /**
+     * Writes an arbitrary value the way {@code JSONValue.writeJSONString} would.
+     */
+    JsonWriter value(Object value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return value(((Number) value).doubleValue());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            beforeValue();
+            out.write(value.toString());
+            return this;
+        } else if (value instanceof Jsonable) {
+            return value((Jsonable) value);
+        } else if (value instanceof JSONStreamAware) {
+            beforeValue();
+            ((JSONStreamAware) value).writeJSONString(out);
+            return this;
+        } else if (value instanceof JSONAware) {
+            beforeValue();
+            out.write(((JSONAware) value).toJSONString());
+            return this;
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey())).value(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof List) {
+            beginArray();
+            for (Object element : (List<?>) value) {
+                value(element);
+            }
+            return endArray();
+        } else {
+            beforeValue();
+            out.write(value.toString());
+            return this;
+        }
+    }
+
+    private void push() {
+        if (depth == hasMembers.length) {
+            hasMembers = Arrays.copyOf(hasMembers, depth * 2);
+        }
+        hasMembers[depth++] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasMembers[depth - 1]) {
+                out.write(',');
+            } else {
+                hasMembers[depth - 1] = true;
+            }
+        }
+    }
+
+    // Same escaping as json-simple's JSONValue.escape
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        int length = s.length();
+        int unwritten = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = s.charAt(i);
+            String escape;
+            switch (ch) {
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '\b':
+                    escape = "\\b";
+                    break;
+                case '\f':
+                    escape = "\\f";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                case '/':
+                    escape = "\\/";
+                    break;
+                default:
+                    if (ch <= '\u001F' || (ch >= '\u007F' && ch <= '\u009F') || (ch >= '\u2000' && ch <= '\u20FF')) {
+                        escape = unicodeEscape(ch);
+                    } else {
+                        continue;
+                    }
+            }
+            if (i > unwritten) {
+                out.write(s, unwritten, i - unwritten);
+            }
+            out.write(escape);
+            unwritten = i + 1;
+        }
+        if (length > unwritten) {
+            out.write(s, unwritten, length - unwritten);
+        }
+        out.write('"');
+    }
+
+    private static String unicodeEscape(char ch) {
+        return new String(new char[]{'\\', 'u', HEX[(ch >> 12) & 0xF], HEX[(ch >> 8) & 0xF], HEX[(ch >> 4) & 0xF], HEX[ch & 0xF]});
+    }
+}
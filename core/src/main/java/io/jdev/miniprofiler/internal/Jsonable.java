@@ -17,26 +17,40 @@
 package io.jdev.miniprofiler.internal;
 
 import org.json.simple.JSONAware;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.Map;
 
 /**
  * Internal interface used by JSON serialization classes.
+ *
+ * <p>{@link #toJson()} gives a map view for callers that want to inspect the structure, while
+ * {@link #writeJson(JsonWriter)} streams the same document without building it; the JSON
+ * string methods use the latter.</p>
  */
 interface Jsonable extends JSONAware, JSONStreamAware {
     Map<String, Object> toJson();
 
+    void writeJson(JsonWriter out) throws IOException;
+
     @Override
     default String toJSONString() {
-        return JSONObject.toJSONString(toJson());
+        StringWriter out = new StringWriter();
+        try {
+            writeJSONString(out);
+        } catch (IOException e) {
+            // StringWriter doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
     }
 
     @Override
     default void writeJSONString(Writer out) throws IOException {
-        JSONObject.writeJSONString(toJson(), out);
+        writeJson(new JsonWriter(out));
     }
 }
@@ -17,12 +17,14 @@
 package io.jdev.miniprofiler.internal;
 
 import io.jdev.miniprofiler.CustomTiming;
+import io.jdev.miniprofiler.LazyCommand;
 import io.jdev.miniprofiler.ProfileLevel;
 import io.jdev.miniprofiler.Profiler;
 import io.jdev.miniprofiler.Timing;
 
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A profiler implementation which does nothing. Mainly exists
@@ -81,6 +83,18 @@ public class NullProfiler implements Profiler {
     public void addCustomTiming(String type, String executeType, String command, long duration) {
     }
 
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+    }
+
     @Override
     public CustomTiming customTiming(String type, String executeType, String command) {
         return NullCustomTiming.INSTANCE;
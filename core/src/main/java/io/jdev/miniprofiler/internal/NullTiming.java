@@ -17,6 +17,7 @@
 package io.jdev.miniprofiler.internal;
 
 import io.jdev.miniprofiler.CustomTiming;
+import io.jdev.miniprofiler.LazyCommand;
 import io.jdev.miniprofiler.Profiler;
 import io.jdev.miniprofiler.Timing;
 
@@ -24,6 +25,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A timing implementation which does nothing. Mainly exists
@@ -104,6 +106,18 @@ class NullTiming implements Timing {
     public void addCustomTiming(String type, String executeType, String command, long duration) {
     }
 
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+    }
+
     @Override
     public CustomTiming customTiming(String type, String executeType, String comman) {
         return NullCustomTiming.INSTANCE;
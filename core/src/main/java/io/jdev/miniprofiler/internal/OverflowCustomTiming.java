@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.CustomTiming;
+
+/**
+ * A custom timing started after its session reached
+ * {@link io.jdev.miniprofiler.SessionLimits#getMaxCustomTimingsPerType()} for its type.
+ * It is not kept; once stopped, its duration is counted in the type's overflow summary.
+ */
+final class OverflowCustomTiming implements CustomTiming {
+
+    private final ProfilerImpl profiler;
+    private final String type;
+    private final String executeType;
+    private final String command;
+    private final long startNanoseconds;
+    private volatile long durationNanoseconds = -1;
+
+    OverflowCustomTiming(ProfilerImpl profiler, String type, String executeType, String command) {
+        this.profiler = profiler;
+        this.type = type;
+        this.executeType = executeType;
+        this.command = command;
+        this.startNanoseconds = profiler.nanosSinceStart();
+    }
+
+    @Override
+    public String getExecuteType() {
+        return executeType;
+    }
+
+    @Override
+    public String getCommandString() {
+        return command;
+    }
+
+    @Override
+    public long getStartMilliseconds() {
+        return Durations.nanosToMillis(startNanoseconds);
+    }
+
+    @Override
+    public Long getDurationMilliseconds() {
+        long duration = durationNanoseconds;
+        return duration >= 0 ? Durations.nanosToMillis(duration) : null;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (durationNanoseconds < 0) {
+            durationNanoseconds = Math.max(0, profiler.nanosSinceStart() - startNanoseconds);
+            profiler.getBudget().overflowCustomTiming(type, durationNanoseconds);
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
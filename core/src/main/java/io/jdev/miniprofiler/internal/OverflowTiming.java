@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.CustomTiming;
+import io.jdev.miniprofiler.LazyCommand;
+import io.jdev.miniprofiler.Profiler;
+import io.jdev.miniprofiler.Timing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A step started after its session reached {@link io.jdev.miniprofiler.SessionLimits#getMaxSteps()}.
+ *
+ * <p>It is not added to the timing tree, and does not become the current step. Once stopped, its
+ * duration is counted in the session's step overflow summary. Custom timings and child profilers
+ * added to it go to the step that was current when it started, so they are still kept, subject to
+ * their own limits.</p>
+ */
+final class OverflowTiming implements Timing {
+
+    private final ProfilerImpl profiler;
+    private final TimingInternal parent;
+    private final long startNanoseconds;
+    private volatile String name;
+    private volatile long durationNanoseconds = -1;
+
+    OverflowTiming(ProfilerImpl profiler, TimingInternal parent, String name) {
+        this.profiler = profiler;
+        this.parent = parent;
+        this.name = name;
+        this.startNanoseconds = profiler.nanosSinceStart();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (durationNanoseconds < 0) {
+            durationNanoseconds = Math.max(0, profiler.nanosSinceStart() - startNanoseconds);
+            profiler.getBudget().overflowStep(durationNanoseconds);
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Timing getParent() {
+        return parent;
+    }
+
+    @Override
+    public long getStartMilliseconds() {
+        return Durations.nanosToMillis(startNanoseconds);
+    }
+
+    @Override
+    public Long getDurationMilliseconds() {
+        long duration = durationNanoseconds;
+        return duration >= 0 ? Durations.nanosToMillis(duration) : null;
+    }
+
+    @Override
+    public int getDepth() {
+        return parent.getDepth() + 1;
+    }
+
+    @Override
+    public Map<String, List<CustomTiming>> getCustomTimings() {
+        return null;
+    }
+
+    @Override
+    public List<Timing> getChildren() {
+        return null;
+    }
+
+    @Override
+    public List<Timing> getAllChildren() {
+        return null;
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration) {
+        parent.addCustomTiming(type, executeType, command, duration);
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+        parent.addLazyCustomTiming(type, executeType, command, duration);
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+        parent.addCustomTiming(type, executeType, command, duration, unit);
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+        parent.addLazyCustomTiming(type, executeType, command, duration, unit);
+    }
+
+    @Override
+    public CustomTiming customTiming(String type, String executeType, String command) {
+        return parent.customTiming(type, executeType, command);
+    }
+
+    @Override
+    public void customTiming(String type, String executeType, String command, Runnable block) {
+        parent.customTiming(type, executeType, command, block);
+    }
+
+    @Override
+    public <T> T customTiming(String type, String executeType, String command, Callable<T> function) throws Exception {
+        return parent.customTiming(type, executeType, command, function);
+    }
+
+    @Override
+    public Profiler addChildProfiler(String name) {
+        return parent.addChildProfiler(name);
+    }
+
+    @Override
+    public List<Profiler> getChildProfilers() {
+        return Collections.emptyList();
+    }
+}
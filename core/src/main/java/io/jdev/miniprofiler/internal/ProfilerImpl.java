@@ -17,17 +17,31 @@
 package io.jdev.miniprofiler.internal;
 
 import io.jdev.miniprofiler.*;
-import org.json.simple.JSONArray;
+import io.jdev.miniprofiler.id.IdGenerator;
+import io.jdev.miniprofiler.time.ProfilerClock;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
-import org.json.simple.parser.ParseException;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Profiler implementation.
@@ -46,23 +60,116 @@ import java.util.concurrent.Callable;
  */
 public class ProfilerImpl implements Profiler, Serializable, Jsonable {
     private static final long serialVersionUID = 1;
+    // the profiler with its id, budget and arena, before any steps or custom timings
+    private static final int ESTIMATED_OVERHEAD_BYTES = 512;
+    // a client timing or custom link, with its list or map entry
+    private static final int ESTIMATED_ENTRY_BYTES = 64;
 
     private final UUID id;
     private final String name;
     private final long started;
+    // monotonic clock reading taken at the same moment as started; all timings are relative to it
+    private final long startedNanos;
     private String user;
     private String machineName;
     private final ProfileLevel level;
     private TimingImpl root;
     private boolean hasQueryTimings;
-    private TimingInternal head;
-    private boolean stopped;
+    // The current step of the thread that started the session. Any other thread that opens steps
+    // keeps its own stack of heads in threadHeads, starting from whatever this was at the time,
+    // so concurrent work nests under the step that forked it rather than under each other.
+    private volatile TimingInternal head;
+    private final transient Thread owner;
+    private final transient ConcurrentMap<Thread, HeadStack> threadHeads;
+    private volatile boolean stopped;
+    // Whether custom timing commands may still need formatting for display. False for sessions
+    // read back from JSON that was written with its commands already formatted.
+    private volatile boolean unformattedCommands = true;
+    private final CustomTimingArena customTimingArena = new CustomTimingArena();
+    private final SessionBudget budget;
+    private transient QueryAggregation queryAggregation;
+    // the repeated queries a loaded session was stored with
+    private volatile List<QueryAggregator.RepeatedQuery> storedRepeatedQueries;
     private List<ClientTiming> clientTimings;
+    // replaced as a whole by addCustomLink, never modified in place
     private volatile Map<String, String> customLinks;
     private final ProfilerProvider profilerProvider;
     // Set for child profilers (created via TimingImpl.addChildProfiler) so that command formatting
     // can resolve the provider without the child owning a lifecycle provider of its own. Null for roots.
     private final ProfilerImpl parentProfiler;
+    // Resolved once from the provider on first use, so that creating a timing does not need to
+    // walk back to the provider. Not serialised, as deserialised sessions create no new timings.
+    private transient IdGenerator idGenerator;
+    // Null for deserialised sessions, which fall back to the system clock
+    private final transient ProfilerClock clock;
+
+    SessionBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns whether this session reached one of its {@link SessionLimits}, so that some steps or
+     * custom timings were only counted in an overflow summary, or some commands were cut short.
+     *
+     * @return true if the session is incomplete
+     */
+    public boolean isTruncated() {
+        return budget.isTruncated();
+    }
+
+    /**
+     * Returns how many custom timings of the given type were only counted in this session's
+     * overflow summary, after it reached {@link SessionLimits#getMaxCustomTimingsPerType()}.
+     *
+     * @param type the custom timing type, e.g. "sql"
+     * @return the number of custom timings of that type not kept
+     */
+    public long getOverflowCustomTimingCount(String type) {
+        return budget.getOverflowCount(type);
+    }
+
+    /**
+     * Returns the duration of the longest custom timing, of any type, that was only counted in
+     * this session's overflow summary.
+     *
+     * @return the duration in milliseconds, or zero if no custom timings overflowed
+     */
+    public long getOverflowCustomTimingMaxMilliseconds() {
+        return Durations.nanosToMillis(budget.getOverflowMaxNanoseconds());
+    }
+
+    QueryAggregation getQueryAggregation() {
+        QueryAggregation aggregation = queryAggregation;
+        if (aggregation == null) {
+            ProfilerProvider provider = getProfilerProvider();
+            aggregation = provider != null ? provider.getQueryAggregation() : null;
+            if (aggregation == null) {
+                aggregation = QueryAggregation.NONE;
+            }
+            queryAggregation = aggregation;
+        }
+        return aggregation;
+    }
+
+    /**
+     * Returns whether any step in this session repeated a query at least
+     * {@link QueryAggregation#getRepeatThreshold()} times, which usually means an N+1 query.
+     * For a session loaded from storage, this is whether it was flagged when it was saved.
+     *
+     * @return true if the session repeated a query too often
+     */
+    public boolean hasRepeatedQueries() {
+        return !getRepeatedQueries().isEmpty();
+    }
+
+    List<QueryAggregator.RepeatedQuery> getRepeatedQueries() {
+        int threshold = getQueryAggregation().getRepeatThreshold();
+        if (threshold > 0) {
+            return QueryAggregator.repeatedQueries(root, threshold);
+        }
+        List<QueryAggregator.RepeatedQuery> stored = storedRepeatedQueries;
+        return stored != null ? stored : Collections.<QueryAggregator.RepeatedQuery>emptyList();
+    }
 
     ProfilerProvider getProfilerProvider() {
         if (profilerProvider != null) {
@@ -71,6 +178,29 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         return parentProfiler != null ? parentProfiler.getProfilerProvider() : null;
     }
 
+    IdGenerator getIdGenerator() {
+        IdGenerator generator = idGenerator;
+        if (generator == null) {
+            ProfilerProvider provider = getProfilerProvider();
+            generator = provider != null ? provider.getIdGenerator() : null;
+            if (generator == null) {
+                generator = IdGenerator.FAST;
+            }
+            idGenerator = generator;
+        }
+        return generator;
+    }
+
+    private static SessionLimits limitsFor(ProfilerProvider profilerProvider) {
+        SessionLimits limits = profilerProvider != null ? profilerProvider.getSessionLimits() : null;
+        return limits != null ? limits : SessionLimits.UNLIMITED;
+    }
+
+    private static ProfilerClock clockFor(ProfilerProvider profilerProvider) {
+        ProfilerClock clock = profilerProvider != null ? profilerProvider.getClock() : null;
+        return clock != null ? clock : ProfilerClock.SYSTEM;
+    }
+
     /**
      * Construct a new profiling session.
      *
@@ -114,12 +244,16 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         this(null, name, rootName, level, profilerProvider);
     }
 
-    private ProfilerImpl(UUID id, String name, long started, String machineName, ProfileLevel level,
+    private ProfilerImpl(UUID id, String name, long started, long startedNanos, String machineName, ProfileLevel level,
                          TimingImpl root, TimingInternal head, boolean stopped, ProfilerProvider profilerProvider,
-                         ProfilerImpl parentProfiler) {
+                         ProfilerImpl parentProfiler, ProfilerClock clock) {
         this.id = id;
         this.name = name;
         this.started = started;
+        this.startedNanos = startedNanos;
+        this.clock = clock;
+        this.owner = Thread.currentThread();
+        this.threadHeads = new ConcurrentHashMap<>();
         this.machineName = machineName;
         this.level = level;
         this.root = root;
@@ -127,6 +261,7 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         this.stopped = stopped;
         this.profilerProvider = profilerProvider;
         this.parentProfiler = parentProfiler;
+        this.budget = new SessionBudget(stopped ? SessionLimits.UNLIMITED : limitsFor(getProfilerProvider()));
     }
 
     /**
@@ -149,7 +284,13 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
      * @param profilerProvider the profiler provider constructing the
      */
     public ProfilerImpl(UUID id, String name, String rootName, ProfileLevel level, ProfilerProvider profilerProvider) {
-        this(id != null ? id : UUID.randomUUID(), name, System.currentTimeMillis(), null, level, null, null, false, profilerProvider, null);
+        this(id, name, rootName, level, profilerProvider, clockFor(profilerProvider));
+    }
+
+    private ProfilerImpl(UUID id, String name, String rootName, ProfileLevel level, ProfilerProvider profilerProvider,
+                         ProfilerClock clock) {
+        this(id != null ? id : UUID.randomUUID(), name, clock.currentTimeMillis(), clock.nanoTime(), null, level,
+            null, null, false, profilerProvider, null, clock);
         root = new TimingImpl(this, null, rootName);
         head = root;
     }
@@ -160,14 +301,17 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
      * formatting can resolve a {@link io.jdev.miniprofiler.format.CommandFormatter} via {@link #getProfilerProvider()}.
      */
     ProfilerImpl(String rootName, ProfileLevel level, long started, ProfilerImpl parentProfiler) {
-        this(null, rootName, started, null, level, null, null, false, null, parentProfiler);
+        this(null, rootName, started,
+            parentProfiler.startedNanos + Durations.millisToNanos(started - parentProfiler.started),
+            null, level, null, null, false, null, parentProfiler, parentProfiler.getClock());
         root = new TimingImpl(this, null, rootName);
         head = root;
     }
 
     // Deserialization constructor — does not create a root timing or set head
     ProfilerImpl(UUID id, String name, long started, String machineName, ProfileLevel level) {
-        this(id, name, started, machineName, level, null, null, true, null, null);
+        this(id, name, started, 0, machineName, level, null, null, true, null, null, null);
+        this.unformattedCommands = false;
     }
 
     /**
@@ -177,56 +321,226 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
      * @return the deserialized profiler
      */
     public static ProfilerImpl fromJson(JSONObject obj) {
-        UUID id = UUID.fromString((String) obj.get("Id"));
-        String name = (String) obj.get("Name");
-        long started = OffsetDateTime.parse((String) obj.get("Started")).toInstant().toEpochMilli();
-        String machineName = (String) obj.get("MachineName");
-        ProfileLevel level = ProfileLevel.Verbose;
-
-        ProfilerImpl profiler = new ProfilerImpl(id, name, started, machineName, level);
-        profiler.user = (String) obj.get("User");
-        TimingImpl root = TimingImpl.fromJson(profiler, null, (JSONObject) obj.get("Root"));
-        profiler.root = root;
+        return fromJson(obj.toJSONString());
+    }
+
+    /**
+     * Deserialize a profiler from a JSON string.
+     *
+     * @param json the JSON string to deserialize
+     * @return the deserialized profiler
+     */
+    public static ProfilerImpl fromJson(String json) {
+        return fromJson(new StringReader(json));
+    }
 
-        JSONObject clientTimingsObj = (JSONObject) obj.get("ClientTimings");
-        if (clientTimingsObj != null) {
-            profiler.clientTimings = ClientTiming.listFromJson((JSONArray) clientTimingsObj.get("Timings"));
+    /**
+     * Deserialize a profiler from JSON read from the given reader, without building an
+     * intermediate tree of JSON objects. The reader is not closed.
+     *
+     * @param json the reader to read the JSON from
+     * @return the deserialized profiler
+     * @throws IllegalArgumentException if the JSON is invalid or is not a profiler object
+     * @throws UncheckedIOException if reading fails
+     */
+    public static ProfilerImpl fromJson(Reader json) {
+        try {
+            JsonReader in = new JsonReader(json);
+            ProfilerImpl profiler = fromJson(in);
+            in.endDocument();
+            return profiler;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
+
+    /**
+     * Deserialize a profiler from UTF-8 encoded JSON read from the given stream. The stream
+     * is not closed.
+     *
+     * @param json the stream to read the JSON from
+     * @return the deserialized profiler
+     * @throws IllegalArgumentException if the JSON is invalid or is not a profiler object
+     * @throws UncheckedIOException if reading fails
+     */
+    public static ProfilerImpl fromJson(InputStream json) {
+        return fromJson(new InputStreamReader(json, StandardCharsets.UTF_8));
+    }
 
-        JSONObject customLinksObj = (JSONObject) obj.get("CustomLinks");
-        if (customLinksObj != null) {
-            Map<String, String> links = new LinkedHashMap<>();
-            for (Object key : customLinksObj.keySet()) {
-                links.put((String) key, (String) customLinksObj.get(key));
+    private static ProfilerImpl fromJson(JsonReader in) throws IOException {
+        UUID id = null;
+        String name = null;
+        boolean hasName = false;
+        Long started = null;
+        String machineName = null;
+        String user = null;
+        ProfilerImpl profiler = null;
+        TimingImpl root = null;
+        // a root that arrived before the fields needed to create the profiler, replayed at the end
+        Object earlyRoot = null;
+        List<ClientTiming> clientTimings = null;
+        Map<String, String> customLinks = null;
+        boolean commandsFormatted = true;
+        boolean truncated = false;
+        SessionBudget overflow = null;
+        List<QueryAggregator.RepeatedQuery> repeatedQueries = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "Name":
+                    name = in.nextString();
+                    hasName = true;
+                    break;
+                case "Started":
+                    started = OffsetDateTime.parse(in.nextString()).toInstant().toEpochMilli();
+                    break;
+                case "MachineName":
+                    machineName = in.nextString();
+                    break;
+                case "User":
+                    user = in.nextString();
+                    break;
+                case "Root":
+                    if (id != null && started != null && hasName) {
+                        profiler = new ProfilerImpl(id, name, started, machineName, ProfileLevel.Verbose);
+                        root = in.peek() == JsonReader.Token.NULL ? nullRoot(in) : TimingImpl.fromJson(profiler, null, in);
+                    } else {
+                        earlyRoot = in.readValue();
+                    }
+                    break;
+                case "ClientTimings":
+                    if (in.peek() == JsonReader.Token.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("Timings")) {
+                            clientTimings = ClientTiming.listFromJson(in);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "CommandsFormatted":
+                    commandsFormatted = in.nextBoolean();
+                    break;
+                case "Truncated":
+                    truncated = in.nextBoolean();
+                    break;
+                case "RepeatedQueries":
+                    repeatedQueries = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        repeatedQueries.add(QueryAggregator.RepeatedQuery.fromJson(in));
+                    }
+                    in.endArray();
+                    break;
+                case "Overflow":
+                    if (overflow == null) {
+                        overflow = new SessionBudget(SessionLimits.UNLIMITED);
+                    }
+                    overflow.readOverflow(in);
+                    break;
+                case "CustomLinks":
+                    if (in.peek() == JsonReader.Token.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    customLinks = new LinkedHashMap<>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String text = in.nextName();
+                        customLinks.put(text, in.nextString());
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
             }
-            profiler.customLinks = links;
         }
+        in.endObject();
 
+        if (id == null || started == null) {
+            throw new IllegalArgumentException("Profiler JSON needs an Id and Started");
+        }
+        if (profiler == null) {
+            profiler = new ProfilerImpl(id, name, started, machineName, ProfileLevel.Verbose);
+        }
+        if (earlyRoot != null) {
+            root = TimingImpl.fromJson(profiler, null, new JsonReader(new StringReader(JSONValue.toJSONString(earlyRoot))));
+        }
+        profiler.machineName = machineName;
+        profiler.user = user;
+        profiler.root = root;
+        profiler.clientTimings = clientTimings;
+        profiler.customLinks = customLinks;
+        profiler.unformattedCommands = !commandsFormatted;
+        if (overflow != null) {
+            profiler.budget.merge(overflow);
+        }
+        if (truncated) {
+            profiler.budget.markTruncated();
+        }
+        profiler.storedRepeatedQueries = repeatedQueries;
         return profiler;
     }
 
+    private static TimingImpl nullRoot(JsonReader in) throws IOException {
+        in.nextNull();
+        return null;
+    }
+
+    private double getDurationMillisecondsForJson() {
+        long nanoseconds = root.getDurationNanoseconds();
+        if (nanoseconds < 0) {
+            nanoseconds = clock != null ? nanosSinceStart() : Durations.millisToNanos(System.currentTimeMillis() - started);
+        }
+        return Durations.nanosToJson(nanoseconds);
+    }
+
     /**
-     * Deserialize a profiler from a JSON string.
+     * Formats the commands of all custom timings in this session for display, if they have not
+     * been already. Results handlers call this before rendering a session, which is where the
+     * formatting happens when {@link ProfilerProvider#isCommandFormattingDeferred()} is set.
      *
-     * @param json the JSON string to deserialize
-     * @return the deserialized profiler
+     * @param provider the provider whose command formatters to use
      */
-    public static ProfilerImpl fromJson(String json) {
-        Object parsed;
-        try {
-            parsed = JSONValue.parseWithException(json);
-        } catch (ParseException e) {
-            throw new IllegalArgumentException("Invalid JSON", e);
+    public void formatCommands(ProfilerProvider provider) {
+        if (unformattedCommands && root != null) {
+            root.formatCommands(provider);
+            unformattedCommands = false;
         }
-        if (!(parsed instanceof JSONObject)) {
-            throw new IllegalArgumentException("JSON was not an object");
-        }
-        return fromJson((JSONObject) parsed);
     }
 
-    private long getDurationMilliseconds() {
-        Long milliseconds = root.getDurationMilliseconds();
-        return milliseconds != null ? milliseconds : System.currentTimeMillis() - started;
+    boolean hasUnformattedCommands() {
+        return unformattedCommands;
+    }
+
+    private boolean isCommandFormattingDeferred() {
+        ProfilerProvider provider = getProfilerProvider();
+        return provider == null || provider.isCommandFormattingDeferred();
+    }
+
+    CustomTimingArena getCustomTimingArena() {
+        return customTimingArena;
+    }
+
+    ProfilerClock getClock() {
+        return clock != null ? clock : ProfilerClock.SYSTEM;
+    }
+
+    /**
+     * Returns the time elapsed since this session started, according to the monotonic clock.
+     * All step and custom timing offsets are measured on this scale.
+     */
+    long nanosSinceStart() {
+        return getClock().nanoTime() - startedNanos;
     }
 
     @Override
@@ -239,6 +553,10 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         if (!stopped) {
             stopped = true;
             root.stop();
+            if (threadHeads != null) {
+                // drop any steps other threads left open so the stored session doesn't retain their threads
+                threadHeads.clear();
+            }
             if (profilerProvider != null) { // null for child profilers as we don't want to affect the outer session here
                 profilerProvider.stopSession(this, discardResults);
             }
@@ -249,9 +567,12 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
     public Timing step(String name, ProfileLevel level) {
         if (level.ordinal() > this.level.ordinal()) {
             return NullTiming.INSTANCE;
-        } else {
-            return new TimingImpl(this, head, name);
         }
+        TimingInternal parent = currentHead();
+        if (parent != null && !budget.tryAddStep()) {
+            return new OverflowTiming(this, parent, name);
+        }
+        return new TimingImpl(this, parent, name);
     }
 
     @Override
@@ -291,13 +612,33 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
 
     @Override
     public void addCustomTiming(String type, String executeType, String command, long duration) {
+        addCustomTiming(type, executeType, command, duration, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+        addLazyCustomTiming(type, executeType, command, duration, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+        TimingInternal head = currentHead();
+        if (head != null) {
+            head.addCustomTiming(type, executeType, command, duration, unit);
+        }
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+        TimingInternal head = currentHead();
         if (head != null) {
-            head.addCustomTiming(type, executeType, command, duration);
+            head.addLazyCustomTiming(type, executeType, command, duration, unit);
         }
     }
 
     @Override
     public CustomTiming customTiming(String type, String executeType, String command) {
+        TimingInternal head = currentHead();
         if (head != null) {
             return head.customTiming(type, executeType, command);
         } else {
@@ -307,6 +648,7 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
 
     @Override
     public void customTiming(String type, String executeType, String command, Runnable block) {
+        TimingInternal head = currentHead();
         if (head != null) {
             head.customTiming(type, executeType, command, block);
         } else {
@@ -316,6 +658,7 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
 
     @Override
     public <T> T customTiming(String type, String executeType, String command, Callable<T> function) throws Exception {
+        TimingInternal head = currentHead();
         if (head != null) {
             return head.customTiming(type, executeType, command, function);
         } else {
@@ -329,7 +672,7 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         map.put("Id", id.toString());
         map.put("Name", name);
         map.put("Started", Instant.ofEpochMilli(started).atOffset(ZoneOffset.UTC).toString());
-        map.put("DurationMilliseconds", getDurationMilliseconds());
+        map.put("DurationMilliseconds", getDurationMillisecondsForJson());
         map.put("MachineName", machineName);
         map.put("User", user);
         map.put("Root", root);
@@ -341,36 +684,101 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
             map.put("ClientTimings", null);
         }
         map.put("CustomLinks", customLinks);
+        if (budget.isTruncated()) {
+            budget.putJson(map);
+        }
+        List<QueryAggregator.RepeatedQuery> repeatedQueries = getRepeatedQueries();
+        if (!repeatedQueries.isEmpty()) {
+            map.put("RepeatedQueries", repeatedQueries);
+        }
         return map;
     }
 
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("Id").value(id.toString());
+        out.name("Name").value(name);
+        out.name("Started").value(Instant.ofEpochMilli(started).atOffset(ZoneOffset.UTC).toString());
+        out.name("DurationMilliseconds").value(getDurationMillisecondsForJson());
+        out.name("MachineName").value(machineName);
+        out.name("User").value(user);
+        out.name("Root").value(root);
+        writeClientTimings(out);
+        out.name("CustomLinks").value((Object) customLinks);
+        if (budget.isTruncated()) {
+            // written after the root, so that commands cut short when lazily rendered are counted
+            budget.writeJson(out);
+        }
+        List<QueryAggregator.RepeatedQuery> repeatedQueries = getRepeatedQueries();
+        if (!repeatedQueries.isEmpty()) {
+            out.name("RepeatedQueries").value((Object) repeatedQueries);
+        }
+        if (unformattedCommands && isCommandFormattingDeferred()) {
+            // only written when commands are stored raw, so that the results page knows to format them
+            out.name("CommandsFormatted").value(false);
+        }
+        out.endObject();
+    }
+
+    private void writeClientTimings(JsonWriter out) throws IOException {
+        out.name("ClientTimings");
+        if (clientTimings != null) {
+            out.beginObject().name("Timings").value((Object) clientTimings).endObject();
+        } else {
+            out.nullValue();
+        }
+    }
+
     @Override
     public String asUiJson() {
         return this.toJSONString();
     }
 
+    @Override
+    public void writeUiJson(Writer out) throws IOException {
+        writeJSONString(out);
+    }
+
+    /**
+     * Writes the same JSON as {@link #asUiJson()} to the given stream as UTF-8, without building
+     * it in memory first. The stream is flushed but not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeUiJson(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeJSONString(writer);
+        writer.flush();
+    }
+
     /**
      * Returns a JSON representation suitable for the results list endpoint.
      *
      * @return a JSON string for the results list
      */
     public String asListJson() {
-        Map<String, Object> map = new LinkedHashMap<>();
-        map.put("Id", id.toString());
-        map.put("Name", name);
-        if (clientTimings != null) {
-            Map<String, Object> ct = new LinkedHashMap<>();
-            ct.put("Timings", clientTimings);
-            map.put("ClientTimings", ct);
-        } else {
-            map.put("ClientTimings", null);
-        }
-        map.put("Started", Instant.ofEpochMilli(started).atOffset(ZoneOffset.UTC).toString());
-        map.put("HasUserViewed", false);
-        map.put("MachineName", machineName);
-        map.put("User", user);
-        map.put("DurationMilliseconds", getDurationMilliseconds());
-        return JSONObject.toJSONString(map);
+        return toSummary().asListJson();
+    }
+
+    /**
+     * Writes the same JSON as {@link #asListJson()} to the given writer.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void writeListJson(Writer writer) throws IOException {
+        toSummary().writeListJson(writer);
+    }
+
+    /**
+     * Returns the fields of this session shown in the results list.
+     *
+     * @return a summary of this session
+     */
+    public ProfilerSummary toSummary() {
+        return new ProfilerSummary(id, name, started, getDurationMillisecondsForJson(), machineName, user, clientTimings);
     }
 
     /**
@@ -482,13 +890,81 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         return hasQueryTimings;
     }
 
+    /**
+     * Returns the current step for the calling thread: the innermost unstopped step it opened
+     * itself, or failing that the current step of the thread that started the session.
+     *
+     * @return the current step, or null once the session has stopped
+     */
     @Override
     public Timing getHead() {
+        return currentHead();
+    }
+
+    TimingInternal currentHead() {
+        Thread thread = Thread.currentThread();
+        if (thread != owner && threadHeads != null) {
+            HeadStack stack = threadHeads.get(thread);
+            if (stack != null) {
+                return stack.timing;
+            }
+        }
         return head;
     }
 
-    void setHead(TimingInternal head) {
-        this.head = head;
+    void pushHead(TimingInternal timing) {
+        Thread thread = Thread.currentThread();
+        if (thread == owner || threadHeads == null) {
+            head = timing;
+        } else {
+            threadHeads.put(thread, new HeadStack(timing, threadHeads.get(thread)));
+        }
+    }
+
+    void popHead(TimingInternal timing, TimingInternal parent) {
+        if (threadHeads != null && !threadHeads.isEmpty()) {
+            Thread thread = Thread.currentThread();
+            if (thread != owner && popFrom(thread, timing)) {
+                return;
+            }
+            if (head != timing) {
+                // stopped on a different thread from the one that opened it
+                for (Thread other : threadHeads.keySet()) {
+                    if (popFrom(other, timing)) {
+                        return;
+                    }
+                }
+            }
+        }
+        head = parent;
+    }
+
+    // Pops the thread's stack down to below the given timing, if the stack contains it.
+    // Only the owning thread normally touches its own stack, but use conditional updates
+    // in case a step is stopped from elsewhere at the same time.
+    private boolean popFrom(Thread thread, TimingInternal timing) {
+        HeadStack stack = threadHeads.get(thread);
+        for (HeadStack entry = stack; entry != null; entry = entry.below) {
+            if (entry.timing == timing) {
+                if (entry.below == null) {
+                    threadHeads.remove(thread, stack);
+                } else {
+                    threadHeads.replace(thread, stack, entry.below);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class HeadStack {
+        final TimingInternal timing;
+        final HeadStack below;
+
+        HeadStack(TimingInternal timing, HeadStack below) {
+            this.timing = timing;
+            this.below = below;
+        }
     }
 
     /**
@@ -519,6 +995,35 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
         this.hasQueryTimings = hasQueryTimings;
     }
 
+    /**
+     * Returns a rough estimate of the heap this session holds on to: its steps, custom timings
+     * and the strings they reference. It is meant for bounding caches of sessions by size, and
+     * walks the timing tree, so callers should compute it once per session rather than per read.
+     *
+     * @return the estimated retained size in bytes
+     */
+    public long estimatedSize() {
+        long total = ESTIMATED_OVERHEAD_BYTES + stringSize(name) + stringSize(user) + stringSize(machineName)
+            + root.estimatedSize() + customTimingArena.estimatedSize();
+        List<ClientTiming> timings = clientTimings;
+        if (timings != null) {
+            for (ClientTiming timing : timings) {
+                total += ESTIMATED_ENTRY_BYTES + stringSize(timing.getName());
+            }
+        }
+        Map<String, String> links = customLinks;
+        if (links != null) {
+            for (Map.Entry<String, String> link : links.entrySet()) {
+                total += ESTIMATED_ENTRY_BYTES + stringSize(link.getKey()) + stringSize(link.getValue());
+            }
+        }
+        return total;
+    }
+
+    private static long stringSize(String value) {
+        return value != null ? 40 + 2L * value.length() : 0;
+    }
+
     /**
      * Sets the client-side performance timings for this session.
      *
@@ -530,16 +1035,13 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
 
     @Override
     public void addCustomLink(String text, String url) {
-        Map<String, String> links = customLinks;
-        if (links == null) {
-            synchronized (this) {
-                links = customLinks;
-                if (links == null) {
-                    customLinks = links = new LinkedHashMap<>();
-                }
-            }
+        // copy on write: links are few, and the JSON writers iterate the map without locking
+        synchronized (this) {
+            Map<String, String> links = customLinks;
+            Map<String, String> updated = links != null ? new LinkedHashMap<>(links) : new LinkedHashMap<>();
+            updated.put(text, url);
+            customLinks = Collections.unmodifiableMap(updated);
         }
-        links.put(text, url);
     }
 
     @Override
@@ -554,7 +1056,7 @@ public class ProfilerImpl implements Profiler, Serializable, Jsonable {
 
     @Override
     public Profiler addChild(String name) {
-        Timing target = head;
+        Timing target = currentHead();
         if (target == null) {
             // This can happen if the original execution has finished by the time that a forked
             // one has started. It's ok to attach the child to the root timing in this case.
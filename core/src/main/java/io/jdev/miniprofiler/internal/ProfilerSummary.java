@@ -0,0 +1,259 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a profiling session shown in the results list, without its timing tree.
+ *
+ * <p>Storages that can answer {@link io.jdev.miniprofiler.storage.Storage#listSummaries} without
+ * loading each session build these directly; otherwise they come from
+ * {@link ProfilerImpl#toSummary()}. The JSON is the same as {@link ProfilerImpl#asListJson()}.</p>
+ */
+public class ProfilerSummary implements Jsonable {
+
+    private final UUID id;
+    private final String name;
+    private final long started;
+    private final double durationMilliseconds;
+    private final String machineName;
+    private final String user;
+    private final List<ClientTiming> clientTimings;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param id                   the session id
+     * @param name                 the session name
+     * @param started              when the session started, in milliseconds since the epoch
+     * @param durationMilliseconds the duration of the session's root timing
+     * @param machineName          the machine the session ran on
+     * @param user                 the user the session ran as, or {@code null}
+     * @param clientTimings        the client timings, or {@code null} if there are none
+     */
+    public ProfilerSummary(UUID id, String name, long started, double durationMilliseconds,
+                           String machineName, String user, List<ClientTiming> clientTimings) {
+        this.id = id;
+        this.name = name;
+        this.started = started;
+        this.durationMilliseconds = durationMilliseconds;
+        this.machineName = machineName;
+        this.user = user;
+        this.clientTimings = clientTimings != null && !clientTimings.isEmpty()
+            ? Collections.unmodifiableList(clientTimings) : null;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public double getDurationMilliseconds() {
+        return durationMilliseconds;
+    }
+
+    public String getMachineName() {
+        return machineName;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the session's client timings.
+     *
+     * @return the client timings, or {@code null} if there are none
+     */
+    public List<ClientTiming> getClientTimings() {
+        return clientTimings;
+    }
+
+    @Override
+    public Map<String, Object> toJson() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("Id", id.toString());
+        map.put("Name", name);
+        if (clientTimings != null) {
+            Map<String, Object> ct = new LinkedHashMap<>();
+            ct.put("Timings", clientTimings);
+            map.put("ClientTimings", ct);
+        } else {
+            map.put("ClientTimings", null);
+        }
+        map.put("Started", formatStarted());
+        map.put("HasUserViewed", false);
+        map.put("MachineName", machineName);
+        map.put("User", user);
+        map.put("DurationMilliseconds", durationMilliseconds);
+        return map;
+    }
+
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("Id").value(id.toString());
+        out.name("Name").value(name);
+        out.name("ClientTimings");
+        if (clientTimings != null) {
+            out.beginObject().name("Timings").value((Object) clientTimings).endObject();
+        } else {
+            out.nullValue();
+        }
+        out.name("Started").value(formatStarted());
+        out.name("HasUserViewed").value(false);
+        out.name("MachineName").value(machineName);
+        out.name("User").value(user);
+        out.name("DurationMilliseconds").value(durationMilliseconds);
+        out.endObject();
+    }
+
+    private String formatStarted() {
+        return Instant.ofEpochMilli(started).atOffset(ZoneOffset.UTC).toString();
+    }
+
+    /**
+     * Returns the results list JSON for this session.
+     *
+     * @return a JSON string for the results list
+     */
+    public String asListJson() {
+        return toJSONString();
+    }
+
+    /**
+     * Writes the results list JSON for this session to the given writer.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void writeListJson(Writer writer) throws IOException {
+        writeJSONString(writer);
+    }
+
+    /**
+     * Reads a summary from results list JSON, as written by {@link #writeListJson(Writer)}. Fields
+     * other than those held by a summary are ignored, so the full session JSON can be read too.
+     * The reader is not closed.
+     *
+     * @param json the reader to read the JSON from
+     * @return the summary
+     * @throws IllegalArgumentException if the JSON is invalid or has no id or start time
+     * @throws UncheckedIOException if reading fails
+     */
+    public static ProfilerSummary fromJson(Reader json) {
+        try {
+            JsonReader in = new JsonReader(json);
+            ProfilerSummary summary = fromJson(in);
+            in.endDocument();
+            return summary;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a summary from UTF-8 encoded results list JSON. The stream is not closed.
+     *
+     * @param json the stream to read the JSON from
+     * @return the summary
+     * @throws IllegalArgumentException if the JSON is invalid or has no id or start time
+     * @throws UncheckedIOException if reading fails
+     */
+    public static ProfilerSummary fromJson(InputStream json) {
+        return fromJson(new InputStreamReader(json, StandardCharsets.UTF_8));
+    }
+
+    private static ProfilerSummary fromJson(JsonReader in) throws IOException {
+        UUID id = null;
+        String name = null;
+        Long started = null;
+        double durationMilliseconds = 0;
+        String machineName = null;
+        String user = null;
+        List<ClientTiming> clientTimings = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "Name":
+                    name = in.nextString();
+                    break;
+                case "Started":
+                    started = OffsetDateTime.parse(in.nextString()).toInstant().toEpochMilli();
+                    break;
+                case "DurationMilliseconds":
+                    Number duration = in.nextNumber();
+                    durationMilliseconds = duration != null ? duration.doubleValue() : 0;
+                    break;
+                case "MachineName":
+                    machineName = in.nextString();
+                    break;
+                case "User":
+                    user = in.nextString();
+                    break;
+                case "ClientTimings":
+                    if (in.peek() == JsonReader.Token.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("Timings")) {
+                            clientTimings = ClientTiming.listFromJson(in);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        if (id == null || started == null) {
+            throw new IllegalArgumentException("Session summary must have an Id and a Started time");
+        }
+        return new ProfilerSummary(id, name, started, durationMilliseconds, machineName, user, clientTimings);
+    }
+}
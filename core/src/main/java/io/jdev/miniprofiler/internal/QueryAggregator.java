@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.Timing;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups a step's custom timings by type and by command, or by {@link io.jdev.miniprofiler.sql.SqlFingerprint}
+ * for SQL, so that a statement repeated in a loop can be written as one entry and flagged as a likely N+1 query.
+ *
+ * @see io.jdev.miniprofiler.QueryAggregation
+ */
+final class QueryAggregator {
+
+    private static final String SQL = "sql";
+
+    private QueryAggregator() {
+    }
+
+    /**
+     * Writes the step's custom timings by type, folding each group of at least {@code minCount}
+     * finished timings into one entry. Groups are written in the order they were first seen.
+     */
+    static void writeCustomTimings(JsonWriter out, TimingImpl timing, int minCount) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, Map<String, Group>> type : group(timing).entrySet()) {
+            out.name(type.getKey()).beginArray();
+            for (Group group : type.getValue().values()) {
+                if (group.size > 1 && !group.running && group.count >= minCount) {
+                    CustomTimingImpl.writeAggregateJson(out, timing, group.indexes[0], group.count,
+                        group.totalNanoseconds, group.minNanoseconds, group.maxNanoseconds);
+                } else {
+                    for (int i = 0; i < group.size; i++) {
+                        CustomTimingImpl.writeJson(out, timing, group.indexes[i]);
+                    }
+                }
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    /**
+     * Returns the map view of what {@link #writeCustomTimings} writes: each type's timings, with
+     * each group of at least {@code minCount} finished timings folded into one entry.
+     */
+    static Map<String, List<Object>> customTimingsJson(TimingImpl timing, int minCount) {
+        Map<String, List<Object>> result = new LinkedHashMap<>(4);
+        for (Map.Entry<String, Map<String, Group>> type : group(timing).entrySet()) {
+            List<Object> entries = new ArrayList<>();
+            for (Group group : type.getValue().values()) {
+                if (group.size > 1 && !group.running && group.count >= minCount) {
+                    entries.add(CustomTimingImpl.aggregateToJson(timing, group.indexes[0], group.count,
+                        group.totalNanoseconds, group.minNanoseconds, group.maxNanoseconds));
+                } else {
+                    for (int i = 0; i < group.size; i++) {
+                        entries.add(new CustomTimingImpl(timing, group.indexes[i]));
+                    }
+                }
+            }
+            result.put(type.getKey(), entries);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the queries repeated at least {@code threshold} times within any step of the given tree,
+     * most repeated first.
+     */
+    static List<RepeatedQuery> repeatedQueries(TimingImpl root, int threshold) {
+        List<RepeatedQuery> repeated = new ArrayList<>();
+        if (root != null) {
+            collectRepeatedQueries(root, threshold, repeated);
+            repeated.sort((a, b) -> Long.compare(b.count, a.count));
+        }
+        return repeated;
+    }
+
+    private static void collectRepeatedQueries(TimingImpl timing, int threshold, List<RepeatedQuery> into) {
+        if (timing.hasCustomTimings()) {
+            for (Map.Entry<String, Map<String, Group>> type : group(timing).entrySet()) {
+                for (Map.Entry<String, Group> group : type.getValue().entrySet()) {
+                    if (group.getValue().count >= threshold) {
+                        into.add(new RepeatedQuery(type.getKey(), timing.getName(), group.getKey(), group.getValue().count));
+                    }
+                }
+            }
+        }
+        for (Timing child : timing.getChildren()) {
+            collectRepeatedQueries((TimingImpl) child, threshold, into);
+        }
+    }
+
+    private static Map<String, Map<String, Group>> group(TimingImpl timing) {
+        CustomTimingArena arena = timing.getProfiler().getCustomTimingArena();
+        Map<String, Map<String, Group>> types = new LinkedHashMap<>(4);
+        for (int index = timing.firstCustomTiming(); index != CustomTimingArena.NONE; index = arena.getNext(index)) {
+            String type = arena.getType(index);
+            Map<String, Group> groups = types.get(type);
+            if (groups == null) {
+                groups = new LinkedHashMap<>();
+                types.put(type, groups);
+            }
+            String key = SQL.equals(type) ? arena.getFingerprint(index) : arena.getCommand(index);
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group();
+                groups.put(key, group);
+            }
+            group.add(arena, index);
+        }
+        return types;
+    }
+
+    private static final class Group {
+        int[] indexes = new int[1];
+        int size;
+        long count;
+        long totalNanoseconds;
+        long minNanoseconds = Long.MAX_VALUE;
+        long maxNanoseconds;
+        boolean running;
+
+        void add(CustomTimingArena arena, int index) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+            indexes[size++] = index;
+            long duration = arena.getDurationNanoseconds(index);
+            if (duration < 0) {
+                running = true;
+                count++;
+                return;
+            }
+            count += arena.getCount(index);
+            totalNanoseconds += duration;
+            minNanoseconds = Math.min(minNanoseconds, arena.getMinDurationNanoseconds(index));
+            maxNanoseconds = Math.max(maxNanoseconds, arena.getMaxDurationNanoseconds(index));
+        }
+    }
+
+    /**
+     * A query repeated often enough within one step to flag the session.
+     */
+    static final class RepeatedQuery implements Serializable, Jsonable {
+        private static final long serialVersionUID = 1;
+
+        final String type;
+        final String step;
+        final String command;
+        final long count;
+
+        RepeatedQuery(String type, String step, String command, long count) {
+            this.type = type;
+            this.step = step;
+            this.command = command;
+            this.count = count;
+        }
+
+        static RepeatedQuery fromJson(JsonReader in) throws IOException {
+            String type = null;
+            String step = null;
+            String command = null;
+            long count = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "Type":
+                        type = in.nextString();
+                        break;
+                    case "Step":
+                        step = in.nextString();
+                        break;
+                    case "CommandString":
+                        command = in.nextString();
+                        break;
+                    case "Count":
+                        count = in.nextNumber().longValue();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new RepeatedQuery(type, step, command, count);
+        }
+
+        @Override
+        public Map<String, Object> toJson() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("Type", type);
+            map.put("Step", step);
+            map.put("CommandString", command);
+            map.put("Count", count);
+            return map;
+        }
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("Type").value(type);
+            out.name("Step").value(step);
+            out.name("CommandString").value(command);
+            out.name("Count").value(count);
+            out.endObject();
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal;
+
+import io.jdev.miniprofiler.LazyCommand;
+import io.jdev.miniprofiler.SessionLimits;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks one session's use of its {@link SessionLimits}, and summarises the steps and
+ * custom timings that were not kept once a limit was reached.
+ */
+final class SessionBudget implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    // appended to a command that was cut short
+    static final String TRUNCATION_MARKER = "\u2026";
+
+    private final SessionLimits limits;
+    private final AtomicInteger steps = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> customTimings = new ConcurrentHashMap<>();
+    private final Overflow overflowSteps = new Overflow();
+    private final ConcurrentMap<String, Overflow> overflowCustomTimings = new ConcurrentHashMap<>();
+    private volatile boolean truncated;
+
+    SessionBudget(SessionLimits limits) {
+        this.limits = limits != null ? limits : SessionLimits.UNLIMITED;
+    }
+
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    void markTruncated() {
+        truncated = true;
+    }
+
+    /**
+     * Claims room for one more step.
+     *
+     * @return false if the session already has as many steps as it may keep
+     */
+    boolean tryAddStep() {
+        return claim(steps, limits.getMaxSteps());
+    }
+
+    /**
+     * Claims room for one more custom timing of the given type.
+     *
+     * @return false if the session already has as many custom timings of the type as it may keep
+     */
+    boolean tryAddCustomTiming(String type) {
+        int max = limits.getMaxCustomTimingsPerType();
+        if (max <= 0) {
+            return true;
+        }
+        AtomicInteger count = customTimings.get(String.valueOf(type));
+        if (count == null) {
+            count = customTimings.computeIfAbsent(String.valueOf(type), t -> new AtomicInteger());
+        }
+        return claim(count, max);
+    }
+
+    private boolean claim(AtomicInteger count, int max) {
+        if (max <= 0) {
+            return true;
+        }
+        // stop incrementing once full so the counter can't wrap on a very long session
+        if (count.get() < max && count.incrementAndGet() <= max) {
+            return true;
+        }
+        truncated = true;
+        return false;
+    }
+
+    void overflowStep(long durationNanoseconds) {
+        overflowSteps.add(durationNanoseconds);
+    }
+
+    void overflowCustomTiming(String type, long durationNanoseconds) {
+        overflowFor(type).add(durationNanoseconds);
+    }
+
+    private Overflow overflowFor(String type) {
+        String key = String.valueOf(type);
+        Overflow overflow = overflowCustomTimings.get(key);
+        return overflow != null ? overflow : overflowCustomTimings.computeIfAbsent(key, t -> new Overflow());
+    }
+
+    /**
+     * Cuts the command short if it is longer than the limit.
+     */
+    String limitCommand(String command) {
+        int max = limits.getMaxCommandLength();
+        if (command == null || max <= 0 || command.length() <= max) {
+            return command;
+        }
+        truncated = true;
+        return command.substring(0, max) + TRUNCATION_MARKER;
+    }
+
+    /**
+     * Returns a command that is cut short once rendered, if there is a command length limit.
+     */
+    LazyCommand limitCommand(LazyCommand command) {
+        return limits.getMaxCommandLength() <= 0 ? command : () -> limitCommand(command.render());
+    }
+
+    void writeJson(JsonWriter out) throws IOException {
+        out.name("Truncated").value(true);
+        if (overflowSteps.count.get() == 0 && overflowCustomTimings.isEmpty()) {
+            return;
+        }
+        out.name("Overflow").beginObject();
+        if (overflowSteps.count.get() > 0) {
+            out.name("Steps");
+            overflowSteps.writeJson(out);
+        }
+        if (!overflowCustomTimings.isEmpty()) {
+            out.name("CustomTimings").beginObject();
+            for (Map.Entry<String, Overflow> entry : overflowCustomTimings.entrySet()) {
+                out.name(entry.getKey());
+                entry.getValue().writeJson(out);
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    void putJson(Map<String, Object> map) {
+        map.put("Truncated", true);
+        if (overflowSteps.count.get() == 0 && overflowCustomTimings.isEmpty()) {
+            return;
+        }
+        Map<String, Object> overflow = new LinkedHashMap<>();
+        if (overflowSteps.count.get() > 0) {
+            overflow.put("Steps", overflowSteps.toJson());
+        }
+        if (!overflowCustomTimings.isEmpty()) {
+            Map<String, Object> types = new LinkedHashMap<>();
+            for (Map.Entry<String, Overflow> entry : overflowCustomTimings.entrySet()) {
+                types.put(entry.getKey(), entry.getValue().toJson());
+            }
+            overflow.put("CustomTimings", types);
+        }
+        map.put("Overflow", overflow);
+    }
+
+    // Reads the Overflow object written by writeJson back into this budget
+    void readOverflow(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Steps":
+                    overflowSteps.readJson(in);
+                    break;
+                case "CustomTimings":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        overflowFor(in.nextName()).readJson(in);
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        truncated = true;
+    }
+
+    /**
+     * Adds the other budget's overflow summaries to this one's.
+     */
+    void merge(SessionBudget other) {
+        overflowSteps.merge(other.overflowSteps);
+        for (Map.Entry<String, Overflow> entry : other.overflowCustomTimings.entrySet()) {
+            overflowFor(entry.getKey()).merge(entry.getValue());
+        }
+        if (other.truncated) {
+            truncated = true;
+        }
+    }
+
+    /**
+     * Returns the types of custom timing that overflowed, in no particular order.
+     */
+    List<String> getOverflowTypes() {
+        return new ArrayList<>(overflowCustomTimings.keySet());
+    }
+
+    long getOverflowCount(String type) {
+        Overflow overflow = overflowCustomTimings.get(type);
+        return overflow != null ? overflow.count.get() : 0;
+    }
+
+    long getOverflowMaxNanoseconds() {
+        long max = 0;
+        for (Overflow overflow : overflowCustomTimings.values()) {
+            max = Math.max(max, overflow.maxNanoseconds.get());
+        }
+        return max;
+    }
+
+    long getOverflowStepCount() {
+        return overflowSteps.count.get();
+    }
+
+    /**
+     * The count, total and maximum duration of the entries of one kind that were not kept.
+     */
+    static final class Overflow implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanoseconds = new AtomicLong();
+        final AtomicLong maxNanoseconds = new AtomicLong();
+
+        void add(long durationNanoseconds) {
+            count.incrementAndGet();
+            totalNanoseconds.addAndGet(durationNanoseconds);
+            maxNanoseconds.accumulateAndGet(durationNanoseconds, Math::max);
+        }
+
+        void merge(Overflow other) {
+            count.addAndGet(other.count.get());
+            totalNanoseconds.addAndGet(other.totalNanoseconds.get());
+            maxNanoseconds.accumulateAndGet(other.maxNanoseconds.get(), Math::max);
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("Count", count.get());
+            map.put("DurationMilliseconds", Durations.nanosToJson(totalNanoseconds.get()));
+            map.put("MaxDurationMilliseconds", Durations.nanosToJson(maxNanoseconds.get()));
+            return map;
+        }
+
+        void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("Count").value(count.get());
+            out.name("DurationMilliseconds").value(Durations.nanosToJson(totalNanoseconds.get()));
+            out.name("MaxDurationMilliseconds").value(Durations.nanosToJson(maxNanoseconds.get()));
+            out.endObject();
+        }
+
+        void readJson(JsonReader in) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "Count":
+                        count.addAndGet(in.nextNumber().longValue());
+                        break;
+                    case "DurationMilliseconds":
+                        totalNanoseconds.addAndGet(Durations.jsonToNanos(in.nextNumber()));
+                        break;
+                    case "MaxDurationMilliseconds":
+                        maxNanoseconds.accumulateAndGet(Durations.jsonToNanos(in.nextNumber()), Math::max);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+    }
+}
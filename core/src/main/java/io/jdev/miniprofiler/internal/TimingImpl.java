@@ -17,126 +17,242 @@
 package io.jdev.miniprofiler.internal;
 
 import io.jdev.miniprofiler.CustomTiming;
+import io.jdev.miniprofiler.LazyCommand;
 import io.jdev.miniprofiler.Profiler;
+import io.jdev.miniprofiler.ProfilerProvider;
 import io.jdev.miniprofiler.Timing;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Concrete implementation of {@link Timing} interface.
+ *
+ * <p>Steps, custom timings and child profilers may be added from several threads at once,
+ * for example from a parallel stream or a forked execution. They are held in lock-free
+ * append-only queues, created on first use, and the list and map views returned by the
+ * getters are snapshots.</p>
  */
 public class TimingImpl implements TimingInternal, Serializable, Jsonable {
     private static final long serialVersionUID = 1;
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TimingImpl, Queue> CHILDREN =
+        AtomicReferenceFieldUpdater.newUpdater(TimingImpl.class, Queue.class, "children");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TimingImpl, Queue> CHILD_PROFILERS =
+        AtomicReferenceFieldUpdater.newUpdater(TimingImpl.class, Queue.class, "childProfilers");
+    private static final AtomicIntegerFieldUpdater<TimingImpl> LAST_CUSTOM_TIMING =
+        AtomicIntegerFieldUpdater.newUpdater(TimingImpl.class, "lastCustomTiming");
+
+    // the step, its id and its entry in the parent's queue
+    private static final int ESTIMATED_OVERHEAD_BYTES = 72 + 32 + 24;
+
     private final UUID id;
     private String name;
-    private final long startMilliseconds;
-    private Long durationMilliseconds;
+    // Both relative to the profiler's monotonic start; duration is negative until stopped
+    private final long startNanoseconds;
+    private volatile long durationNanoseconds;
     private final ProfilerImpl profiler;
     private final TimingInternal parent;
     private final int depth;
-    private List<TimingImpl> children;
-    private Map<String, List<CustomTiming>> customTimings;
-    private List<Profiler> childProfilers;
-
+    private volatile Queue<TimingImpl> children;
+    // Slots of this step's first and last custom timings in the profiler's CustomTimingArena,
+    // which links the rest together
+    private volatile int firstCustomTiming = CustomTimingArena.NONE;
+    private volatile int lastCustomTiming = CustomTimingArena.NONE;
+    private volatile Queue<Profiler> childProfilers;
 
     private TimingImpl(ProfilerImpl profiler, TimingInternal parent, UUID id, String name,
-                       long startMilliseconds, Long durationMilliseconds, int depth) {
+                       long startNanoseconds, long durationNanoseconds, int depth) {
         this.id = id;
         this.profiler = profiler;
         this.parent = parent;
         this.name = name;
-        this.startMilliseconds = startMilliseconds;
-        this.durationMilliseconds = durationMilliseconds;
+        this.startNanoseconds = startNanoseconds;
+        this.durationNanoseconds = durationNanoseconds;
         this.depth = depth;
     }
 
     TimingImpl(ProfilerImpl profiler, TimingInternal parent, String name) {
-        this(profiler, parent, UUID.randomUUID(), name,
-            System.currentTimeMillis() - profiler.getStarted(), null,
+        this(profiler, parent, profiler.getIdGenerator().generate(), name,
+            profiler.nanosSinceStart(), -1,
             parent != null ? parent.getDepth() + 1 : 0);
         if (parent != null) {
             parent.addChild(this);
         }
-        profiler.setHead(this);
+        profiler.pushHead(this);
     }
 
-    // Deserialization constructor — does NOT call profiler.setHead() or parent.addChild()
+    // Deserialization constructor — does NOT call profiler.pushHead() or parent.addChild()
     TimingImpl(ProfilerImpl profiler, TimingInternal parent, UUID id, String name,
-               long startMilliseconds, Long durationMilliseconds) {
-        this(profiler, parent, id, name, startMilliseconds, durationMilliseconds,
+               long startNanoseconds, long durationNanoseconds) {
+        this(profiler, parent, id, name, startNanoseconds, durationNanoseconds,
             parent != null ? parent.getDepth() + 1 : 0);
     }
 
-    @SuppressWarnings("unchecked")
-    static TimingImpl fromJson(ProfilerImpl profiler, TimingInternal parent, JSONObject obj) {
-        UUID id = UUID.fromString((String) obj.get("Id"));
-        String name = (String) obj.get("Name");
-        long startMilliseconds = ((Number) obj.get("StartMilliseconds")).longValue();
-        Long durationMilliseconds = obj.get("DurationMilliseconds") != null
-            ? ((Number) obj.get("DurationMilliseconds")).longValue() : null;
-
-        TimingImpl timing = new TimingImpl(profiler, parent, id, name,
-            startMilliseconds, durationMilliseconds);
-
-        // Deserialize children
-        JSONArray childrenJson = (JSONArray) obj.get("Children");
-        if (childrenJson != null) {
-            List<TimingImpl> children = new ArrayList<>();
-            for (Object child : childrenJson) {
-                children.add(TimingImpl.fromJson(profiler, timing, (JSONObject) child));
+    static TimingImpl fromJson(ProfilerImpl profiler, TimingInternal parent, JsonReader in) throws IOException {
+        UUID id = null;
+        String name = null;
+        Number start = null;
+        Number duration = null;
+        TimingImpl timing = null;
+        // nested members that arrived before the id and start they need, replayed at the end
+        Map<String, Object> early = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            switch (field) {
+                case "Id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "Name":
+                    name = in.nextString();
+                    break;
+                case "StartMilliseconds":
+                    start = in.nextNumber();
+                    break;
+                case "DurationMilliseconds":
+                    duration = in.nextNumber();
+                    break;
+                case "Children":
+                case "CustomTimings":
+                    if (timing == null && id != null && start != null) {
+                        timing = new TimingImpl(profiler, parent, id, name, Durations.jsonToNanos(start), -1);
+                    }
+                    if (timing != null) {
+                        timing.readNested(field, in);
+                    } else {
+                        if (early == null) {
+                            early = new LinkedHashMap<>();
+                        }
+                        early.put(field, in.readValue());
+                    }
+                    break;
+                default:
+                    in.skipValue();
             }
-            timing.children = children;
         }
+        in.endObject();
 
-        // Deserialize custom timings
-        JSONObject customTimingsJson = (JSONObject) obj.get("CustomTimings");
-        if (customTimingsJson != null) {
-            Map<String, List<CustomTiming>> customTimings = new LinkedHashMap<>();
-            for (Object entry : customTimingsJson.entrySet()) {
-                Map.Entry<String, JSONArray> e = (Map.Entry<String, JSONArray>) entry;
-                List<CustomTiming> list = new ArrayList<>();
-                for (Object ct : e.getValue()) {
-                    list.add(CustomTimingImpl.fromJson(timing, (JSONObject) ct));
+        if (timing == null) {
+            if (id == null || start == null) {
+                throw new IllegalArgumentException("Timing JSON needs an Id and StartMilliseconds");
+            }
+            timing = new TimingImpl(profiler, parent, id, name, Durations.jsonToNanos(start), -1);
+        }
+        timing.name = name;
+        timing.durationNanoseconds = duration != null ? Durations.jsonToNanos(duration) : -1;
+        if (early != null) {
+            for (Map.Entry<String, Object> entry : early.entrySet()) {
+                JsonReader replay = new JsonReader(new StringReader(JSONValue.toJSONString(entry.getValue())));
+                timing.readNested(entry.getKey(), replay);
+            }
+        }
+        return timing;
+    }
+
+    // Formats the commands of this step's custom timings and those of all its descendants
+    void formatCommands(ProfilerProvider provider) {
+        CustomTimingArena arena = profiler.getCustomTimingArena();
+        for (int index = firstCustomTiming; index != CustomTimingArena.NONE; index = arena.getNext(index)) {
+            CustomTimingImpl.formatCommand(provider, arena, index);
+        }
+        List<Timing> kids = getAllChildren();
+        if (kids != null) {
+            for (Timing child : kids) {
+                if (child instanceof TimingImpl) {
+                    ((TimingImpl) child).formatCommands(provider);
                 }
-                customTimings.put(e.getKey(), list);
             }
-            timing.customTimings = customTimings;
         }
+    }
 
-        return timing;
+    private void readNested(String field, JsonReader in) throws IOException {
+        if (in.peek() == JsonReader.Token.NULL) {
+            in.nextNull();
+        } else if (field.equals("Children")) {
+            Queue<TimingImpl> children = new ConcurrentLinkedQueue<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                children.add(fromJson(profiler, this, in));
+            }
+            in.endArray();
+            this.children = children;
+        } else {
+            in.beginObject();
+            while (in.hasNext()) {
+                String type = in.nextName();
+                in.beginArray();
+                while (in.hasNext()) {
+                    CustomTimingImpl.fromJson(this, type, in);
+                }
+                in.endArray();
+            }
+            in.endObject();
+        }
     }
 
     @Override
     public void stop() {
-        if (durationMilliseconds == null) {
-            durationMilliseconds = System.currentTimeMillis() - startMilliseconds - profiler.getStarted();
+        if (durationNanoseconds < 0) {
+            durationNanoseconds = Math.max(0, profiler.nanosSinceStart() - startNanoseconds);
         }
 
-        profiler.setHead(parent);
+        profiler.popHead(this, parent);
     }
 
-    @Override
-    public void addChild(TimingInternal child) {
-        if (children == null) {
-            children = new ArrayList<>();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> Queue<T> queue(AtomicReferenceFieldUpdater<TimingImpl, Queue> field) {
+        Queue<T> queue = field.get(this);
+        if (queue == null) {
+            field.compareAndSet(this, null, new ConcurrentLinkedQueue<T>());
+            queue = field.get(this);
         }
+        return queue;
+    }
 
-        children.add((TimingImpl) child);
+    @Override
+    public void addChild(TimingInternal child) {
+        this.<TimingImpl>queue(CHILDREN).add((TimingImpl) child);
     }
 
     @Override
     public void addCustomTiming(String type, String executeType, String command, long duration) {
-        addCustomTiming(type, CustomTimingImpl.forDuration(this, type, executeType, command, duration));
+        addCustomTiming(type, executeType, command, duration, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration) {
+        addLazyCustomTiming(type, executeType, command, duration, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addCustomTiming(String type, String executeType, String command, long duration, TimeUnit unit) {
+        CustomTimingImpl.recordForDuration(this, type, executeType, command, unit.toNanos(duration));
+    }
+
+    @Override
+    public void addLazyCustomTiming(String type, String executeType, LazyCommand command, long duration, TimeUnit unit) {
+        if (command == null) {
+            addCustomTiming(type, executeType, null, duration, unit);
+        } else {
+            CustomTimingImpl.recordLazilyForDuration(this, type, executeType, command, unit.toNanos(duration));
+        }
     }
 
     @Override
     public CustomTiming customTiming(String type, String executeType, String command) {
-        return addCustomTiming(type, CustomTimingImpl.fromNow(this, type, executeType, command));
+        return CustomTimingImpl.fromNow(this, type, executeType, command);
     }
 
     @Override
@@ -159,17 +275,24 @@ public class TimingImpl implements TimingInternal, Serializable, Jsonable {
         }
     }
 
-    private CustomTiming addCustomTiming(String type, CustomTimingImpl ct) {
-        if (customTimings == null) {
-            customTimings = new LinkedHashMap<String, List<CustomTiming>>();
-        }
-        List<CustomTiming> timingsForType = customTimings.get(type);
-        if (timingsForType == null) {
-            timingsForType = new ArrayList<CustomTiming>();
-            customTimings.put(type, timingsForType);
+    int firstCustomTiming() {
+        return firstCustomTiming;
+    }
+
+    boolean hasCustomTimings() {
+        return firstCustomTiming != CustomTimingArena.NONE;
+    }
+
+    // Appends a custom timing slot to this step's list. Publishing the new slot as the tail first
+    // means concurrent appenders never need a lock; a reader may briefly miss the newest entries
+    // until their predecessor's link has been written.
+    void linkCustomTiming(int index) {
+        int previous = LAST_CUSTOM_TIMING.getAndSet(this, index);
+        if (previous == CustomTimingArena.NONE) {
+            firstCustomTiming = index;
+        } else {
+            profiler.getCustomTimingArena().setNext(previous, index);
         }
-        timingsForType.add(ct);
-        return ct;
     }
 
     @SuppressWarnings("unchecked")
@@ -178,17 +301,77 @@ public class TimingImpl implements TimingInternal, Serializable, Jsonable {
         Map<String, Object> map = new LinkedHashMap<>();
         map.put("Id", id.toString());
         map.put("Name", name);
-        map.put("StartMilliseconds", startMilliseconds);
-        map.put("DurationMilliseconds", durationMilliseconds);
+        map.put("StartMilliseconds", Durations.nanosToJson(startNanoseconds));
+        map.put("DurationMilliseconds", durationNanoseconds >= 0 ? Durations.nanosToJson(durationNanoseconds) : null);
         map.put("Children", getAllChildren());
-        if (customTimings != null) {
-            map.put("CustomTimings", customTimings);
+        // folded as writeJson folds them, so that both give the same document
+        int minCount = profiler.getQueryAggregation().getMinCount();
+        if (minCount > 0 && firstCustomTiming != CustomTimingArena.NONE) {
+            map.put("CustomTimings", QueryAggregator.customTimingsJson(this, minCount));
+        } else {
+            Map<String, List<CustomTiming>> customTimingsByType = getCustomTimings();
+            if (customTimingsByType != null) {
+                map.put("CustomTimings", customTimingsByType);
+            }
         }
         return map;
     }
 
+    @Override
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("Id").value(id.toString());
+        out.name("Name").value(name);
+        out.name("StartMilliseconds").value(Durations.nanosToJson(startNanoseconds));
+        long durationNanoseconds = this.durationNanoseconds;
+        out.name("DurationMilliseconds");
+        if (durationNanoseconds >= 0) {
+            out.value(Durations.nanosToJson(durationNanoseconds));
+        } else {
+            out.nullValue();
+        }
+        out.name("Children").value(getAllChildren());
+        if (firstCustomTiming != CustomTimingArena.NONE) {
+            out.name("CustomTimings");
+            int minCount = profiler.getQueryAggregation().getMinCount();
+            if (minCount > 0) {
+                QueryAggregator.writeCustomTimings(out, this, minCount);
+            } else {
+                writeCustomTimings(out);
+            }
+        }
+        out.endObject();
+    }
+
+    // Groups custom timings by type in first-seen order, as getCustomTimings() does, but walks
+    // the arena once per type instead of building the map. Steps rarely have more than a couple
+    // of types, so this is cheaper than allocating a view per timing.
+    private void writeCustomTimings(JsonWriter out) throws IOException {
+        CustomTimingArena arena = profiler.getCustomTimingArena();
+        List<String> types = new ArrayList<>(2);
+        for (int index = firstCustomTiming; index != CustomTimingArena.NONE; index = arena.getNext(index)) {
+            String type = arena.getType(index);
+            if (!types.contains(type)) {
+                types.add(type);
+            }
+        }
+        out.beginObject();
+        for (String type : types) {
+            out.name(type).beginArray();
+            for (int index = firstCustomTiming; index != CustomTimingArena.NONE; index = arena.getNext(index)) {
+                if (Objects.equals(type, arena.getType(index))) {
+                    CustomTimingImpl.writeJson(out, this, index);
+                }
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
     @Override
     public List<Timing> getAllChildren() {
+        Queue<TimingImpl> children = this.children;
+        Queue<Profiler> childProfilers = this.childProfilers;
         if (children == null && childProfilers == null) {
             return null;
         }
@@ -201,12 +384,18 @@ public class TimingImpl implements TimingInternal, Serializable, Jsonable {
         Collections.sort(kids, new Comparator<Timing>() {
             @Override
             public int compare(Timing t1, Timing t2) {
-                return (int) (t1.getStartMilliseconds() - t2.getStartMilliseconds());
+                return Long.compare(startNanosecondsOf(t1), startNanosecondsOf(t2));
             }
         });
         return kids;
     }
 
+    private static long startNanosecondsOf(Timing timing) {
+        return timing instanceof TimingImpl
+            ? ((TimingImpl) timing).startNanoseconds
+            : Durations.millisToNanos(timing.getStartMilliseconds());
+    }
+
     @Override
     public String getName() {
         return name;
@@ -219,22 +408,85 @@ public class TimingImpl implements TimingInternal, Serializable, Jsonable {
 
     @Override
     public Long getDurationMilliseconds() {
-        return durationMilliseconds;
+        return durationNanoseconds >= 0 ? Durations.nanosToMillis(durationNanoseconds) : null;
     }
 
     @Override
     public long getStartMilliseconds() {
-        return startMilliseconds;
+        return Durations.nanosToMillis(startNanoseconds);
+    }
+
+    /**
+     * Returns the duration of this step in nanoseconds.
+     *
+     * @return the duration, or -1 if the step has not been stopped
+     */
+    public long getDurationNanoseconds() {
+        return durationNanoseconds;
+    }
+
+    /**
+     * Returns the start of this step in nanoseconds, relative to the start of the profiling session.
+     *
+     * @return the start offset in nanoseconds
+     */
+    public long getStartNanoseconds() {
+        return startNanoseconds;
+    }
+
+    /**
+     * Returns a rough estimate of the heap held by this step and the steps and child profilers
+     * below it, leaving out custom timings, which the profiler's arena holds.
+     */
+    long estimatedSize() {
+        long total = ESTIMATED_OVERHEAD_BYTES + (name != null ? 2L * name.length() : 0);
+        Queue<TimingImpl> children = this.children;
+        if (children != null) {
+            for (TimingImpl child : children) {
+                total += child.estimatedSize();
+            }
+        }
+        Queue<Profiler> childProfilers = this.childProfilers;
+        if (childProfilers != null) {
+            for (Profiler childProfiler : childProfilers) {
+                if (childProfiler instanceof ProfilerImpl) {
+                    total += ((ProfilerImpl) childProfiler).estimatedSize();
+                }
+            }
+        }
+        return total;
     }
 
     @Override
     public List<Timing> getChildren() {
+        Queue<TimingImpl> children = this.children;
         return children != null ? new ArrayList<Timing>(children) : Collections.<Timing>emptyList();
     }
 
+    /**
+     * Returns the custom timings recorded against this step, grouped by type in the order
+     * each type was first seen. The returned map is a snapshot.
+     *
+     * @return the custom timings by type, or null if there are none
+     */
     @Override
     public Map<String, List<CustomTiming>> getCustomTimings() {
-        return customTimings;
+        int index = firstCustomTiming;
+        if (index == CustomTimingArena.NONE) {
+            return null;
+        }
+        CustomTimingArena arena = profiler.getCustomTimingArena();
+        Map<String, List<CustomTiming>> byType = new LinkedHashMap<>();
+        for (; index != CustomTimingArena.NONE; index = arena.getNext(index)) {
+            String type = arena.getType(index);
+            List<CustomTiming> timingsForType = byType.get(type);
+            if (timingsForType == null) {
+                timingsForType = new ArrayList<>();
+                byType.put(type, timingsForType);
+            }
+            timingsForType.add(new CustomTimingImpl(this, index));
+        }
+        return byType;
     }
 
     @Override
@@ -259,16 +511,14 @@ public class TimingImpl implements TimingInternal, Serializable, Jsonable {
 
     @Override
     public Profiler addChildProfiler(String name) {
-        if (childProfilers == null) {
-            childProfilers = new ArrayList<Profiler>();
-        }
         ProfilerImpl child = new ProfilerImpl("\u2443 " + name, profiler.getLevel(), profiler.getStarted(), profiler);
-        childProfilers.add(child);
+        this.<Profiler>queue(CHILD_PROFILERS).add(child);
         return child;
     }
 
     @Override
     public List<Profiler> getChildProfilers() {
-        return childProfilers;
+        Queue<Profiler> childProfilers = this.childProfilers;
+        return childProfilers != null ? new ArrayList<>(childProfilers) : null;
     }
 }
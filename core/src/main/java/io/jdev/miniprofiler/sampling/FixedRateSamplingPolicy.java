@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link SamplingPolicy} that profiles a fixed fraction of sessions, chosen at random.
+ */
+public class FixedRateSamplingPolicy implements SamplingPolicy {
+
+    private final double rate;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rate the fraction of sessions to profile, from {@code 0} (none) to {@code 1} (all)
+     */
+    public FixedRateSamplingPolicy(double rate) {
+        if (rate < 0 || rate > 1 || Double.isNaN(rate)) {
+            throw new IllegalArgumentException("Sampling rate must be between 0 and 1, got " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Returns the fraction of sessions profiled by this policy.
+     *
+     * @return the sampling rate
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    @Override
+    public boolean shouldSample(String rootName) {
+        if (rate >= 1.0d) {
+            return true;
+        }
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link SamplingPolicy} that caps the number of sessions started per second, on top of
+ * whatever a delegate policy decides.
+ *
+ * <p>This is a token bucket: up to {@code burst} sessions may start back to back, after which
+ * sessions are admitted at a steady {@code maxSessionsPerSecond}. It is implemented as a single
+ * compare-and-set on the time the next session becomes available, so it adds no locking to the
+ * request path.</p>
+ */
+public class RateLimitedSamplingPolicy implements SamplingPolicy {
+
+    private final SamplingPolicy delegate;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong nextAvailable;
+
+    /**
+     * Creates a new instance allowing bursts of up to one second's worth of sessions.
+     *
+     * @param delegate             the policy consulted first; only sessions it samples count against the cap
+     * @param maxSessionsPerSecond the maximum sustained number of sessions per second
+     */
+    public RateLimitedSamplingPolicy(SamplingPolicy delegate, double maxSessionsPerSecond) {
+        this(delegate, maxSessionsPerSecond, (int) Math.max(1, Math.ceil(maxSessionsPerSecond)));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate             the policy consulted first; only sessions it samples count against the cap
+     * @param maxSessionsPerSecond the maximum sustained number of sessions per second
+     * @param burst                the maximum number of sessions that may start back to back
+     */
+    public RateLimitedSamplingPolicy(SamplingPolicy delegate, double maxSessionsPerSecond, int burst) {
+        this(delegate, maxSessionsPerSecond, burst, System::nanoTime);
+    }
+
+    RateLimitedSamplingPolicy(SamplingPolicy delegate, double maxSessionsPerSecond, int burst, LongSupplier nanoClock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate policy must not be null");
+        }
+        if (!(maxSessionsPerSecond > 0)) {
+            throw new IllegalArgumentException("maxSessionsPerSecond must be positive, got " + maxSessionsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1, got " + burst);
+        }
+        this.delegate = delegate;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / maxSessionsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+        this.nextAvailable = new AtomicLong(nanoClock.getAsLong() - toleranceNanos);
+    }
+
+    @Override
+    public boolean shouldSample(String rootName) {
+        return delegate.shouldSample(rootName) && tryAcquire();
+    }
+
+    private boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long next = nextAvailable.get();
+            // an idle bucket refills up to the burst size, but no further
+            long base = Math.max(next, now - toleranceNanos);
+            if (base > now) {
+                return false;
+            }
+            if (nextAvailable.compareAndSet(next, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+
+/**
+ * Decides, once a profiling session has finished, whether it is worth keeping.
+ *
+ * <p>Where a {@link SamplingPolicy} decides up front which sessions to profile, a retention policy
+ * runs in {@link io.jdev.miniprofiler.BaseProfilerProvider#stopSession(ProfilerImpl, boolean)} and
+ * can look at how the session actually turned out. Sessions it declines are never passed to
+ * {@link io.jdev.miniprofiler.storage.Storage#save(ProfilerImpl)}, so storage write volume follows
+ * the number of slow or otherwise interesting requests rather than overall traffic.</p>
+ *
+ * <p>Note that the UI may already have been given the id of a declined session (for example in the
+ * {@code X-MiniProfiler-Ids} header), in which case it will not be able to load it.</p>
+ *
+ * <p>Implementations must be thread-safe, as they are shared across all requests.</p>
+ *
+ * @see RuleBasedRetentionPolicy
+ */
+public interface RetentionPolicy {
+
+    /** A policy that keeps every session. This is the default. */
+    RetentionPolicy ALWAYS = profiler -> true;
+
+    /**
+     * Returns whether the given finished session should be saved.
+     *
+     * @param profiler the stopped profiling session
+     * @return true to save the session, false to drop it
+     */
+    boolean shouldRetain(ProfilerImpl profiler);
+
+    /**
+     * Builds a policy from the given configuration. Recognised keys (without the
+     * system-property prefix) are:
+     * <ul>
+     *   <li>{@code retention.minDurationMillis} &mdash; keep sessions taking at least this long</li>
+     *   <li>{@code retention.minSqlCount} &mdash; keep sessions running at least this many SQL commands</li>
+     *   <li>{@code retention.minCustomTimingMillis} &mdash; keep sessions with any custom timing taking at least this long</li>
+     *   <li>{@code retention.baselineOneIn} &mdash; also keep one in this many of all other sessions</li>
+     * </ul>
+     *
+     * <p>If none of the keys are set, every session is kept.</p>
+     *
+     * @param config the configuration to read
+     * @return the configured policy, {@link #ALWAYS} if nothing is configured
+     */
+    static RetentionPolicy fromConfig(MiniProfilerConfig config) {
+        RuleBasedRetentionPolicy policy = new RuleBasedRetentionPolicy();
+        int minDurationMillis = config.getProperty("retention.minDurationMillis", 0);
+        if (minDurationMillis > 0) {
+            policy.retainSlowerThan(minDurationMillis);
+        }
+        int minSqlCount = config.getProperty("retention.minSqlCount", 0);
+        if (minSqlCount > 0) {
+            policy.retainWithCustomTimingCount("sql", minSqlCount);
+        }
+        int minCustomTimingMillis = config.getProperty("retention.minCustomTimingMillis", 0);
+        if (minCustomTimingMillis > 0) {
+            policy.retainWithCustomTimingSlowerThan(minCustomTimingMillis);
+        }
+        int baselineOneIn = config.getProperty("retention.baselineOneIn", 0);
+        if (baselineOneIn > 0) {
+            policy.retainOneIn(baselineOneIn);
+        }
+        return policy.hasRules() ? policy : ALWAYS;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import io.jdev.miniprofiler.CustomTiming;
+import io.jdev.miniprofiler.Timing;
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RetentionPolicy} that keeps a session if any of its configured rules match.
+ *
+ * <pre>
+ * RetentionPolicy policy = new RuleBasedRetentionPolicy()
+ *     .retainSlowerThan(500)
+ *     .retainWithCustomTimingCount("sql", 50)
+ *     .retainWithCustomTimingSlowerThan(100)
+ *     .retainOneIn(1000);
+ * </pre>
+ *
+ * <p>A policy with no rules keeps nothing.</p>
+ */
+public class RuleBasedRetentionPolicy implements RetentionPolicy {
+
+    private volatile long minDurationMillis = -1;
+    private volatile String countedType;
+    private volatile int minCustomTimingCount = -1;
+    private volatile long minCustomTimingMillis = -1;
+    private volatile int baselineOneIn = -1;
+    private final AtomicLong baselineCounter = new AtomicLong();
+
+    /** Creates a new instance with no rules. */
+    public RuleBasedRetentionPolicy() {
+    }
+
+    /**
+     * Keep sessions whose total duration is at least the given number of milliseconds.
+     *
+     * @param millis the minimum duration
+     * @return this policy, for chaining
+     */
+    public RuleBasedRetentionPolicy retainSlowerThan(long millis) {
+        this.minDurationMillis = millis;
+        return this;
+    }
+
+    /**
+     * Keep sessions with at least the given number of custom timings of the given type,
+     * across all steps and child profilers, including any past the session's
+     * {@linkplain io.jdev.miniprofiler.SessionLimits limits}.
+     *
+     * @param type  the custom timing type, e.g. "sql"
+     * @param count the minimum number of custom timings
+     * @return this policy, for chaining
+     */
+    public RuleBasedRetentionPolicy retainWithCustomTimingCount(String type, int count) {
+        this.countedType = type;
+        this.minCustomTimingCount = count;
+        return this;
+    }
+
+    /**
+     * Keep sessions containing any custom timing, of any type, taking at least the given
+     * number of milliseconds, including any past the session's
+     * {@linkplain io.jdev.miniprofiler.SessionLimits limits}.
+     *
+     * @param millis the minimum custom timing duration
+     * @return this policy, for chaining
+     */
+    public RuleBasedRetentionPolicy retainWithCustomTimingSlowerThan(long millis) {
+        this.minCustomTimingMillis = millis;
+        return this;
+    }
+
+    /**
+     * Keep one in every {@code n} sessions regardless of the other rules, to give a baseline
+     * of ordinary requests to compare against.
+     *
+     * @param n keep one session in this many
+     * @return this policy, for chaining
+     */
+    public RuleBasedRetentionPolicy retainOneIn(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1, got " + n);
+        }
+        this.baselineOneIn = n;
+        return this;
+    }
+
+    boolean hasRules() {
+        return minDurationMillis >= 0 || minCustomTimingCount >= 0 || minCustomTimingMillis >= 0 || baselineOneIn > 0;
+    }
+
+    @Override
+    public boolean shouldRetain(ProfilerImpl profiler) {
+        Timing root = profiler.getRoot();
+        if (minDurationMillis >= 0) {
+            Long duration = root.getDurationMilliseconds();
+            if (duration != null && duration >= minDurationMillis) {
+                return true;
+            }
+        }
+        if ((minCustomTimingCount >= 0 || minCustomTimingMillis >= 0) && matchesCustomTimings(profiler)) {
+            return true;
+        }
+        int oneIn = baselineOneIn;
+        return oneIn > 0 && baselineCounter.getAndIncrement() % oneIn == 0;
+    }
+
+    private boolean matchesCustomTimings(ProfilerImpl profiler) {
+        String type = countedType;
+        int minCount = minCustomTimingCount;
+        long minMillis = minCustomTimingMillis;
+        // custom timings past the session's limits are only counted in its overflow summary
+        long count = minCount >= 0 && type != null ? profiler.getOverflowCustomTimingCount(type) : 0;
+        if (count > 0 && count >= minCount) {
+            return true;
+        }
+        if (minMillis >= 0 && profiler.isTruncated() && profiler.getOverflowCustomTimingMaxMilliseconds() >= minMillis) {
+            return true;
+        }
+        Deque<Timing> pending = new ArrayDeque<>();
+        pending.push(profiler.getRoot());
+        while (!pending.isEmpty()) {
+            Timing timing = pending.pop();
+            Map<String, List<CustomTiming>> customTimings = timing.getCustomTimings();
+            if (customTimings != null) {
+                for (Map.Entry<String, List<CustomTiming>> entry : customTimings.entrySet()) {
+                    if (minCount >= 0 && entry.getKey().equals(type)) {
+                        count += entry.getValue().size();
+                        if (count >= minCount) {
+                            return true;
+                        }
+                    }
+                    if (minMillis >= 0) {
+                        for (CustomTiming ct : entry.getValue()) {
+                            Long duration = ct.getDurationMilliseconds();
+                            if (duration != null && duration >= minMillis) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            List<Timing> children = timing.getAllChildren();
+            if (children != null) {
+                for (Timing child : children) {
+                    pending.push(child);
+                }
+            }
+        }
+        return false;
+    }
+}
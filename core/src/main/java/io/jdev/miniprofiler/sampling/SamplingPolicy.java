@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+
+/**
+ * Decides whether a new profiling session should be started.
+ *
+ * <p>The policy is consulted by {@link io.jdev.miniprofiler.BaseProfilerProvider} before a
+ * {@link io.jdev.miniprofiler.internal.ProfilerImpl} is built. When a request is sampled out, the
+ * provider returns {@link io.jdev.miniprofiler.internal.NullProfiler#INSTANCE} instead, so the request
+ * pays none of the cost of building, formatting and storing a timing tree.</p>
+ *
+ * <p>Implementations must be thread-safe, as they are shared across all requests.</p>
+ *
+ * @see FixedRateSamplingPolicy
+ * @see UriPatternSamplingPolicy
+ * @see RateLimitedSamplingPolicy
+ */
+public interface SamplingPolicy {
+
+    /** A policy that samples every session. This is the default. */
+    SamplingPolicy ALWAYS = rootName -> true;
+
+    /** A policy that never samples any session. */
+    SamplingPolicy NEVER = rootName -> false;
+
+    /**
+     * Returns whether a profiling session with the given root name should be started.
+     *
+     * @param rootName the name of the root timing step, usually the request URI
+     * @return true to profile the session, false to skip profiling it
+     */
+    boolean shouldSample(String rootName);
+
+    /**
+     * Builds a policy from the given configuration. Recognised keys (without the
+     * system-property prefix) are:
+     * <ul>
+     *   <li>{@code sampling.rate} &mdash; fraction of sessions to profile between {@code 0} and {@code 1},
+     *       default {@code 1}</li>
+     *   <li>{@code sampling.maxSessionsPerSecond} &mdash; upper bound on the number of sessions started
+     *       per second, default {@code 0} (unlimited)</li>
+     * </ul>
+     *
+     * @param config the configuration to read
+     * @return the configured policy, {@link #ALWAYS} if nothing is configured
+     */
+    static SamplingPolicy fromConfig(MiniProfilerConfig config) {
+        double rate = config.getProperty("sampling.rate", 1.0d);
+        double maxSessionsPerSecond = config.getProperty("sampling.maxSessionsPerSecond", 0.0d);
+        SamplingPolicy policy = rate >= 1.0d ? ALWAYS : new FixedRateSamplingPolicy(rate);
+        if (maxSessionsPerSecond > 0) {
+            policy = new RateLimitedSamplingPolicy(policy, maxSessionsPerSecond);
+        }
+        return policy;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link SamplingPolicy} that picks a delegate policy based on the session's root name,
+ * which for web requests is usually the request URI.
+ *
+ * <p>Rules are consulted in the order they were added, and the first rule whose pattern matches
+ * the whole root name decides. Sessions that match no rule are handed to the fallback policy.</p>
+ *
+ * <pre>
+ * SamplingPolicy policy = new UriPatternSamplingPolicy(new FixedRateSamplingPolicy(0.01))
+ *     .add("/health.*", SamplingPolicy.NEVER)
+ *     .add("/checkout/.*", 0.5);
+ * </pre>
+ */
+public class UriPatternSamplingPolicy implements SamplingPolicy {
+
+    private final SamplingPolicy fallback;
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new instance with no rules.
+     *
+     * @param fallback the policy to use for sessions that match no rule
+     */
+    public UriPatternSamplingPolicy(SamplingPolicy fallback) {
+        if (fallback == null) {
+            throw new IllegalArgumentException("fallback policy must not be null");
+        }
+        this.fallback = fallback;
+    }
+
+    /**
+     * Adds a rule delegating sessions whose root name matches the given regular expression.
+     *
+     * @param pattern a regular expression that must match the whole root name
+     * @param policy  the policy to use for matching sessions
+     * @return this policy, for chaining
+     */
+    public UriPatternSamplingPolicy add(String pattern, SamplingPolicy policy) {
+        return add(Pattern.compile(pattern), policy);
+    }
+
+    /**
+     * Adds a rule delegating sessions whose root name matches the given pattern.
+     *
+     * @param pattern a pattern that must match the whole root name
+     * @param policy  the policy to use for matching sessions
+     * @return this policy, for chaining
+     */
+    public UriPatternSamplingPolicy add(Pattern pattern, SamplingPolicy policy) {
+        if (pattern == null || policy == null) {
+            throw new IllegalArgumentException("pattern and policy must not be null");
+        }
+        rules.add(new Rule(pattern, policy));
+        return this;
+    }
+
+    /**
+     * Adds a rule sampling sessions whose root name matches the given regular expression at a fixed rate.
+     *
+     * @param pattern a regular expression that must match the whole root name
+     * @param rate    the fraction of matching sessions to profile
+     * @return this policy, for chaining
+     * @see FixedRateSamplingPolicy
+     */
+    public UriPatternSamplingPolicy add(String pattern, double rate) {
+        return add(pattern, new FixedRateSamplingPolicy(rate));
+    }
+
+    @Override
+    public boolean shouldSample(String rootName) {
+        if (rootName != null) {
+            for (Rule rule : rules) {
+                if (rule.pattern.matcher(rootName).matches()) {
+                    return rule.policy.shouldSample(rootName);
+                }
+            }
+        }
+        return fallback.shouldSample(rootName);
+    }
+
+    private static class Rule {
+        final Pattern pattern;
+        final SamplingPolicy policy;
+
+        Rule(Pattern pattern, SamplingPolicy policy) {
+            this.pattern = pattern;
+            this.policy = policy;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import io.jdev.miniprofiler.ProfilerProvider;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+import io.jdev.miniprofiler.storage.ListCursor;
 import io.jdev.miniprofiler.storage.Storage;
 
 import java.io.ByteArrayOutputStream;
@@ -30,12 +32,12 @@ import java.net.InetSocketAddress;
 import io.jdev.miniprofiler.internal.ClientTiming;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * Embedded HTTP server that handles all MiniProfiler UI endpoints, backed by a
@@ -222,9 +224,13 @@ public class MiniProfilerServer implements AutoCloseable {
             storage.setViewed(user, id);
         }
 
+        profiler.formatCommands(provider);
         if (jsonRequest) {
-            sendResponse(exchange, 200, "application/json",
-                profiler.asUiJson().getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                profiler.writeUiJson(os);
+            }
         } else {
             String html = Pages.renderSingleResultPage(profiler, provider, Optional.empty());
             sendResponse(exchange, 200, "text/html; charset=utf-8",
@@ -248,28 +254,26 @@ public class MiniProfilerServer implements AutoCloseable {
             return;
         }
         Storage storage = provider.getStorage();
-        Collection<UUID> ids = storage.list(100, null, null, Storage.ListResultsOrder.Descending);
+        List<ProfilerSummary> summaries = null;
 
         String lastIdParam = extractQueryParam(exchange.getRequestURI().getRawQuery(), "last-id");
         if (lastIdParam != null) {
             try {
-                UUID lastId = UUID.fromString(lastIdParam);
-                ProfilerImpl lastProfiler = storage.load(lastId);
-                if (lastProfiler != null) {
-                    long cutoff = lastProfiler.getStarted();
-                    ids = ids.stream()
-                        .filter(id -> {
-                            ProfilerImpl p = storage.load(id);
-                            return p != null && p.getStarted() > cutoff;
-                        })
-                        .collect(Collectors.toList());
+                // the UI polls for sessions newer than the last one it shows, so page forward from that one
+                ListCursor cursor = storage.cursorFor(UUID.fromString(lastIdParam));
+                if (cursor != null) {
+                    summaries = new ArrayList<>(storage.listSummaries(100, cursor, Storage.ListResultsOrder.Ascending));
+                    Collections.reverse(summaries);
                 }
             } catch (IllegalArgumentException ignored) {
                 // ignore bad last-id
             }
         }
+        if (summaries == null) {
+            summaries = storage.listSummaries(100, null, null, Storage.ListResultsOrder.Descending);
+        }
 
-        String json = Pages.renderResultListJson(ids, storage);
+        String json = Pages.renderResultListJson(summaries);
         sendResponse(exchange, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
     }
 
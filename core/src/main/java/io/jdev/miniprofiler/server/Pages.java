@@ -21,9 +21,12 @@ import io.jdev.miniprofiler.ProfilerProvider;
 import io.jdev.miniprofiler.ProfilerUiConfig;
 import io.jdev.miniprofiler.ScriptTagWriter;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 import io.jdev.miniprofiler.storage.Storage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -88,17 +91,31 @@ public final class Pages {
      * @return the JSON array as a string
      */
     public static String renderResultListJson(Collection<UUID> ids, Storage storage) {
-        StringBuilder sb = new StringBuilder("[");
-        boolean first = true;
+        List<ProfilerSummary> summaries = new ArrayList<>(ids.size());
         for (UUID id : ids) {
             ProfilerImpl profiler = storage.load(id);
             if (profiler != null) {
-                if (!first) {
-                    sb.append(",");
-                }
-                sb.append(profiler.asListJson());
-                first = false;
+                summaries.add(profiler.toSummary());
+            }
+        }
+        return renderResultListJson(summaries);
+    }
+
+    /**
+     * Renders a JSON array of the given profiler session summaries.
+     *
+     * @param summaries the summaries to include, as listed by {@link Storage#listSummaries}
+     * @return the JSON array as a string
+     */
+    public static String renderResultListJson(Collection<ProfilerSummary> summaries) {
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (ProfilerSummary summary : summaries) {
+            if (!first) {
+                sb.append(",");
             }
+            sb.append(summary.asListJson());
+            first = false;
         }
         sb.append("]");
         return sb.toString();
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sql;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces SQL statements to a fingerprint that is the same for every execution of a statement,
+ * whatever values it was run with.
+ *
+ * <p>String and numeric literals become {@code ?}, a list of values in an {@code IN} clause
+ * becomes {@code IN (...)}, comments are dropped and runs of whitespace become a single space.
+ * So {@code select * from foo where id = 42} and {@code select * from foo where id = 43} share
+ * the fingerprint {@code select * from foo where id = ?}, as does the prepared statement they
+ * were interpolated from. Quoted identifiers and keywords are kept as they are.</p>
+ */
+public final class SqlFingerprint {
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\b(in) ?\\( ?\\?(?: ?, ?\\?)* ?\\)");
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the given SQL.
+     *
+     * @param sql the SQL statement, may be null
+     * @return the fingerprint, or null if {@code sql} is null
+     */
+    public static String of(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length);
+        boolean space = false;
+        boolean placeholders = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+                space = out.length() > 0;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = out.length() > 0;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            if (c == '\'') {
+                i = endOfQuoted(sql, i, '\'');
+                out.append('?');
+                placeholders = true;
+            } else if (c == '"' || c == '`') {
+                int end = endOfQuoted(sql, i, c);
+                out.append(sql, i, end);
+                i = end;
+            } else if (isIdentifierPart(c)) {
+                int end = i + 1;
+                while (end < length && isIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                if (isDigit(c)) {
+                    end = endOfNumber(sql, end);
+                    out.append('?');
+                    placeholders = true;
+                } else {
+                    out.append(sql, i, end);
+                }
+                i = end;
+            } else {
+                placeholders |= c == '?';
+                out.append(c);
+                i++;
+            }
+        }
+        String fingerprint = out.toString();
+        return placeholders ? IN_LIST.matcher(fingerprint).replaceAll("$1 (...)") : fingerprint;
+    }
+
+    // returns the index just past the closing quote, treating a doubled quote as an escaped one
+    private static int endOfQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int length = sql.length();
+        while (i < length) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    // a number has been read up to end, which may have stopped at a decimal point or exponent sign
+    private static int endOfNumber(String sql, int end) {
+        int length = sql.length();
+        while (end < length) {
+            char c = sql.charAt(end);
+            char previous = sql.charAt(end - 1);
+            if (isIdentifierPart(c) || (c == '.' && end + 1 < length && isDigit(sql.charAt(end + 1)))
+                || ((c == '+' || c == '-') && (previous == 'e' || previous == 'E'))) {
+                end++;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import java.time.Instant;
+
+/**
+ * A {@link Storage} that can expire old sessions a bounded batch at a time.
+ *
+ * <p>{@link StorageExpiryService} expires such storages in batches with a pause between them
+ * and a time budget per run, so that removing a large backlog doesn't hold long locks or
+ * transactions on a store that's shared with production traffic.</p>
+ */
+public interface BatchExpiringStorage extends Storage {
+
+    /**
+     * Removes up to {@code maxSessions} of the sessions that started before the given cutoff,
+     * oldest first where the storage can tell.
+     *
+     * <p>A decorator whose delegate can't expire in batches may instead expire everything
+     * before the cutoff and return zero.</p>
+     *
+     * @param cutoff      sessions that started before this instant are removed
+     * @param maxSessions the most sessions to remove
+     * @return the number of sessions removed; fewer than {@code maxSessions} means there are
+     *         none left before the cutoff
+     */
+    int expireBatchOlderThan(Instant cutoff, int maxSessions);
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The codecs exposed as constants on {@link PayloadCodec}.
+ */
+enum BuiltInPayloadCodec implements PayloadCodec {
+
+    None(0, "none") {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    Gzip(1, "gzip") {
+        @Override
+        public OutputStream encode(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+
+    Deflate(2, "deflate") {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setDictionary(DICTIONARY);
+            // a deflater passed in isn't ended by the stream, so release its native memory here
+            return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            Inflater inflater = new Inflater(true);
+            inflater.setDictionary(DICTIONARY);
+            return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Fragments of the session JSON, least common first as deflate finds the nearest matches
+    // cheapest. Payloads encoded with it can only be decoded with exactly the same bytes, so
+    // this must never change: a different dictionary needs a new codec id.
+    private static final byte[] DICTIONARY = ("\"ClientTimings\":null,\"CustomLinks\":null}"
+        + "\"ClientTimings\":{\"Timings\":[{\"Name\":\"\",\"Start\":,\"Duration\":"
+        + "\"RepeatedQueries\":[{\"Type\":\"sql\",\"Count\":,\"Step\":\"\"}]"
+        + "\"Truncated\":true,\"Overflow\":{\"Steps\":"
+        + "{\"Id\":\"\",\"Name\":\"\",\"Started\":\"T:.Z\",\"DurationMilliseconds\":,\"MachineName\":null,"
+        + "\"User\":null,\"HasUserViewed\":false,\"Root\":"
+        + "insert into  values (?, ?) update  set  = ? delete from  group by  order by  limit "
+        + "left join  inner join  on  is null count(*) and  in (?, ?) select  from  where "
+        + "\"StackTraceSnippet\":\"\"}"
+        + "\"CustomTimings\":{\"sql\":[{\"Id\":\"\",\"ExecuteType\":\"Query\",\"CommandString\":\""
+        + ",\"Children\":null}],\"Children\":[{\"Id\":\"\",\"Name\":\"\",\"StartMilliseconds\":"
+        + ",\"DurationMilliseconds\":").getBytes(StandardCharsets.US_ASCII);
+
+    private final int id;
+    private final String codecName;
+
+    BuiltInPayloadCodec(int id, String codecName) {
+        this.id = id;
+        this.codecName = codecName;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return codecName;
+    }
+}
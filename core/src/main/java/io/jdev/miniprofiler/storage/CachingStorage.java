@@ -0,0 +1,441 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A {@link Storage} decorator that keeps recently loaded and saved sessions in memory.
+ *
+ * <p>The UI loads the same session several times for one page view, and with a remote
+ * storage each of those is a round trip and a full parse. This keeps the deserialised
+ * sessions in a least-recently-used cache bounded both by the number of sessions and by
+ * their {@linkplain ProfilerImpl#estimatedSize() estimated size}. Sessions too big for the
+ * byte budget on their own aren't cached.</p>
+ *
+ * <p>{@link #save(ProfilerImpl)} writes through to the delegate and then caches the session. A
+ * cache made by {@link #wrap} around a {@link NonBlockingStorage} is one as well, so saving
+ * through it still doesn't block. {@link #clear()} empties the cache and
+ * {@link #expireOlderThan(Instant)} drops the expired sessions from it, and a load that raced
+ * with either of them doesn't put what it loaded back. Batched expiry is passed on to a delegate
+ * that supports it. Listing and the un-viewed flags always go to the delegate.</p>
+ *
+ * <p>As in {@link MapStorage}, sessions are held in a concurrent map and indexed by last access
+ * in a concurrent skip list, whose head is evicted, so cached loads don't contend on a lock.</p>
+ *
+ * <p>A located storage can be wrapped by setting {@code storage.cache} to {@code true}, with
+ * {@code storage.cache.maxEntries} and {@code storage.cache.maxMegabytes} to size the cache.
+ * See {@link #fromConfig(Storage, MiniProfilerConfig)}.</p>
+ */
+public class CachingStorage implements BatchExpiringStorage {
+
+    /** Default maximum number of cached sessions. */
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+
+    /** Default maximum estimated size of the cached sessions, in megabytes. */
+    public static final int DEFAULT_MAX_MEGABYTES = 64;
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final Storage delegate;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> byAccess = new ConcurrentSkipListMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    // bumped by clear and expiry, so that loads which overlapped them aren't cached
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a new instance with the default bounds.
+     *
+     * @param delegate the storage to cache
+     */
+    public CachingStorage(Storage delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_MEGABYTES * BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate   the storage to cache
+     * @param maxEntries the maximum number of sessions to cache
+     * @param maxBytes   the maximum estimated size of the cached sessions, in bytes
+     */
+    public CachingStorage(Storage delegate, int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxEntries and maxBytes must both be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Wraps the given storage in a cache if {@code storage.cache} is {@code true} in the given
+     * configuration, sized by {@code storage.cache.maxEntries} (default {@value #DEFAULT_MAX_ENTRIES})
+     * and {@code storage.cache.maxMegabytes} (default {@value #DEFAULT_MAX_MEGABYTES}). A
+     * {@link MapStorage} already holds its sessions in memory and is never wrapped.
+     *
+     * @param storage the storage to wrap
+     * @param config  the configuration to read
+     * @return the cached storage, or {@code storage} itself if caching isn't enabled
+     */
+    public static Storage fromConfig(Storage storage, MiniProfilerConfig config) {
+        if (!config.getProperty("storage.cache", false) || storage instanceof MapStorage
+            || storage instanceof CachingStorage) {
+            return storage;
+        }
+        return wrap(storage,
+            config.getProperty("storage.cache.maxEntries", DEFAULT_MAX_ENTRIES),
+            config.getProperty("storage.cache.maxMegabytes", DEFAULT_MAX_MEGABYTES) * BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Wraps the given storage in a cache. Unlike the constructors, this keeps a
+     * {@link NonBlockingStorage} non-blocking: the returned cache is one too, and caches each
+     * session once the delegate's {@link NonBlockingStorage#saveNonBlocking} completes.
+     *
+     * @param delegate   the storage to cache
+     * @param maxEntries the maximum number of sessions to cache
+     * @param maxBytes   the maximum estimated size of the cached sessions, in bytes
+     * @return the cached storage
+     */
+    public static CachingStorage wrap(Storage delegate, int maxEntries, long maxBytes) {
+        if (delegate instanceof NonBlockingStorage) {
+            return new NonBlocking((NonBlockingStorage) delegate, maxEntries, maxBytes);
+        }
+        return new CachingStorage(delegate, maxEntries, maxBytes);
+    }
+
+    /**
+     * Returns the storage that this caches.
+     *
+     * @return the delegate storage
+     */
+    public Storage getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the total number of loads answered from the cache.
+     *
+     * @return the number of cache hits since creation
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the total number of loads that went to the delegate.
+     *
+     * @return the number of cache misses since creation
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the total number of sessions evicted to stay within the bounds. Sessions removed
+     * by {@link #clear()} or expiry aren't counted.
+     *
+     * @return the number of evictions since creation
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of sessions currently cached.
+     *
+     * @return the number of cached sessions
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated size of the sessions currently cached.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    @Override
+    public void save(ProfilerImpl profiler) {
+        delegate.save(profiler);
+        put(profiler, currentGeneration(), true);
+    }
+
+    @Override
+    public void saveAll(Collection<ProfilerImpl> profilers) {
+        delegate.saveAll(profilers);
+        long current = currentGeneration();
+        for (ProfilerImpl profiler : profilers) {
+            put(profiler, current, true);
+        }
+    }
+
+    @Override
+    public ProfilerImpl load(UUID id) {
+        // read first, so that a clear or expiry after the lookup leaves what is loaded uncached
+        long loadGeneration = generation.get();
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            touch(entry);
+            hitCount.incrementAndGet();
+            return entry.profiler;
+        }
+        missCount.incrementAndGet();
+        ProfilerImpl profiler = delegate.load(id);
+        if (profiler != null) {
+            // a save that happened meanwhile has the newer session, so don't replace it
+            put(profiler, loadGeneration, false);
+        }
+        return profiler;
+    }
+
+    private void touch(Entry entry) {
+        long previous = entry.tick;
+        long next = clock.incrementAndGet();
+        // a failed update means another load has just moved it to the back anyway
+        if (Entry.TICK.compareAndSet(entry, previous, next)) {
+            byAccess.put(next, entry);
+            byAccess.remove(previous, entry);
+            if (entries.get(entry.profiler.getId()) != entry) {
+                byAccess.remove(next, entry);
+            }
+        }
+    }
+
+    private long currentGeneration() {
+        return generation.get();
+    }
+
+    // sizes the session before inserting it, as that walks its timing tree
+    private void put(ProfilerImpl profiler, long expectedGeneration, boolean replace) {
+        if (generation.get() != expectedGeneration) {
+            return;
+        }
+        UUID id = profiler.getId();
+        Entry entry = new Entry(profiler, profiler.estimatedSize(), clock.incrementAndGet());
+        if (entry.size > maxBytes) {
+            Entry stale = replace ? entries.get(id) : null;
+            if (stale != null) {
+                remove(stale);
+            }
+            return;
+        }
+        if (replace) {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                cachedBytes.addAndGet(-previous.size);
+                byAccess.remove(previous.tick, previous);
+            }
+        } else if (entries.putIfAbsent(id, entry) != null) {
+            return;
+        }
+        cachedBytes.addAndGet(entry.size);
+        byAccess.put(entry.tick, entry);
+        if (entries.get(id) != entry) {
+            // replaced or evicted while being indexed
+            byAccess.remove(entry.tick, entry);
+        } else if (generation.get() != expectedGeneration) {
+            // a clear or expiry started after the check above, and may have missed this entry
+            remove(entry);
+        }
+        while (entries.size() > maxEntries || cachedBytes.get() > maxBytes) {
+            Map.Entry<Long, Entry> eldest = byAccess.pollFirstEntry();
+            if (eldest == null) {
+                break;
+            }
+            Entry candidate = eldest.getValue();
+            // nodes left behind by a later access are skipped
+            if (candidate.tick == eldest.getKey() && remove(candidate)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return delegate.list(maxResults, start, finish, orderBy);
+    }
+
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return delegate.listSummaries(maxResults, start, finish, orderBy);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return delegate.list(maxResults, after, orderBy);
+    }
+
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return delegate.listSummaries(maxResults, after, orderBy);
+    }
+
+    /** {@inheritDoc} Answered from the cache when the session is cached. */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        Entry entry = entries.get(id);
+        return entry != null ? ListCursor.of(entry.profiler.getStarted(), id) : delegate.cursorFor(id);
+    }
+
+    @Override
+    public void setUnviewed(String user, UUID id) {
+        delegate.setUnviewed(user, id);
+    }
+
+    @Override
+    public void setViewed(String user, UUID id) {
+        delegate.setViewed(user, id);
+    }
+
+    @Override
+    public void setUnviewedAll(String user, Collection<UUID> ids) {
+        delegate.setUnviewedAll(user, ids);
+    }
+
+    @Override
+    public void setViewedAll(String user, Collection<UUID> ids) {
+        delegate.setViewedAll(user, ids);
+    }
+
+    @Override
+    public Collection<UUID> getUnviewedIds(String user) {
+        return delegate.getUnviewedIds(user);
+    }
+
+    @Override
+    public void clear() {
+        // the delegate goes first, so a load that read a session before it was removed
+        // is still in progress when the generation changes, and doesn't cache it
+        try {
+            delegate.clear();
+        } finally {
+            invalidate(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void expireOlderThan(Instant cutoff) {
+        try {
+            delegate.expireOlderThan(cutoff);
+        } finally {
+            invalidate(cutoff.toEpochMilli());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the delegate can't expire in batches, this expires everything before the cutoff
+     * and returns zero.</p>
+     */
+    @Override
+    public int expireBatchOlderThan(Instant cutoff, int maxSessions) {
+        if (!(delegate instanceof BatchExpiringStorage)) {
+            expireOlderThan(cutoff);
+            return 0;
+        }
+        try {
+            return ((BatchExpiringStorage) delegate).expireBatchOlderThan(cutoff, maxSessions);
+        } finally {
+            invalidate(cutoff.toEpochMilli());
+        }
+    }
+
+    /**
+     * Empties the cache and closes the delegate.
+     */
+    @Override
+    public void close() {
+        invalidate(Long.MAX_VALUE);
+        delegate.close();
+    }
+
+    private void invalidate(long startedBefore) {
+        generation.incrementAndGet();
+        for (Entry entry : entries.values()) {
+            if (entry.profiler.getStarted() < startedBefore) {
+                remove(entry);
+            }
+        }
+    }
+
+    private boolean remove(Entry entry) {
+        byAccess.remove(entry.tick, entry);
+        if (entries.remove(entry.profiler.getId(), entry)) {
+            cachedBytes.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    private static final class NonBlocking extends CachingStorage implements NonBlockingStorage {
+        private final NonBlockingStorage nonBlocking;
+
+        NonBlocking(NonBlockingStorage delegate, int maxEntries, long maxBytes) {
+            super(delegate, maxEntries, maxBytes);
+            this.nonBlocking = delegate;
+        }
+
+        @Override
+        public CompletableFuture<Void> saveNonBlocking(ProfilerImpl profiler) {
+            // taken before the write starts, so a clear or expiry during it leaves the session uncached
+            long saveGeneration = super.currentGeneration();
+            return nonBlocking.saveNonBlocking(profiler).thenRun(() -> super.put(profiler, saveGeneration, true));
+        }
+    }
+
+    private static final class Entry {
+        static final AtomicLongFieldUpdater<Entry> TICK = AtomicLongFieldUpdater.newUpdater(Entry.class, "tick");
+
+        final ProfilerImpl profiler;
+        final long size;
+        volatile long tick;
+
+        Entry(ProfilerImpl profiler, long size, long tick) {
+            this.profiler = profiler;
+            this.size = size;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a callback whenever the old generation is still fuller than a given fraction of its
+ * maximum size after a garbage collection.
+ *
+ * <p>This uses the collection usage threshold of the heap pools that also support a usage
+ * threshold, which in the standard collectors is the old generation only. Usage measured after
+ * a collection is what the heap actually retains, so the callback isn't run just because the
+ * old generation has filled with garbage.</p>
+ *
+ * <p>The threshold is a setting of the whole JVM, so each pool is set to the lowest threshold
+ * wanted by the open monitors or already set by someone else, and each monitor only runs its
+ * callback once its own threshold is exceeded. When the last monitor is closed the threshold
+ * goes back to what it was, unless someone else has changed it in the meantime.</p>
+ */
+final class HeapPressureMonitor implements NotificationListener, AutoCloseable {
+
+    // guarded by the class lock
+    private static final Map<String, PoolThreshold> POOLS = new HashMap<>();
+
+    private final Runnable onPressure;
+    private final NotificationEmitter emitter;
+    // the threshold this monitor wants, in bytes, by pool name
+    private final Map<String, Long> thresholds;
+
+    private HeapPressureMonitor(Runnable onPressure, NotificationEmitter emitter, Map<String, Long> thresholds) {
+        this.onPressure = onPressure;
+        this.emitter = emitter;
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Starts watching the old generation.
+     *
+     * @param threshold  the fraction of the old generation's maximum size, between 0 and 1
+     * @param onPressure the callback to run, on the JMX notification thread
+     * @return the monitor, or {@code null} if no heap pool supports the threshold
+     */
+    static HeapPressureMonitor start(double threshold, Runnable onPressure) {
+        if (threshold <= 0 || threshold >= 1) {
+            throw new IllegalArgumentException("heap pressure threshold must be between 0 and 1, was " + threshold);
+        }
+        Map<String, Long> thresholds = new HashMap<>();
+        synchronized (HeapPressureMonitor.class) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                long max = pool.getUsage().getMax();
+                if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()
+                    || !pool.isCollectionUsageThresholdSupported() || max <= 0) {
+                    continue;
+                }
+                long bytes = (long) (max * threshold);
+                POOLS.computeIfAbsent(pool.getName(), name -> new PoolThreshold(pool)).add(bytes);
+                thresholds.put(pool.getName(), bytes);
+            }
+        }
+        if (thresholds.isEmpty()) {
+            return null;
+        }
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        HeapPressureMonitor monitor = new HeapPressureMonitor(onPressure, emitter, thresholds);
+        emitter.addNotificationListener(monitor,
+            n -> MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(n.getType()), null);
+        return monitor;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+        Long bytes = thresholds.get(info.getPoolName());
+        // the pool may have been set lower for another monitor
+        if (bytes != null && info.getUsage().getUsed() >= bytes) {
+            onPressure.run();
+        }
+    }
+
+    /** Stops watching, putting back the pools' thresholds if no other monitor still needs them. */
+    @Override
+    public void close() {
+        try {
+            emitter.removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // already closed
+            return;
+        }
+        synchronized (HeapPressureMonitor.class) {
+            for (Map.Entry<String, Long> entry : thresholds.entrySet()) {
+                PoolThreshold pool = POOLS.get(entry.getKey());
+                if (pool != null && pool.remove(entry.getValue())) {
+                    POOLS.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    // the thresholds the open monitors want for one pool, guarded by the class lock
+    private static final class PoolThreshold {
+        private final MemoryPoolMXBean pool;
+        private final List<Long> wanted = new ArrayList<>();
+        // what the pool had before the monitors, or was set to by someone else since
+        private long base;
+        private long applied;
+
+        PoolThreshold(MemoryPoolMXBean pool) {
+            this.pool = pool;
+            this.base = pool.getCollectionUsageThreshold();
+            this.applied = base;
+        }
+
+        void add(long bytes) {
+            wanted.add(bytes);
+            apply();
+        }
+
+        // returns true once no monitor wants a threshold, the pool's own having been put back
+        boolean remove(long bytes) {
+            wanted.remove(Long.valueOf(bytes));
+            apply();
+            return wanted.isEmpty();
+        }
+
+        private void apply() {
+            long current = pool.getCollectionUsageThreshold();
+            if (current != applied) {
+                base = current;
+            }
+            long bytes = base;
+            for (long w : wanted) {
+                if (bytes == 0 || w < bytes) {
+                    bytes = w;
+                }
+            }
+            if (bytes != current) {
+                pool.setCollectionUsageThreshold(bytes);
+            }
+            applied = bytes;
+        }
+    }
+}
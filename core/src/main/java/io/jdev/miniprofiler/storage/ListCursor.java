@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+import io.jdev.miniprofiler.storage.Storage.ListResultsOrder;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * A position in the list of stored profiling sessions, for listing the sessions after it
+ * with {@link Storage#list(int, ListCursor, ListResultsOrder)} and
+ * {@link Storage#listSummaries(int, ListCursor, ListResultsOrder)}.
+ *
+ * <p>Sessions are ordered by start time and then by id, so that sessions which started in the
+ * same millisecond are neither repeated nor skipped from one page to the next. A cursor is
+ * usually obtained with {@link Storage#cursorFor(UUID)} or from the last summary of a page.</p>
+ */
+public final class ListCursor implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    /** When the session started, in milliseconds since the epoch. */
+    private final long started;
+    /** The session id, ordering sessions that started in the same millisecond. */
+    private final UUID id;
+
+    private ListCursor(long started, UUID id) {
+        this.started = started;
+        this.id = id;
+    }
+
+    /**
+     * Returns the cursor for a session with the given start time and id.
+     *
+     * @param started when the session started, in milliseconds since the epoch
+     * @param id      the session id
+     * @return the cursor
+     */
+    public static ListCursor of(long started, UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("id must not be null");
+        }
+        return new ListCursor(started, id);
+    }
+
+    /**
+     * Returns the cursor for the given session.
+     *
+     * @param summary the session
+     * @return the cursor
+     */
+    public static ListCursor of(ProfilerSummary summary) {
+        return of(summary.getStarted(), summary.getId());
+    }
+
+    /**
+     * Returns when the session at this position started.
+     *
+     * @return the start time, in milliseconds since the epoch
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * Returns the id of the session at this position.
+     *
+     * @return the session id
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Returns whether a session with the given start time and id comes after this cursor when
+     * listing in the given order.
+     *
+     * @param started when the session started, in milliseconds since the epoch
+     * @param id      the session id
+     * @param order   the order being listed in
+     * @return true if the session comes after this cursor
+     */
+    public boolean isFollowedBy(long started, UUID id, ListResultsOrder order) {
+        int cmp = compare(started, id, this.started, this.id);
+        return order == ListResultsOrder.Descending ? cmp < 0 : cmp > 0;
+    }
+
+    /**
+     * Returns a comparator that sorts summaries in the order cursors are defined over.
+     *
+     * @param order the order to sort in
+     * @return the comparator
+     */
+    public static Comparator<ProfilerSummary> comparator(ListResultsOrder order) {
+        Comparator<ProfilerSummary> cmp = (a, b) -> compare(a.getStarted(), a.getId(), b.getStarted(), b.getId());
+        return order == ListResultsOrder.Descending ? cmp.reversed() : cmp;
+    }
+
+    // ids are compared as strings, matching the order of the object storages' index keys
+    private static int compare(long started1, UUID id1, long started2, UUID id2) {
+        int cmp = Long.compare(started1, started2);
+        return cmp != 0 ? cmp : id1.toString().compareTo(id2.toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ListCursor)) {
+            return false;
+        }
+        ListCursor other = (ListCursor) o;
+        return started == other.started && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(started) + id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ListCursor(" + started + ", " + id + ")";
+    }
+}
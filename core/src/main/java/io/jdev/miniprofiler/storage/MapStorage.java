@@ -16,75 +16,263 @@
 
 package io.jdev.miniprofiler.storage;
 
+import io.jdev.miniprofiler.MiniProfilerConfig;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Storage implementation based on an LRU in-memory map.
+ *
+ * <p>Sessions are held in a concurrent map, so loads and saves don't contend on a single lock.
+ * Two concurrent skip lists index them: one by last access, whose head is evicted once there
+ * are more than the maximum number of sessions, and one by start time and id, so that listing
+ * is a range scan over the index and expiry trims its head.</p>
+ *
+ * <p>Besides the maximum number of sessions, the storage keeps the total
+ * {@linkplain ProfilerImpl#estimatedSize() estimated size} of its sessions within a byte budget,
+ * evicting the least recently used sessions to make room. A session too big for the budget on its
+ * own isn't kept. Optionally, the storage also sheds the oldest half of its sessions whenever the
+ * old generation is still above a given fraction of its maximum size after a garbage collection;
+ * {@link #close()} stops watching the heap.</p>
  */
 public class MapStorage extends BaseStorage {
     private static final int DEFAULT_MAX_SIZE = 500;
 
-    private final Map<UUID, ProfilerImpl> cache;
+    /** Default maximum estimated size of the stored sessions, in megabytes. */
+    public static final int DEFAULT_MAX_MEGABYTES = 64;
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final int maxSize;
+    private final long maxBytes;
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final AtomicLong shedCount = new AtomicLong();
+    private final HeapPressureMonitor heapPressureMonitor;
+    private final ConcurrentHashMap<UUID, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> byAccess = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<IndexKey, Entry> byStarted = new ConcurrentSkipListMap<>();
+    private final AtomicLong clock = new AtomicLong();
     private final ConcurrentHashMap<String, Set<UUID>> unviewedByUser = new ConcurrentHashMap<>();
 
-    /** Creates a new instance with the default maximum size of {@value DEFAULT_MAX_SIZE} entries. */
+    /**
+     * Creates a new instance with the default maximum size of {@value DEFAULT_MAX_SIZE} entries
+     * and {@value #DEFAULT_MAX_MEGABYTES} megabytes.
+     */
     public MapStorage() {
         this(DEFAULT_MAX_SIZE);
     }
 
     /**
-     * Creates a new instance with the given maximum number of cached profiler sessions.
+     * Creates a new instance with the given maximum number of cached profiler sessions, and the
+     * default byte budget of {@value #DEFAULT_MAX_MEGABYTES} megabytes.
      *
      * @param maxSize the maximum number of profiler sessions to retain
      */
     public MapStorage(int maxSize) {
-        cache = Collections.synchronizedMap(new LRUMapCache(maxSize));
+        this(maxSize, DEFAULT_MAX_MEGABYTES * BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Creates a new instance with the given maximum number and estimated size of cached
+     * profiler sessions.
+     *
+     * @param maxSize  the maximum number of profiler sessions to retain
+     * @param maxBytes the maximum total estimated size of the retained sessions, in bytes
+     */
+    public MapStorage(int maxSize, long maxBytes) {
+        this(maxSize, maxBytes, 0);
+    }
+
+    /**
+     * Creates a new instance with the given limits, that also sheds its oldest sessions when the
+     * old generation is still fuller than {@code heapPressureThreshold} of its maximum size after
+     * a garbage collection. This sets the old generation's JVM-wide collection usage threshold,
+     * which {@link #close()} puts back.
+     *
+     * @param maxSize               the maximum number of profiler sessions to retain
+     * @param maxBytes              the maximum total estimated size of the retained sessions, in bytes
+     * @param heapPressureThreshold the fraction of the old generation, between 0 and 1, or 0 not to
+     *                              watch the heap
+     */
+    public MapStorage(int maxSize, long maxBytes, double heapPressureThreshold) {
+        if (maxSize < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxSize and maxBytes must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.heapPressureMonitor = heapPressureThreshold != 0
+            ? HeapPressureMonitor.start(heapPressureThreshold, this::shedOldestHalf)
+            : null;
+    }
+
+    /**
+     * Creates a storage configured by {@code storage.map.maxEntries} (default {@value DEFAULT_MAX_SIZE}),
+     * {@code storage.map.maxMegabytes} (default {@value #DEFAULT_MAX_MEGABYTES}) and
+     * {@code storage.map.heapPressureThreshold} (default unset, so the heap isn't watched).
+     *
+     * @param config the configuration to read
+     * @return the storage
+     */
+    static MapStorage fromConfig(MiniProfilerConfig config) {
+        return new MapStorage(
+            config.getProperty("storage.map.maxEntries", DEFAULT_MAX_SIZE),
+            config.getProperty("storage.map.maxMegabytes", DEFAULT_MAX_MEGABYTES) * BYTES_PER_MEGABYTE,
+            config.getProperty("storage.map.heapPressureThreshold", 0.0));
+    }
+
+    /**
+     * Returns the total estimated size of the stored sessions.
+     *
+     * @return the size in bytes
+     */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Returns the number of sessions shed because of heap pressure.
+     *
+     * @return the shed count
+     */
+    public long getShedCount() {
+        return shedCount.get();
     }
 
     @Override
     public void save(ProfilerImpl profiler) {
-        cache.put(profiler.getId(), profiler);
+        UUID id = profiler.getId();
+        Entry entry = new Entry(profiler, profiler.estimatedSize(), clock.incrementAndGet());
+        if (entry.size > maxBytes) {
+            Entry stale = cache.get(id);
+            if (stale != null) {
+                remove(stale);
+            }
+            return;
+        }
+        Entry previous = cache.put(id, entry);
+        cachedBytes.addAndGet(entry.size);
+        if (previous != null) {
+            cachedBytes.addAndGet(-previous.size);
+            unindex(previous);
+        }
+        byStarted.put(entry.key, entry);
+        byAccess.put(entry.tick, entry);
+        if (cache.get(id) != entry) {
+            // replaced or evicted while being indexed
+            unindex(entry);
+            // a concurrent save of the same session shares the start-time key, and may have had
+            // its index entry overwritten by this one and then removed with it
+            Entry winner = cache.get(id);
+            if (winner != null) {
+                byStarted.putIfAbsent(winner.key, winner);
+            }
+        }
+        while (cache.size() > maxSize || cachedBytes.get() > maxBytes) {
+            Map.Entry<Long, Entry> eldest = byAccess.pollFirstEntry();
+            if (eldest == null) {
+                break;
+            }
+            Entry candidate = eldest.getValue();
+            // nodes left behind by a later access are skipped
+            if (candidate.tick == eldest.getKey()) {
+                remove(candidate);
+            }
+        }
     }
 
     @Override
     public ProfilerImpl load(UUID id) {
-        return cache.get(id);
+        Entry entry = cache.get(id);
+        if (entry == null) {
+            return null;
+        }
+        long previous = entry.tick;
+        long next = clock.incrementAndGet();
+        // a failed update means another load has just moved it to the back anyway
+        if (Entry.TICK.compareAndSet(entry, previous, next)) {
+            byAccess.put(next, entry);
+            byAccess.remove(previous, entry);
+            if (cache.get(id) != entry) {
+                byAccess.remove(next, entry);
+            }
+        }
+        return entry.profiler;
+    }
+
+    /** {@inheritDoc} Looks the session up without touching its LRU order. */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        Entry entry = cache.get(id);
+        return entry != null ? ListCursor.of(entry.key.started, id) : null;
     }
 
     @Override
     public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
-        long startMs = start != null ? start.getTime() : 0;
-        long finishMs = finish != null ? finish.getTime() : Long.MAX_VALUE;
-        List<ProfilerImpl> filtered;
-        synchronized (cache) {
-            filtered = new ArrayList<>(cache.values()).stream()
-                .filter(p -> p.getStarted() >= startMs && p.getStarted() <= finishMs)
-                .collect(Collectors.toList());
-        }
-        Comparator<ProfilerImpl> cmp = Comparator.comparingLong(ProfilerImpl::getStarted);
-        if (orderBy == ListResultsOrder.Descending) {
-            cmp = cmp.reversed();
-        }
-        return filtered.stream()
-            .sorted(cmp)
+        return select(maxResults, between(start, finish), orderBy, ProfilerImpl::getId);
+    }
+
+    /** {@inheritDoc} Summarises the sessions held in memory, without touching their LRU order. */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return select(maxResults, between(start, finish), orderBy, ProfilerImpl::toSummary);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return select(maxResults, following(after, orderBy), orderBy, ProfilerImpl::getId);
+    }
+
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return select(maxResults, following(after, orderBy), orderBy, ProfilerImpl::toSummary);
+    }
+
+    private NavigableMap<IndexKey, Entry> between(Date start, Date finish) {
+        long startMs = start != null ? start.getTime() : Long.MIN_VALUE;
+        if (finish == null || finish.getTime() == Long.MAX_VALUE) {
+            return byStarted.tailMap(IndexKey.first(startMs), true);
+        }
+        long finishMs = finish.getTime();
+        if (finishMs < startMs) {
+            return Collections.emptyNavigableMap();
+        }
+        return byStarted.subMap(IndexKey.first(startMs), true, IndexKey.first(finishMs + 1), false);
+    }
+
+    private NavigableMap<IndexKey, Entry> following(ListCursor after, ListResultsOrder orderBy) {
+        if (after == null) {
+            return byStarted;
+        }
+        IndexKey key = new IndexKey(after.getStarted(), after.getId());
+        return orderBy == ListResultsOrder.Descending ? byStarted.headMap(key, false) : byStarted.tailMap(key, false);
+    }
+
+    private <T> List<T> select(int maxResults, NavigableMap<IndexKey, Entry> range, ListResultsOrder orderBy,
+                               Function<ProfilerImpl, T> mapper) {
+        Collection<Entry> entries = orderBy == ListResultsOrder.Descending ? range.descendingMap().values() : range.values();
+        return entries.stream()
+            .filter(e -> cache.get(e.key.id) == e)
             .limit(maxResults)
-            .map(ProfilerImpl::getId)
+            .map(e -> mapper.apply(e.profiler))
             .collect(Collectors.toList());
     }
 
@@ -132,22 +320,28 @@ public class MapStorage extends BaseStorage {
     /** Removes all cached profiler sessions and resets unviewed state. */
     @Override
     public void clear() {
-        cache.clear();
+        cache.values().forEach(this::remove);
         unviewedByUser.clear();
     }
 
+    /** Stops watching the heap, if this storage was watching it. */
+    @Override
+    public void close() {
+        if (heapPressureMonitor != null) {
+            heapPressureMonitor.close();
+        }
+    }
+
     @Override
     public void expireOlderThan(Instant cutoff) {
         long cutoffMs = cutoff.toEpochMilli();
         Set<UUID> removed = new HashSet<>();
-        synchronized (cache) {
-            Iterator<Map.Entry<UUID, ProfilerImpl>> it = cache.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<UUID, ProfilerImpl> entry = it.next();
-                if (entry.getValue().getStarted() < cutoffMs) {
-                    removed.add(entry.getKey());
-                    it.remove();
-                }
+        Map.Entry<IndexKey, Entry> first;
+        while ((first = byStarted.firstEntry()) != null && first.getKey().started < cutoffMs) {
+            Entry entry = first.getValue();
+            byStarted.remove(first.getKey(), entry);
+            if (remove(entry)) {
+                removed.add(entry.key.id);
             }
         }
         if (!removed.isEmpty()) {
@@ -155,17 +349,94 @@ public class MapStorage extends BaseStorage {
         }
     }
 
-    private static class LRUMapCache extends LinkedHashMap<UUID, ProfilerImpl> {
-        private int maxSize;
+    /**
+     * Removes sessions in order of start time until at least the given number of bytes has been
+     * freed, or no sessions are left.
+     *
+     * @param bytes the estimated size to free
+     */
+    void shedOldest(long bytes) {
+        long freed = 0;
+        Map.Entry<IndexKey, Entry> first;
+        while (freed < bytes && (first = byStarted.firstEntry()) != null) {
+            Entry entry = first.getValue();
+            byStarted.remove(first.getKey(), entry);
+            if (remove(entry)) {
+                freed += entry.size;
+                shedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void shedOldestHalf() {
+        shedOldest((cachedBytes.get() + 1) / 2);
+    }
+
+    private boolean remove(Entry entry) {
+        unindex(entry);
+        if (cache.remove(entry.key.id, entry)) {
+            cachedBytes.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    private void unindex(Entry entry) {
+        byStarted.remove(entry.key, entry);
+        byAccess.remove(entry.tick, entry);
+    }
+
+    private static final class Entry {
+        static final AtomicLongFieldUpdater<Entry> TICK = AtomicLongFieldUpdater.newUpdater(Entry.class, "tick");
+
+        final ProfilerImpl profiler;
+        final IndexKey key;
+        final long size;
+        volatile long tick;
+
+        Entry(ProfilerImpl profiler, long size, long tick) {
+            this.profiler = profiler;
+            this.key = new IndexKey(profiler.getStarted(), profiler.getId());
+            this.size = size;
+            this.tick = tick;
+        }
+    }
+
+    // ordered as ListCursor orders sessions: by start time, then by id as a string
+    private static final class IndexKey implements Comparable<IndexKey> {
+        final long started;
+        final UUID id;
+        final String idString;
+
+        IndexKey(long started, UUID id) {
+            this(started, id, id.toString());
+        }
+
+        private IndexKey(long started, UUID id, String idString) {
+            this.started = started;
+            this.id = id;
+            this.idString = idString;
+        }
 
-        LRUMapCache(int maxSize) {
-            super(10, 0.75f, true);
-            this.maxSize = maxSize;
+        // sorts before every session started at the given time
+        static IndexKey first(long started) {
+            return new IndexKey(started, null, "");
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int cmp = Long.compare(started, other.started);
+            return cmp != 0 ? cmp : idString.compareTo(other.idString);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IndexKey && compareTo((IndexKey) o) == 0;
         }
 
         @Override
-        protected boolean removeEldestEntry(Map.Entry<UUID, ProfilerImpl> eldest) {
-            return size() > maxSize;
+        public int hashCode() {
+            return 31 * Long.hashCode(started) + idString.hashCode();
         }
     }
 }
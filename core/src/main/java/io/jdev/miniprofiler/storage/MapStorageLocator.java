@@ -16,10 +16,13 @@
 
 package io.jdev.miniprofiler.storage;
 
+import io.jdev.miniprofiler.MiniProfilerConfig;
+
 import java.util.Optional;
 
 /**
- * Fallback {@link StorageLocator} that always returns a new {@link MapStorage}.
+ * Fallback {@link StorageLocator} that always returns a new {@link MapStorage}, sized by the
+ * {@code storage.map.*} properties.
  */
 public class MapStorageLocator implements StorageLocator {
 
@@ -34,6 +37,6 @@ public class MapStorageLocator implements StorageLocator {
 
     @Override
     public Optional<Storage> locate() {
-        return Optional.of(new MapStorage());
+        return Optional.of(MapStorage.fromConfig(new MiniProfilerConfig()));
     }
 }
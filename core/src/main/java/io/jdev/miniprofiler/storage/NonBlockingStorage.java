@@ -0,0 +1,42 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link Storage} that can save sessions without blocking the calling thread, for
+ * storages whose clients have an asynchronous API.
+ *
+ * <p>Integrations with an event loop, such as Ratpack's {@code AsyncStorage}, use
+ * {@link #saveNonBlocking(ProfilerImpl)} in place of running {@link #save(ProfilerImpl)}
+ * on a blocking thread.</p>
+ */
+public interface NonBlockingStorage extends Storage {
+
+    /**
+     * Starts storing the given profiling information. Serialisation may happen on the calling
+     * thread, but the writes themselves should not block it.
+     *
+     * @param profiler the profiling information to store
+     * @return a future completed once the session is stored, or completed exceptionally
+     * if storing it fails
+     */
+    CompletableFuture<Void> saveNonBlocking(ProfilerImpl profiler);
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Storage that keeps encoded sessions in a fixed-size region outside the Java heap, either a
+ * direct buffer or a memory-mapped file, for keeping the last few minutes of sessions around
+ * without the collector having to trace them.
+ *
+ * <p>The region is a ring buffer: sessions are {@linkplain ProfilePayloads#encode encoded} when
+ * saved and written one after another, wrapping to the start when the next one doesn't fit
+ * before the end, and overwriting the oldest sessions as it goes. Only a small index of each
+ * session's offset, length and {@linkplain ProfilerSummary summary} is kept on the heap, so the
+ * results list is answered without decoding anything. {@link #load(UUID)} copies a session out
+ * and decodes it on demand, so each load returns a new {@link ProfilerImpl}. A session bigger
+ * than the whole region isn't kept.</p>
+ *
+ * <p>A memory-mapped file only backs the region; its contents aren't read back when a new
+ * storage maps it.</p>
+ */
+public class OffHeapStorage extends BaseStorage {
+
+    private final ByteBuffer region;
+    private final PayloadCodec codec;
+    // insertion-ordered, so iteration starts at the session written longest ago
+    private final LinkedHashMap<UUID, Slot> slots = new LinkedHashMap<>();
+    private int head;
+    private final AtomicLong overwriteCount = new AtomicLong();
+    private final ConcurrentHashMap<String, Set<UUID>> unviewedByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance over a direct buffer of the given size.
+     *
+     * @param capacity the size of the buffer, in bytes
+     * @param codec    the codec sessions are written with; {@code null} means uncompressed
+     */
+    public OffHeapStorage(int capacity, PayloadCodec codec) {
+        this(ByteBuffer.allocateDirect(capacity), codec);
+    }
+
+    /**
+     * Creates a new instance over the given buffer, which is used from position zero up to its
+     * capacity and shouldn't be used by anything else.
+     *
+     * @param region the buffer to keep sessions in, usually direct or memory-mapped
+     * @param codec  the codec sessions are written with; {@code null} means uncompressed
+     */
+    public OffHeapStorage(ByteBuffer region, PayloadCodec codec) {
+        if (region.capacity() < 1) {
+            throw new IllegalArgumentException("region must not be empty");
+        }
+        this.region = region;
+        this.codec = codec != null ? codec : PayloadCodec.NONE;
+    }
+
+    /**
+     * Creates a new instance over the given file, mapped into memory. The file is created or
+     * resized to the given capacity, and any sessions already in it are ignored.
+     *
+     * @param file     the file to map
+     * @param capacity the size of the mapping, in bytes
+     * @param codec    the codec sessions are written with; {@code null} means uncompressed
+     * @return the storage
+     * @throws IOException if the file can't be mapped
+     */
+    public static OffHeapStorage mapFile(Path file, int capacity, PayloadCodec codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new OffHeapStorage(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity), codec);
+        }
+    }
+
+    /**
+     * Returns the size of the region sessions are kept in.
+     *
+     * @return the capacity in bytes
+     */
+    public int getCapacity() {
+        return region.capacity();
+    }
+
+    /**
+     * Returns the number of sessions currently held.
+     *
+     * @return the session count
+     */
+    public int getSize() {
+        synchronized (slots) {
+            return slots.size();
+        }
+    }
+
+    /**
+     * Returns the number of sessions overwritten to make room for newer ones.
+     *
+     * @return the overwrite count
+     */
+    public long getOverwriteCount() {
+        return overwriteCount.get();
+    }
+
+    @Override
+    public void save(ProfilerImpl profiler) {
+        byte[] payload = ProfilePayloads.encode(profiler, codec);
+        ProfilerSummary summary = profiler.toSummary();
+        UUID id = profiler.getId();
+        synchronized (slots) {
+            // a resaved session's old bytes are left to be overwritten
+            slots.remove(id);
+            if (payload.length > region.capacity()) {
+                return;
+            }
+            int offset = head;
+            if (offset + payload.length > region.capacity()) {
+                // what's left at the end is too small, so everything written there goes
+                evictFrom(offset, region.capacity());
+                offset = 0;
+            }
+            evictFrom(offset, offset + payload.length);
+            ByteBuffer target = region.duplicate();
+            target.position(offset);
+            target.put(payload);
+            slots.put(id, new Slot(offset, payload.length, summary));
+            head = offset + payload.length;
+        }
+    }
+
+    // removes the oldest sessions while they overlap [from, to)
+    private void evictFrom(int from, int to) {
+        Iterator<Slot> it = slots.values().iterator();
+        while (it.hasNext()) {
+            Slot oldest = it.next();
+            if (oldest.offset >= to || oldest.offset + oldest.length <= from) {
+                return;
+            }
+            it.remove();
+            overwriteCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public ProfilerImpl load(UUID id) {
+        byte[] payload;
+        synchronized (slots) {
+            Slot slot = slots.get(id);
+            if (slot == null) {
+                return null;
+            }
+            payload = new byte[slot.length];
+            ByteBuffer source = region.duplicate();
+            source.position(slot.offset);
+            source.get(payload);
+        }
+        return ProfilePayloads.decode(new ByteArrayInputStream(payload));
+    }
+
+    /** {@inheritDoc} Answered from the index, without decoding the session. */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        synchronized (slots) {
+            Slot slot = slots.get(id);
+            return slot != null ? ListCursor.of(slot.summary) : null;
+        }
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return ids(listSummaries(maxResults, start, finish, orderBy));
+    }
+
+    /** {@inheritDoc} Answered from the index, without decoding any session. */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        long startMs = start != null ? start.getTime() : Long.MIN_VALUE;
+        long finishMs = finish != null ? finish.getTime() : Long.MAX_VALUE;
+        return select(maxResults, s -> s.getStarted() >= startMs && s.getStarted() <= finishMs, orderBy);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return ids(listSummaries(maxResults, after, orderBy));
+    }
+
+    /** {@inheritDoc} Answered from the index, without decoding any session. */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return select(maxResults, s -> after == null || after.isFollowedBy(s.getStarted(), s.getId(), orderBy), orderBy);
+    }
+
+    private List<ProfilerSummary> select(int maxResults, Predicate<ProfilerSummary> filter, ListResultsOrder orderBy) {
+        List<ProfilerSummary> matching = new ArrayList<>();
+        synchronized (slots) {
+            for (Slot slot : slots.values()) {
+                if (filter.test(slot.summary)) {
+                    matching.add(slot.summary);
+                }
+            }
+        }
+        return matching.stream()
+            .sorted(ListCursor.comparator(orderBy))
+            .limit(maxResults)
+            .collect(Collectors.toList());
+    }
+
+    private static List<UUID> ids(List<ProfilerSummary> summaries) {
+        return summaries.stream().map(ProfilerSummary::getId).collect(Collectors.toList());
+    }
+
+    @Override
+    public void setUnviewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        unviewedByUser.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    @Override
+    public void setViewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        Set<UUID> set = unviewedByUser.get(user);
+        if (set != null) {
+            set.remove(id);
+        }
+    }
+
+    @Override
+    public Collection<UUID> getUnviewedIds(String user) {
+        if (user == null) {
+            return Collections.emptyList();
+        }
+        Set<UUID> set = unviewedByUser.get(user);
+        if (set == null) {
+            return Collections.emptyList();
+        }
+        List<UUID> result = new ArrayList<>();
+        synchronized (slots) {
+            Iterator<UUID> it = set.iterator();
+            while (it.hasNext()) {
+                UUID uid = it.next();
+                if (slots.containsKey(uid)) {
+                    result.add(uid);
+                } else {
+                    it.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Removes all sessions and resets unviewed state. */
+    @Override
+    public void clear() {
+        synchronized (slots) {
+            slots.clear();
+            head = 0;
+        }
+        unviewedByUser.clear();
+    }
+
+    @Override
+    public void expireOlderThan(Instant cutoff) {
+        long cutoffMs = cutoff.toEpochMilli();
+        synchronized (slots) {
+            slots.values().removeIf(slot -> slot.summary.getStarted() < cutoffMs);
+        }
+    }
+
+    private static final class Slot {
+        final int offset;
+        final int length;
+        final ProfilerSummary summary;
+
+        Slot(int offset, int length, ProfilerSummary summary) {
+            this.offset = offset;
+            this.length = length;
+            this.summary = summary;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * {@link StorageLocator} for {@link OffHeapStorage}. Returns an empty {@link Optional} when the
+ * {@code miniprofiler.storage.offheap.megabytes} property is not set.
+ *
+ * <p>The region is a direct buffer unless {@code storage.offheap.file} names a file to map.
+ * Sessions are written with the codec named by {@code storage.offheap.codec}, uncompressed by
+ * default.</p>
+ */
+public class OffHeapStorageLocator implements StorageLocator {
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    /** Creates a new instance. */
+    public OffHeapStorageLocator() {
+    }
+
+    @Override
+    public int getOrder() {
+        return 100;
+    }
+
+    @Override
+    public Optional<Storage> locate() {
+        try {
+            MiniProfilerConfig config = new MiniProfilerConfig();
+            Integer megabytes = config.getProperty("storage.offheap.megabytes", (Integer) null);
+            if (megabytes == null) {
+                return Optional.empty();
+            }
+            int capacity = Math.toIntExact(megabytes * BYTES_PER_MEGABYTE);
+            PayloadCodec codec = PayloadCodec.forName(config.getProperty("storage.offheap.codec", (String) null));
+            String file = config.getProperty("storage.offheap.file", (String) null);
+            return Optional.of(file != null
+                ? OffHeapStorage.mapFile(Paths.get(file), capacity, codec)
+                : new OffHeapStorage(capacity, codec));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+}
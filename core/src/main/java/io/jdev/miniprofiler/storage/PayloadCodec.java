@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ServiceLoader;
+
+/**
+ * Compresses the stored form of a profiling session.
+ *
+ * <p>Session JSON is highly repetitive (property names, step names, SQL text), so it usually
+ * compresses several times over. Storages write sessions through {@link ProfilePayloads}, which
+ * prefixes the encoded bytes with a short header naming the codec's {@link #getId() id}, so a
+ * session is always decoded with the codec it was written with, whatever the storage is
+ * currently configured to use. Sessions written with {@link #NONE} have no header and are plain
+ * UTF-8 JSON, exactly as stored before codecs existed.</p>
+ *
+ * <p>Further codecs can be registered via {@link ServiceLoader}. Ids below 16 are reserved for
+ * the built-in codecs, and an id must never be reused for a different encoding once sessions
+ * have been stored with it.</p>
+ *
+ * <p>Implementations must be thread-safe, as they are shared by all saves and loads.</p>
+ */
+public interface PayloadCodec {
+
+    /** Stores plain JSON, readable by versions that predate codecs. This is the default. */
+    PayloadCodec NONE = BuiltInPayloadCodec.None;
+
+    /** Compresses with gzip. */
+    PayloadCodec GZIP = BuiltInPayloadCodec.Gzip;
+
+    /**
+     * Compresses with raw deflate, primed with a preset dictionary of the property names and SQL
+     * keywords that appear in every session, which helps most with small sessions.
+     */
+    PayloadCodec DEFLATE = BuiltInPayloadCodec.Deflate;
+
+    /**
+     * Returns the id written in the header of payloads encoded with this codec.
+     *
+     * @return the id, between 0 and 255
+     */
+    int getId();
+
+    /**
+     * Returns the name used to select this codec in configuration.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Returns a stream that encodes whatever is written to it onto the given stream. Closing
+     * the returned stream finishes the encoding and closes {@code out}.
+     *
+     * @param out the stream to write the encoded bytes to
+     * @return the stream to write the plain bytes to
+     * @throws IOException if the encoder can't be started
+     */
+    OutputStream encode(OutputStream out) throws IOException;
+
+    /**
+     * Returns a stream that decodes the given stream. Closing the returned stream closes
+     * {@code in}.
+     *
+     * @param in the encoded bytes, without the header
+     * @return the decoded bytes
+     * @throws IOException if the encoded stream can't be read
+     */
+    InputStream decode(InputStream in) throws IOException;
+
+    /**
+     * Returns the built-in or {@link ServiceLoader}-registered codec with the given name,
+     * ignoring case. A {@code null} name returns {@link #NONE}.
+     *
+     * @param name the codec name, e.g. {@code gzip}
+     * @return the codec
+     * @throws IllegalArgumentException if no codec has that name
+     */
+    static PayloadCodec forName(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        for (PayloadCodec codec : BuiltInPayloadCodec.values()) {
+            if (codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        for (PayloadCodec codec : ServiceLoader.load(PayloadCodec.class)) {
+            if (codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown payload codec: " + name);
+    }
+
+    /**
+     * Returns the built-in or {@link ServiceLoader}-registered codec with the given id.
+     *
+     * @param id the codec id read from a payload header
+     * @return the codec, or {@code null} if none has that id
+     */
+    static PayloadCodec forId(int id) {
+        for (PayloadCodec codec : BuiltInPayloadCodec.values()) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        for (PayloadCodec codec : ServiceLoader.load(PayloadCodec.class)) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
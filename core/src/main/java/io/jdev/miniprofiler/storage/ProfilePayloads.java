@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Reads and writes the stored form of a profiling session, encoded with a {@link PayloadCodec}.
+ *
+ * <p>Encoded payloads start with a four byte header: a zero byte, {@code M}, {@code P} and the
+ * codec id. JSON can't start with a zero byte, so payloads without the header, whether written
+ * with {@link PayloadCodec#NONE} or before codecs existed, are read as plain JSON.</p>
+ */
+public final class ProfilePayloads {
+
+    private static final int HEADER_LENGTH = 4;
+    private static final byte[] MAGIC = {0, 'M', 'P'};
+
+    private ProfilePayloads() {
+    }
+
+    /**
+     * Encodes the given session.
+     *
+     * @param profiler the session to encode
+     * @param codec    the codec to encode it with
+     * @return the encoded payload
+     */
+    public static byte[] encode(ProfilerImpl profiler, PayloadCodec codec) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(4096);
+        try {
+            if (codec != PayloadCodec.NONE) {
+                data.write(MAGIC);
+                data.write(codec.getId());
+            }
+            try (OutputStream out = codec.encode(data)) {
+                profiler.writeUiJson(out);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream doesn't throw, so this can only come from the codec
+            throw new UncheckedIOException(e);
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Decodes a session from the given payload, which may have been written with any codec.
+     * The stream is closed.
+     *
+     * @param payload the payload
+     * @return the session
+     * @throws UncheckedIOException if reading fails, or the payload names an unknown codec
+     */
+    public static ProfilerImpl decode(InputStream payload) {
+        try (InputStream json = open(payload)) {
+            return ProfilerImpl.fromJson(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a stream over the JSON held in the given payload, which may have been written with
+     * any codec. Closing the returned stream closes {@code payload}.
+     *
+     * @param payload the payload
+     * @return the decoded JSON
+     * @throws IOException if reading fails, or the payload names an unknown codec
+     */
+    public static InputStream open(InputStream payload) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(payload, HEADER_LENGTH);
+        byte[] header = new byte[HEADER_LENGTH];
+        int read = 0;
+        int n;
+        while (read < HEADER_LENGTH && (n = in.read(header, read, HEADER_LENGTH - read)) >= 0) {
+            read += n;
+        }
+        if (read == 0 || header[0] != MAGIC[0]) {
+            in.unread(header, 0, read);
+            return in;
+        }
+        if (read < HEADER_LENGTH || header[1] != MAGIC[1] || header[2] != MAGIC[2]) {
+            throw new IOException("Unrecognised payload header");
+        }
+        int id = header[3] & 0xff;
+        PayloadCodec codec = PayloadCodec.forId(id);
+        if (codec == null) {
+            throw new IOException("Unknown payload codec id " + id);
+        }
+        return codec.decode(in);
+    }
+}
@@ -17,10 +17,13 @@
 package io.jdev.miniprofiler.storage;
 
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -52,6 +55,101 @@ public interface Storage extends AutoCloseable {
      */
     Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy);
 
+    /**
+     * Lists the results list fields of profiling sessions, in the same order and with the same
+     * filtering as {@link #list(int, Date, Date, ListResultsOrder)}.
+     *
+     * <p>The default implementation loads each listed session in full. Storages that can read
+     * the summary fields without doing that should override it.</p>
+     *
+     * @param maxResults the maximum number of summaries to list.
+     * @param start      the date to start searching
+     * @param finish     the end date
+     * @param orderBy    which order to list the summaries
+     * @return summaries of the sessions that match the dates
+     */
+    default List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        Collection<UUID> ids = list(maxResults, start, finish, orderBy);
+        List<ProfilerSummary> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            ProfilerImpl profiler = load(id);
+            if (profiler != null) {
+                result.add(profiler.toSummary());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the ids of the profiling sessions that come after the given cursor in the given
+     * order: later sessions when listing in {@link ListResultsOrder#Ascending} order, earlier ones
+     * when listing in {@link ListResultsOrder#Descending} order.
+     *
+     * <p>The default implementation lists the summaries after the cursor.</p>
+     *
+     * @param maxResults the maximum number of ids to list.
+     * @param after      the cursor to list after, or {@code null} to list from the start
+     * @param orderBy    which order to list the uuids
+     * @return a list of UUIDs after the cursor
+     */
+    default Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        List<ProfilerSummary> summaries = listSummaries(maxResults, after, orderBy);
+        List<UUID> result = new ArrayList<>(summaries.size());
+        for (ProfilerSummary summary : summaries) {
+            result.add(summary.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Lists the results list fields of the profiling sessions that come after the given cursor
+     * in the given order, as for {@link #list(int, ListCursor, ListResultsOrder)}.
+     *
+     * <p>The default implementation lists by date from the cursor's start time and drops the
+     * sessions in that millisecond which don't come after the cursor, asking for more if that
+     * leaves too few.</p>
+     *
+     * @param maxResults the maximum number of summaries to list.
+     * @param after      the cursor to list after, or {@code null} to list from the start
+     * @param orderBy    which order to list the summaries
+     * @return summaries of the sessions after the cursor
+     */
+    default List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        if (after == null) {
+            return listSummaries(maxResults, null, null, orderBy);
+        }
+        boolean descending = orderBy == ListResultsOrder.Descending;
+        Date from = descending ? null : new Date(after.getStarted());
+        Date to = descending ? new Date(after.getStarted()) : null;
+        int limit = maxResults;
+        while (true) {
+            List<ProfilerSummary> listed = listSummaries(limit, from, to, orderBy);
+            List<ProfilerSummary> result = new ArrayList<>(Math.min(listed.size(), maxResults));
+            for (ProfilerSummary summary : listed) {
+                if (result.size() < maxResults && after.isFollowedBy(summary.getStarted(), summary.getId(), orderBy)) {
+                    result.add(summary);
+                }
+            }
+            if (result.size() >= maxResults || listed.size() < limit || limit == Integer.MAX_VALUE) {
+                return result;
+            }
+            limit = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : limit * 2;
+        }
+    }
+
+    /**
+     * Returns the position of the given session in the list, for listing the sessions after it.
+     *
+     * <p>The default implementation loads the session.</p>
+     *
+     * @param id the id of the session
+     * @return the cursor for the session, or null if it is not stored
+     */
+    default ListCursor cursorFor(UUID id) {
+        ProfilerImpl profiler = load(id);
+        return profiler != null ? ListCursor.of(profiler.getStarted(), id) : null;
+    }
+
     /**
      * Stores the given profiling information
      *
@@ -59,6 +157,20 @@ public interface Storage extends AutoCloseable {
      */
     void save(ProfilerImpl profiler);
 
+    /**
+     * Stores several profiling sessions at once, e.g. a batch taken off a write-behind queue.
+     *
+     * <p>The default implementation saves each session in turn. Storages that can write a batch
+     * in fewer round trips should override it.</p>
+     *
+     * @param profilers the profiling sessions to store
+     */
+    default void saveAll(Collection<ProfilerImpl> profilers) {
+        for (ProfilerImpl profiler : profilers) {
+            save(profiler);
+        }
+    }
+
     /**
      * Returns a previously saved profiling session.
      *
@@ -83,6 +195,34 @@ public interface Storage extends AutoCloseable {
      */
     void setViewed(String user, UUID id);
 
+    /**
+     * Sets several profiler sessions so they are considered "un-viewed" by the given user.
+     *
+     * <p>The default implementation marks each session in turn.</p>
+     *
+     * @param user the user
+     * @param ids  the ids of the sessions
+     */
+    default void setUnviewedAll(String user, Collection<UUID> ids) {
+        for (UUID id : ids) {
+            setUnviewed(user, id);
+        }
+    }
+
+    /**
+     * Sets several profiler sessions to "viewed" for the given user.
+     *
+     * <p>The default implementation marks each session in turn.</p>
+     *
+     * @param user the user
+     * @param ids  the ids of the sessions
+     */
+    default void setViewedAll(String user, Collection<UUID> ids) {
+        for (UUID id : ids) {
+            setViewed(user, id);
+        }
+    }
+
     /**
      * Returns a list of profiling session ids s that haven't been seen by the given user.
      *
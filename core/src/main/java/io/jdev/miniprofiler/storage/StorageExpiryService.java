@@ -21,6 +21,7 @@ import java.time.Instant;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Schedules periodic calls to {@link Storage#expireOlderThan} on a background daemon thread.
@@ -28,23 +29,70 @@ import java.util.concurrent.TimeUnit;
  * <p>Storage implementations only need to implement {@link Storage#expireOlderThan}; this class
  * handles the scheduling and lifecycle of the background cleanup task. Instances are created
  * and closed by the owning {@link io.jdev.miniprofiler.ProfilerProvider}.</p>
+ *
+ * <p>A {@link BatchExpiringStorage} is instead expired a batch at a time, pausing between
+ * batches, until a batch comes back short or the run's time budget is spent. Whatever is left
+ * is picked up by the next run. The counts of runs, batches and expired sessions are exposed
+ * so that progress can be monitored.</p>
  */
 public class StorageExpiryService implements AutoCloseable {
 
     /** Default interval between expiry runs: one hour. */
     public static final Duration DEFAULT_SCHEDULE_INTERVAL = Duration.ofHours(1);
 
+    /** Default number of sessions expired per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Default pause between batches: 100 milliseconds. */
+    public static final Duration DEFAULT_BATCH_PAUSE = Duration.ofMillis(100);
+
+    /** Default time budget for a run: five minutes. */
+    public static final Duration DEFAULT_RUN_BUDGET = Duration.ofMinutes(5);
+
+    private final Storage storage;
+    private final int batchSize;
+    private final long batchPauseMs;
+    private final long runBudgetNanos;
     private final ScheduledExecutorService scheduler;
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong unfinishedRunCount = new AtomicLong();
+    private final AtomicLong failedRunCount = new AtomicLong();
+    private volatile long lastRunExpiredCount;
     private volatile boolean closed;
 
     /**
-     * Creates a new service with an explicit schedule interval.
+     * Creates a new service with an explicit schedule interval, and the default batch size,
+     * pause and run budget.
      *
      * @param storage          the storage to expire entries from
      * @param expiryAge        sessions older than this duration are removed on each run
      * @param scheduleInterval how often to run the expiry task
      */
     public StorageExpiryService(Storage storage, Duration expiryAge, Duration scheduleInterval) {
+        this(storage, expiryAge, scheduleInterval, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_PAUSE, DEFAULT_RUN_BUDGET);
+    }
+
+    /**
+     * Creates a new service with explicit batching.
+     *
+     * @param storage          the storage to expire entries from
+     * @param expiryAge        sessions older than this duration are removed on each run
+     * @param scheduleInterval how often to run the expiry task
+     * @param batchSize        the most sessions to expire per batch
+     * @param batchPause       how long to wait between batches; zero doesn't wait
+     * @param runBudget        how long a run may keep starting batches; zero means until done
+     */
+    public StorageExpiryService(Storage storage, Duration expiryAge, Duration scheduleInterval,
+                                int batchSize, Duration batchPause, Duration runBudget) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.storage = storage;
+        this.batchSize = batchSize;
+        this.batchPauseMs = batchPause.toMillis();
+        this.runBudgetNanos = runBudget.toNanos();
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "miniprofiler-storage-expiry");
             t.setDaemon(true);
@@ -52,10 +100,106 @@ public class StorageExpiryService implements AutoCloseable {
         });
         long intervalMs = scheduleInterval.toMillis();
         this.scheduler.scheduleAtFixedRate(
-            () -> storage.expireOlderThan(Instant.now().minus(expiryAge)),
+            () -> run(Instant.now().minus(expiryAge)),
             intervalMs, intervalMs, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Runs expiry once for the given cutoff, on the calling thread.
+     *
+     * @param cutoff sessions that started before this instant are removed
+     */
+    void run(Instant cutoff) {
+        runCount.incrementAndGet();
+        long expired = 0;
+        try {
+            if (!(storage instanceof BatchExpiringStorage)) {
+                storage.expireOlderThan(cutoff);
+                return;
+            }
+            BatchExpiringStorage batching = (BatchExpiringStorage) storage;
+            long start = System.nanoTime();
+            while (!closed) {
+                int removed = batching.expireBatchOlderThan(cutoff, batchSize);
+                batchCount.incrementAndGet();
+                expiredCount.addAndGet(removed);
+                expired += removed;
+                if (removed < batchSize) {
+                    return;
+                }
+                if (runBudgetNanos > 0 && System.nanoTime() - start >= runBudgetNanos) {
+                    unfinishedRunCount.incrementAndGet();
+                    return;
+                }
+                if (batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed while pausing
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // counted rather than thrown, which would cancel the schedule
+            failedRunCount.incrementAndGet();
+        } finally {
+            lastRunExpiredCount = expired;
+        }
+    }
+
+    /**
+     * Returns the number of expiry runs started.
+     *
+     * @return the run count
+     */
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /**
+     * Returns the number of batches expired, across all runs.
+     *
+     * @return the batch count
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of sessions expired in batches, across all runs.
+     *
+     * @return the expired session count
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * Returns the number of sessions expired in batches by the most recent run.
+     *
+     * @return the expired session count
+     */
+    public long getLastRunExpiredCount() {
+        return lastRunExpiredCount;
+    }
+
+    /**
+     * Returns the number of runs that spent their time budget with sessions still to expire.
+     *
+     * @return the unfinished run count
+     */
+    public long getUnfinishedRunCount() {
+        return unfinishedRunCount.get();
+    }
+
+    /**
+     * Returns the number of runs that stopped because the storage threw an exception.
+     *
+     * @return the failed run count
+     */
+    public long getFailedRunCount() {
+        return failedRunCount.get();
+    }
+
     /**
      * Shuts down the background scheduler. Idempotent: subsequent calls have no effect.
      */
@@ -16,6 +16,8 @@
 
 package io.jdev.miniprofiler.storage;
 
+import io.jdev.miniprofiler.MiniProfilerConfig;
+
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -60,6 +62,9 @@ public interface StorageLocator {
      * <p>Falls back to a new {@link MapStorage} if no locator succeeds,
      * though in practice the {@link MapStorageLocator} always succeeds.</p>
      *
+     * <p>The located storage is wrapped in a {@link CachingStorage} when {@code storage.cache}
+     * is set; see {@link CachingStorage#fromConfig(Storage, MiniProfilerConfig)}.</p>
+     *
      * @return the located {@link Storage}
      */
     static Storage findStorage() {
@@ -71,7 +76,7 @@ public interface StorageLocator {
         for (StorageLocator locator : locators) {
             Optional<Storage> storage = locator.locate();
             if (storage.isPresent()) {
-                return storage.get();
+                return CachingStorage.fromConfig(storage.get(), new MiniProfilerConfig());
             }
         }
         throw new IllegalStateException("No StorageLocator returned a storage. Ensure miniprofiler-core is on the classpath.");
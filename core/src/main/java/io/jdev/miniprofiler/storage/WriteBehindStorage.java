@@ -0,0 +1,644 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage;
+
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link Storage} decorator that takes saves off the calling thread.
+ *
+ * <p>{@link #save(ProfilerImpl)} puts the session on a bounded queue and returns immediately.
+ * One or more daemon flusher threads drain the queue in batches and write to the delegate
+ * storage. Until a session has been flushed it is served from the queue, so {@link #load(UUID)},
+ * the list methods, {@link #cursorFor(UUID)} and {@link #getUnviewedIds(String)} see it
+ * straight away and the UI never gets a 404 for a session that is still waiting to be written.
+ * Un-viewed flags set on a queued session are applied once the session itself has been written.</p>
+ *
+ * <p>When the queue is full, the {@link OverflowPolicy} decides whether to drop the oldest
+ * queued session, drop the new one, or block the caller until there is room.</p>
+ *
+ * <p>Each batch is written with {@link Storage#saveAll(Collection)} and the un-viewed flags with
+ * {@link Storage#setUnviewedAll(String, Collection)}, so a delegate that can write in bulk saves
+ * round trips. If the batch fails, its sessions are retried one at a time. Sessions that still
+ * fail are counted by {@link #getFailedCount()}, and the first failure is logged at
+ * {@code WARNING}, then at most one a minute.</p>
+ *
+ * <p>Saving a session again while it is still queued replaces the queued copy. Writes of the same
+ * session never overlap, so with several flushers an older copy can't overwrite a newer one.</p>
+ *
+ * <p>Expiry goes straight to the delegate, in batches if the delegate supports them.</p>
+ *
+ * <p>{@link #close()} lets the flushers finish the batch they are writing, writes out whatever is
+ * still queued and then closes the delegate.</p>
+ */
+public class WriteBehindStorage implements BatchExpiringStorage {
+
+    /** Default maximum number of queued sessions. */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /** Default maximum number of sessions written per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private static final long FAILURE_LOG_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindStorage.class.getName());
+
+    /** What to do when a session is saved while the queue is full. */
+    public enum OverflowPolicy {
+        /** Discard the oldest queued session to make room for the new one. */
+        DropOldest,
+        /** Discard the session being saved. */
+        DropNewest,
+        /** Block the saving thread until there is room in the queue. */
+        Block
+    }
+
+    private final Storage delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final BlockingQueue<Pending> queue;
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    // ids currently being written to the delegate, guarded by its own monitor for waiting
+    private final Set<UUID> writing = new HashSet<>();
+    private final List<Thread> flushers = new ArrayList<>();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong nextFailureLogMillis = new AtomicLong(Long.MIN_VALUE);
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance with default capacity, batch size and a single flusher thread,
+     * dropping the oldest session on overflow.
+     *
+     * @param delegate the storage to write to
+     */
+    public WriteBehindStorage(Storage delegate) {
+        this(delegate, DEFAULT_CAPACITY, OverflowPolicy.DropOldest, 1, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate       the storage to write to
+     * @param capacity       the maximum number of sessions waiting to be written
+     * @param overflowPolicy what to do when the queue is full
+     * @param flusherThreads the number of background threads writing to the delegate
+     * @param batchSize      the maximum number of sessions a flusher takes off the queue at once
+     */
+    public WriteBehindStorage(Storage delegate, int capacity, OverflowPolicy overflowPolicy, int flusherThreads, int batchSize) {
+        if (capacity < 1 || flusherThreads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("capacity, flusherThreads and batchSize must all be at least 1");
+        }
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < flusherThreads; i++) {
+            Thread t = new Thread(this::flushLoop, "miniprofiler-write-behind-" + i);
+            t.setDaemon(true);
+            flushers.add(t);
+        }
+        flushers.forEach(Thread::start);
+    }
+
+    /**
+     * Returns the storage that sessions are written to.
+     *
+     * @return the delegate storage
+     */
+    public Storage getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the total number of sessions accepted onto the queue.
+     *
+     * @return the number of queued sessions since creation
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Returns the total number of sessions discarded because the queue was full.
+     *
+     * @return the number of dropped sessions since creation
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the total number of sessions written to the delegate.
+     *
+     * @return the number of flushed sessions since creation
+     */
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    /**
+     * Returns the total number of sessions the delegate failed to save.
+     *
+     * @return the number of failed saves since creation
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of sessions currently waiting to be written.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void save(ProfilerImpl profiler) {
+        if (closed) {
+            delegate.save(profiler);
+            return;
+        }
+        Pending entry = new Pending(profiler);
+        Pending previous = pending.put(profiler.getId(), entry);
+        if (previous != null) {
+            // re-saved while still queued (e.g. client timings arriving), carry over un-viewed flags
+            // and drop the stale copy; if it's already being written, write() skips or orders it
+            entry.inheritUsers(previous);
+            queue.remove(previous);
+        }
+        if (enqueue(entry)) {
+            queuedCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+            pending.remove(profiler.getId(), entry);
+        }
+    }
+
+    private boolean enqueue(Pending entry) {
+        switch (overflowPolicy) {
+            case Block:
+                try {
+                    queue.put(entry);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DropNewest:
+                return queue.offer(entry);
+            case DropOldest:
+            default:
+                while (!queue.offer(entry)) {
+                    Pending evicted = queue.poll();
+                    if (evicted != null) {
+                        droppedCount.incrementAndGet();
+                        pending.remove(evicted.profiler.getId(), evicted);
+                    }
+                }
+                return true;
+        }
+    }
+
+    @Override
+    public ProfilerImpl load(UUID id) {
+        Pending entry = pending.get(id);
+        return entry != null ? entry.profiler : delegate.load(id);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        long startMs = start != null ? start.getTime() : 0;
+        long finishMs = finish != null ? finish.getTime() : Long.MAX_VALUE;
+        // snapshot the queue before asking the delegate: a session leaves the queue only once it's stored
+        List<ProfilerImpl> queued = queued(p -> p.getStarted() >= startMs && p.getStarted() <= finishMs);
+        Collection<UUID> stored = delegate.list(maxResults, start, finish, orderBy);
+        if (queued.isEmpty()) {
+            return stored;
+        }
+        // merge by start time; stored sessions need loading for that, but only the few being merged
+        List<ProfilerImpl> merged = new ArrayList<>(queued);
+        Set<UUID> seen = queued.stream().map(ProfilerImpl::getId).collect(Collectors.toSet());
+        for (UUID id : stored) {
+            if (!seen.contains(id)) {
+                ProfilerImpl p = delegate.load(id);
+                if (p != null) {
+                    merged.add(p);
+                }
+            }
+        }
+        Comparator<ProfilerImpl> cmp = Comparator.comparingLong(ProfilerImpl::getStarted);
+        if (orderBy == ListResultsOrder.Descending) {
+            cmp = cmp.reversed();
+        }
+        return merged.stream()
+            .sorted(cmp)
+            .limit(maxResults)
+            .map(ProfilerImpl::getId)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        long startMs = start != null ? start.getTime() : 0;
+        long finishMs = finish != null ? finish.getTime() : Long.MAX_VALUE;
+        List<ProfilerImpl> queued = queued(p -> p.getStarted() >= startMs && p.getStarted() <= finishMs);
+        return merge(queued, delegate.listSummaries(maxResults, start, finish, orderBy), maxResults, orderBy);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        if (pending.isEmpty()) {
+            return delegate.list(maxResults, after, orderBy);
+        }
+        return listSummaries(maxResults, after, orderBy).stream()
+            .map(ProfilerSummary::getId)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        List<ProfilerImpl> queued = queued(p -> after == null || after.isFollowedBy(p.getStarted(), p.getId(), orderBy));
+        return merge(queued, delegate.listSummaries(maxResults, after, orderBy), maxResults, orderBy);
+    }
+
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        Pending entry = pending.get(id);
+        return entry != null ? ListCursor.of(entry.profiler.getStarted(), id) : delegate.cursorFor(id);
+    }
+
+    private List<ProfilerImpl> queued(Predicate<ProfilerImpl> filter) {
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return pending.values().stream()
+            .map(p -> p.profiler)
+            .filter(filter)
+            .collect(Collectors.toList());
+    }
+
+    private static List<ProfilerSummary> merge(List<ProfilerImpl> queued, List<ProfilerSummary> stored,
+                                               int maxResults, ListResultsOrder orderBy) {
+        if (queued.isEmpty()) {
+            return stored;
+        }
+        List<ProfilerSummary> merged = queued.stream()
+            .map(ProfilerImpl::toSummary)
+            .collect(Collectors.toList());
+        Set<UUID> seen = merged.stream().map(ProfilerSummary::getId).collect(Collectors.toSet());
+        for (ProfilerSummary summary : stored) {
+            if (!seen.contains(summary.getId())) {
+                merged.add(summary);
+            }
+        }
+        return merged.stream()
+            .sorted(ListCursor.comparator(orderBy))
+            .limit(maxResults)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void setUnviewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        Pending entry = pending.get(id);
+        if (entry == null || !entry.addUser(user)) {
+            delegate.setUnviewed(user, id);
+        }
+    }
+
+    @Override
+    public void setViewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        Pending entry = pending.get(id);
+        if (entry == null || !entry.removeUser(user)) {
+            delegate.setViewed(user, id);
+        }
+    }
+
+    @Override
+    public Collection<UUID> getUnviewedIds(String user) {
+        Collection<UUID> stored = delegate.getUnviewedIds(user);
+        if (user == null || pending.isEmpty()) {
+            return stored;
+        }
+        Set<UUID> result = new LinkedHashSet<>(stored);
+        for (Pending entry : pending.values()) {
+            if (entry.hasUser(user)) {
+                result.add(entry.profiler.getId());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+        pending.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public void expireOlderThan(Instant cutoff) {
+        delegate.expireOlderThan(cutoff);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the delegate can't expire in batches, this expires everything before the cutoff
+     * and returns zero.</p>
+     */
+    @Override
+    public int expireBatchOlderThan(Instant cutoff, int maxSessions) {
+        if (!(delegate instanceof BatchExpiringStorage)) {
+            expireOlderThan(cutoff);
+            return 0;
+        }
+        return ((BatchExpiringStorage) delegate).expireBatchOlderThan(cutoff, maxSessions);
+    }
+
+    /**
+     * Writes out everything currently queued on the calling thread.
+     */
+    public void flush() {
+        List<Pending> batch = new ArrayList<>();
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stops the flusher threads, writes out any queued sessions and closes the delegate.
+     * Flushers are given time to finish the batch they are writing and are only interrupted
+     * if they don't stop within that time. Idempotent: subsequent calls have no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // flushers see the flag within one poll interval; interrupting them mid-write could fail
+        // interruptible I/O in the delegate and lose the batch
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        for (Thread t : flushers) {
+            try {
+                t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Thread t : flushers) {
+            if (t.isAlive()) {
+                t.interrupt();
+            }
+        }
+        flush();
+        delegate.close();
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!closed) {
+            try {
+                Pending first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // close() gave up waiting, remaining entries are flushed by close()
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Pending> claimed = new ArrayList<>(batch.size());
+        List<Pending> deferred = new ArrayList<>();
+        synchronized (writing) {
+            for (Pending entry : batch) {
+                if (writing.add(entry.profiler.getId())) {
+                    claimed.add(entry);
+                } else {
+                    deferred.add(entry);
+                }
+            }
+        }
+        try {
+            writeBatch(current(claimed));
+        } finally {
+            release(claimed);
+        }
+        // another thread is writing an earlier copy of these sessions, write them once it's done
+        for (Pending entry : deferred) {
+            claim(entry);
+            try {
+                if (pending.get(entry.profiler.getId()) == entry) {
+                    writeOne(entry);
+                }
+            } finally {
+                pending.remove(entry.profiler.getId(), entry);
+                release(Collections.singletonList(entry));
+            }
+        }
+    }
+
+    // entries re-saved since they were queued are stale, the newer copy is written instead
+    private List<Pending> current(List<Pending> entries) {
+        List<Pending> result = new ArrayList<>(entries.size());
+        for (Pending entry : entries) {
+            if (pending.get(entry.profiler.getId()) == entry) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private void claim(Pending entry) {
+        boolean interrupted = false;
+        synchronized (writing) {
+            while (!writing.add(entry.profiler.getId())) {
+                try {
+                    writing.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release(List<Pending> entries) {
+        synchronized (writing) {
+            for (Pending entry : entries) {
+                writing.remove(entry.profiler.getId());
+            }
+            writing.notifyAll();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<ProfilerImpl> profilers = new ArrayList<>(batch.size());
+            for (Pending entry : batch) {
+                profilers.add(entry.profiler);
+            }
+            try {
+                delegate.saveAll(profilers);
+            } catch (RuntimeException e) {
+                // retry one at a time so that one bad session doesn't lose the rest of the batch
+                batch.forEach(this::writeOne);
+                return;
+            }
+            flushedCount.addAndGet(batch.size());
+            Map<String, List<UUID>> unviewed = new LinkedHashMap<>();
+            for (Pending entry : batch) {
+                for (String user : entry.markWritten()) {
+                    unviewed.computeIfAbsent(user, u -> new ArrayList<>()).add(entry.profiler.getId());
+                }
+            }
+            for (Map.Entry<String, List<UUID>> users : unviewed.entrySet()) {
+                try {
+                    delegate.setUnviewedAll(users.getKey(), users.getValue());
+                } catch (RuntimeException e) {
+                    failed(users.getValue().size(), "mark " + users.getValue().size() + " sessions unviewed for "
+                        + users.getKey(), e);
+                }
+            }
+        } finally {
+            for (Pending entry : batch) {
+                pending.remove(entry.profiler.getId(), entry);
+            }
+        }
+    }
+
+    private void writeOne(Pending entry) {
+        ProfilerImpl profiler = entry.profiler;
+        try {
+            delegate.save(profiler);
+            flushedCount.incrementAndGet();
+            for (String user : entry.markWritten()) {
+                delegate.setUnviewed(user, profiler.getId());
+            }
+        } catch (RuntimeException e) {
+            failed(1, "save session " + profiler.getId(), e);
+        }
+    }
+
+    // a delegate that is down fails every write, so only the first and then one a minute are logged
+    private void failed(int count, String what, RuntimeException e) {
+        long total = failedCount.addAndGet(count);
+        long now = System.currentTimeMillis();
+        long next = nextFailureLogMillis.get();
+        if (now >= next && nextFailureLogMillis.compareAndSet(next, now + FAILURE_LOG_INTERVAL_MS)) {
+            LOGGER.log(Level.WARNING, "Failed to " + what + " (" + total + " failed so far; further failures are"
+                + " logged at most once a minute)", e);
+        }
+    }
+
+    private static class Pending {
+        final ProfilerImpl profiler;
+        private final Set<String> unviewedUsers = new LinkedHashSet<>();
+        private boolean written;
+
+        Pending(ProfilerImpl profiler) {
+            this.profiler = profiler;
+        }
+
+        synchronized boolean addUser(String user) {
+            if (written) {
+                return false;
+            }
+            unviewedUsers.add(user);
+            return true;
+        }
+
+        synchronized boolean removeUser(String user) {
+            if (written) {
+                return false;
+            }
+            unviewedUsers.remove(user);
+            return true;
+        }
+
+        synchronized boolean hasUser(String user) {
+            return unviewedUsers.contains(user);
+        }
+
+        synchronized List<String> markWritten() {
+            written = true;
+            return new ArrayList<>(unviewedUsers);
+        }
+
+        void inheritUsers(Pending previous) {
+            List<String> users;
+            synchronized (previous) {
+                users = new ArrayList<>(previous.unviewedUsers);
+            }
+            synchronized (this) {
+                unviewedUsers.addAll(users);
+            }
+        }
+    }
+}
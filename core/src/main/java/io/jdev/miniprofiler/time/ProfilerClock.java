@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.time;
+
+/**
+ * The time source used when profiling.
+ *
+ * <p>A profiling session reads wall-clock time once, when it starts, to record when it
+ * happened. Every step and custom timing within the session is then measured against the
+ * monotonic {@link #nanoTime()}, so sub-millisecond durations are not lost and a wall-clock
+ * adjustment part way through a request cannot produce negative durations.</p>
+ *
+ * <p>The default, {@link #SYSTEM}, is backed by {@link System#currentTimeMillis()} and
+ * {@link System#nanoTime()}. Other implementations are mostly useful in tests.</p>
+ *
+ * <p>Implementations must be thread-safe, as they are shared across all requests.</p>
+ */
+public interface ProfilerClock {
+
+    /** A clock backed by {@link System#currentTimeMillis()} and {@link System#nanoTime()}. This is the default. */
+    ProfilerClock SYSTEM = new ProfilerClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Returns the current wall-clock time, used to anchor a session.
+     *
+     * @return milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns the current value of a monotonic time source, with the same semantics
+     * as {@link System#nanoTime()}: only differences between two values are meaningful.
+     *
+     * @return the current monotonic time in nanoseconds
+     */
+    long nanoTime();
+}
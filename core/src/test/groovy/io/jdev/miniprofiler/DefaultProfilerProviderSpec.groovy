@@ -16,8 +16,13 @@
 
 package io.jdev.miniprofiler
 
+import groovy.json.JsonSlurper
+import io.jdev.miniprofiler.id.IdGenerator
 import io.jdev.miniprofiler.internal.NullProfiler
+import io.jdev.miniprofiler.sampling.RetentionPolicy
+import io.jdev.miniprofiler.sampling.SamplingPolicy
 import io.jdev.miniprofiler.storage.MapStorage
+import io.jdev.miniprofiler.storage.Storage
 import io.jdev.miniprofiler.user.UserProvider
 import spock.lang.Specification
 
@@ -76,6 +81,63 @@ class DefaultProfilerProviderSpec extends Specification {
         otherProfiler == executorService.submit({ profilerProvider.current }).get()
     }
 
+    void "returns null profiler when sampling policy declines the session"() {
+        given:
+        profilerProvider.samplingPolicy = { it != '/skip' } as SamplingPolicy
+
+        when:
+        Profiler skipped = profilerProvider.start('/skip')
+
+        then:
+        skipped == NullProfiler.INSTANCE
+        !profilerProvider.hasCurrent()
+
+        when:
+        skipped.stop()
+        Profiler profiled = profilerProvider.start('/profile')
+        profiled.stop()
+
+        then:
+        profiled.active
+        storage.load(profiled.id) != null
+        storage.list(10, null, null, Storage.ListResultsOrder.Descending).size() == 1
+    }
+
+    void "only saves stopped sessions that the retention policy keeps"() {
+        given:
+        profilerProvider.retentionPolicy = { it.name == '/keep' } as RetentionPolicy
+
+        when:
+        Profiler dropped = profilerProvider.start('/drop')
+        dropped.stop()
+        Profiler kept = profilerProvider.start('/keep')
+        kept.stop()
+
+        then:
+        storage.load(dropped.id) == null
+        storage.load(kept.id) != null
+        storage.getUnviewedIds('tom') as List == [kept.id]
+    }
+
+    void "uses provider id generator for timing and custom timing ids but not session ids"() {
+        given:
+        def counter = new AtomicInteger(0)
+        profilerProvider.idGenerator = { new UUID(0, counter.incrementAndGet()) } as IdGenerator
+
+        when:
+        Profiler profiler = profilerProvider.start('/ids')
+        profiler.step('child').stop()
+        profiler.addCustomTiming('sql', 'query', 'select 1', 5)
+        profiler.stop()
+        def root = new JsonSlurper().parseText(profiler.asUiJson()).Root
+
+        then:
+        profiler.id.mostSignificantBits != 0
+        root.Id == new UUID(0, 1).toString()
+        root.Children*.Id == [new UUID(0, 2).toString()]
+        root.CustomTimings.sql*.Id == [new UUID(0, 3).toString()]
+    }
+
     void "close is idempotent: storage.close() called only once even if close() is called multiple times"() {
         given:
         def closeCount = new AtomicInteger(0)
@@ -69,6 +69,17 @@ class MiniProfilerConfigSpec extends Specification {
         config.getProperty('b', 99) == 99
     }
 
+    void 'handles doubles correctly'() {
+        given:
+        def sysProps = ['miniprofiler.a': '0.25', 'miniprofiler.b': 'none'] as Properties
+        def config = new MiniProfilerConfig(sysProps, null)
+
+        expect:
+        config.getProperty('a', 1.0d) == 0.25d
+        config.getProperty('b', 1.0d) == 1.0d
+        config.getProperty('c', 1.0d) == 1.0d
+    }
+
     void 'handles Integer correctly, returning null for null-marker values'() {
         given:
         def sysProps = ['miniprofiler.a': '1', 'miniprofiler.b': ''] as Properties
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.format
+
+import io.jdev.miniprofiler.DefaultProfilerProvider
+import spock.lang.Specification
+
+class CachingCommandFormatterSpec extends Specification {
+
+    CommandFormatter delegate = Mock(CommandFormatter)
+
+    void "formats each command once"() {
+        given:
+        def formatter = new CachingCommandFormatter(delegate, 10)
+
+        when:
+        def results = (1..5).collect { formatter.format('select 1') }
+
+        then:
+        1 * delegate.format('select 1') >> 'SELECT 1'
+        results == ['SELECT 1'] * 5
+    }
+
+    void "stays within its bound"() {
+        given:
+        def formatter = new CachingCommandFormatter(delegate, 50)
+        delegate.format(_) >> { String s -> s.toUpperCase() }
+
+        when:
+        (1..1000).each { assert formatter.format("select $it") == "SELECT $it".toString() }
+
+        then:
+        formatter.size() <= 50
+    }
+
+    void "does not cache very long commands"() {
+        given:
+        def formatter = new CachingCommandFormatter(delegate, 10)
+        def command = 'x' * (CachingCommandFormatter.MAX_CACHED_COMMAND_LENGTH + 1)
+
+        when:
+        formatter.format(command)
+        formatter.format(command)
+
+        then:
+        2 * delegate.format(command) >> 'formatted'
+        formatter.size() == 0
+    }
+
+    void "wrap leaves formatters that don't need a cache alone"() {
+        expect:
+        CachingCommandFormatter.wrap(NoopCommandFormatter.INSTANCE, 10).is(NoopCommandFormatter.INSTANCE)
+        CachingCommandFormatter.wrap(delegate, 0).is(delegate)
+        CachingCommandFormatter.wrap(delegate, 10) instanceof CachingCommandFormatter
+    }
+
+    void "provider caches formatter results and drops the cache when the formatter changes"() {
+        given:
+        def provider = new DefaultProfilerProvider()
+        provider.setCommandFormatter('sql', delegate)
+
+        when:
+        provider.getCommandFormatter('sql').format('select 1')
+        provider.getCommandFormatter('sql').format('select 1')
+
+        then:
+        1 * delegate.format('select 1') >> 'SELECT 1'
+
+        when:
+        def replacement = Mock(CommandFormatter)
+        provider.setCommandFormatter('sql', replacement)
+        def result = provider.getCommandFormatter('sql').format('select 1')
+
+        then:
+        1 * replacement.format('select 1') >> 'select one'
+        result == 'select one'
+    }
+
+    void "provider cache can be disabled"() {
+        given:
+        def provider = new DefaultProfilerProvider()
+        provider.commandFormatterCacheSize = 0
+        provider.setCommandFormatter('sql', delegate)
+
+        expect:
+        provider.getCommandFormatter('sql').is(delegate)
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.id
+
+import io.jdev.miniprofiler.MiniProfilerConfig
+import spock.lang.Specification
+
+class IdGeneratorSpec extends Specification {
+
+    void "fast generator produces version 4 uuids in the standard string format"() {
+        when:
+        UUID id = IdGenerator.FAST.generate()
+
+        then:
+        id.version() == 4
+        id.variant() == 2
+        id.toString() ==~ /[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}/
+        UUID.fromString(id.toString()) == id
+    }
+
+    void "fast generator does not repeat ids across threads"() {
+        given:
+        def ids = Collections.synchronizedSet(new HashSet<UUID>())
+        def threads = (1..8).collect {
+            Thread.start {
+                10000.times { ids << IdGenerator.FAST.generate() }
+            }
+        }
+
+        when:
+        threads*.join()
+
+        then:
+        ids.size() == 80000
+    }
+
+    void "secure generator uses random uuids"() {
+        expect:
+        IdGenerator.SECURE.generate().version() == 4
+        IdGenerator.SECURE.generate() != IdGenerator.SECURE.generate()
+    }
+
+    void "builds generator from config"() {
+        given:
+        def props = new Properties()
+        if (secure != null) {
+            props.setProperty('ids.secureRandom', secure)
+        }
+
+        expect:
+        IdGenerator.fromConfig(new MiniProfilerConfig(new Properties(), props)).is(expected)
+
+        where:
+        secure  | expected
+        null    | IdGenerator.FAST
+        'false' | IdGenerator.FAST
+        'true'  | IdGenerator.SECURE
+    }
+}
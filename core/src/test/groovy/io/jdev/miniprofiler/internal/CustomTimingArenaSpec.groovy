@@ -0,0 +1,157 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import io.jdev.miniprofiler.LazyCommand
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CustomTimingArenaSpec extends Specification {
+
+    CustomTimingArena arena = new CustomTimingArena()
+
+    void "stores entries across chunk boundaries"() {
+        when:
+        def ids = (0..<1000).collect { UUID.randomUUID() }
+        ids.eachWithIndex { id, i -> arena.add(id, 'sql', 'Query', "select $i", i * 10L, i) }
+
+        then:
+        arena.size() == 1000
+        (0..<1000).every { i ->
+            arena.getId(i) == ids[i] &&
+                arena.getCommand(i) == "select $i".toString() &&
+                arena.getStartNanoseconds(i) == i * 10L &&
+                arena.getDurationNanoseconds(i) == i &&
+                arena.getNext(i) == CustomTimingArena.NONE
+        }
+    }
+
+    void "repeated strings are stored once"() {
+        when:
+        int first = arena.add(UUID.randomUUID(), 'sql', 'Query', new String('select 1'), 0, 1)
+        int second = arena.add(UUID.randomUUID(), 'sql', 'Query', new String('select 1'), 0, 1)
+
+        then:
+        arena.getCommand(first).is(arena.getCommand(second))
+        arena.getType(first).is(arena.getType(second))
+    }
+
+    void "null strings round trip"() {
+        when:
+        int index = arena.add(UUID.randomUUID(), 'sql', null, null, 0, -1)
+
+        then:
+        arena.getExecuteType(index) == null
+        arena.getCommand(index) == null
+    }
+
+    void "lazy commands are rendered once, when first read"() {
+        given:
+        int renders = 0
+        int index = arena.addLazy(UUID.randomUUID(), 'sql', 'Query', { renders++; 'select 1' } as LazyCommand, 0, 1)
+
+        expect:
+        renders == 0
+
+        when:
+        def first = arena.getCommand(index)
+        def second = arena.getCommand(index)
+
+        then:
+        first == 'select 1'
+        second == 'select 1'
+        renders == 1
+    }
+
+    void "lazy commands are rendered before the arena is serialized"() {
+        given:
+        int index = arena.addLazy(UUID.randomUUID(), 'sql', 'Query', { 'select 1' } as LazyCommand, 0, 1)
+
+        when:
+        def bytes = new ByteArrayOutputStream()
+        new ObjectOutputStream(bytes).withCloseable { it.writeObject(arena) }
+        def copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject() as CustomTimingArena
+
+        then:
+        copy.getCommand(index) == 'select 1'
+    }
+
+    void "stop only sets the duration of a running timing once"() {
+        given:
+        int index = arena.add(UUID.randomUUID(), 'sql', 'Query', 'select 1', 0, -1)
+
+        when:
+        arena.stop(index, 5)
+        arena.stop(index, 9)
+
+        then:
+        arena.getDurationNanoseconds(index) == 5
+    }
+
+    void "custom timings added concurrently to one step are all kept in order per thread"() {
+        given:
+        def profiler = new ProfilerImpl('arena', ProfileLevel.Info, new TestProfilerProvider())
+        def root = profiler.root as TimingImpl
+        int threads = 8
+        int perThread = 2000
+        ExecutorService executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def futures = (0..<threads).collect { t ->
+            executor.submit({
+                perThread.times { i -> root.addCustomTiming('sql', 'Query', "t$t-$i", 1) }
+            } as Callable)
+        }
+        futures*.get()
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+        def commands = root.customTimings.sql*.commandString
+
+        then:
+        commands.size() == threads * perThread
+        commands.toSet().size() == threads * perThread
+        (0..<threads).every { t ->
+            def mine = commands.findAll { it.startsWith("t$t-") }
+            mine == (0..<perThread).collect { "t$t-$it".toString() }
+        }
+    }
+
+    void "custom timings survive a json round trip"() {
+        given:
+        def profiler = new ProfilerImpl('arena', ProfileLevel.Info, new TestProfilerProvider())
+        def root = profiler.root as TimingImpl
+        root.addCustomTiming('sql', 'Query', 'select 1', 3)
+        root.addCustomTiming('http', 'GET', '/foo', 4)
+        root.addCustomTiming('sql', 'Update', 'update foo', 5)
+        profiler.stop()
+
+        when:
+        def copy = ProfilerImpl.fromJson(profiler.toJSONString())
+        def customTimings = copy.root.customTimings
+
+        then:
+        customTimings.keySet() as List == ['sql', 'http']
+        customTimings.sql*.commandString == ['select 1', 'update foo']
+        customTimings.http*.durationMilliseconds == [4L]
+    }
+}
@@ -18,9 +18,12 @@ package io.jdev.miniprofiler.internal
 
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import groovy.json.JsonSlurper
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.format.CommandFormatter
 import io.jdev.miniprofiler.format.NoopCommandFormatter
+import io.jdev.miniprofiler.test.TestProfilerProvider
 import spock.lang.Specification
 
 class CustomTimingImplSpec extends Specification {
@@ -68,4 +71,51 @@ class CustomTimingImplSpec extends Specification {
             'StackTraceSnippet'
         ]
     }
+
+    void "formats a command at most once however often the session is serialised"() {
+        given:
+        def formatter = Mock(CommandFormatter)
+        def formattingProvider = Mock(ProfilerProvider) {
+            getCommandFormatter('sql') >> formatter
+        }
+        def p = new ProfilerImpl("formatting", ProfileLevel.Info, formattingProvider)
+        p.addCustomTiming('sql', 'query', 'select 1', 1)
+
+        when:
+        3.times { p.toJSONString() }
+        def customTiming = p.root.customTimings.sql[0]
+
+        then:
+        1 * formatter.format('select 1') >> 'SELECT 1'
+        customTiming.toJson().CommandString == 'SELECT 1'
+        customTiming.commandString == 'select 1'
+    }
+
+    void "deferred formatting stores raw commands and formats them when results are shown"() {
+        given:
+        def deferringProvider = new TestProfilerProvider()
+        deferringProvider.commandFormattingDeferred = true
+        deferringProvider.setCommandFormatter('sql', Stub(CommandFormatter) {
+            format(_) >> { String s -> s.toUpperCase() }
+        })
+        def p = new ProfilerImpl("deferred", ProfileLevel.Info, deferringProvider)
+        p.addCustomTiming('sql', 'query', 'select 1', 1)
+        p.stop()
+
+        when:
+        def stored = new JsonSlurper().parseText(p.toJSONString())
+
+        then:
+        stored.CommandsFormatted == false
+        stored.Root.CustomTimings.sql[0].CommandString == 'select 1'
+
+        when:
+        def loaded = ProfilerImpl.fromJson(p.toJSONString())
+        loaded.formatCommands(deferringProvider)
+        def shown = new JsonSlurper().parseText(loaded.asUiJson())
+
+        then:
+        !shown.containsKey('CommandsFormatted')
+        shown.Root.CustomTimings.sql[0].CommandString == 'SELECT 1'
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import org.json.simple.JSONValue
+import spock.lang.Specification
+
+import java.time.Instant
+
+class JsonReaderSpec extends Specification {
+
+    void "reads values the same as json-simple"() {
+        expect:
+        new JsonReader(new StringReader(json)).readValue() == JSONValue.parseWithException(json)
+
+        where:
+        json << [
+            '{}',
+            '[]',
+            ' { "a" : [ 1 , -2.5 , 1e3 , true , false , null , "x" ] , "b" : { "c" : {} } } ',
+            '"escapes \\" \\\\ \\/ \\b \\f \\n \\r \\t \\u00e9 \\u2028"',
+            '9223372036854775807',
+            '[0.001, 12345678.25, -0]',
+        ]
+    }
+
+    void "reads strings and escapes that straddle the read buffer"() {
+        given:
+        def value = ('a' * 8190) + '\\"\u00e9\n' + ('b' * 9000) + '\u2028'
+        def json = JSONValue.toJSONString([value])
+
+        when:
+        def parsed = new JsonReader(new OneCharAtATimeReader(json)).readValue()
+
+        then:
+        parsed == [value]
+    }
+
+    void "rejects malformed json"() {
+        when:
+        def reader = new JsonReader(new StringReader(json))
+        reader.readValue()
+        reader.endDocument()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        json << ['', '{', '{"a"}', '{"a":1,}', '[1 2]', '"unterminated', '"bad \\x escape"', 'nul', '{} {}', '{a:1}']
+    }
+
+    void "round trips a profiler through a reader and a stream"() {
+        given:
+        def profiler = new ProfilerImpl('caf\u00e9', ProfileLevel.Info, new TestProfilerProvider())
+        def step = profiler.step('step')
+        profiler.addCustomTiming('sql', 'Query', 'select "x" from y', 2)
+        profiler.addCustomTiming('http', 'GET', '/things', 3)
+        step.stop()
+        profiler.addCustomLink('self', 'http://example.com/')
+        profiler.clientTimings = [new ClientTiming('fetchStart', 1, 12L)]
+        profiler.stop()
+        def json = profiler.asUiJson()
+
+        expect:
+        ProfilerImpl.fromJson(new StringReader(json)).asUiJson() == json
+        ProfilerImpl.fromJson(new ByteArrayInputStream(json.getBytes('UTF-8'))).asUiJson() == json
+    }
+
+    void "fields may arrive in any order and unknown fields are skipped"() {
+        given:
+        def json = '''{
+            "Root": {
+                "CustomTimings": {"sql": [{"Unknown": [1, {"x": null}], "StartMilliseconds": 1.5, "Id": "00000000-0000-0000-0000-000000000003",
+                                           "CommandString": "select 1", "DurationMilliseconds": 2}]},
+                "Children": [{"Name": "child", "Id": "00000000-0000-0000-0000-000000000002", "StartMilliseconds": 1, "DurationMilliseconds": null, "Children": null}],
+                "Name": "root",
+                "DurationMilliseconds": 10.25,
+                "StartMilliseconds": 0,
+                "Id": "00000000-0000-0000-0000-000000000001"
+            },
+            "HasUserViewed": false,
+            "User": "fred",
+            "Started": "2026-01-02T03:04:05.678Z",
+            "Name": "/foo",
+            "Id": "00000000-0000-0000-0000-000000000000"
+        }'''
+
+        when:
+        def profiler = ProfilerImpl.fromJson(new StringReader(json))
+        def root = profiler.root as TimingImpl
+
+        then:
+        profiler.id == new UUID(0, 0)
+        profiler.name == '/foo'
+        profiler.user == 'fred'
+        profiler.started == Instant.parse('2026-01-02T03:04:05.678Z').toEpochMilli()
+        root.name == 'root'
+        root.durationNanoseconds == 10_250_000
+        root.children*.name == ['child']
+        root.children[0].durationMilliseconds == null
+        root.customTimings.sql*.commandString == ['select 1']
+        root.customTimings.sql[0].startNanoseconds == 1_500_000
+    }
+
+    void "rejects a profiler without an id"() {
+        when:
+        ProfilerImpl.fromJson(new StringReader('{"Name": "x", "Started": "2026-01-02T03:04:05.678Z"}'))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    // Hands out one character per read, so that every token crosses a buffer refill
+    private static class OneCharAtATimeReader extends Reader {
+        private final String s
+        private int pos
+
+        OneCharAtATimeReader(String s) {
+            this.s = s
+        }
+
+        @Override
+        int read(char[] buf, int off, int len) {
+            if (pos == s.length()) {
+                return -1
+            }
+            buf[off] = s.charAt(pos++)
+            return 1
+        }
+
+        @Override
+        void close() {
+        }
+    }
+}
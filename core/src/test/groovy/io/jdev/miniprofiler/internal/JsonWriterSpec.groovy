@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import org.json.simple.JSONValue
+import spock.lang.Specification
+
+class JsonWriterSpec extends Specification {
+
+    void "strings are escaped as json-simple does"() {
+        given:
+        def out = new StringWriter()
+
+        when:
+        new JsonWriter(out).value(string)
+
+        then:
+        out.toString() == JSONValue.toJSONString(string)
+
+        where:
+        string << [
+            '',
+            'plain',
+            'quote " and backslash \\',
+            'select * from foo where a = \'/x/\'',
+            'tab\tnewline\ncr\rbackspace\bformfeed\f',
+            'control \u0001 \u001f del \u007f \u0085 \u009f',
+            'general punctuation \u2000 \u2028 \u20ac \u20ff \u2100',
+            'non-ascii \u00e9 \u4e2d \ud83d\ude00',
+        ]
+    }
+
+    void "numbers and literals are written as json-simple does"() {
+        given:
+        def out = new StringWriter()
+
+        when:
+        new JsonWriter(out).value((Object) value)
+
+        then:
+        out.toString() == JSONValue.toJSONString(value)
+
+        where:
+        value << [0L, -12L, Long.MAX_VALUE, 1.5d, 0.001d, 12345678.25d, 1.0E-4d, Double.NaN, Double.POSITIVE_INFINITY, true, false, null]
+    }
+
+    void "nested containers are comma separated"() {
+        given:
+        def out = new StringWriter()
+        def writer = new JsonWriter(out)
+
+        when:
+        writer.beginObject()
+        writer.name('a').beginArray().value(1L).beginObject().endObject().beginArray().endArray().value('x').endArray()
+        writer.name('b').value((String) null)
+        writer.name('c').beginObject().name('d').value(true).endObject()
+        writer.endObject()
+
+        then:
+        out.toString() == '{"a":[1,{},[],"x"],"b":null,"c":{"d":true}}'
+    }
+
+    void "profiler json is byte for byte the same as json-simple output"() {
+        given:
+        def profiler = new ProfilerImpl('/some/"uri"', ProfileLevel.Info, new TestProfilerProvider())
+        profiler.user = 'fred \u2028'
+        profiler.addCustomLink('self', 'http://example.com/a?b=c')
+        def first = profiler.step('first')
+        profiler.addCustomTiming('sql', 'Query', 'select * from foo where name = \'\\n\'', 2)
+        profiler.addCustomTiming('http', 'GET', '/api/things', 3)
+        profiler.addCustomTiming('sql', 'Update', 'update foo set bar = 1', 1)
+        profiler.step('nested').stop()
+        first.stop()
+        def running = profiler.customTiming('sql', 'Query', 'select 1')
+        def child = profiler.addChild('child')
+        child.step('in child').stop()
+        child.stop()
+        profiler.clientTimings = [new ClientTiming('fetchStart', 1, 12L), new ClientTiming('firstPaintTime', 20, null)]
+        profiler.stop()
+
+        expect:
+        running.durationMilliseconds == null
+        profiler.toJSONString() == JSONValue.toJSONString(plain(profiler))
+        profiler.asListJson() == JSONValue.toJSONString(listMap(plain(profiler) as Map))
+    }
+
+    void "profiler json can be written to a stream"() {
+        given:
+        def profiler = new ProfilerImpl('caf\u00e9', ProfileLevel.Info, new TestProfilerProvider())
+        profiler.stop()
+        def out = new ByteArrayOutputStream()
+
+        when:
+        profiler.writeUiJson(out)
+
+        then:
+        new String(out.toByteArray(), 'UTF-8') == profiler.asUiJson()
+    }
+
+    // Converts a tree of Jsonables into plain maps and lists, so that json-simple serialises every level itself
+    private static Object plain(Object value) {
+        if (value instanceof Jsonable) {
+            return plain(value.toJson())
+        } else if (value instanceof Map) {
+            def map = new LinkedHashMap()
+            value.each { k, v -> map.put(k, plain(v)) }
+            return map
+        } else if (value instanceof List) {
+            return value.collect { plain(it) }
+        }
+        return value
+    }
+
+    // The fields asListJson writes, in its order
+    private static Map listMap(Map map) {
+        def ordered = new LinkedHashMap()
+        ordered.Id = map.Id
+        ordered.Name = map.Name
+        ordered.ClientTimings = map.ClientTimings
+        ordered.Started = map.Started
+        ordered.HasUserViewed = false
+        ordered.MachineName = map.MachineName
+        ordered.User = map.User
+        ordered.DurationMilliseconds = map.DurationMilliseconds
+        ordered
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.Timing
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.stream.IntStream
+
+class ProfilerImplConcurrencySpec extends Specification {
+
+    static final int THREADS = Math.max(4, Runtime.runtime.availableProcessors())
+    static final int TASKS_PER_THREAD = 500
+
+    ProfilerImpl profiler = new ProfilerImpl('concurrent', ProfileLevel.Info, new TestProfilerProvider())
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS)
+
+    void cleanup() {
+        executor.shutdownNow()
+    }
+
+    void "no steps or custom timings are lost when many threads add to one session"() {
+        given:
+        def fanOut = profiler.step('fan out')
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (0..<THREADS).collect { int thread ->
+            executor.submit {
+                start.await()
+                TASKS_PER_THREAD.times { int task ->
+                    def step = profiler.step("task $thread-$task")
+                    profiler.addCustomTiming('sql', 'query', "select $task", 1)
+                    def ct = profiler.customTiming('http', 'GET', "/item/$task")
+                    def nested = profiler.step('nested')
+                    profiler.addCustomTiming('sql', 'query', 'select nested', 1)
+                    nested.stop()
+                    ct.stop()
+                    step.stop()
+                }
+            }
+        }
+        start.countDown()
+        futures*.get(30, TimeUnit.SECONDS)
+        fanOut.stop()
+        profiler.stop()
+
+        then: 'every task step is a direct child of the step that forked the work'
+        def tasks = profiler.root.children[0].children
+        profiler.root.children*.name == ['fan out']
+        tasks.size() == THREADS * TASKS_PER_THREAD
+        tasks*.name as Set == (0..<THREADS).collectMany { t -> (0..<TASKS_PER_THREAD).collect { "task $t-$it" as String } } as Set
+
+        and: 'each task kept its own nested step and custom timings'
+        tasks.every { Timing task ->
+            task.children*.name == ['nested'] &&
+                task.customTimings.sql.size() == 1 &&
+                task.customTimings.http.size() == 1 &&
+                task.children[0].customTimings.sql.size() == 1
+        }
+
+        and: 'the session has finished on every thread'
+        profiler.head == null
+        futures.every { it.done }
+    }
+
+    void "steps from a parallel stream are all recorded under the step that started the stream"() {
+        given:
+        int count = THREADS * 250
+
+        when:
+        profiler.step('parallel', {
+            IntStream.range(0, count).parallel().forEach { int i ->
+                def step = profiler.step("item $i")
+                profiler.addCustomTiming('sql', 'query', "select $i", 1)
+                step.stop()
+            }
+        } as Runnable)
+        profiler.stop()
+
+        then: 'the calling thread runs elements too, so some may nest under its own items, but none are lost'
+        def parallel = profiler.root.children[0]
+        def items = descendants(parallel)
+        parallel.name == 'parallel'
+        items*.name as Set == (0..<count).collect { "item $it" as String } as Set
+        items.size() == count
+        items.every { it.customTimings.sql.size() == 1 }
+        parallel.durationMilliseconds != null
+    }
+
+    void "child profilers can be added concurrently"() {
+        given:
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (0..<THREADS).collect { int thread ->
+            executor.submit {
+                start.await()
+                50.times {
+                    def child = profiler.addChild("child $thread-$it")
+                    child.step('work').stop()
+                    child.stop()
+                }
+            }
+        }
+        start.countDown()
+        futures*.get(30, TimeUnit.SECONDS)
+        profiler.stop()
+
+        then:
+        profiler.root.childProfilers.size() == THREADS * 50
+        profiler.root.childProfilers.every { it.root.children*.name == ['work'] }
+    }
+
+    void "a step stopped on a different thread from the one that opened it is popped from that thread"() {
+        given:
+        def worker = Executors.newSingleThreadExecutor()
+        def outer = profiler.step('outer')
+
+        when:
+        Timing inner = worker.submit({ profiler.step('inner') } as Callable).get()
+
+        then:
+        worker.submit({ profiler.head } as Callable).get() == inner
+        profiler.head == outer
+
+        when:
+        inner.stop()
+
+        then:
+        worker.submit({ profiler.head } as Callable).get() == outer
+        profiler.head == outer
+        outer.children == [inner]
+
+        cleanup:
+        worker.shutdownNow()
+    }
+
+    void "serialised json contains every concurrently added timing"() {
+        given:
+        def fanOut = profiler.step('fan out')
+
+        when:
+        def futures = (0..<THREADS).collect { int thread ->
+            executor.submit {
+                100.times {
+                    profiler.step("task $thread-$it").stop()
+                }
+            }
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        fanOut.stop()
+        profiler.stop()
+        def restored = ProfilerImpl.fromJson(profiler.asUiJson())
+
+        then:
+        restored.root.children[0].children.size() == THREADS * 100
+    }
+
+    private static List<Timing> descendants(Timing timing) {
+        timing.children.collectMany { [it] + descendants(it) }
+    }
+}
@@ -17,12 +17,16 @@
 package io.jdev.miniprofiler.internal
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import io.jdev.miniprofiler.LazyCommand
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.ProfilerProvider
 import io.jdev.miniprofiler.test.TestProfilerProvider
+import io.jdev.miniprofiler.time.ProfilerClock
 import spock.lang.Specification
 
 import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 class ProfilerImplSpec extends Specification {
 
@@ -160,6 +164,31 @@ class ProfilerImplSpec extends Specification {
         ]
     }
 
+    void "custom links added concurrently are all kept while the session is serialised"() {
+        given:
+        int threads = 4
+        int perThread = 500
+        def executor = Executors.newFixedThreadPool(threads + 1)
+        def adders = (0..<threads).collect { t ->
+            executor.submit({ perThread.times { i -> profiler.addCustomLink("t$t-$i", "http://example.com/$t/$i") } } as Runnable)
+        }
+        def serialiser = executor.submit({
+            while (!adders.every { it.done }) {
+                profiler.asUiJson()
+            }
+        } as Runnable)
+
+        when:
+        adders*.get(10, TimeUnit.SECONDS)
+        serialiser.get(10, TimeUnit.SECONDS)
+
+        then:
+        profiler.customLinks.size() == threads * perThread
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
     void "getCustomLinks returns null when no links added"() {
         expect:
         profiler.customLinks == null
@@ -286,4 +315,126 @@ class ProfilerImplSpec extends Specification {
         childCustom.path('ExecuteType').asText() == 'query'
     }
 
+    void "timings are measured in nanoseconds from the monotonic clock and rendered as fractional milliseconds"() {
+        given:
+        def clock = new FakeClock()
+        def provider = new TestProfilerProvider()
+        provider.clock = clock
+        def p = new ProfilerImpl('clock', ProfileLevel.Info, provider)
+
+        when:
+        clock.nanos += 250_000
+        def step = p.step('step')
+        clock.nanos += 1_500_000
+        def ct = step.customTiming('sql', 'query', 'select 1')
+        clock.nanos += 400_000
+        ct.stop()
+        step.stop()
+        p.stop()
+        def json = new ObjectMapper().readTree(p.asUiJson())
+        def stepJson = json.path('Root').path('Children').get(0)
+        def ctJson = stepJson.path('CustomTimings').path('sql').get(0)
+
+        then:
+        p.started == 1000
+        json.path('DurationMilliseconds').asDouble() == 2.15d
+        stepJson.path('StartMilliseconds').asDouble() == 0.25d
+        stepJson.path('DurationMilliseconds').asDouble() == 1.9d
+        ctJson.path('StartMilliseconds').asDouble() == 1.75d
+        ctJson.path('DurationMilliseconds').asDouble() == 0.4d
+
+        and: 'public millisecond accessors truncate'
+        step.durationMilliseconds == 1
+        ct.durationMilliseconds == 0
+        ((TimingImpl) step).durationNanoseconds == 1_900_000
+    }
+
+    void "custom timings added with a sub-millisecond duration serialise as fractional milliseconds"() {
+        given:
+        def clock = new FakeClock()
+        def provider = new TestProfilerProvider()
+        provider.clock = clock
+        def p = new ProfilerImpl('clock', ProfileLevel.Info, provider)
+
+        when:
+        clock.nanos += 1_000_000
+        p.addCustomTiming('sql', 'query', 'select * from a', 300, TimeUnit.MICROSECONDS)
+        p.addLazyCustomTiming('sql', 'query', { 'select * from b' } as LazyCommand, 450_000, TimeUnit.NANOSECONDS)
+        p.addCustomTiming('sql', 'query', 'select * from c', 2)
+        p.stop()
+        def timings = new ObjectMapper().readTree(p.asUiJson()).path('Root').path('CustomTimings').path('sql')
+
+        then:
+        timings.get(0).path('DurationMilliseconds').asDouble() == 0.3d
+        timings.get(0).path('StartMilliseconds').asDouble() == 0.7d
+        timings.get(1).path('DurationMilliseconds').asDouble() == 0.45d
+        timings.get(2).path('DurationMilliseconds').asDouble() == 2d
+    }
+
+    void "wall clock changes do not affect durations"() {
+        given:
+        def clock = new FakeClock()
+        def provider = new TestProfilerProvider()
+        provider.clock = clock
+        def p = new ProfilerImpl('clock', ProfileLevel.Info, provider)
+
+        when:
+        def step = p.step('step')
+        clock.millis -= 60_000
+        clock.nanos += 2_000_000
+        step.stop()
+
+        then:
+        step.durationMilliseconds == 2
+    }
+
+    void "fractional milliseconds round trip through json"() {
+        given:
+        def clock = new FakeClock()
+        def provider = new TestProfilerProvider()
+        provider.clock = clock
+        def p = new ProfilerImpl('clock', ProfileLevel.Info, provider)
+        def step = p.step('step')
+        clock.nanos += 1_234_567
+        step.stop()
+        p.stop()
+
+        when:
+        def restored = ProfilerImpl.fromJson(p.asUiJson())
+        def restoredStep = (TimingImpl) restored.root.children[0]
+
+        then:
+        restoredStep.durationNanoseconds == 1_234_000
+        restoredStep.durationMilliseconds == 1
+    }
+
+    void "whole millisecond json from older versions is still read"() {
+        given:
+        def json = '''{"Id":"00000000-0000-0000-0000-000000000001","Name":"old","Started":"2024-01-01T00:00:00Z",
+            "DurationMilliseconds":12,"MachineName":"m","User":null,"Root":{"Id":"00000000-0000-0000-0000-000000000002",
+            "Name":"old","StartMilliseconds":0,"DurationMilliseconds":12,"Children":null}}'''
+
+        when:
+        def restored = ProfilerImpl.fromJson(json)
+
+        then:
+        restored.root.durationMilliseconds == 12
+        ((TimingImpl) restored.root).durationNanoseconds == 12_000_000
+    }
+
+    static class FakeClock implements ProfilerClock {
+        long millis = 1000
+        long nanos = 5_000_000_000
+
+        @Override
+        long currentTimeMillis() {
+            millis
+        }
+
+        @Override
+        long nanoTime() {
+            nanos
+        }
+    }
+
 }
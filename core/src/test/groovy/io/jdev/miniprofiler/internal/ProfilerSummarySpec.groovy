@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import groovy.json.JsonSlurper
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import spock.lang.Specification
+
+class ProfilerSummarySpec extends Specification {
+
+    def provider = new TestProfilerProvider()
+
+    void "summary json is the profiler's list json"() {
+        given:
+        def profiler = new ProfilerImpl('test', ProfileLevel.Info, provider)
+        profiler.user = 'alice'
+        profiler.clientTimings = [new ClientTiming('domComplete', 10L, 5L)]
+        profiler.stop()
+
+        when:
+        def json = new JsonSlurper().parseText(profiler.toSummary().asListJson())
+
+        then:
+        profiler.toSummary().asListJson() == profiler.asListJson()
+        json.keySet() as List == ['Id', 'Name', 'ClientTimings', 'Started', 'HasUserViewed', 'MachineName', 'User', 'DurationMilliseconds']
+        json.User == 'alice'
+        json.ClientTimings.Timings*.Name == ['domComplete']
+        json.HasUserViewed == false
+    }
+
+    void "fromJson reads back list json"() {
+        given:
+        def profiler = new ProfilerImpl('test', ProfileLevel.Info, provider)
+        profiler.clientTimings = [new ClientTiming('domComplete', 10L, 5L)]
+        profiler.stop()
+        def summary = profiler.toSummary()
+
+        when:
+        def read = ProfilerSummary.fromJson(new StringReader(summary.asListJson()))
+
+        then:
+        read.id == profiler.id
+        read.name == 'test'
+        read.started == profiler.started
+        read.durationMilliseconds == summary.durationMilliseconds
+        read.machineName == profiler.machineName
+        read.user == null
+        read.asListJson() == summary.asListJson()
+    }
+
+    void "fromJson reads the summary fields of a full session"() {
+        given:
+        def profiler = new ProfilerImpl('test', ProfileLevel.Info, provider)
+        profiler.step('child').stop()
+        profiler.stop()
+
+        when:
+        def read = ProfilerSummary.fromJson(new StringReader(profiler.asUiJson()))
+
+        then:
+        read.asListJson() == profiler.asListJson()
+    }
+
+    void "fromJson rejects json without an id"() {
+        when:
+        ProfilerSummary.fromJson(new StringReader('{"Name":"test","Started":"2026-01-01T00:00Z"}'))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    void "empty client timings are treated as none"() {
+        when:
+        def summary = new ProfilerSummary(UUID.randomUUID(), 'test', 0L, 1.5d, 'host', null, [])
+
+        then:
+        summary.clientTimings == null
+        new JsonSlurper().parseText(summary.asListJson()).ClientTimings == null
+    }
+}
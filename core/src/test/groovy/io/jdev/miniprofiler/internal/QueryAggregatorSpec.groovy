@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import groovy.json.JsonSlurper
+import io.jdev.miniprofiler.DefaultProfilerProvider
+import io.jdev.miniprofiler.QueryAggregation
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import org.json.simple.JSONValue
+import spock.lang.Specification
+
+class QueryAggregatorSpec extends Specification {
+
+    TestProfilerProvider provider = new TestProfilerProvider()
+
+    private ProfilerImpl runLoop(QueryAggregation aggregation, int repeats) {
+        provider.queryAggregation = aggregation
+        def profiler = provider.start("test") as ProfilerImpl
+        def step = profiler.step("load items")
+        repeats.times { i ->
+            profiler.addCustomTiming("sql", "query", "select * from item where id = $i", i + 1)
+        }
+        profiler.addCustomTiming("sql", "query", "select count(*) from item", 1)
+        step.stop()
+        profiler.stop()
+        profiler
+    }
+
+    private static List sqlTimings(Map json) {
+        json.Root.Children[0].CustomTimings.sql
+    }
+
+    void "repeated statements within a step are written as one entry"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(2, 0), 5)
+
+        when:
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+        def timings = sqlTimings(json)
+
+        then:
+        timings.size() == 2
+        timings[0].CommandString == 'select * from item where id = 0'
+        timings[0].Count == 5
+        timings[0].DurationMilliseconds == 15
+        timings[0].MinDurationMilliseconds == 1
+        timings[0].MaxDurationMilliseconds == 5
+        timings[1].CommandString == 'select count(*) from item'
+        !timings[1].containsKey('Count')
+
+        and: 'the individual timings are still available in memory'
+        profiler.root.children[0].customTimings.sql.size() == 6
+    }
+
+    void "the map view folds timings as the JSON does"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(2, 0), 5)
+        def step = profiler.root.children[0] as TimingImpl
+
+        expect:
+        new JsonSlurper().parseText(JSONValue.toJSONString(step.toJson())) == new JsonSlurper().parseText(step.toJSONString())
+    }
+
+    void "timings are only folded when configured"() {
+        expect:
+        QueryAggregation.DEFAULT.minCount == 0
+        QueryAggregation.DEFAULT.repeatThreshold == 20
+        new DefaultProfilerProvider().queryAggregation.minCount == 0
+    }
+
+    void "groups smaller than the minimum count are written individually"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(4, 0), 3)
+
+        expect:
+        sqlTimings(new JsonSlurper().parseText(profiler.toJSONString()))*.CommandString == [
+            'select * from item where id = 0',
+            'select * from item where id = 1',
+            'select * from item where id = 2',
+            'select count(*) from item'
+        ]
+    }
+
+    void "nothing is aggregated when turned off"() {
+        given:
+        def profiler = runLoop(QueryAggregation.NONE, 3)
+
+        when:
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+
+        then:
+        sqlTimings(json).size() == 4
+        !json.containsKey('RepeatedQueries')
+        !profiler.hasRepeatedQueries()
+    }
+
+    void "sessions repeating a query at least the threshold number of times are flagged"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(2, 5), repeats)
+
+        when:
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+
+        then:
+        profiler.hasRepeatedQueries() == flagged
+        json.containsKey('RepeatedQueries') == flagged
+
+        where:
+        repeats | flagged
+        4       | false
+        5       | true
+    }
+
+    void "the repeated query names the step and the fingerprint"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(2, 3), 3)
+
+        when:
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+
+        then:
+        json.RepeatedQueries == [[Type: 'sql', Step: 'load items', CommandString: 'select * from item where id = ?', Count: 3]]
+    }
+
+    void "aggregated entries and flags survive a json round trip"() {
+        given:
+        def profiler = runLoop(new QueryAggregation(2, 3), 4)
+        def json = profiler.toJSONString()
+
+        when:
+        def loaded = ProfilerImpl.fromJson(json)
+
+        then:
+        loaded.hasRepeatedQueries()
+        new JsonSlurper().parseText(loaded.toJSONString()) == new JsonSlurper().parseText(json)
+    }
+
+    void "a running timing is not folded into its group"() {
+        given:
+        provider.queryAggregation = new QueryAggregation(2, 0)
+        def profiler = provider.start("test") as ProfilerImpl
+        profiler.addCustomTiming("sql", "query", "select 1", 1)
+        profiler.customTiming("sql", "query", "select 2")
+
+        when:
+        def timings = new JsonSlurper().parseText(profiler.toJSONString()).Root.CustomTimings.sql
+
+        then:
+        timings*.CommandString == ['select 1', 'select 2']
+        timings.every { !it.containsKey('Count') }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.internal
+
+import groovy.json.JsonSlurper
+import io.jdev.miniprofiler.DefaultProfilerProvider
+import io.jdev.miniprofiler.LazyCommand
+import io.jdev.miniprofiler.MiniProfilerConfig
+import io.jdev.miniprofiler.SessionLimits
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import spock.lang.Specification
+
+class SessionBudgetSpec extends Specification {
+
+    TestProfilerProvider provider = new TestProfilerProvider()
+
+    private ProfilerImpl start(SessionLimits limits) {
+        provider.sessionLimits = limits
+        provider.start("test") as ProfilerImpl
+    }
+
+    void "steps past the limit are summarised and their custom timings go to the enclosing step"() {
+        given:
+        def profiler = start(new SessionLimits(2, 0, 0))
+
+        when:
+        3.times { i ->
+            profiler.step("step $i", {
+                profiler.addCustomTiming("sql", "query", "select $i", 1)
+            } as Runnable)
+        }
+        profiler.stop()
+
+        then:
+        profiler.root.children*.name == ['step 0', 'step 1']
+        profiler.root.customTimings.sql*.commandString == ['select 2']
+        profiler.truncated
+        profiler.budget.overflowStepCount == 1
+    }
+
+    void "custom timings past the limit for their type are counted in an overflow summary"() {
+        given:
+        def profiler = start(new SessionLimits(0, 2, 0))
+
+        when:
+        profiler.addCustomTiming("sql", "query", "select 1", 1)
+        profiler.addCustomTiming("sql", "query", "select 2", 2)
+        profiler.addCustomTiming("sql", "query", "select 3", 3)
+        profiler.addLazyCustomTiming("sql", "query", { 'select 4' } as LazyCommand, 7)
+        profiler.customTiming("sql", "query", "select 5").stop()
+        profiler.addCustomTiming("redis", "get", "GET foo", 1)
+        profiler.stop()
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+
+        then:
+        profiler.root.customTimings.sql*.commandString == ['select 1', 'select 2']
+        profiler.root.customTimings.redis*.commandString == ['GET foo']
+        profiler.budget.overflowTypes == ['sql']
+        profiler.budget.getOverflowCount('sql') == 3
+
+        and:
+        json.Truncated == true
+        json.Overflow.CustomTimings.sql.Count == 3
+        json.Overflow.CustomTimings.sql.DurationMilliseconds >= 10
+        json.Overflow.CustomTimings.sql.MaxDurationMilliseconds == 7
+        !json.Overflow.containsKey('Steps')
+    }
+
+    void "long commands are cut short"() {
+        given:
+        def profiler = start(new SessionLimits(0, 0, 8))
+
+        when:
+        profiler.addCustomTiming("sql", "query", "select * from foo", 1)
+        profiler.addLazyCustomTiming("sql", "query", { 'select * from bar' } as LazyCommand, 1)
+        profiler.addCustomTiming("sql", "query", "select 1", 1)
+        profiler.stop()
+
+        then:
+        profiler.root.customTimings.sql*.commandString == ['select *\u2026', 'select *\u2026', 'select 1']
+        profiler.truncated
+    }
+
+    void "sessions within their limits are not marked as truncated"() {
+        given:
+        def profiler = start(new SessionLimits(5, 5, 100))
+
+        when:
+        profiler.step("step", {
+            profiler.addCustomTiming("sql", "query", "select 1", 1)
+        } as Runnable)
+        profiler.stop()
+        def json = new JsonSlurper().parseText(profiler.toJSONString())
+
+        then:
+        !profiler.truncated
+        !json.containsKey('Truncated')
+        !json.containsKey('Overflow')
+    }
+
+    void "truncation and overflow summaries survive a json round trip"() {
+        given:
+        def profiler = start(new SessionLimits(1, 1, 0))
+        profiler.step("kept", {
+            profiler.addCustomTiming("sql", "query", "select 1", 1)
+            profiler.addCustomTiming("sql", "query", "select 2", 4)
+        } as Runnable)
+        profiler.step("dropped", {} as Runnable)
+        profiler.stop()
+        def json = profiler.toJSONString()
+
+        when:
+        def loaded = ProfilerImpl.fromJson(json)
+
+        then:
+        loaded.truncated
+        loaded.budget.getOverflowCount('sql') == 1
+        loaded.budget.overflowStepCount == 1
+        new JsonSlurper().parseText(loaded.toJSONString()).Overflow == new JsonSlurper().parseText(json).Overflow
+    }
+
+    void "limits are read from config"() {
+        given:
+        def props = new Properties()
+        props.setProperty('miniprofiler.limits.maxSteps', '50')
+        props.setProperty('miniprofiler.limits.maxCommandLength', '0')
+
+        when:
+        def limits = SessionLimits.fromConfig(new MiniProfilerConfig(props, null))
+
+        then:
+        limits.maxSteps == 50
+        limits.maxCustomTimingsPerType == 0
+        limits.maxCommandLength == 0
+    }
+
+    void "sessions aren't limited unless limits are configured"() {
+        expect:
+        SessionLimits.fromConfig(new MiniProfilerConfig(new Properties(), null)).toString() == SessionLimits.UNLIMITED.toString()
+        new DefaultProfilerProvider().sessionLimits.toString() == SessionLimits.UNLIMITED.toString()
+    }
+}
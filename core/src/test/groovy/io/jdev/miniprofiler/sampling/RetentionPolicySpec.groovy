@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling
+
+import io.jdev.miniprofiler.MiniProfilerConfig
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.SessionLimits
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import spock.lang.Specification
+
+class RetentionPolicySpec extends Specification {
+
+    ProfilerProvider provider = Mock(ProfilerProvider)
+
+    void "policy with no rules keeps nothing"() {
+        expect:
+        !new RuleBasedRetentionPolicy().shouldRetain(profiler())
+    }
+
+    void "keeps sessions slower than threshold"() {
+        given:
+        def profiler = profiler()
+
+        expect:
+        new RuleBasedRetentionPolicy().retainSlowerThan(0).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainSlowerThan(60_000).shouldRetain(profiler)
+    }
+
+    void "keeps sessions with many custom timings of a type, including in child steps and child profilers"() {
+        given:
+        def profiler = profiler { ProfilerImpl p ->
+            p.addCustomTiming('sql', 'query', 'select 1', 1)
+            def step = p.step('child')
+            p.addCustomTiming('sql', 'query', 'select 2', 1)
+            p.addCustomTiming('redis', 'get', 'foo', 1)
+            step.stop()
+            def child = p.addChild('forked')
+            child.addCustomTiming('sql', 'query', 'select 3', 1)
+            child.stop()
+        }
+
+        expect:
+        new RuleBasedRetentionPolicy().retainWithCustomTimingCount('sql', 3).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainWithCustomTimingCount('sql', 4).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainWithCustomTimingCount('redis', 2).shouldRetain(profiler)
+    }
+
+    void "keeps sessions with any slow custom timing"() {
+        given:
+        def profiler = profiler { ProfilerImpl p ->
+            def step = p.step('child')
+            p.addCustomTiming('sql', 'query', 'select 1', 5)
+            p.addCustomTiming('redis', 'get', 'foo', 150)
+            step.stop()
+        }
+
+        expect:
+        new RuleBasedRetentionPolicy().retainWithCustomTimingSlowerThan(100).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainWithCustomTimingSlowerThan(200).shouldRetain(profiler)
+    }
+
+    void "custom timings past the session limits still count"() {
+        given:
+        provider.getSessionLimits() >> new SessionLimits(0, 2, 0)
+        def profiler = profiler { ProfilerImpl p ->
+            p.addCustomTiming('sql', 'query', 'select 1', 1)
+            p.addCustomTiming('sql', 'query', 'select 2', 1)
+            p.addCustomTiming('sql', 'query', 'select 3', 1)
+            p.addCustomTiming('sql', 'query', 'select 4', 150)
+        }
+
+        expect:
+        profiler.truncated
+        profiler.root.customTimings.sql.size() == 2
+        new RuleBasedRetentionPolicy().retainWithCustomTimingCount('sql', 4).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainWithCustomTimingCount('sql', 5).shouldRetain(profiler)
+        new RuleBasedRetentionPolicy().retainWithCustomTimingSlowerThan(100).shouldRetain(profiler)
+        !new RuleBasedRetentionPolicy().retainWithCustomTimingSlowerThan(200).shouldRetain(profiler)
+    }
+
+    void "keeps a baseline of one in n sessions"() {
+        given:
+        def policy = new RuleBasedRetentionPolicy().retainSlowerThan(60_000).retainOneIn(10)
+        def profiler = profiler()
+
+        expect:
+        (1..100).count { policy.shouldRetain(profiler) } == 10
+    }
+
+    void "builds policy from config"() {
+        expect:
+        RetentionPolicy.fromConfig(new MiniProfilerConfig(new Properties(), null)).is(RetentionPolicy.ALWAYS)
+        RetentionPolicy.fromConfig(new MiniProfilerConfig(['miniprofiler.retention.minDurationMillis': '500'] as Properties, null)) instanceof RuleBasedRetentionPolicy
+    }
+
+    private ProfilerImpl profiler(Closure work = {}) {
+        def profiler = new ProfilerImpl(null, 'test', 'test', ProfileLevel.Info, provider)
+        work(profiler)
+        profiler.stop()
+        profiler
+    }
+}
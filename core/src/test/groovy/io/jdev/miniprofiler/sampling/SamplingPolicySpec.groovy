@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sampling
+
+import io.jdev.miniprofiler.MiniProfilerConfig
+import spock.lang.Specification
+
+class SamplingPolicySpec extends Specification {
+
+    void "fixed rate policy samples everything at 1 and nothing at 0"() {
+        expect:
+        (1..100).every { new FixedRateSamplingPolicy(1).shouldSample('/foo') }
+        (1..100).every { !new FixedRateSamplingPolicy(0).shouldSample('/foo') }
+    }
+
+    void "fixed rate policy samples roughly the requested fraction"() {
+        given:
+        def policy = new FixedRateSamplingPolicy(0.25)
+
+        when:
+        int sampled = (1..10000).count { policy.shouldSample('/foo') }
+
+        then:
+        sampled > 2000
+        sampled < 3000
+    }
+
+    void "fixed rate policy rejects out of range rates"() {
+        when:
+        new FixedRateSamplingPolicy(rate)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        rate << [-0.1d, 1.1d, Double.NaN]
+    }
+
+    void "uri pattern policy uses first matching rule, then fallback"() {
+        given:
+        def policy = new UriPatternSamplingPolicy(SamplingPolicy.ALWAYS)
+            .add('/health.*', SamplingPolicy.NEVER)
+            .add('/api/.*', 0)
+            .add('/api/special', SamplingPolicy.ALWAYS)
+
+        expect:
+        !policy.shouldSample('/health')
+        !policy.shouldSample('/healthcheck')
+        !policy.shouldSample('/api/foo')
+        !policy.shouldSample('/api/special')
+        policy.shouldSample('/other')
+        policy.shouldSample(null)
+    }
+
+    void "rate limited policy allows a burst then one session per interval"() {
+        given:
+        long now = 0
+        def policy = new RateLimitedSamplingPolicy(SamplingPolicy.ALWAYS, 10, 3, { now })
+
+        expect: 'burst of three'
+        policy.shouldSample('/a')
+        policy.shouldSample('/a')
+        policy.shouldSample('/a')
+        !policy.shouldSample('/a')
+
+        when: 'one interval passes'
+        now += 100_000_000L
+
+        then:
+        policy.shouldSample('/a')
+        !policy.shouldSample('/a')
+
+        when: 'a long idle period passes'
+        now += 10_000_000_000L
+
+        then: 'bucket refills only up to the burst size'
+        (1..3).every { policy.shouldSample('/a') }
+        !policy.shouldSample('/a')
+    }
+
+    void "rate limited policy only counts sessions sampled by its delegate"() {
+        given:
+        long now = 0
+        boolean delegateSays = false
+        def policy = new RateLimitedSamplingPolicy({ delegateSays } as SamplingPolicy, 1, 1, { now })
+
+        expect:
+        !policy.shouldSample('/a')
+        !policy.shouldSample('/a')
+
+        when:
+        delegateSays = true
+
+        then:
+        policy.shouldSample('/a')
+        !policy.shouldSample('/a')
+    }
+
+    void "builds policy from config"() {
+        expect:
+        SamplingPolicy.fromConfig(config([:])).is(SamplingPolicy.ALWAYS)
+        SamplingPolicy.fromConfig(config(['miniprofiler.sampling.rate': '1'])).is(SamplingPolicy.ALWAYS)
+        SamplingPolicy.fromConfig(config(['miniprofiler.sampling.rate': '0.1'])) instanceof FixedRateSamplingPolicy
+        SamplingPolicy.fromConfig(config(['miniprofiler.sampling.maxSessionsPerSecond': '5'])) instanceof RateLimitedSamplingPolicy
+    }
+
+    private static MiniProfilerConfig config(Map<String, String> props) {
+        new MiniProfilerConfig(props as Properties, null)
+    }
+}
@@ -191,6 +191,33 @@ class MiniProfilerServerSpec extends Specification {
         !json*.Id.contains(profiler.id.toString())
     }
 
+    void "GET results-list with last-id lists the newer results newest first"() {
+        given:
+        Thread.sleep(5)
+        Profiler p2 = provider.start('second')
+        p2.stop()
+        Thread.sleep(5)
+        Profiler p3 = provider.start('third')
+        p3.stop()
+
+        when:
+        def conn = connect("miniprofiler/results-list?last-id=${profiler.id}")
+        def json = new JsonSlurper().parse(conn.inputStream)
+
+        then:
+        json*.Id == [p3.id.toString(), p2.id.toString()]
+    }
+
+    void "GET results-list with an unknown last-id lists the latest results"() {
+        when:
+        def conn = connect("miniprofiler/results-list?last-id=${UUID.randomUUID()}")
+        def json = new JsonSlurper().parse(conn.inputStream)
+
+        then:
+        conn.responseCode == 200
+        json*.Id == [profiler.id.toString()]
+    }
+
     void "POST results-list returns 405"() {
         when:
         def conn = connect('miniprofiler/results-list', null, 'POST', '')
@@ -55,6 +55,21 @@ class PagesSpec extends Specification {
         !json[0].containsKey('Root')
     }
 
+    void "renderResultListJson renders the given summaries in order"() {
+        given:
+        def p1 = new ProfilerImpl('test1', ProfileLevel.Info, provider)
+        p1.stop()
+        def p2 = new ProfilerImpl('test2', ProfileLevel.Info, provider)
+        p2.stop()
+
+        when:
+        def json = new JsonSlurper().parseText(Pages.renderResultListJson([p2.toSummary(), p1.toSummary()]))
+
+        then:
+        json*.Id == [p2.id.toString(), p1.id.toString()]
+        json*.Name == ['test2', 'test1']
+    }
+
     void "renderResultListPage contains list table and listInit call"() {
         when:
         def html = Pages.renderResultListPage(provider, Optional.empty())
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.sql
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class SqlFingerprintSpec extends Specification {
+
+    @Unroll
+    void "fingerprints #sql"() {
+        expect:
+        SqlFingerprint.of(sql) == fingerprint
+
+        where:
+        sql                                                     | fingerprint
+        "select * from foo where id = 42"                       | "select * from foo where id = ?"
+        "select * from foo where id = ?"                        | "select * from foo where id = ?"
+        "select * from foo where name = 'O''Brien'"             | "select * from foo where name = ?"
+        "select * from foo where x > -1.5e-3"                   | "select * from foo where x > -?"
+        "select * from foo where id in (1, 2, 3)"               | "select * from foo where id in (...)"
+        "select * from foo where id IN (?,?)"                   | "select * from foo where id IN (...)"
+        "select col1, t2.col2 from t2"                          | "select col1, t2.col2 from t2"
+        'select "Col 1" from foo where "Col 1" = 3'             | 'select "Col 1" from foo where "Col 1" = ?'
+        "select *\n  from foo -- lookup\n where id = 7"         | "select * from foo where id = ?"
+        "select /* 1 */ * from foo"                             | "select * from foo"
+        "  select 1  "                                          | "select ?"
+        null                                                    | null
+    }
+
+    void "statements that differ only in their values share a fingerprint"() {
+        expect:
+        SqlFingerprint.of("update foo set name = 'a' where id in (1, 2)") ==
+            SqlFingerprint.of("update foo  set name = 'bb' where id in (3,4,5)")
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage
+
+import io.jdev.miniprofiler.MiniProfilerConfig
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import spock.lang.Specification
+
+import java.time.Instant
+import java.util.concurrent.CompletableFuture
+
+class CachingStorageSpec extends Specification {
+
+    ProfilerProvider profilerProvider = Mock(ProfilerProvider)
+    CountingMapStorage delegate = new CountingMapStorage()
+
+    void "repeated loads are answered from the cache"() {
+        given:
+        def storage = new CachingStorage(delegate)
+        def profiler = newProfiler('test')
+        delegate.save(profiler)
+
+        when:
+        3.times { assert storage.load(profiler.id).is(profiler) }
+
+        then:
+        delegate.loads == 1
+        storage.missCount == 1
+        storage.hitCount == 2
+    }
+
+    void "saves write through and are cached"() {
+        given:
+        def storage = new CachingStorage(delegate)
+        def profiler = newProfiler('test')
+
+        when:
+        storage.save(profiler)
+        storage.saveAll([newProfiler('other')])
+
+        then:
+        delegate.load(profiler.id).is(profiler)
+        storage.load(profiler.id).is(profiler)
+        storage.size == 2
+        storage.cachedBytes > 0
+        storage.missCount == 0
+    }
+
+    void "least recently used sessions are evicted past the entry limit"() {
+        given:
+        def storage = new CachingStorage(delegate, 2, Long.MAX_VALUE)
+        def (a, b, c) = ['a', 'b', 'c'].collect { newProfiler(it) }
+
+        when:
+        storage.save(a)
+        storage.save(b)
+        storage.load(a.id)
+        storage.save(c)
+
+        then:
+        storage.size == 2
+        storage.evictionCount == 1
+        storage.load(a.id)
+        storage.load(c.id)
+        storage.missCount == 0
+
+        when:
+        storage.load(b.id)
+
+        then:
+        storage.missCount == 1
+    }
+
+    void "sessions are evicted to stay within the byte budget"() {
+        given:
+        def (a, b, c) = ['a', 'b', 'c'].collect { newProfiler(it) }
+        def storage = new CachingStorage(delegate, 100, a.estimatedSize() * 2)
+        def big = newProfiler('big', 50)
+
+        when:
+        storage.save(a)
+        storage.save(b)
+        storage.save(c)
+
+        then:
+        storage.size == 2
+        storage.cachedBytes == a.estimatedSize() * 2
+        storage.evictionCount == 1
+        storage.cursorFor(a.id) == null
+
+        when: 'a session too big for the budget on its own'
+        storage.save(big)
+
+        then:
+        storage.size == 2
+        delegate.load(big.id).is(big)
+    }
+
+    void "expiry drops expired sessions from the cache"() {
+        given:
+        def storage = new CachingStorage(delegate)
+        def old = newProfiler('old')
+        storage.save(old)
+        Thread.sleep(5)
+        def cutoff = Instant.now()
+        def recent = newProfiler('recent')
+        storage.save(recent)
+
+        when:
+        storage.expireOlderThan(cutoff)
+
+        then:
+        storage.size == 1
+        storage.load(old.id) == null
+        storage.load(recent.id).is(recent)
+    }
+
+    void "clear empties the cache"() {
+        given:
+        def storage = new CachingStorage(delegate)
+        storage.save(newProfiler('test'))
+
+        when:
+        storage.clear()
+
+        then:
+        storage.size == 0
+        storage.cachedBytes == 0
+    }
+
+    void "a session loaded while expiry runs isn't cached"() {
+        given:
+        def storage = new CachingStorage(delegate)
+        def profiler = newProfiler('test')
+        delegate.save(profiler)
+        delegate.duringLoad = { storage.expireOlderThan(Instant.EPOCH) }
+
+        when:
+        def loaded = storage.load(profiler.id)
+
+        then:
+        loaded.is(profiler)
+        storage.size == 0
+    }
+
+    void "located storage is cached only when configured"() {
+        given:
+        def jdbcLike = Mock(Storage)
+
+        expect:
+        CachingStorage.fromConfig(jdbcLike, config([:])).is(jdbcLike)
+        CachingStorage.fromConfig(delegate, config(['storage.cache': 'true'])).is(delegate)
+
+        when:
+        def cached = CachingStorage.fromConfig(jdbcLike, config(['storage.cache': 'true', 'storage.cache.maxEntries': '1']))
+        cached.save(newProfiler('a'))
+        cached.save(newProfiler('b'))
+
+        then:
+        cached instanceof CachingStorage
+        ((CachingStorage) cached).delegate.is(jdbcLike)
+        ((CachingStorage) cached).size == 1
+    }
+
+    void "a non-blocking delegate stays non-blocking and the session is cached once saved"() {
+        given:
+        def pending = new CompletableFuture<Void>()
+        def nonBlocking = Mock(NonBlockingStorage)
+        def cached = CachingStorage.fromConfig(nonBlocking, config(['storage.cache': 'true']))
+        def profiler = newProfiler('a')
+
+        expect:
+        cached instanceof NonBlockingStorage
+        !(CachingStorage.fromConfig(Mock(Storage), config(['storage.cache': 'true'])) instanceof NonBlockingStorage)
+
+        when:
+        def saved = ((NonBlockingStorage) cached).saveNonBlocking(profiler)
+
+        then:
+        1 * nonBlocking.saveNonBlocking(profiler) >> pending
+        0 * nonBlocking.save(_)
+        !saved.done
+        ((CachingStorage) cached).size == 0
+
+        when:
+        pending.complete(null)
+
+        then:
+        saved.done
+        cached.load(profiler.id).is(profiler)
+        0 * nonBlocking.load(_)
+    }
+
+    void "concurrent loads and saves keep the cache within its bounds"() {
+        given:
+        def profilers = (0..<200).collect { newProfiler(String.format('p%03d', it)) }
+        profilers.each { delegate.save(it) }
+        def storage = new CachingStorage(delegate, 20, Long.MAX_VALUE)
+        def wrongLoads = Collections.synchronizedList([])
+
+        when:
+        def threads = (0..<4).collect { t ->
+            Thread.start {
+                def random = new Random(t)
+                5000.times { i ->
+                    def profiler = profilers[random.nextInt(random.nextBoolean() ? 30 : 200)]
+                    if (i % 10 == 0) {
+                        storage.save(profiler)
+                    } else if (!storage.load(profiler.id).is(profiler)) {
+                        wrongLoads << profiler.id
+                    }
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        wrongLoads.empty
+        storage.size == 20
+        storage.cachedBytes == 20 * profilers[0].estimatedSize()
+        storage.hitCount + storage.missCount == 18000
+    }
+
+    private static MiniProfilerConfig config(Map<String, String> values) {
+        def props = new Properties()
+        props.putAll(values)
+        new MiniProfilerConfig(new Properties(), props)
+    }
+
+    private ProfilerImpl newProfiler(String name, int steps = 0) {
+        def profiler = new ProfilerImpl(null, name, name, ProfileLevel.Info, profilerProvider)
+        steps.times { i ->
+            profiler.step("step ${i}").stop()
+            profiler.addCustomTiming('sql', 'reader', "select ${i} from people where id = ?", 1L)
+        }
+        profiler
+    }
+
+    static class CountingMapStorage extends MapStorage {
+        int loads
+        Closure duringLoad
+
+        @Override
+        ProfilerImpl load(UUID id) {
+            loads++
+            duringLoad?.call()
+            super.load(id)
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryPoolMXBean
+import java.lang.management.MemoryType
+
+class HeapPressureMonitorSpec extends Specification {
+
+    @Requires({ HeapPressureMonitorSpec.watchedPools() })
+    void "closing the monitors puts back the pools' collection usage thresholds"() {
+        given:
+        def before = thresholds()
+
+        when:
+        def loose = HeapPressureMonitor.start(0.9, {})
+        def tight = HeapPressureMonitor.start(0.5, {})
+        def whileOpen = thresholds()
+        tight.close()
+        def afterTight = thresholds()
+        tight.close()
+        loose.close()
+
+        then:
+        whileOpen.every { name, bytes -> bytes > 0 && (before[name] == 0 || bytes <= before[name]) }
+        afterTight.every { name, bytes -> bytes >= whileOpen[name] }
+        thresholds() == before
+    }
+
+    static List<MemoryPoolMXBean> watchedPools() {
+        ManagementFactory.memoryPoolMXBeans.findAll {
+            it.type == MemoryType.HEAP && it.usageThresholdSupported && it.collectionUsageThresholdSupported &&
+                it.usage.max > 0
+        }
+    }
+
+    private static Map<String, Long> thresholds() {
+        watchedPools().collectEntries { [it.name, it.collectionUsageThreshold] }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage
+
+import io.jdev.miniprofiler.internal.ProfilerSummary
+import io.jdev.miniprofiler.storage.Storage.ListResultsOrder
+import spock.lang.Specification
+
+class ListCursorSpec extends Specification {
+
+    static final UUID LOW_ID = UUID.fromString('00000000-0000-0000-0000-000000000001')
+    static final UUID HIGH_ID = UUID.fromString('f0000000-0000-0000-0000-000000000001')
+
+    void "sessions are ordered by start time and then by id"() {
+        given:
+        def cursor = ListCursor.of(2000L, LOW_ID)
+
+        expect:
+        cursor.isFollowedBy(3000L, LOW_ID, ListResultsOrder.Ascending)
+        cursor.isFollowedBy(2000L, HIGH_ID, ListResultsOrder.Ascending)
+        !cursor.isFollowedBy(2000L, LOW_ID, ListResultsOrder.Ascending)
+        !cursor.isFollowedBy(1000L, HIGH_ID, ListResultsOrder.Ascending)
+
+        and:
+        cursor.isFollowedBy(1000L, HIGH_ID, ListResultsOrder.Descending)
+        !cursor.isFollowedBy(2000L, LOW_ID, ListResultsOrder.Descending)
+        !cursor.isFollowedBy(2000L, HIGH_ID, ListResultsOrder.Descending)
+    }
+
+    void "ids are compared in the same order as their string form"() {
+        given: 'ids whose signed comparison differs from their string order'
+        def cursor = ListCursor.of(1000L, LOW_ID)
+
+        expect:
+        HIGH_ID < LOW_ID
+        cursor.isFollowedBy(1000L, HIGH_ID, ListResultsOrder.Ascending)
+    }
+
+    void "comparator sorts summaries in cursor order"() {
+        given:
+        def a = summary(1000L, HIGH_ID)
+        def b = summary(2000L, LOW_ID)
+        def c = summary(2000L, HIGH_ID)
+
+        expect:
+        [c, a, b].sort(false, ListCursor.comparator(ListResultsOrder.Ascending)) == [a, b, c]
+        [a, c, b].sort(false, ListCursor.comparator(ListResultsOrder.Descending)) == [c, b, a]
+    }
+
+    void "cursors for the same session are equal"() {
+        expect:
+        ListCursor.of(summary(1000L, LOW_ID)) == ListCursor.of(1000L, LOW_ID)
+        ListCursor.of(1000L, LOW_ID).hashCode() == ListCursor.of(1000L, LOW_ID).hashCode()
+        ListCursor.of(1000L, LOW_ID) != ListCursor.of(1000L, HIGH_ID)
+    }
+
+    void "a cursor needs an id"() {
+        when:
+        ListCursor.of(1000L, null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static ProfilerSummary summary(long started, UUID id) {
+        new ProfilerSummary(id, 'test', started, 1.0d, 'machine', null, null)
+    }
+}
@@ -16,6 +16,7 @@
 
 package io.jdev.miniprofiler.storage
 
+import io.jdev.miniprofiler.MiniProfilerConfig
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.internal.ProfilerImpl
 import io.jdev.miniprofiler.ProfilerProvider
@@ -161,6 +162,56 @@ class MapStorageSpec extends Specification {
         result.toList() == [val2.id, val1.id]
     }
 
+    void "listSummaries summarises sessions without changing their LRU order"() {
+        given:
+        def val1 = new ProfilerImpl(null, 'test1', 'test1', ProfileLevel.Info, profilerProvider)
+        Thread.sleep(10)
+        def val2 = new ProfilerImpl(null, 'test2', 'test2', ProfileLevel.Info, profilerProvider)
+        storage.save(val1)
+        storage.save(val2)
+
+        when:
+        def result = storage.listSummaries(10, null, null, ListResultsOrder.Ascending)
+
+        then:
+        result*.id == [val1.id, val2.id]
+        result*.name == ['test1', 'test2']
+
+        when:
+        storage.save(new ProfilerImpl('test3', ProfileLevel.Info, profilerProvider))
+
+        then: 'the least recently loaded session is still the one evicted'
+        !storage.load(val1.id)
+        storage.load(val2.id) == val2
+    }
+
+    void "list pages through sessions after a cursor, including those started in the same millisecond"() {
+        given:
+        storage = new MapStorage(10)
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.each { storage.save(it) }
+        def ascending = profilers.sort(false) { a, b -> a.started <=> b.started ?: a.id.toString() <=> b.id.toString() }*.id
+
+        when:
+        def firstPage = storage.list(2, null, ListResultsOrder.Ascending).toList()
+        def secondPage = storage.list(2, storage.cursorFor(firstPage.last()), ListResultsOrder.Ascending).toList()
+
+        then:
+        firstPage + secondPage == ascending
+
+        when:
+        def after = storage.cursorFor(ascending[2])
+
+        then:
+        storage.listSummaries(10, after, ListResultsOrder.Descending)*.id == ascending[0..1].reverse()
+        storage.listSummaries(10, after, ListResultsOrder.Ascending)*.id == [ascending[3]]
+    }
+
+    void "cursorFor returns null for an unknown session"() {
+        expect:
+        storage.cursorFor(UUID.randomUUID()) == null
+    }
+
     void "getUnviewedIds returns empty for unknown user"() {
         expect:
         storage.getUnviewedIds('alice').empty
@@ -335,4 +386,212 @@ class MapStorageSpec extends Specification {
         !storage.unviewedByUser['alice'].contains(val1.id)
         storage.unviewedByUser['alice'].contains(val2.id)
     }
+
+    void "loading a session protects it from eviction"() {
+        given:
+        def val1 = new ProfilerImpl('test1', ProfileLevel.Info, profilerProvider)
+        def val2 = new ProfilerImpl('test2', ProfileLevel.Info, profilerProvider)
+        storage.save(val1)
+        storage.save(val2)
+
+        when:
+        storage.load(val1.id)
+        storage.save(new ProfilerImpl('test3', ProfileLevel.Info, profilerProvider))
+
+        then:
+        storage.load(val1.id) == val1
+        !storage.load(val2.id)
+    }
+
+    void "resaving a session replaces it in the list"() {
+        given:
+        storage = new MapStorage(10)
+        def val = profilerStartedAt(1000L)
+        storage.save(val)
+
+        when:
+        storage.save(val)
+
+        then:
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == [val.id]
+        storage.cursorFor(val.id) == ListCursor.of(1000L, val.id)
+    }
+
+    void "list scans only the requested range and skips evicted sessions"() {
+        given:
+        storage = new MapStorage(3)
+        def profilers = (1..5).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+
+        expect: 'the two oldest were evicted'
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == profilers[2..4]*.id
+        storage.list(10, new Date(2000L), new Date(4000L), ListResultsOrder.Descending).toList() == [profilers[3].id, profilers[2].id]
+        storage.list(10, new Date(4000L), new Date(2000L), ListResultsOrder.Ascending).empty
+    }
+
+    void "concurrent saves and loads keep the storage within its maximum size"() {
+        given:
+        storage = new MapStorage(20)
+        def profilers = (1..200).collect { new ProfilerImpl("test$it", ProfileLevel.Info, profilerProvider) }
+
+        when:
+        def threads = (1..4).collect { n ->
+            Thread.start {
+                def random = new Random(n)
+                1000.times {
+                    def profiler = profilers[random.nextInt(profilers.size())]
+                    if (random.nextBoolean()) {
+                        storage.save(profiler)
+                    } else {
+                        storage.load(profiler.id)
+                    }
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        storage.cache.size() <= 20
+        storage.list(100, null, null, ListResultsOrder.Ascending).size() == storage.cache.size()
+    }
+
+    void "concurrent saves of the same session keep it listed"() {
+        given:
+        storage = new MapStorage(20)
+        def profilers = (1..5).collect { new ProfilerImpl("test$it", ProfileLevel.Info, profilerProvider) }
+
+        when:
+        def threads = (1..4).collect {
+            Thread.start {
+                1000.times { i -> storage.save(profilers[i % profilers.size()]) }
+            }
+        }
+        threads*.join()
+
+        then:
+        storage.list(100, null, null, ListResultsOrder.Ascending) as Set == profilers*.id as Set
+    }
+
+    void "the least recently used sessions are evicted to stay within the byte budget"() {
+        given:
+        def (a, b, c) = ['a', 'b', 'c'].collect { new ProfilerImpl(it, ProfileLevel.Info, profilerProvider) }
+        storage = new MapStorage(10, a.estimatedSize() * 2)
+
+        when:
+        storage.save(a)
+        storage.save(b)
+        storage.load(a.id)
+        storage.save(c)
+
+        then:
+        storage.cachedBytes == a.estimatedSize() * 2
+        storage.load(a.id) == a
+        !storage.load(b.id)
+        storage.load(c.id) == c
+    }
+
+    void "a session too big for the byte budget isn't kept"() {
+        given:
+        def small = new ProfilerImpl('a', ProfileLevel.Info, profilerProvider)
+        storage = new MapStorage(10, small.estimatedSize() * 2)
+        storage.save(small)
+        def big = new ProfilerImpl('big', ProfileLevel.Info, profilerProvider)
+        50.times { big.addCustomTiming('sql', 'query', "select $it", 1L) }
+
+        when:
+        storage.save(big)
+
+        then:
+        !storage.load(big.id)
+        storage.load(small.id) == small
+        storage.cachedBytes == small.estimatedSize()
+    }
+
+    void "shedding removes the oldest sessions first"() {
+        given:
+        storage = new MapStorage(10)
+        def profilers = (1..4).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+        profilers.each { storage.load(it.id) }
+
+        when:
+        storage.shedOldest(profilers[0].estimatedSize() + 1)
+
+        then:
+        storage.shedCount == 2
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == profilers[2..3]*.id
+        storage.cachedBytes == profilers[2..3].sum { it.estimatedSize() }
+    }
+
+    void "clear and expiry release the estimated size of their sessions"() {
+        given:
+        storage = new MapStorage(10)
+        def old = profilerStartedAt(1000L)
+        def recent = profilerStartedAt(2000L)
+        storage.save(old)
+        storage.save(recent)
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(2000L))
+
+        then:
+        storage.cachedBytes == recent.estimatedSize()
+
+        when:
+        storage.clear()
+
+        then:
+        storage.cachedBytes == 0
+    }
+
+    void "a storage watching the heap can be closed more than once"() {
+        given:
+        storage = new MapStorage(10, 1024 * 1024, 0.9)
+
+        when:
+        storage.close()
+        storage.close()
+
+        then:
+        noExceptionThrown()
+    }
+
+    void "limits are read from configuration"() {
+        given:
+        def props = new Properties()
+        props.setProperty('miniprofiler.storage.map.maxEntries', '1')
+        storage = MapStorage.fromConfig(new MiniProfilerConfig(props, null))
+        def val1 = new ProfilerImpl('test1', ProfileLevel.Info, profilerProvider)
+        def val2 = new ProfilerImpl('test2', ProfileLevel.Info, profilerProvider)
+
+        when:
+        storage.save(val1)
+        storage.save(val2)
+
+        then:
+        !storage.load(val1.id)
+        storage.load(val2.id) == val2
+    }
+
+    void "invalid limits are rejected"() {
+        when:
+        new MapStorage(maxSize, maxBytes)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        maxSize | maxBytes
+        0       | 1024
+        10      | 0
+    }
+
+    private ProfilerImpl profilerStartedAt(long startedMs) {
+        ProfilerImpl p = new ProfilerImpl("test", ProfileLevel.Info, profilerProvider)
+        def field = ProfilerImpl.getDeclaredField("started")
+        field.accessible = true
+        field.set(p, startedMs)
+        p.stop()
+        return p
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.Storage.ListResultsOrder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.file.Path
+import java.time.Instant
+
+class OffHeapStorageSpec extends Specification {
+
+    ProfilerProvider profilerProvider = Mock(ProfilerProvider)
+
+    @TempDir
+    Path tempDir
+
+    void cleanup() {
+        System.clearProperty('miniprofiler.storage.offheap.megabytes')
+        System.clearProperty('miniprofiler.storage.offheap.file')
+    }
+
+    void "a saved session is decoded on load"() {
+        given:
+        def storage = new OffHeapStorage(64 * 1024, codec)
+        def profiler = newProfiler('test', 2)
+
+        when:
+        storage.save(profiler)
+        def loaded = storage.load(profiler.id)
+
+        then:
+        !loaded.is(profiler)
+        loaded.id == profiler.id
+        loaded.root.name == 'test'
+        loaded.root.children*.name == ['step 0', 'step 1']
+
+        where:
+        codec << [null, PayloadCodec.GZIP]
+    }
+
+    void "the oldest sessions are overwritten when the region is full"() {
+        given:
+        def profilers = (0..9).collect { newProfiler("test-$it") }
+        def length = ProfilePayloads.encode(profilers[0], PayloadCodec.NONE).length
+        def storage = new OffHeapStorage(length * 3 + length.intdiv(2), null)
+
+        when:
+        profilers.each { storage.save(it) }
+
+        then:
+        storage.size == 3
+        storage.overwriteCount == 7
+        profilers[0..6].every { storage.load(it.id) == null }
+        profilers[7..9].every { storage.load(it.id).id == it.id }
+    }
+
+    void "a session bigger than the region isn't kept"() {
+        given:
+        def small = newProfiler('small')
+        def storage = new OffHeapStorage(ProfilePayloads.encode(small, PayloadCodec.NONE).length + 10, null)
+        def big = newProfiler('big', 20)
+
+        when:
+        storage.save(small)
+        storage.save(big)
+
+        then:
+        storage.load(small.id).id == small.id
+        storage.load(big.id) == null
+    }
+
+    void "list and cursors are answered from the index"() {
+        given:
+        def storage = new OffHeapStorage(64 * 1024, null)
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.reverse().each { storage.save(it) }
+        def ascending = profilers.sort(false) { a, b -> a.started <=> b.started ?: a.id.toString() <=> b.id.toString() }*.id
+
+        expect:
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == ascending
+        storage.list(2, new Date(2000L), null, ListResultsOrder.Descending).toList() == ascending[3..2]
+        storage.cursorFor(ascending[1]) == ListCursor.of(2000L, ascending[1])
+        storage.list(10, storage.cursorFor(ascending[1]), ListResultsOrder.Ascending).toList() == ascending[2..3]
+        storage.cursorFor(UUID.randomUUID()) == null
+        storage.listSummaries(10, null, null, ListResultsOrder.Ascending)*.id == ascending
+        storage.listSummaries(10, storage.cursorFor(ascending[2]), ListResultsOrder.Descending)*.id == ascending[1..0]
+    }
+
+    void "summaries are answered without decoding sessions"() {
+        given:
+        def region = ByteBuffer.allocate(64 * 1024)
+        def storage = new OffHeapStorage(region, null)
+        def profiler = newProfiler('test', 2)
+        storage.save(profiler)
+
+        when: 'the stored bytes are wiped'
+        region.duplicate().put(new byte[region.capacity()])
+        def summaries = storage.listSummaries(10, null, null, ListResultsOrder.Descending)
+
+        then:
+        summaries*.id == [profiler.id]
+        summaries[0].name == 'test'
+        summaries[0].durationMilliseconds == profiler.toSummary().durationMilliseconds
+    }
+
+    void "expiry and clear remove sessions"() {
+        given:
+        def storage = new OffHeapStorage(64 * 1024, null)
+        def old = profilerStartedAt(1000L)
+        def recent = profilerStartedAt(2000L)
+        storage.save(old)
+        storage.save(recent)
+        storage.setUnviewed('alice', old.id)
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(2000L))
+
+        then:
+        storage.load(old.id) == null
+        storage.load(recent.id).id == recent.id
+        storage.getUnviewedIds('alice').empty
+
+        when:
+        storage.clear()
+
+        then:
+        storage.size == 0
+        storage.load(recent.id) == null
+    }
+
+    void "a mapped file can back the region"() {
+        given:
+        def file = tempDir.resolve('sessions.bin')
+        def storage = OffHeapStorage.mapFile(file, 64 * 1024, null)
+        def profiler = newProfiler('test')
+
+        when:
+        storage.save(profiler)
+
+        then:
+        storage.load(profiler.id).id == profiler.id
+        file.toFile().length() == 64 * 1024
+    }
+
+    void "the locator applies only when a size is configured"() {
+        expect:
+        !new OffHeapStorageLocator().locate().present
+
+        when:
+        System.setProperty('miniprofiler.storage.offheap.megabytes', '1')
+        System.setProperty('miniprofiler.storage.offheap.file', tempDir.resolve('located.bin').toString())
+        def located = new OffHeapStorageLocator().locate()
+
+        then:
+        located.present
+        (located.get() as OffHeapStorage).capacity == 1024 * 1024
+    }
+
+    private ProfilerImpl newProfiler(String name, int steps = 0) {
+        def profiler = new ProfilerImpl(null, name, name, ProfileLevel.Info, profilerProvider)
+        steps.times { i ->
+            profiler.step("step ${i}").stop()
+            profiler.addCustomTiming('sql', 'reader', "select ${i} from people where id = ?", 1L)
+        }
+        profiler.stop(true)
+        profiler
+    }
+
+    private ProfilerImpl profilerStartedAt(long startedMs) {
+        ProfilerImpl p = new ProfilerImpl("test", ProfileLevel.Info, profilerProvider)
+        def field = ProfilerImpl.getDeclaredField("started")
+        field.accessible = true
+        field.set(p, startedMs)
+        p.stop(true)
+        return p
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class ProfilePayloadsSpec extends Specification {
+
+    void "sessions round-trip through each codec"() {
+        given:
+        def profiler = newProfiler()
+
+        when:
+        def payload = ProfilePayloads.encode(profiler, codec)
+        def loaded = ProfilePayloads.decode(new ByteArrayInputStream(payload))
+
+        then:
+        loaded.id == profiler.id
+        loaded.root.children.size() == 20
+
+        where:
+        codec << [PayloadCodec.NONE, PayloadCodec.GZIP, PayloadCodec.DEFLATE]
+    }
+
+    void "compressed payloads are smaller than the JSON"() {
+        given:
+        def profiler = newProfiler()
+        def json = profiler.toJSONString().getBytes(StandardCharsets.UTF_8)
+
+        expect:
+        ProfilePayloads.encode(profiler, PayloadCodec.NONE) == json
+        ProfilePayloads.encode(profiler, PayloadCodec.GZIP).length < json.length / 2
+        ProfilePayloads.encode(profiler, PayloadCodec.DEFLATE).length < json.length / 2
+    }
+
+    void "plain JSON without a header is read as is"() {
+        given:
+        def profiler = newProfiler()
+        def json = profiler.toJSONString().getBytes(StandardCharsets.UTF_8)
+
+        expect:
+        ProfilePayloads.decode(new ByteArrayInputStream(json)).id == profiler.id
+    }
+
+    void "payloads naming an unknown codec are rejected"() {
+        when:
+        ProfilePayloads.open(new ByteArrayInputStream([0, 0x4D, 0x50, 99, 1, 2, 3] as byte[]))
+
+        then:
+        def e = thrown(IOException)
+        e.message == 'Unknown payload codec id 99'
+    }
+
+    void "codecs are found by name and id"() {
+        expect:
+        PayloadCodec.forName(null) == PayloadCodec.NONE
+        PayloadCodec.forName('gzip') == PayloadCodec.GZIP
+        PayloadCodec.forName('deflate') == PayloadCodec.DEFLATE
+        PayloadCodec.forId(PayloadCodec.DEFLATE.id) == PayloadCodec.DEFLATE
+        PayloadCodec.forId(99) == null
+
+        when:
+        PayloadCodec.forName('brotli')
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private ProfilerImpl newProfiler() {
+        def profiler = new ProfilerImpl(null, 'payload', '/payload', ProfileLevel.Info, Mock(ProfilerProvider))
+        20.times { i ->
+            def timing = profiler.step("step ${i}")
+            profiler.addCustomTiming('sql', 'reader', "select * from people where id = ${i}", 2L)
+            timing.stop()
+        }
+        profiler.stop(true)
+        profiler
+    }
+}
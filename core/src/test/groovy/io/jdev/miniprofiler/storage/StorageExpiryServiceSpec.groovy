@@ -80,4 +80,60 @@ class StorageExpiryServiceSpec extends Specification {
         then:
         noExceptionThrown()
     }
+
+    def "expires a batching storage in batches until one comes back short"() {
+        given:
+        def cutoff = Instant.now()
+        def storage = Mock(BatchExpiringStorage)
+        def service = new StorageExpiryService(storage, Duration.ofHours(1), Duration.ofHours(1), 3, Duration.ZERO, Duration.ZERO)
+
+        when:
+        service.run(cutoff)
+
+        then:
+        3 * storage.expireBatchOlderThan(cutoff, 3) >>> [3, 3, 1]
+        0 * storage.expireOlderThan(_)
+        service.runCount == 1
+        service.batchCount == 3
+        service.expiredCount == 7
+        service.lastRunExpiredCount == 7
+        service.unfinishedRunCount == 0
+
+        cleanup:
+        service.close()
+    }
+
+    def "a run stops starting batches once its time budget is spent"() {
+        given:
+        def storage = Stub(BatchExpiringStorage) {
+            expireBatchOlderThan(_ as Instant, 10) >> 10
+        }
+        def service = new StorageExpiryService(storage, Duration.ofHours(1), Duration.ofHours(1), 10,
+            Duration.ofMillis(20), Duration.ofMillis(50))
+
+        when:
+        service.run(Instant.now())
+
+        then:
+        service.unfinishedRunCount == 1
+        service.batchCount >= 2
+        service.expiredCount == service.batchCount * 10
+    }
+
+    def "a failing run is counted and doesn't stop the schedule"() {
+        given:
+        def calls = new AtomicInteger()
+        def storage = Stub(BatchExpiringStorage) {
+            expireBatchOlderThan(_ as Instant, _ as Integer) >> { calls.incrementAndGet(); throw new IllegalStateException('down') }
+        }
+        def service = new StorageExpiryService(storage, Duration.ofHours(1), Duration.ofMillis(50), 10,
+            Duration.ZERO, Duration.ZERO)
+
+        when:
+        await().atMost(5, SECONDS).until { service.failedRunCount >= 2 }
+        service.close()
+
+        then:
+        calls.get() >= 2
+    }
 }
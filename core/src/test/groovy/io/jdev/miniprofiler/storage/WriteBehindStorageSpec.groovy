@@ -0,0 +1,376 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.Storage.ListResultsOrder
+import io.jdev.miniprofiler.storage.WriteBehindStorage.OverflowPolicy
+import spock.lang.Specification
+
+import java.time.Instant
+import java.util.concurrent.CountDownLatch
+import java.util.logging.Handler
+import java.util.logging.Level
+import java.util.logging.LogRecord
+import java.util.logging.Logger
+
+import static java.util.concurrent.TimeUnit.SECONDS
+import static org.awaitility.Awaitility.await
+
+class WriteBehindStorageSpec extends Specification {
+
+    ProfilerProvider profilerProvider = Mock(ProfilerProvider)
+    CountDownLatch gate = new CountDownLatch(1)
+    GatedMapStorage delegate = new GatedMapStorage(gate: gate)
+
+    WriteBehindStorage storage
+
+    void cleanup() {
+        gate.countDown()
+        storage?.close()
+    }
+
+    void "saved sessions are written to the delegate in the background"() {
+        given:
+        storage = new WriteBehindStorage(delegate)
+        gate.countDown()
+        def profiler = newProfiler('test')
+
+        when:
+        storage.save(profiler)
+
+        then:
+        await().atMost(5, SECONDS).until { delegate.load(profiler.id) != null }
+        storage.flushedCount == 1
+        storage.queuedCount == 1
+        storage.droppedCount == 0
+    }
+
+    void "queued sessions are served before they are written"() {
+        given:
+        storage = new WriteBehindStorage(delegate)
+        def profiler = newProfiler('test')
+
+        when:
+        storage.save(profiler)
+        storage.setUnviewed('alice', profiler.id)
+
+        then:
+        delegate.load(profiler.id) == null
+        storage.load(profiler.id).is(profiler)
+        storage.list(10, null, null, ListResultsOrder.Descending).toList() == [profiler.id]
+        storage.getUnviewedIds('alice').toList() == [profiler.id]
+
+        when:
+        gate.countDown()
+
+        then: 'un-viewed flag is applied once the session is written'
+        await().atMost(5, SECONDS).until { delegate.getUnviewedIds('alice').toList() == [profiler.id] }
+        storage.load(profiler.id).is(profiler)
+    }
+
+    void "list merges queued and stored sessions in order"() {
+        given:
+        def stored1 = newProfiler('stored1')
+        Thread.sleep(10)
+        def queued = newProfiler('queued')
+        Thread.sleep(10)
+        def stored2 = newProfiler('stored2')
+        delegate.gate = new CountDownLatch(0)
+        delegate.save(stored1)
+        delegate.save(stored2)
+        delegate.gate = gate
+        storage = new WriteBehindStorage(delegate)
+
+        when:
+        storage.save(queued)
+
+        then:
+        storage.list(10, null, null, ListResultsOrder.Descending).toList() == [stored2.id, queued.id, stored1.id]
+        storage.list(2, null, null, ListResultsOrder.Ascending).toList() == [stored1.id, queued.id]
+        storage.listSummaries(10, null, null, ListResultsOrder.Descending)*.id == [stored2.id, queued.id, stored1.id]
+        storage.listSummaries(2, null, null, ListResultsOrder.Ascending)*.name == ['stored1', 'queued']
+
+        and: 'cursors are resolved and paged across both'
+        storage.cursorFor(queued.id) == ListCursor.of(queued.started, queued.id)
+        storage.list(10, storage.cursorFor(stored1.id), ListResultsOrder.Ascending).toList() == [queued.id, stored2.id]
+        storage.listSummaries(10, storage.cursorFor(stored2.id), ListResultsOrder.Descending)*.id == [queued.id, stored1.id]
+    }
+
+    void "drop newest discards sessions saved while the queue is full"() {
+        given:
+        storage = new WriteBehindStorage(delegate, 1, OverflowPolicy.DropNewest, 1, 1)
+        def first = newProfiler('first')
+        def second = newProfiler('second')
+        def third = newProfiler('third')
+
+        when: 'first is taken by the flusher and blocks, second fills the queue'
+        storage.save(first)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+        storage.save(second)
+        storage.save(third)
+
+        then:
+        storage.droppedCount == 1
+        storage.load(second.id).is(second)
+        storage.load(third.id) == null
+    }
+
+    void "drop oldest discards the oldest queued session"() {
+        given:
+        storage = new WriteBehindStorage(delegate, 1, OverflowPolicy.DropOldest, 1, 1)
+        def first = newProfiler('first')
+        def second = newProfiler('second')
+        def third = newProfiler('third')
+
+        when:
+        storage.save(first)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+        storage.save(second)
+        storage.save(third)
+
+        then:
+        storage.droppedCount == 1
+        storage.load(second.id) == null
+        storage.load(third.id).is(third)
+    }
+
+    void "close flushes queued sessions and closes the delegate"() {
+        given:
+        storage = new WriteBehindStorage(delegate, 10, OverflowPolicy.Block, 2, 5)
+        def profilers = (1..5).collect { newProfiler("p$it") }
+
+        when:
+        profilers.each { storage.save(it) }
+        gate.countDown()
+        storage.close()
+
+        then:
+        profilers.every { delegate.load(it.id) != null }
+        storage.flushedCount == 5
+        delegate.closed
+    }
+
+    void "close lets flushers finish the batch they are writing"() {
+        given:
+        storage = new WriteBehindStorage(delegate)
+        def profiler = newProfiler('test')
+        storage.save(profiler)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+
+        when: 'close starts while the flusher is blocked writing'
+        def closer = Thread.start { storage.close() }
+        Thread.sleep(200)
+        gate.countDown()
+        closer.join(10_000)
+
+        then:
+        !delegate.interrupted
+        delegate.load(profiler.id) != null
+        storage.flushedCount == 1
+        storage.failedCount == 0
+        delegate.closed
+    }
+
+    void "re-saved sessions replace their queued copy"() {
+        given:
+        storage = new WriteBehindStorage(delegate)
+        def blocker = newProfiler('blocker')
+        def first = newProfiler('first')
+        def second = new ProfilerImpl(first.id, 'second', 'second', ProfileLevel.Info, profilerProvider)
+
+        when:
+        storage.save(blocker)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+        storage.save(first)
+        storage.save(second)
+
+        then:
+        storage.queueSize == 1
+        storage.load(first.id).is(second)
+
+        when:
+        gate.countDown()
+
+        then:
+        await().atMost(5, SECONDS).until { storage.flushedCount == 2 }
+        delegate.savedNames == ['blocker', 'second']
+    }
+
+    void "an older copy being written is never written after a newer one"() {
+        given:
+        storage = new WriteBehindStorage(delegate, 10, OverflowPolicy.Block, 2, 1)
+        def first = newProfiler('first')
+        def second = new ProfilerImpl(first.id, 'second', 'second', ProfileLevel.Info, profilerProvider)
+
+        when: 'one flusher blocks writing the first copy and the other takes the second'
+        storage.save(first)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+        storage.save(second)
+        await().atMost(5, SECONDS).until { storage.queueSize == 0 }
+        gate.countDown()
+
+        then:
+        await().atMost(5, SECONDS).until { delegate.savedNames.size() == 2 }
+        delegate.savedNames == ['first', 'second']
+        delegate.load(first.id).name == 'second'
+    }
+
+    void "batches and their un-viewed flags are written with the bulk methods"() {
+        given:
+        storage = new WriteBehindStorage(delegate, 10, OverflowPolicy.Block, 1, 5)
+        def profilers = (1..3).collect { newProfiler("p$it") }
+
+        when:
+        profilers.each {
+            storage.save(it)
+            storage.setUnviewed('alice', it.id)
+        }
+        gate.countDown()
+
+        then:
+        await().atMost(5, SECONDS).until { storage.flushedCount == 3 }
+        delegate.savedBatches.flatten() == profilers*.id
+        await().atMost(5, SECONDS).until { delegate.getUnviewedIds('alice') as Set == profilers*.id as Set }
+        delegate.unviewedBatches.every { it.key == 'alice' }
+        delegate.unviewedBatches*.value.flatten() == profilers*.id
+    }
+
+    void "failed saves are counted and do not stop the flusher"() {
+        given:
+        def failing = new GatedMapStorage(gate: gate, failFor: 'bad')
+        storage = new WriteBehindStorage(failing)
+        gate.countDown()
+        def bad = newProfiler('bad')
+        def good = newProfiler('good')
+
+        when:
+        storage.save(bad)
+        storage.save(good)
+
+        then:
+        await().atMost(5, SECONDS).until { failing.load(good.id) != null }
+        storage.failedCount == 1
+        storage.load(bad.id) == null
+    }
+
+    void "the first failed save is logged, and later ones at most once a minute"() {
+        given:
+        def records = Collections.synchronizedList([])
+        def handler = new Handler() {
+            void publish(LogRecord record) { records << record }
+            void flush() {}
+            void close() {}
+        }
+        def logger = Logger.getLogger(WriteBehindStorage.name)
+        logger.addHandler(handler)
+        def failing = new GatedMapStorage(gate: gate, failFor: 'bad')
+        storage = new WriteBehindStorage(failing)
+        gate.countDown()
+
+        when:
+        3.times { storage.save(newProfiler('bad')) }
+
+        then:
+        await().atMost(5, SECONDS).until { storage.failedCount == 3 }
+        records.size() == 1
+        records[0].level == Level.WARNING
+        records[0].thrown.message == 'boom'
+
+        cleanup:
+        logger.removeHandler(handler)
+    }
+
+    void "expiry is passed on in batches when the delegate supports them"() {
+        given:
+        def batching = Mock(BatchExpiringStorage)
+        storage = new WriteBehindStorage(batching)
+        def cutoff = Instant.ofEpochMilli(1000L)
+
+        when:
+        def removed = storage.expireBatchOlderThan(cutoff, 10)
+
+        then:
+        1 * batching.expireBatchOlderThan(cutoff, 10) >> 10
+        0 * batching.expireOlderThan(_)
+        removed == 10
+    }
+
+    void "expiry falls back to expiring everything when the delegate can't batch"() {
+        given:
+        storage = new WriteBehindStorage(delegate)
+        gate.countDown()
+        def profiler = newProfiler('old')
+        storage.save(profiler)
+        await().atMost(5, SECONDS).until { delegate.load(profiler.id) != null }
+
+        when:
+        def removed = storage.expireBatchOlderThan(Instant.ofEpochMilli(profiler.started + 1), 10)
+
+        then:
+        removed == 0
+        delegate.load(profiler.id) == null
+    }
+
+    private ProfilerImpl newProfiler(String name) {
+        new ProfilerImpl(null, name, name, ProfileLevel.Info, profilerProvider)
+    }
+
+    static class GatedMapStorage extends MapStorage {
+        volatile CountDownLatch gate
+        String failFor
+        volatile boolean closed
+        volatile boolean interrupted
+        List<String> savedNames = Collections.synchronizedList([])
+        List<List<UUID>> savedBatches = Collections.synchronizedList([])
+        List<Map.Entry<String, List<UUID>>> unviewedBatches = Collections.synchronizedList([])
+
+        @Override
+        void saveAll(Collection<ProfilerImpl> profilers) {
+            savedBatches << profilers*.id
+            super.saveAll(profilers)
+        }
+
+        @Override
+        void setUnviewedAll(String user, Collection<UUID> ids) {
+            unviewedBatches << new AbstractMap.SimpleEntry(user, ids.toList())
+            super.setUnviewedAll(user, ids)
+        }
+
+        @Override
+        void save(ProfilerImpl profiler) {
+            try {
+                gate.await()
+            } catch (InterruptedException e) {
+                interrupted = true
+                throw e
+            }
+            if (profiler.name == failFor) {
+                throw new IllegalStateException('boom')
+            }
+            savedNames << profiler.name
+            super.save(profiler)
+        }
+
+        @Override
+        void close() {
+            closed = true
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.gradle.accessors.dm.LibrariesForLibs
+
+plugins {
+    id("java-library")
+}
+
+// JMH benchmarks live in src/jmh/java. They are compiled as part of sanityCheck so they
+// don't rot, but are only run on demand:
+//
+//   ./gradlew :core:jmh
+//   ./gradlew :core:jmh -Pjmh.includes=IdGeneratorBenchmark
+//
+// Any further JMH command line options can be passed with -Pjmh.args="-f 1 -wi 3".
+
+val libs = the<LibrariesForLibs>()
+
+val jmh = sourceSets.create("jmh") {
+    compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+    runtimeClasspath += sourceSets["main"].output + sourceSets["main"].runtimeClasspath
+}
+
+dependencies {
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks"
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    val includes = providers.gradleProperty("jmh.includes")
+    val extraArgs = providers.gradleProperty("jmh.args")
+    argumentProviders.add(CommandLineArgumentProvider {
+        includes.map { listOf(it) }.getOrElse(emptyList()) +
+            extraArgs.map { it.split(" ").filter(String::isNotBlank) }.getOrElse(emptyList())
+    })
+}
@@ -23,8 +23,10 @@ import io.jdev.miniprofiler.StaticProfilerProvider;
 import io.jdev.miniprofiler.internal.ClientTiming;
 import io.jdev.miniprofiler.server.Pages;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 import io.jdev.miniprofiler.server.Ids;
 import io.jdev.miniprofiler.server.ResultsRequest;
+import io.jdev.miniprofiler.storage.ListCursor;
 import io.jdev.miniprofiler.storage.Storage;
 import io.jdev.miniprofiler.server.ResourceHelper;
 
@@ -36,7 +38,8 @@ import java.io.OutputStream;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -215,6 +218,7 @@ public class ProfilingFilter implements Filter {
             storage.setViewed(user, id);
         }
 
+        profiler.formatCommands(profilerProvider);
         if (jsonRequest) {
             renderJson(profiler, response);
         } else {
@@ -234,33 +238,31 @@ public class ProfilingFilter implements Filter {
 
     private void serveResultsList(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Storage storage = profilerProvider.getStorage();
-        Collection<UUID> ids = storage.list(100, null, null, Storage.ListResultsOrder.Descending);
+        List<ProfilerSummary> summaries = null;
 
         String lastIdParam = request.getParameter("last-id");
         if (lastIdParam != null && !lastIdParam.isEmpty()) {
             try {
-                UUID lastId = UUID.fromString(lastIdParam);
-                ProfilerImpl lastProfiler = storage.load(lastId);
-                if (lastProfiler != null) {
-                    long cutoff = lastProfiler.getStarted();
-                    ids = ids.stream()
-                        .filter(id -> {
-                            ProfilerImpl p = storage.load(id);
-                            return p != null && p.getStarted() > cutoff;
-                        })
-                        .collect(java.util.stream.Collectors.toList());
+                // the UI polls for sessions newer than the last one it shows, so page forward from that one
+                ListCursor cursor = storage.cursorFor(UUID.fromString(lastIdParam));
+                if (cursor != null) {
+                    summaries = new ArrayList<>(storage.listSummaries(100, cursor, Storage.ListResultsOrder.Ascending));
+                    Collections.reverse(summaries);
                 }
             } catch (IllegalArgumentException ignored) {
                 // ignore bad last-id
             }
         }
+        if (summaries == null) {
+            summaries = storage.listSummaries(100, null, null, Storage.ListResultsOrder.Descending);
+        }
 
         response.setContentType(CONTENT_TYPE_JSON);
         if (allowedOrigin != null) {
             response.addHeader("Access-Control-Allow-Origin", allowedOrigin);
         }
         try (Writer writer = response.getWriter()) {
-            writer.write(Pages.renderResultListJson(ids, storage));
+            writer.write(Pages.renderResultListJson(summaries));
         }
     }
 
@@ -270,7 +272,7 @@ public class ProfilingFilter implements Filter {
             response.addHeader("Access-Control-Allow-Origin", allowedOrigin);
         }
         try (Writer writer = response.getWriter()) {
-            writer.write(profiler.asUiJson());
+            profiler.writeUiJson(writer);
         }
     }
 
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.jdbc;
+
+import io.jdev.miniprofiler.LazyCommand;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.List;
+
+/**
+ * The SQL of one execution together with an immutable snapshot of its bound parameters,
+ * interpolated into a self-contained statement only when the command is first rendered.
+ *
+ * <p>Parameter values are captured as {@code null}, a {@link Number}, a {@link Boolean} or
+ * their {@link String} form, so the snapshot does not hold on to live JDBC objects and renders
+ * the same whenever it is asked to.</p>
+ */
+final class InterpolatedSql implements LazyCommand {
+
+    // marks a positional parameter that was never bound
+    private static final Object UNSET = new Object();
+
+    private final String[] sql;
+    // indexed by statement then by parameter index - 1; null for a statement without positional parameters
+    private final Object[][] parameters;
+
+    private InterpolatedSql(String[] sql, Object[][] parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Captures the SQL and first-batch parameters of the given queries.
+     *
+     * @param queryInfoList the queries of one execution
+     * @param sqlTexts      canonicalises the SQL text, so that repeated statements share one string
+     * @return the snapshot, or {@code null} if there are no parameters to interpolate
+     */
+    static InterpolatedSql capture(List<QueryInfo> queryInfoList, SqlTexts sqlTexts) {
+        int count = queryInfoList.size();
+        String[] sql = new String[count];
+        Object[][] parameters = new Object[count][];
+        boolean anyParameters = false;
+        for (int i = 0; i < count; i++) {
+            QueryInfo queryInfo = queryInfoList.get(i);
+            sql[i] = sqlTexts.canonical(queryInfo.getQuery());
+            parameters[i] = captureParameters(queryInfo);
+            anyParameters |= parameters[i] != null;
+        }
+        return anyParameters ? new InterpolatedSql(sql, parameters) : null;
+    }
+
+    /**
+     * Captures the positional parameters of the given query, by index.
+     *
+     * <p>For batched executions only the first batch iteration's parameters are used
+     * for interpolation; this matches the existing log4jdbc-based behaviour.</p>
+     */
+    private static Object[] captureParameters(QueryInfo queryInfo) {
+        List<List<ParameterSetOperation>> paramsList = queryInfo.getParametersList();
+        if (paramsList == null || paramsList.isEmpty()) {
+            return null;
+        }
+        List<ParameterSetOperation> params = paramsList.get(0);
+        if (params == null || params.isEmpty()) {
+            return null;
+        }
+        Object[] values = null;
+        for (ParameterSetOperation op : params) {
+            if (ParameterSetOperation.isRegisterOutParameterOperation(op)) {
+                continue;
+            }
+            Object[] args = op.getArgs();
+            if (args == null || args.length < 1 || !(args[0] instanceof Integer)) {
+                // skip named parameters (CallableStatement String-keyed setters); only positional ? markers are interpolated
+                continue;
+            }
+            int index = (Integer) args[0];
+            if (index < 1) {
+                continue;
+            }
+            Object value = args.length >= 2 ? args[1] : null;
+            if (ParameterSetOperation.isSetNullParameterOperation(op)) {
+                value = null;
+            }
+            if (values == null || index > values.length) {
+                values = grow(values, Math.max(index, params.size()));
+            }
+            values[index - 1] = snapshot(value);
+        }
+        return values;
+    }
+
+    private static Object[] grow(Object[] values, int size) {
+        Object[] grown = new Object[size];
+        int copied = values == null ? 0 : values.length;
+        if (copied > 0) {
+            System.arraycopy(values, 0, grown, 0, copied);
+        }
+        for (int i = copied; i < size; i++) {
+            grown[i] = UNSET;
+        }
+        return grown;
+    }
+
+    private static Object snapshot(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof String) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    @Override
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sql.length; i++) {
+            if (i > 0) {
+                sb.append("\n\n");
+            }
+            appendInterpolated(sb, sql[i], parameters[i]);
+        }
+        return sb.toString();
+    }
+
+    // replaces ? markers in order with the bound values, stopping at the first unbound one
+    private static void appendInterpolated(StringBuilder sb, String sql, Object[] values) {
+        if (values == null) {
+            sb.append(sql);
+            return;
+        }
+        int paramIdx = 1;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?' && paramIdx <= values.length && values[paramIdx - 1] != UNSET) {
+                appendValue(sb, values[paramIdx - 1]);
+                paramIdx++;
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("NULL");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            sb.append('\'').append(value.toString().replace("'", "''")).append('\'');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+}
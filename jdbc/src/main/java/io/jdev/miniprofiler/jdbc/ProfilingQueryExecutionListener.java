@@ -21,10 +21,9 @@ import io.jdev.miniprofiler.ProfilerProvider;
 import net.ttddyy.dsproxy.ExecutionInfo;
 import net.ttddyy.dsproxy.QueryInfo;
 import net.ttddyy.dsproxy.listener.QueryExecutionListener;
-import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
 
 import java.util.List;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link QueryExecutionListener} that records SQL query timings in MiniProfiler.
@@ -32,11 +31,19 @@ import java.util.TreeMap;
  * <p>For each executed query, records a custom timing of type {@code "sql"} and
  * subtype {@code "query"} against the current {@link Profiler} obtained from the
  * configured {@link ProfilerProvider}. Prepared-statement parameters are interpolated
- * into the SQL text so the recorded command reads as a self-contained statement.</p>
+ * into the SQL text so the recorded command reads as a self-contained statement.
+ * The interpolation is deferred until the command is first read, as most sessions are
+ * never viewed; until then the timing holds the SQL and a snapshot of its parameters.</p>
+ *
+ * <p>Queries are timed with {@link System#nanoTime()} between {@link #beforeQuery} and
+ * {@link #afterQuery}, as {@link ExecutionInfo#getElapsedTime()} only has millisecond resolution.</p>
  */
 class ProfilingQueryExecutionListener implements QueryExecutionListener {
 
     private final ProfilerProvider profilerProvider;
+    private final SqlTexts sqlTexts = new SqlTexts(SqlTexts.DEFAULT_MAX_ENTRIES);
+    // start of the query running on each thread; statements on one thread don't overlap
+    private final ThreadLocal<QueryStart> queryStart = ThreadLocal.withInitial(QueryStart::new);
 
     /**
      * Creates a new listener backed by the given profiler provider.
@@ -52,88 +59,53 @@ class ProfilingQueryExecutionListener implements QueryExecutionListener {
 
     @Override
     public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
-        // no-op; timing is recorded in afterQuery using ExecutionInfo.getElapsedTime()
+        QueryStart start = queryStart.get();
+        start.nanos = System.nanoTime();
+        start.set = true;
     }
 
     @Override
     public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedNanos = elapsedNanos(execInfo);
         Profiler profiler = profilerProvider.current();
         if (!profiler.isActive()) {
-            // No live profiling session; skip the (non-trivial) SQL rendering entirely.
+            // No live profiling session; skip capturing the SQL entirely.
             return;
         }
-        long elapsed = execInfo.getElapsedTime();
-        StringBuilder sql = new StringBuilder();
-        for (QueryInfo queryInfo : queryInfoList) {
-            if (sql.length() > 0) {
-                sql.append("\n\n");
-            }
-            sql.append(renderSql(queryInfo));
+        InterpolatedSql interpolated = InterpolatedSql.capture(queryInfoList, sqlTexts);
+        if (interpolated != null) {
+            profiler.addLazyCustomTiming("sql", "query", interpolated, elapsedNanos, TimeUnit.NANOSECONDS);
+        } else {
+            profiler.addCustomTiming("sql", "query", rawSql(queryInfoList), elapsedNanos, TimeUnit.NANOSECONDS);
         }
-        profiler.addCustomTiming("sql", "query", sql.toString(), elapsed);
     }
 
-    /**
-     * Renders the given {@link QueryInfo} as a self-contained SQL string with any
-     * positional prepared-statement parameters interpolated in place of {@code ?}.
-     *
-     * <p>For batched executions only the first batch iteration's parameters are used
-     * for interpolation; this matches the existing log4jdbc-based behaviour.</p>
-     *
-     * @param queryInfo the query info from datasource-proxy
-     * @return the SQL text with parameters interpolated, or the raw SQL if no parameters were captured
-     */
-    private static String renderSql(QueryInfo queryInfo) {
-        String sql = queryInfo.getQuery();
-        List<List<ParameterSetOperation>> paramsList = queryInfo.getParametersList();
-        if (paramsList == null || paramsList.isEmpty()) {
-            return sql;
+    private long elapsedNanos(ExecutionInfo execInfo) {
+        QueryStart start = queryStart.get();
+        if (!start.set) {
+            // beforeQuery wasn't seen for this query, fall back to the proxy's millisecond timing
+            return TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime());
         }
-        List<ParameterSetOperation> params = paramsList.get(0);
-        if (params == null || params.isEmpty()) {
-            return sql;
-        }
-        TreeMap<Integer, String> byIndex = new TreeMap<Integer, String>();
-        for (ParameterSetOperation op : params) {
-            if (ParameterSetOperation.isRegisterOutParameterOperation(op)) {
-                continue;
-            }
-            Object[] args = op.getArgs();
-            if (args == null || args.length < 1 || !(args[0] instanceof Integer)) {
-                // skip named parameters (CallableStatement String-keyed setters); only positional ? markers are interpolated
-                continue;
-            }
-            int index = (Integer) args[0];
-            Object value = args.length >= 2 ? args[1] : null;
-            if (ParameterSetOperation.isSetNullParameterOperation(op)) {
-                value = null;
-            }
-            byIndex.put(index, formatValue(value));
-        }
-        if (byIndex.isEmpty()) {
-            return sql;
-        }
-        StringBuilder sb = new StringBuilder(sql.length() + byIndex.size() * 8);
-        int paramIdx = 1;
-        for (int i = 0; i < sql.length(); i++) {
-            char c = sql.charAt(i);
-            if (c == '?' && byIndex.containsKey(paramIdx)) {
-                sb.append(byIndex.get(paramIdx));
-                paramIdx++;
-            } else {
-                sb.append(c);
-            }
-        }
-        return sb.toString();
+        start.set = false;
+        return System.nanoTime() - start.nanos;
+    }
+
+    private static final class QueryStart {
+        long nanos;
+        boolean set;
     }
 
-    private static String formatValue(Object value) {
-        if (value == null) {
-            return "NULL";
+    private String rawSql(List<QueryInfo> queryInfoList) {
+        if (queryInfoList.size() == 1) {
+            return sqlTexts.canonical(queryInfoList.get(0).getQuery());
         }
-        if (value instanceof Number || value instanceof Boolean) {
-            return value.toString();
+        StringBuilder sql = new StringBuilder();
+        for (QueryInfo queryInfo : queryInfoList) {
+            if (sql.length() > 0) {
+                sql.append("\n\n");
+            }
+            sql.append(queryInfo.getQuery());
         }
-        return "'" + value.toString().replace("'", "''") + "'";
+        return sql.toString();
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.jdbc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded table of SQL text, so that statements which repeat with the same text share
+ * one {@link String} instance rather than each execution holding its own copy.
+ *
+ * <p>Once the table is full, new text is passed through unshared; the statements an
+ * application runs most are normally the first ones it runs.</p>
+ */
+final class SqlTexts {
+
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final ConcurrentMap<String, String> texts = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    SqlTexts(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the shared instance equal to the given SQL.
+     *
+     * @param sql the SQL text, may be null
+     * @return the shared instance, or {@code sql} itself if it is new and the table is full
+     */
+    String canonical(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        String existing = texts.get(sql);
+        if (existing != null) {
+            return existing;
+        }
+        if (texts.size() >= maxEntries) {
+            return sql;
+        }
+        existing = texts.putIfAbsent(sql, sql);
+        return existing != null ? existing : sql;
+    }
+
+    int size() {
+        return texts.size();
+    }
+}
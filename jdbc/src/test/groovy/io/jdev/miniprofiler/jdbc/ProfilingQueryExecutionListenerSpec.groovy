@@ -16,12 +16,14 @@
 
 package io.jdev.miniprofiler.jdbc
 
+import io.jdev.miniprofiler.LazyCommand
 import io.jdev.miniprofiler.Profiler
 import io.jdev.miniprofiler.ProfilerProvider
 import io.jdev.miniprofiler.internal.NullProfiler
 import io.jdev.miniprofiler.test.TestProfilerProvider
 import net.ttddyy.dsproxy.ExecutionInfo
 import net.ttddyy.dsproxy.QueryInfo
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation
 import org.h2.jdbcx.JdbcDataSource
 import spock.lang.Specification
 
@@ -29,6 +31,7 @@ import java.sql.Connection
 import java.sql.PreparedStatement
 import java.sql.ResultSet
 import java.sql.Statement
+import java.util.concurrent.TimeUnit
 
 class ProfilingQueryExecutionListenerSpec extends Specification {
 
@@ -159,6 +162,79 @@ class ProfilingQueryExecutionListenerSpec extends Specification {
         0 * execInfo._
     }
 
+    void "defers parameter interpolation until the command is read"() {
+        given:
+        def recording = Mock(Profiler) {
+            isActive() >> true
+        }
+        def listener = new ProfilingQueryExecutionListener(Stub(ProfilerProvider) {
+            current() >> recording
+        })
+        def params = [ps(1, 'Alice'), ps(2, 42L)]
+        def queryInfo = new QueryInfo("select * from people where name = ? and id = ?")
+        queryInfo.parametersList = [params]
+        LazyCommand command = null
+
+        when:
+        listener.afterQuery(Stub(ExecutionInfo), [queryInfo])
+
+        then:
+        1 * recording.addLazyCustomTiming("sql", "query", _, _, _) >> { args -> command = args[2] }
+        0 * recording.addCustomTiming(*_)
+
+        when: 'the bound values change after the statement ran'
+        params[0].args[1] = 'Bob'
+
+        then: 'the captured snapshot is unaffected'
+        command.render() == "select * from people where name = 'Alice' and id = 42"
+    }
+
+    void "repeated statements share one SQL string"() {
+        given:
+        def recording = Mock(Profiler) {
+            isActive() >> true
+        }
+        def listener = new ProfilingQueryExecutionListener(Stub(ProfilerProvider) {
+            current() >> recording
+        })
+        def commands = []
+
+        when:
+        2.times {
+            listener.afterQuery(Stub(ExecutionInfo), [new QueryInfo(new String("select 1"))])
+        }
+
+        then:
+        2 * recording.addCustomTiming("sql", "query", _, _, _) >> { args -> commands << args[2] }
+        commands[0] == "select 1"
+        commands[0].is(commands[1])
+    }
+
+    void "times queries in nanoseconds from beforeQuery to afterQuery"() {
+        given:
+        def recording = Mock(Profiler) {
+            isActive() >> true
+        }
+        def listener = new ProfilingQueryExecutionListener(Stub(ProfilerProvider) {
+            current() >> recording
+        })
+        def queryInfos = [new QueryInfo("select 1")]
+        def execInfo = Stub(ExecutionInfo) {
+            getElapsedTime() >> 0L
+        }
+
+        when:
+        listener.beforeQuery(execInfo, queryInfos)
+        listener.afterQuery(execInfo, queryInfos)
+
+        then:
+        1 * recording.addCustomTiming("sql", "query", "select 1", { it > 0 }, TimeUnit.NANOSECONDS)
+    }
+
+    private static ParameterSetOperation ps(int index, Object value) {
+        new ParameterSetOperation(PreparedStatement.getMethod("setObject", int, Object), [index, value] as Object[])
+    }
+
     void "records a single timing for a batch with concatenated queries"() {
         when:
         try (Connection c = pds.getConnection(); Statement s = c.createStatement()) {
@@ -20,6 +20,8 @@ import io.jdev.miniprofiler.ProfilerProvider;
 import org.jooq.ExecuteContext;
 import org.jooq.impl.DefaultExecuteListener;
 
+import java.util.concurrent.TimeUnit;
+
 import static io.jdev.miniprofiler.jooq.MiniProfilerJooqUtil.renderInlined;
 
 /**
@@ -40,9 +42,19 @@ import static io.jdev.miniprofiler.jooq.MiniProfilerJooqUtil.renderInlined;
 @SuppressWarnings("WeakerAccess")
 public class MiniProfilerExecuteListener extends DefaultExecuteListener {
 
+    // which of the millisecond hooks each subclass overrides, so that they are still called
+    private static final ClassValue<LegacyHooks> LEGACY_HOOKS = new ClassValue<LegacyHooks>() {
+        @Override
+        protected LegacyHooks computeValue(Class<?> type) {
+            return new LegacyHooks(
+                overrides(type, "maybeAddTiming", ExecuteContext.class, long.class),
+                overrides(type, "addTiming", ExecuteContext.class, String.class, long.class));
+        }
+    };
+
     /** The profiler provider used to record SQL timings. */
     protected final ProfilerProvider provider;
-    /** The start time in milliseconds of the current SQL execution. */
+    /** The {@link System#nanoTime()} reading at the start of the current SQL execution. */
     private long start;
 
     /**
@@ -56,15 +68,19 @@ public class MiniProfilerExecuteListener extends DefaultExecuteListener {
     /** Records the start time of the SQL execution. */
     @Override
     public void start(ExecuteContext ctx) {
-        start = System.currentTimeMillis();
+        start = System.nanoTime();
     }
 
     /** Records the timing if a profiler is active and the context contains a SQL statement. */
     @Override
     public void end(ExecuteContext ctx) {
         if (provider.hasCurrent()) {
-            long duration = System.currentTimeMillis() - start;
-            maybeAddTiming(ctx, duration);
+            long duration = System.nanoTime() - start;
+            if (LEGACY_HOOKS.get(getClass()).maybeAddTiming) {
+                maybeAddTiming(ctx, TimeUnit.NANOSECONDS.toMillis(duration));
+            } else {
+                maybeAddTiming(ctx, duration, TimeUnit.NANOSECONDS);
+            }
         }
     }
 
@@ -72,25 +88,86 @@ public class MiniProfilerExecuteListener extends DefaultExecuteListener {
      * Adds a timing if the context contains a renderable SQL statement. Override to customise filtering.
      *
      * @param ctx the jOOQ execute context
-     * @param duration the duration of the execution in milliseconds
+     * @param duration the duration of the execution
+     * @param unit the unit of {@code duration}
      */
-    protected void maybeAddTiming(ExecuteContext ctx, long duration) {
+    protected void maybeAddTiming(ExecuteContext ctx, long duration, TimeUnit unit) {
         String query = renderInlined(ctx);
         if (query != null) {
-            addTiming(ctx, query, duration);
+            addTiming(ctx, query, duration, unit);
         }
     }
 
+    /**
+     * Adds a timing if the context contains a renderable SQL statement.
+     *
+     * @param ctx the jOOQ execute context
+     * @param duration the duration of the execution in milliseconds
+     * @deprecated override {@link #maybeAddTiming(ExecuteContext, long, TimeUnit)} instead;
+     *     {@link #end(ExecuteContext)} only calls this, with the duration truncated to
+     *     milliseconds, when a subclass overrides it
+     */
+    @Deprecated
+    protected void maybeAddTiming(ExecuteContext ctx, long duration) {
+        maybeAddTiming(ctx, duration, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Records the given SQL query and duration in the current profiler session. Override to customise recording.
      *
      * @param ctx the jOOQ execute context
      * @param query the SQL query string to record
-     * @param duration the duration of the execution in milliseconds
+     * @param duration the duration of the execution
+     * @param unit the unit of {@code duration}
      */
     @SuppressWarnings("unused")
+    protected void addTiming(ExecuteContext ctx, String query, long duration, TimeUnit unit) {
+        if (LEGACY_HOOKS.get(getClass()).addTiming) {
+            addTiming(ctx, query, unit.toMillis(duration));
+        } else {
+            record(query, duration, unit);
+        }
+    }
+
+    /**
+     * Records the given SQL query and duration in the current profiler session.
+     *
+     * @param ctx the jOOQ execute context
+     * @param query the SQL query string to record
+     * @param duration the duration of the execution in milliseconds
+     * @deprecated override {@link #addTiming(ExecuteContext, String, long, TimeUnit)} instead;
+     *     it only calls this, with the duration truncated to milliseconds, when a subclass
+     *     overrides it
+     */
+    @Deprecated
     protected void addTiming(ExecuteContext ctx, String query, long duration) {
-        provider.current().addCustomTiming("sql", "query", query, duration);
+        record(query, duration, TimeUnit.MILLISECONDS);
+    }
+
+    private void record(String query, long duration, TimeUnit unit) {
+        provider.current().addCustomTiming("sql", "query", query, duration, unit);
+    }
+
+    private static boolean overrides(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != MiniProfilerExecuteListener.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // not declared at this level
+            }
+        }
+        return false;
+    }
+
+    private static final class LegacyHooks {
+        final boolean maybeAddTiming;
+        final boolean addTiming;
+
+        LegacyHooks(boolean maybeAddTiming, boolean addTiming) {
+            this.maybeAddTiming = maybeAddTiming;
+            this.addTiming = addTiming;
+        }
     }
 
 }
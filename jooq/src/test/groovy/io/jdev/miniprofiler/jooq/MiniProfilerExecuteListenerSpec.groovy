@@ -17,6 +17,7 @@
 package io.jdev.miniprofiler.jooq
 
 import groovy.sql.Sql
+import io.jdev.miniprofiler.ProfilerProvider
 import io.jdev.miniprofiler.test.TestProfilerProvider
 import org.h2.jdbcx.JdbcDataSource
 import org.jooq.Batch
@@ -123,6 +124,27 @@ class MiniProfilerExecuteListenerSpec extends Specification {
         ]
     }
 
+    void "subclasses overriding a millisecond hook still have it called"() {
+        given:
+        def listener = listenerClass.newInstance(tpp)
+        def legacyDb = DSL.using(
+            new DefaultConfiguration()
+                .set(SQLDialect.H2)
+                .set(ds)
+                .set({ -> listener } as ExecuteListenerProvider, typeTrackingListener())
+        )
+
+        when:
+        def sqlStatements = profile(legacyDb.resultQuery("select * from foo where id = ?", 1))
+
+        then:
+        listener.queries == ["select * from foo where id = 1"]
+        sqlStatements == listener.queries
+
+        where:
+        listenerClass << [LegacyMaybeAddTimingListener, LegacyAddTimingListener]
+    }
+
     private List<String> profile(Query query) {
         profile { -> query.execute() }
     }
@@ -145,6 +167,34 @@ class MiniProfilerExecuteListenerSpec extends Specification {
         { ->  new TypeTrackingExecuteListener() }
     }
 
+    static class LegacyMaybeAddTimingListener extends MiniProfilerExecuteListener {
+        List<String> queries = []
+
+        LegacyMaybeAddTimingListener(ProfilerProvider provider) {
+            super(provider)
+        }
+
+        @Override
+        protected void maybeAddTiming(ExecuteContext ctx, long duration) {
+            queries << MiniProfilerJooqUtil.renderInlined(ctx)
+            super.maybeAddTiming(ctx, duration)
+        }
+    }
+
+    static class LegacyAddTimingListener extends MiniProfilerExecuteListener {
+        List<String> queries = []
+
+        LegacyAddTimingListener(ProfilerProvider provider) {
+            super(provider)
+        }
+
+        @Override
+        protected void addTiming(ExecuteContext ctx, String query, long duration) {
+            queries << query
+            super.addTiming(ctx, query, duration)
+        }
+    }
+
     private class TypeTrackingExecuteListener extends DefaultExecuteListener {
         @Override
         void start(ExecuteContext ctx) {
@@ -17,6 +17,9 @@
 package io.jdev.miniprofiler.ratpack;
 
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+import io.jdev.miniprofiler.storage.ListCursor;
+import io.jdev.miniprofiler.storage.NonBlockingStorage;
 import io.jdev.miniprofiler.storage.Storage;
 import ratpack.exec.Blocking;
 import ratpack.exec.Operation;
@@ -24,6 +27,7 @@ import ratpack.exec.Promise;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -47,6 +51,41 @@ public interface AsyncStorage extends Storage {
         return Blocking.get(() -> list(maxResults, start, finish, orderBy));
     }
 
+    /**
+     * Lists the results list fields of profiling sessions.
+     *
+     * @param maxResults the maximum number of summaries to list.
+     * @param start      the date to start searching
+     * @param finish     the end date
+     * @param orderBy    which order to list the summaries
+     * @return a promise of summaries of the sessions that match the dates
+     */
+    default Promise<List<ProfilerSummary>> listSummariesAsync(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return Blocking.get(() -> listSummaries(maxResults, start, finish, orderBy));
+    }
+
+    /**
+     * Lists the results list fields of the profiling sessions that come after the given cursor.
+     *
+     * @param maxResults the maximum number of summaries to list.
+     * @param after      the cursor to list after, or {@code null} to list from the beginning
+     * @param orderBy    which order to list the summaries
+     * @return a promise of summaries of the sessions following the cursor
+     */
+    default Promise<List<ProfilerSummary>> listSummariesAsync(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return Blocking.get(() -> listSummaries(maxResults, after, orderBy));
+    }
+
+    /**
+     * Returns the list cursor positioned at the given profiling session.
+     *
+     * @param id the id of the profiling session
+     * @return a promise of the cursor, or of {@code null} if the session isn't stored
+     */
+    default Promise<ListCursor> cursorForAsync(UUID id) {
+        return Blocking.get(() -> cursorFor(id));
+    }
+
     /**
      * Stores the given profiling information
      *
@@ -110,6 +149,8 @@ public interface AsyncStorage extends Storage {
 
     /**
      * Wraps the given {@link Storage} as an {@link AsyncStorage}, returning it unchanged if it already is one.
+     * A {@link NonBlockingStorage} is saved through {@link NonBlockingStorage#saveNonBlocking} rather than
+     * on a blocking thread.
      *
      * @param storage the storage to wrap
      * @return the given storage as an {@link AsyncStorage}
@@ -124,11 +165,45 @@ public interface AsyncStorage extends Storage {
                     return storage.list(maxResults, start, finish, orderBy);
                 }
 
+                @Override
+                public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+                    return storage.listSummaries(maxResults, start, finish, orderBy);
+                }
+
+                @Override
+                public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+                    return storage.list(maxResults, after, orderBy);
+                }
+
+                @Override
+                public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+                    return storage.listSummaries(maxResults, after, orderBy);
+                }
+
+                @Override
+                public ListCursor cursorFor(UUID id) {
+                    return storage.cursorFor(id);
+                }
+
                 @Override
                 public void save(ProfilerImpl profiler) {
                     storage.save(profiler);
                 }
 
+                @Override
+                public Operation saveAsync(ProfilerImpl profiler) {
+                    if (storage instanceof NonBlockingStorage) {
+                        NonBlockingStorage nonBlocking = (NonBlockingStorage) storage;
+                        return Promise.<Void>async(down -> down.accept(nonBlocking.saveNonBlocking(profiler))).operation();
+                    }
+                    return AsyncStorage.super.saveAsync(profiler);
+                }
+
+                @Override
+                public void saveAll(Collection<ProfilerImpl> profilers) {
+                    storage.saveAll(profilers);
+                }
+
                 @Override
                 public ProfilerImpl load(UUID id) {
                     return storage.load(id);
@@ -144,6 +219,16 @@ public interface AsyncStorage extends Storage {
                     storage.setViewed(user, id);
                 }
 
+                @Override
+                public void setUnviewedAll(String user, Collection<UUID> ids) {
+                    storage.setUnviewedAll(user, ids);
+                }
+
+                @Override
+                public void setViewedAll(String user, Collection<UUID> ids) {
+                    storage.setViewedAll(user, ids);
+                }
+
                 @Override
                 public Collection<UUID> getUnviewedIds(String user) {
                     return storage.getUnviewedIds(user);
@@ -105,6 +105,7 @@ public class MiniProfilerResultsHandler implements Handler {
                             }
                             String user = profiler.getUser();
                             Runnable render = () -> {
+                                profiler.formatCommands(provider);
                                 if (isJsonRequest(ctx)) {
                                     renderJson(ctx, profiler);
                                 } else {
@@ -19,14 +19,14 @@ package io.jdev.miniprofiler.ratpack;
 import com.google.inject.Inject;
 import io.jdev.miniprofiler.ProfilerProvider;
 import io.jdev.miniprofiler.server.Pages;
-import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 import io.jdev.miniprofiler.storage.Storage;
 import ratpack.exec.Promise;
 import ratpack.handling.Context;
 import ratpack.handling.Handler;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -53,10 +53,9 @@ public class MiniProfilerResultsListHandler implements Handler {
     public void handle(Context ctx) throws Exception {
         AsyncStorage asyncStorage = AsyncStorage.adapt(provider.getStorage());
 
-        asyncStorage.listAsync(100, null, null, Storage.ListResultsOrder.Descending)
-            .flatMap(ids -> applyLastId(ctx, asyncStorage, ids))
-            .then(ids -> {
-                String json = Pages.renderResultListJson(ids, provider.getStorage());
+        listSummaries(ctx, asyncStorage)
+            .then(summaries -> {
+                String json = Pages.renderResultListJson(summaries);
                 ctx.getResponse()
                     .status(200)
                     .contentType(APPLICATION_JSON)
@@ -64,30 +63,31 @@ public class MiniProfilerResultsListHandler implements Handler {
             });
     }
 
-    private Promise<Collection<UUID>> applyLastId(Context ctx, AsyncStorage asyncStorage, Collection<UUID> ids) {
+    private Promise<List<ProfilerSummary>> listSummaries(Context ctx, AsyncStorage asyncStorage) {
         String lastIdParam = ctx.getRequest().getQueryParams().get("last-id");
         if (lastIdParam == null || lastIdParam.isEmpty()) {
-            return Promise.value(ids);
+            return listLatest(asyncStorage);
         }
         UUID lastId;
         try {
             lastId = UUID.fromString(lastIdParam);
         } catch (IllegalArgumentException e) {
-            return Promise.value(ids);
+            return listLatest(asyncStorage);
         }
-        return asyncStorage.loadAsync(lastId).map(lastProfiler -> {
-            if (lastProfiler == null) {
-                return ids;
+        // the UI polls for sessions newer than the last one it shows, so page forward from that one
+        return asyncStorage.cursorForAsync(lastId).flatMap(cursor -> {
+            if (cursor == null) {
+                return listLatest(asyncStorage);
             }
-            long cutoff = lastProfiler.getStarted();
-            List<UUID> filtered = new ArrayList<>();
-            for (UUID id : ids) {
-                ProfilerImpl p = provider.getStorage().load(id);
-                if (p != null && p.getStarted() > cutoff) {
-                    filtered.add(id);
-                }
-            }
-            return filtered;
+            return asyncStorage.listSummariesAsync(100, cursor, Storage.ListResultsOrder.Ascending).map(summaries -> {
+                List<ProfilerSummary> newestFirst = new ArrayList<>(summaries);
+                Collections.reverse(newestFirst);
+                return newestFirst;
+            });
         });
     }
+
+    private Promise<List<ProfilerSummary>> listLatest(AsyncStorage asyncStorage) {
+        return asyncStorage.listSummariesAsync(100, null, null, Storage.ListResultsOrder.Descending);
+    }
 }
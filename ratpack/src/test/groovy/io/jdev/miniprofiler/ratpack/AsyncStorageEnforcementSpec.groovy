@@ -25,15 +25,12 @@ class AsyncStorageEnforcementSpec extends Specification {
     static final Set<String> ALLOWED_FILES = ['AsyncStorage.java'] as Set
 
     // Pre-existing violations that should be fixed separately
-    // TODO: convert MiniProfilerResultsListHandler to use async storage for load() calls
-    static final Set<String> KNOWN_EXCEPTIONS = [
-        'MiniProfilerResultsListHandler.java',
-    ] as Set
+    static final Set<String> KNOWN_EXCEPTIONS = [] as Set
 
     // Patterns that indicate direct synchronous storage usage
     static final List<Map> SYNC_PATTERNS = [
         [pattern: ~/Ids\.buildIdsHeader\s*\([^)]*ProfilerProvider/, description: 'Ids.buildIdsHeader with ProfilerProvider calls sync storage internally'],
-        [pattern: ~/\.getStorage\(\)\s*\.\s*(getUnviewedIds|setUnviewed|setViewed|save|load|list)\s*\(/, description: 'direct sync Storage method call via getStorage()'],
+        [pattern: ~/\.getStorage\(\)\s*\.\s*(getUnviewedIds|setUnviewed|setViewed|setUnviewedAll|setViewedAll|save|saveAll|load|list|listSummaries|cursorFor)\s*\(/, description: 'direct sync Storage method call via getStorage()'],
     ]
 
     void "ratpack production code must not call synchronous storage methods directly"() {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.ratpack
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.MapStorage
+import io.jdev.miniprofiler.storage.NonBlockingStorage
+import io.jdev.miniprofiler.test.TestProfilerProvider
+import ratpack.test.exec.ExecHarness
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+class AsyncStorageSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    NonBlockingMapStorage storage = new NonBlockingMapStorage()
+    ProfilerImpl profiler = new ProfilerImpl('test', ProfileLevel.Info, new TestProfilerProvider())
+
+    void "adapted non-blocking storage saves without a blocking thread"() {
+        when:
+        def result = harness.yield { AsyncStorage.adapt(storage).saveAsync(profiler).promise() }
+
+        then:
+        result.success
+        storage.nonBlockingSaves == [profiler]
+        storage.blockingSaves.empty
+        storage.load(profiler.id).is(profiler)
+    }
+
+    void "failed non-blocking saves fail the operation"() {
+        given:
+        storage.failure = new IllegalStateException('put failed')
+
+        when:
+        def result = harness.yield { AsyncStorage.adapt(storage).saveAsync(profiler).promise() }
+
+        then:
+        result.error
+        result.throwable.is(storage.failure)
+    }
+
+    void "other storage is saved on a blocking thread"() {
+        given:
+        def mapStorage = new MapStorage()
+
+        when:
+        def result = harness.yield { AsyncStorage.adapt(mapStorage).saveAsync(profiler).promise() }
+
+        then:
+        result.success
+        mapStorage.load(profiler.id).is(profiler)
+    }
+
+    static class NonBlockingMapStorage extends MapStorage implements NonBlockingStorage {
+        final List<ProfilerImpl> nonBlockingSaves = []
+        final List<ProfilerImpl> blockingSaves = []
+        Throwable failure
+
+        @Override
+        void save(ProfilerImpl profiler) {
+            blockingSaves << profiler
+            super.save(profiler)
+        }
+
+        @Override
+        CompletableFuture<Void> saveNonBlocking(ProfilerImpl profiler) {
+            nonBlockingSaves << profiler
+            if (failure != null) {
+                def failed = new CompletableFuture<Void>()
+                failed.completeExceptionally(failure)
+                return failed
+            }
+            return CompletableFuture.runAsync { store(profiler) }
+        }
+
+        private void store(ProfilerImpl profiler) {
+            super.save(profiler)
+        }
+    }
+}
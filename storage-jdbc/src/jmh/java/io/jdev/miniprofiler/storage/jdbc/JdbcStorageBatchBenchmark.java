@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.jdbc;
+
+import io.jdev.miniprofiler.DefaultProfilerProvider;
+import io.jdev.miniprofiler.ProfileLevel;
+import io.jdev.miniprofiler.Timing;
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.storage.jdbc.dialect.H2Dialect;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many sessions per second {@link JdbcStorage} writes to an in-memory H2 database
+ * for a range of batch sizes, and the same for un-viewed flag updates.
+ *
+ * <p>Each invocation writes {@value #SESSIONS} sessions, split into batches of {@code batchSize}
+ * and written with {@link JdbcStorage#saveAll} and {@link JdbcStorage#setUnviewedAll}. A batch
+ * size of 1 writes them one at a time with {@link JdbcStorage#save} and
+ * {@link JdbcStorage#setUnviewed} instead, for comparison. H2 has no network round trip, so the
+ * gain against a remote database is larger than this shows.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcStorageBatchBenchmark {
+
+    static final int SESSIONS = 500;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"1", "10", "50", "250"})
+        public int batchSize;
+
+        JdbcStorage storage;
+
+        @Setup
+        public void open() {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+            storage = new JdbcStorage(dataSource, new H2Dialect());
+            storage.createTable();
+        }
+
+        @TearDown
+        public void close() {
+            storage.clear();
+            storage.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewSessions {
+
+        private final DefaultProfilerProvider provider = new DefaultProfilerProvider();
+
+        List<ProfilerImpl> profilers;
+
+        @Setup(Level.Iteration)
+        public void clear(Database database) {
+            database.storage.clear();
+        }
+
+        // fresh ids each time, so that every save is an insert rather than an update
+        @Setup(Level.Invocation)
+        public void create() {
+            profilers = newSessions(provider);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class StoredSessions {
+
+        List<UUID> ids;
+
+        @Setup
+        public void store(Database database) {
+            List<ProfilerImpl> profilers = newSessions(new DefaultProfilerProvider());
+            database.storage.saveAll(profilers);
+            ids = new ArrayList<>(profilers.size());
+            for (ProfilerImpl profiler : profilers) {
+                ids.add(profiler.getId());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void save(Database database, NewSessions sessions) {
+        if (database.batchSize == 1) {
+            for (ProfilerImpl profiler : sessions.profilers) {
+                database.storage.save(profiler);
+            }
+            return;
+        }
+        for (int i = 0; i < SESSIONS; i += database.batchSize) {
+            database.storage.saveAll(sessions.profilers.subList(i, Math.min(i + database.batchSize, SESSIONS)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void setUnviewed(Database database, StoredSessions sessions) {
+        if (database.batchSize == 1) {
+            for (UUID id : sessions.ids) {
+                database.storage.setUnviewed("alice", id);
+            }
+            return;
+        }
+        for (int i = 0; i < SESSIONS; i += database.batchSize) {
+            database.storage.setUnviewedAll("alice", sessions.ids.subList(i, Math.min(i + database.batchSize, SESSIONS)));
+        }
+    }
+
+    // a small session: a handful of steps with a few queries each, a few kilobytes of JSON
+    private static List<ProfilerImpl> newSessions(DefaultProfilerProvider provider) {
+        List<ProfilerImpl> profilers = new ArrayList<>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            ProfilerImpl profiler = new ProfilerImpl(null, "/benchmark/" + i, "/benchmark/" + i, ProfileLevel.Info, provider);
+            profiler.setUser("alice");
+            for (int j = 0; j < 5; j++) {
+                Timing step = profiler.step("step " + j);
+                for (int k = 0; k < 4; k++) {
+                    profiler.addCustomTiming("sql", "Query", "select id, name from items where owner_id = ? /* " + k + " */", 1);
+                }
+                step.stop();
+            }
+            // discard, so the provider doesn't store it as well
+            profiler.stop(true);
+            profilers.add(profiler);
+        }
+        return profilers;
+    }
+}
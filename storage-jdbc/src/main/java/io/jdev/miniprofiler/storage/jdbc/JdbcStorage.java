@@ -16,15 +16,27 @@
 
 package io.jdev.miniprofiler.storage.jdbc;
 
+import io.jdev.miniprofiler.Timing;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+import io.jdev.miniprofiler.internal.TimingImpl;
 import io.jdev.miniprofiler.storage.BaseStorage;
+import io.jdev.miniprofiler.storage.BatchExpiringStorage;
+import io.jdev.miniprofiler.storage.ListCursor;
+import io.jdev.miniprofiler.storage.PayloadCodec;
+import io.jdev.miniprofiler.storage.ProfilePayloads;
 import io.jdev.miniprofiler.storage.jdbc.dialect.DatabaseDialect;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -48,16 +60,42 @@ import java.util.UUID;
  *       unpooled {@link java.sql.DriverManager}-backed adapter). The storage owns and
  *       closes it.</li>
  * </ul>
+ *
+ * <p>Sessions can be compressed with a {@link PayloadCodec}, in which case they are stored in a
+ * binary payload column instead of the JSON column. Sessions are read from whichever column holds
+ * them, so enabling or changing the codec leaves existing rows readable. Tables created by
+ * earlier versions lack the payload column; {@link #createTable()} adds it, and until it has been
+ * added only {@link PayloadCodec#NONE} can be used.</p>
+ *
+ * <p>{@link #saveAll(Collection)}, {@link #setUnviewedAll(String, Collection)} and
+ * {@link #setViewedAll(String, Collection)} send their statements as JDBC batches in a single
+ * transaction. Some drivers only send a batch in one round trip when asked to rewrite it into a
+ * multi-row statement, e.g. {@code rewriteBatchedStatements=true} for MySQL and
+ * {@code reWriteBatchedInserts=true} for PostgreSQL.</p>
+ *
+ * <p>Expiry deletes at most {@link #EXPIRE_BATCH_SIZE} rows per statement, each in its own
+ * transaction, rather than the whole backlog in one statement that could lock the table for a
+ * long time. {@link io.jdev.miniprofiler.storage.StorageExpiryService} also pauses between the
+ * batches.</p>
  */
-public class JdbcStorage extends BaseStorage {
+public class JdbcStorage extends BaseStorage implements BatchExpiringStorage {
 
     /** Default table name used when none is specified. */
     public static final String DEFAULT_TABLE_NAME = "mini_profiler_sessions";
 
+    /** Maximum number of rows sent in one JDBC batch by the bulk methods. */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    /** Maximum number of rows deleted per statement by {@link #expireOlderThan(Instant)}. */
+    public static final int EXPIRE_BATCH_SIZE = 1000;
+
     private final DataSource dataSource;
     private final DatabaseDialect dialect;
     private final String tableName;
+    private final PayloadCodec codec;
     private final boolean ownsDataSource;
+    // whether the table has the payload column; null until checked
+    private volatile Boolean payloadColumn;
     private volatile boolean closed;
 
     /**
@@ -67,7 +105,7 @@ public class JdbcStorage extends BaseStorage {
      * @param dataSource the data source to use; this instance does <em>not</em> own it
      */
     public JdbcStorage(DataSource dataSource) {
-        this(dataSource, detectDialect(dataSource), DEFAULT_TABLE_NAME, false);
+        this(dataSource, detectDialect(dataSource), DEFAULT_TABLE_NAME, PayloadCodec.NONE, false);
     }
 
     /**
@@ -77,7 +115,7 @@ public class JdbcStorage extends BaseStorage {
      * @param dialect    the database dialect
      */
     public JdbcStorage(DataSource dataSource, DatabaseDialect dialect) {
-        this(dataSource, dialect, DEFAULT_TABLE_NAME, false);
+        this(dataSource, dialect, DEFAULT_TABLE_NAME, PayloadCodec.NONE, false);
     }
 
     /**
@@ -88,50 +126,179 @@ public class JdbcStorage extends BaseStorage {
      * @param tableName  the table name to use
      */
     public JdbcStorage(DataSource dataSource, DatabaseDialect dialect, String tableName) {
-        this(dataSource, dialect, tableName, false);
+        this(dataSource, dialect, tableName, PayloadCodec.NONE, false);
+    }
+
+    /**
+     * Creates a new instance with the given dialect, table name and payload codec.
+     *
+     * @param dataSource the data source to use; this instance does <em>not</em> own it
+     * @param dialect    the database dialect
+     * @param tableName  the table name to use
+     * @param codec      the codec sessions are written with; {@code null} means {@link PayloadCodec#NONE}
+     */
+    public JdbcStorage(DataSource dataSource, DatabaseDialect dialect, String tableName, PayloadCodec codec) {
+        this(dataSource, dialect, tableName, codec, false);
     }
 
     JdbcStorage(DataSource dataSource, DatabaseDialect dialect, String tableName, boolean ownsDataSource) {
+        this(dataSource, dialect, tableName, PayloadCodec.NONE, ownsDataSource);
+    }
+
+    JdbcStorage(DataSource dataSource, DatabaseDialect dialect, String tableName, PayloadCodec codec,
+                boolean ownsDataSource) {
         this.dataSource = dataSource;
         this.dialect = dialect;
         this.tableName = tableName;
+        this.codec = codec != null ? codec : PayloadCodec.NONE;
         this.ownsDataSource = ownsDataSource;
     }
 
     @Override
     public void save(ProfilerImpl profiler) {
-        String json = profiler.toJSONString();
-        Long durationMs = profiler.getRoot().getDurationMilliseconds();
-        double duration = durationMs != null ? durationMs.doubleValue() : 0.0;
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(dialect.getSaveSql(tableName))) {
-            dialect.bindSaveParameters(ps, profiler.getId(), profiler.getName(),
-                new Timestamp(profiler.getStarted()), duration,
-                profiler.getUser(), false, profiler.getMachineName(), json);
-            ps.executeUpdate();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean withPayload = usePayloadColumn(conn);
+            try (PreparedStatement ps = conn.prepareStatement(saveSql(withPayload))) {
+                bindSave(ps, profiler, withPayload);
+                ps.executeUpdate();
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save profiler " + profiler.getId(), e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Writes the sessions over a single connection in one transaction, sending the dialect's
+     * upsert statement as JDBC batches of up to {@link #MAX_BATCH_SIZE} rows. If any session fails
+     * to save, none of them are saved.</p>
+     */
+    @Override
+    public void saveAll(Collection<ProfilerImpl> profilers) {
+        if (profilers.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            // checked before the transaction starts, as a failed statement would abort it on some databases
+            boolean withPayload = usePayloadColumn(conn);
+            inTransaction(conn, () -> {
+                try (PreparedStatement ps = conn.prepareStatement(saveSql(withPayload))) {
+                    int rows = 0;
+                    for (ProfilerImpl profiler : profilers) {
+                        bindSave(ps, profiler, withPayload);
+                        ps.addBatch();
+                        if (++rows % MAX_BATCH_SIZE == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    if (rows % MAX_BATCH_SIZE != 0) {
+                        ps.executeBatch();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save " + profilers.size() + " profilers", e);
+        }
+    }
+
+    private String saveSql(boolean withPayload) {
+        return withPayload ? dialect.getSaveWithPayloadSql(tableName) : dialect.getSaveSql(tableName);
+    }
+
+    // uncompressed sessions go in the JSON column, so versions that don't know the payload column can read them
+    private void bindSave(PreparedStatement ps, ProfilerImpl profiler, boolean withPayload) throws SQLException {
+        Timestamp started = new Timestamp(profiler.getStarted());
+        double duration = durationMilliseconds(profiler.getRoot());
+        if (!withPayload) {
+            dialect.bindSaveParameters(ps, profiler.getId(), profiler.getName(), started, duration,
+                profiler.getUser(), false, profiler.getMachineName(), profiler.toJSONString());
+        } else if (codec == PayloadCodec.NONE) {
+            dialect.bindSaveWithPayloadParameters(ps, profiler.getId(), profiler.getName(), started, duration,
+                profiler.getUser(), false, profiler.getMachineName(), profiler.toJSONString(), null);
+        } else {
+            dialect.bindSaveWithPayloadParameters(ps, profiler.getId(), profiler.getName(), started, duration,
+                profiler.getUser(), false, profiler.getMachineName(), null, ProfilePayloads.encode(profiler, codec));
+        }
+    }
+
+    // the duration column holds three decimal places, so keep the sub-millisecond part
+    private static double durationMilliseconds(Timing root) {
+        if (root instanceof TimingImpl && ((TimingImpl) root).getDurationNanoseconds() >= 0) {
+            return ((TimingImpl) root).getDurationNanoseconds() / 1_000_000.0d;
+        }
+        Long durationMs = root.getDurationMilliseconds();
+        return durationMs != null ? durationMs.doubleValue() : 0.0;
+    }
+
     @Override
     public ProfilerImpl load(UUID id) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(dialect.getLoadSql(tableName))) {
-            dialect.setUuid(ps, 1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    String json = rs.getString(dialect.getJsonColumnName());
-                    return ProfilerImpl.fromJson(json);
+        try (Connection conn = dataSource.getConnection()) {
+            boolean withPayload = hasPayloadColumn(conn);
+            String sql = withPayload ? dialect.getLoadWithPayloadSql(tableName) : dialect.getLoadSql(tableName);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                dialect.setUuid(ps, 1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? readProfiler(rs, withPayload) : null;
                 }
-                return null;
             }
-        } catch (SQLException e) {
+        } catch (SQLException | IOException | UncheckedIOException e) {
             throw new RuntimeException("Failed to load profiler " + id, e);
         }
     }
 
+    private ProfilerImpl readProfiler(ResultSet rs, boolean withPayload) throws SQLException, IOException {
+        if (withPayload) {
+            try (InputStream payload = rs.getBinaryStream(dialect.getPayloadColumnName())) {
+                if (payload != null) {
+                    return ProfilePayloads.decode(payload);
+                }
+            }
+        }
+        // read the CLOB/text column as a stream rather than materialising it as a String
+        try (Reader json = rs.getCharacterStream(dialect.getJsonColumnName())) {
+            return json != null ? ProfilerImpl.fromJson(json) : null;
+        }
+    }
+
+    private boolean usePayloadColumn(Connection conn) throws SQLException {
+        if (hasPayloadColumn(conn)) {
+            return true;
+        }
+        if (codec != PayloadCodec.NONE) {
+            throw new IllegalStateException("Table " + tableName + " has no " + dialect.getPayloadColumnName()
+                + " column to store " + codec.getName() + " payloads in. Call createTable() or run: "
+                + dialect.getAddPayloadColumnDdl(tableName));
+        }
+        return false;
+    }
+
+    // Tables created by earlier versions lack the payload column. Find out by trying to load with it,
+    // and only take a failure as the answer if loading without it works.
+    private boolean hasPayloadColumn(Connection conn) throws SQLException {
+        Boolean known = payloadColumn;
+        if (known != null) {
+            return known;
+        }
+        UUID probe = new UUID(0L, 0L);
+        try (PreparedStatement ps = conn.prepareStatement(dialect.getLoadWithPayloadSql(tableName))) {
+            dialect.setUuid(ps, 1, probe);
+            ps.executeQuery().close();
+            payloadColumn = Boolean.TRUE;
+            return true;
+        } catch (SQLException missing) {
+            try (PreparedStatement ps = conn.prepareStatement(dialect.getLoadSql(tableName))) {
+                dialect.setUuid(ps, 1, probe);
+                ps.executeQuery().close();
+            } catch (SQLException e) {
+                e.addSuppressed(missing);
+                throw e;
+            }
+            payloadColumn = Boolean.FALSE;
+            return false;
+        }
+    }
+
     // 9999-01-01 00:00:00 UTC — safely within DATETIME range in any timezone
     private static final long MAX_TIMESTAMP_MS = 253370764800000L;
 
@@ -155,6 +322,91 @@ public class JdbcStorage extends BaseStorage {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Reads the metadata columns in a single query, without loading the JSON profile data.
+     * Client timings are only held in that JSON, so the summaries have none.</p>
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        Timestamp startTs = new Timestamp(start != null ? start.getTime() : 0L);
+        Timestamp finishTs = new Timestamp(finish != null ? finish.getTime() : MAX_TIMESTAMP_MS);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(dialect.getListSummariesSql(tableName, orderBy))) {
+            dialect.bindListParameters(ps, startTs, finishTs, maxResults);
+            return readSummaries(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to list profiler summaries", e);
+        }
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        List<ProfilerSummary> summaries = listSummaries(maxResults, after, orderBy);
+        List<UUID> result = new ArrayList<>(summaries.size());
+        for (ProfilerSummary summary : summaries) {
+            result.add(summary.getId());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Seeks past the cursor on the started index with a keyset query, so later pages cost the
+     * same as the first. As with the date range variant, the summaries have no client timings.</p>
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        if (after == null) {
+            return listSummaries(maxResults, null, null, orderBy);
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(dialect.getListSummariesAfterSql(tableName, orderBy))) {
+            dialect.bindListAfterParameters(ps, new Timestamp(after.getStarted()), after.getId(), maxResults);
+            return readSummaries(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to list profiler summaries after " + after, e);
+        }
+    }
+
+    private List<ProfilerSummary> readSummaries(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            List<ProfilerSummary> result = new ArrayList<>();
+            while (rs.next()) {
+                UUID id = dialect.getUuid(rs, dialect.getProfilerIdColumnName());
+                String name = rs.getString(2);
+                long started = rs.getTimestamp(3).getTime();
+                double duration = rs.getDouble(4);
+                result.add(new ProfilerSummary(id, name, started, duration, rs.getString(5), rs.getString(6), null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Reads only the stored start time, so the cursor matches the value the keyset query compares against.</p>
+     */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(dialect.getStartedSql(tableName))) {
+            dialect.setUuid(ps, 1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? ListCursor.of(rs.getTimestamp(1).getTime(), id) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read start time for " + id, e);
+        }
+    }
+
     @Override
     public void setViewed(String user, UUID id) {
         if (user == null || id == null) {
@@ -185,6 +437,85 @@ public class JdbcStorage extends BaseStorage {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Sends the updates as JDBC batches over a single connection in one transaction.</p>
+     */
+    @Override
+    public void setViewedAll(String user, Collection<UUID> ids) {
+        if (user == null || ids.isEmpty()) {
+            return;
+        }
+        updateViewedFlags(dialect.getSetViewedSql(tableName), user, ids, "viewed");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Sends the updates as JDBC batches over a single connection in one transaction.</p>
+     */
+    @Override
+    public void setUnviewedAll(String user, Collection<UUID> ids) {
+        if (user == null || ids.isEmpty()) {
+            return;
+        }
+        updateViewedFlags(dialect.getSetUnviewedSql(tableName), user, ids, "unviewed");
+    }
+
+    private void updateViewedFlags(String sql, String user, Collection<UUID> ids, String flag) {
+        try (Connection conn = dataSource.getConnection()) {
+            inTransaction(conn, () -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int rows = 0;
+                    for (UUID id : ids) {
+                        if (id == null) {
+                            continue;
+                        }
+                        ps.setString(1, user);
+                        dialect.setUuid(ps, 2, id);
+                        ps.addBatch();
+                        if (++rows % MAX_BATCH_SIZE == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    if (rows % MAX_BATCH_SIZE != 0) {
+                        ps.executeBatch();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to set " + flag + " for " + ids.size() + " profilers", e);
+        }
+    }
+
+    // runs the work with auto-commit off so that a batch is one transaction rather than one per row
+    private static void inTransaction(Connection conn, SqlWork work) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            work.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
     @Override
     public Collection<UUID> getUnviewedIds(String user) {
         if (user == null) {
@@ -217,10 +548,18 @@ public class JdbcStorage extends BaseStorage {
 
     @Override
     public void expireOlderThan(Instant cutoff) {
+        int removed;
+        do {
+            removed = expireBatchOlderThan(cutoff, EXPIRE_BATCH_SIZE);
+        } while (removed >= EXPIRE_BATCH_SIZE);
+    }
+
+    @Override
+    public int expireBatchOlderThan(Instant cutoff, int maxSessions) {
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(dialect.getExpireSql(tableName))) {
-            ps.setTimestamp(1, Timestamp.from(cutoff));
-            ps.executeUpdate();
+             PreparedStatement ps = conn.prepareStatement(dialect.getExpireBatchSql(tableName))) {
+            dialect.bindExpireBatchParameters(ps, Timestamp.from(cutoff), maxSessions);
+            return ps.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to expire profilers older than " + cutoff, e);
         }
@@ -251,12 +590,20 @@ public class JdbcStorage extends BaseStorage {
     }
 
     /**
-     * Creates the storage table and indexes in the database. Safe to call
-     * multiple times — uses IF NOT EXISTS semantics.
+     * Creates the storage table and indexes in the database, and adds the payload column
+     * to a table created by an earlier version. Safe to call multiple times — uses
+     * IF NOT EXISTS semantics.
      */
     public void createTable() {
         try (Connection conn = dataSource.getConnection()) {
             dialect.executeCreateTable(conn, tableName);
+            payloadColumn = null;
+            if (!hasPayloadColumn(conn)) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(dialect.getAddPayloadColumnDdl(tableName));
+                }
+                payloadColumn = Boolean.TRUE;
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create table " + tableName, e);
         }
@@ -39,6 +39,8 @@ import java.util.Properties;
  *       {@link JdbcStorage#createTable()} after constructing the storage; defaults to
  *       {@code false}</li>
  *   <li>{@code storage.jdbc.dialect} — explicit dialect: h2, postgresql, mysql, mssql, oracle</li>
+ *   <li>{@code storage.jdbc.codec} — payload codec sessions are written with: none, gzip, deflate or
+ *       the name of a {@link io.jdev.miniprofiler.storage.PayloadCodec} service; defaults to none</li>
  * </ul>
  *
  * <p>Either {@code jndiName} or {@code url} must be set for {@link #isConfigured()} to return
@@ -53,6 +55,7 @@ public class JdbcStorageConfig {
     private final String dialect;
     private final String jndiName;
     private final boolean tableCreate;
+    private final String codec;
 
     /**
      * Creates a new instance with explicit values.
@@ -68,6 +71,24 @@ public class JdbcStorageConfig {
      */
     public JdbcStorageConfig(String url, String username, String password, String table, String dialect,
                              String jndiName, boolean tableCreate) {
+        this(url, username, password, table, dialect, jndiName, tableCreate, null);
+    }
+
+    /**
+     * Creates a new instance with explicit values, including the payload codec.
+     *
+     * @param url         the JDBC URL; may be {@code null}
+     * @param username    the database username; may be {@code null}
+     * @param password    the database password; may be {@code null}
+     * @param table       the table name override; may be {@code null}
+     * @param dialect     the dialect name override; may be {@code null}
+     * @param jndiName    the JNDI name of a container-managed DataSource; may be {@code null}
+     * @param tableCreate whether the locator should call {@link JdbcStorage#createTable()} after
+     *                    constructing the storage
+     * @param codec       the payload codec name; may be {@code null}
+     */
+    public JdbcStorageConfig(String url, String username, String password, String table, String dialect,
+                             String jndiName, boolean tableCreate, String codec) {
         this.url = url;
         this.username = username;
         this.password = password;
@@ -75,6 +96,7 @@ public class JdbcStorageConfig {
         this.dialect = dialect;
         this.jndiName = jndiName;
         this.tableCreate = tableCreate;
+        this.codec = codec;
     }
 
     /**
@@ -99,7 +121,8 @@ public class JdbcStorageConfig {
         String dialect      = props.getProperty("storage.jdbc.dialect",      (String) null);
         String jndiName     = props.getProperty("storage.jdbc.jndiName",     (String) null);
         boolean tableCreate = props.getProperty("storage.jdbc.table.create", false);
-        return new JdbcStorageConfig(url, username, password, table, dialect, jndiName, tableCreate);
+        String codec        = props.getProperty("storage.jdbc.codec",        (String) null);
+        return new JdbcStorageConfig(url, username, password, table, dialect, jndiName, tableCreate, codec);
     }
 
     /**
@@ -175,4 +198,13 @@ public class JdbcStorageConfig {
     public boolean isTableCreate() {
         return tableCreate;
     }
+
+    /**
+     * Returns the payload codec name, or {@code null} if not set.
+     *
+     * @return the payload codec name
+     */
+    public String getCodec() {
+        return codec;
+    }
 }
@@ -18,6 +18,7 @@ package io.jdev.miniprofiler.storage.jdbc;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.jdev.miniprofiler.storage.PayloadCodec;
 import io.jdev.miniprofiler.storage.Storage;
 import io.jdev.miniprofiler.storage.StorageLocator;
 import io.jdev.miniprofiler.storage.jdbc.dialect.DatabaseDialect;
@@ -78,7 +79,8 @@ public class JdbcStorageLocator implements StorageLocator {
             String tableName = config.getTable() != null
                 ? config.getTable()
                 : JdbcStorage.DEFAULT_TABLE_NAME;
-            JdbcStorage storage = new JdbcStorage(result.dataSource, dialect, tableName, result.ownsDataSource);
+            JdbcStorage storage = new JdbcStorage(result.dataSource, dialect, tableName,
+                PayloadCodec.forName(config.getCodec()), result.ownsDataSource);
             if (config.isTableCreate()) {
                 storage.createTable();
             }
@@ -105,6 +105,43 @@ public interface DatabaseDialect {
         ps.setString(8, profileJson);
     }
 
+    /**
+     * Returns the INSERT SQL that avoids duplicates on the profiler_id column, writing both the
+     * JSON column and the binary column named by {@link #getPayloadColumnName()}. Parameters are
+     * bound by {@link #bindSaveWithPayloadParameters}. There is no portable form of this statement,
+     * so custom dialects must implement it as they do {@link #getSaveSql}.
+     *
+     * @param tableName the table name
+     * @return the SQL string
+     */
+    String getSaveWithPayloadSql(String tableName);
+
+    /**
+     * Binds parameters for the save SQL returned by {@link #getSaveWithPayloadSql}. Exactly one
+     * of {@code profileJson} and {@code payload} is non-null. The default implementation binds
+     * the first 8 parameters with {@link #bindSaveParameters} and the payload as the 9th.
+     *
+     * @param ps                   the prepared statement
+     * @param profilerId           the profiler UUID
+     * @param name                 the session name
+     * @param started              the start timestamp
+     * @param durationMilliseconds the duration
+     * @param userName             the user name
+     * @param hasUserViewed        the viewed flag
+     * @param machineName          the machine name
+     * @param profileJson          the serialised JSON, or {@code null}
+     * @param payload              the encoded payload, or {@code null}
+     * @throws SQLException if a database access error occurs
+     */
+    default void bindSaveWithPayloadParameters(PreparedStatement ps, UUID profilerId, String name,
+                                               java.sql.Timestamp started, double durationMilliseconds,
+                                               String userName, boolean hasUserViewed, String machineName,
+                                               String profileJson, byte[] payload) throws SQLException {
+        bindSaveParameters(ps, profilerId, name, started, durationMilliseconds, userName, hasUserViewed,
+            machineName, profileJson);
+        ps.setBytes(9, payload);
+    }
+
     /**
      * Returns the SELECT SQL to load a single profiler by its UUID.
      * The statement expects one parameter: the profiler_id (UUID).
@@ -115,6 +152,31 @@ public interface DatabaseDialect {
      */
     String getLoadSql(String tableName);
 
+    /**
+     * Returns the SELECT SQL to load a single profiler by its UUID from either the JSON column
+     * or the payload column. The statement expects one parameter: the profiler_id (UUID).
+     * The result set columns must be the payload column and then the JSON column, so that drivers
+     * which stream large values can read them in order.
+     *
+     * @param tableName the table name
+     * @return the SQL string
+     */
+    default String getLoadWithPayloadSql(String tableName) {
+        return "SELECT " + getPayloadColumnName() + ", " + getJsonColumnName() + " FROM " + tableName
+            + " WHERE " + getProfilerIdColumnName() + " = ?";
+    }
+
+    /**
+     * Returns the DDL to add the payload column to a table created before the column existed.
+     * The default implementation adds a standard SQL {@code BLOB} column.
+     *
+     * @param tableName the table name
+     * @return the DDL string
+     */
+    default String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE " + tableName + " ADD COLUMN " + getPayloadColumnName() + " BLOB";
+    }
+
     /**
      * Returns the SELECT SQL to list profiler UUIDs within a date range.
      * Parameters are bound by {@link #bindListParameters}.
@@ -126,7 +188,38 @@ public interface DatabaseDialect {
     String getListSql(String tableName, ListResultsOrder order);
 
     /**
-     * Binds parameters for the list SQL returned by {@link #getListSql}.
+     * Returns the SELECT SQL to list the results list fields of profilers within a date range,
+     * without the JSON profile data. It filters and limits like {@link #getListSql}, orders by
+     * started and then profiler_id so that pages continue with {@link #getListSummariesAfterSql},
+     * and its parameters are bound by {@link #bindListParameters}.
+     * The result set columns must be, in order:
+     * <ol>
+     *   <li>profiler_id, named as by {@link #getProfilerIdColumnName()}</li>
+     *   <li>name</li>
+     *   <li>started</li>
+     *   <li>duration_milliseconds</li>
+     *   <li>machine_name</li>
+     *   <li>user_name</li>
+     * </ol>
+     * The default implementation limits the rows with standard SQL {@code FETCH FIRST}.
+     *
+     * @param tableName the table name
+     * @param order     the sort order
+     * @return the SQL string
+     */
+    default String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        String idColumn = getProfilerIdColumnName();
+        return "SELECT " + idColumn + ", name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started >= ? AND started <= ?"
+            + " ORDER BY started " + dir + ", " + idColumn + " " + dir
+            + " FETCH FIRST ? ROWS ONLY";
+    }
+
+    /**
+     * Binds parameters for the list SQL returned by {@link #getListSql} and
+     * {@link #getListSummariesSql}.
      * The default implementation binds: 1=start, 2=finish, 3=maxResults.
      * Dialects with different parameter order (e.g. MSSQL's {@code TOP})
      * should override this method.
@@ -144,6 +237,60 @@ public interface DatabaseDialect {
         ps.setInt(3, maxResults);
     }
 
+    /**
+     * Returns the SELECT SQL to list the results list fields of the profilers that come after a
+     * (started, profiler_id) cursor in the given order, seeking on the started index rather than
+     * skipping rows. The columns are as for {@link #getListSummariesSql}, rows are ordered by
+     * started and then profiler_id, and parameters are bound by {@link #bindListAfterParameters}.
+     * The default implementation limits the rows with standard SQL {@code FETCH FIRST}.
+     *
+     * @param tableName the table name
+     * @param order     the sort order
+     * @return the SQL string
+     */
+    default String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        String idColumn = getProfilerIdColumnName();
+        return "SELECT " + idColumn + ", name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started " + cmp + "= ? AND (started " + cmp + " ? OR " + idColumn + " " + cmp + " ?)"
+            + " ORDER BY started " + dir + ", " + idColumn + " " + dir
+            + " FETCH FIRST ? ROWS ONLY";
+    }
+
+    /**
+     * Binds parameters for the SQL returned by {@link #getListSummariesAfterSql}.
+     * The default implementation binds: 1=started, 2=started, 3=profilerId, 4=maxResults.
+     * Dialects with different parameter order (e.g. MSSQL's {@code TOP})
+     * should override this method.
+     *
+     * @param ps         the prepared statement
+     * @param started    the cursor's start timestamp
+     * @param profilerId the cursor's profiler UUID
+     * @param maxResults the maximum number of results
+     * @throws SQLException if a database access error occurs
+     */
+    default void bindListAfterParameters(PreparedStatement ps, java.sql.Timestamp started,
+                                         UUID profilerId, int maxResults) throws SQLException {
+        ps.setTimestamp(1, started);
+        ps.setTimestamp(2, started);
+        setUuid(ps, 3, profilerId);
+        ps.setInt(4, maxResults);
+    }
+
+    /**
+     * Returns the SELECT SQL to read the start time of a single profiler by its UUID.
+     * The statement expects one parameter: the profiler_id (UUID).
+     *
+     * @param tableName the table name
+     * @return the SQL string
+     */
+    default String getStartedSql(String tableName) {
+        return "SELECT started FROM " + tableName + " WHERE " + getProfilerIdColumnName() + " = ?";
+    }
+
     /**
      * Returns the UPDATE SQL to mark a profiler session as viewed.
      * The statement expects parameters:
@@ -185,8 +332,47 @@ public interface DatabaseDialect {
      *
      * @param tableName the table name
      * @return the SQL string
+     * @deprecated no longer run by {@code JdbcStorage}, which expires in batches with
+     *     {@link #getExpireBatchSql}; the default implementation returns standard SQL
      */
-    String getExpireSql(String tableName);
+    @Deprecated
+    default String getExpireSql(String tableName) {
+        return "DELETE FROM " + tableName + " WHERE started < ?";
+    }
+
+    /**
+     * Returns the DELETE SQL to remove at most a given number of the sessions started before a
+     * cutoff, oldest first where the database allows it, so that a large expiry can be done in
+     * short transactions. Parameters are bound by {@link #bindExpireBatchParameters}.
+     * The default implementation picks the rows in a standard SQL subquery limited with
+     * {@code FETCH FIRST}.
+     *
+     * @param tableName the table name
+     * @return the SQL string
+     */
+    default String getExpireBatchSql(String tableName) {
+        String idColumn = getProfilerIdColumnName();
+        return "DELETE FROM " + tableName + " WHERE " + idColumn + " IN ("
+            + "SELECT " + idColumn + " FROM " + tableName + " WHERE started < ?"
+            + " ORDER BY started FETCH FIRST ? ROWS ONLY)";
+    }
+
+    /**
+     * Binds parameters for the SQL returned by {@link #getExpireBatchSql}.
+     * The default implementation binds: 1=cutoff, 2=maxRows.
+     * Dialects with different parameter order (e.g. MSSQL's {@code TOP})
+     * should override this method.
+     *
+     * @param ps      the prepared statement
+     * @param cutoff  the cutoff timestamp
+     * @param maxRows the maximum number of rows to delete
+     * @throws SQLException if a database access error occurs
+     */
+    default void bindExpireBatchParameters(PreparedStatement ps, java.sql.Timestamp cutoff,
+                                           int maxRows) throws SQLException {
+        ps.setTimestamp(1, cutoff);
+        ps.setInt(2, maxRows);
+    }
 
     /**
      * Returns the SQL to remove all rows from the table.
@@ -203,6 +389,17 @@ public interface DatabaseDialect {
      */
     String getJsonColumnName();
 
+    /**
+     * Returns the name of the binary column holding sessions encoded with a
+     * {@link io.jdev.miniprofiler.storage.PayloadCodec}, in place of the JSON column.
+     * The default implementation returns {@code profile_data}.
+     *
+     * @return the column name
+     */
+    default String getPayloadColumnName() {
+        return "profile_data";
+    }
+
     /**
      * Returns the column name used for the profiler UUID in this dialect.
      *
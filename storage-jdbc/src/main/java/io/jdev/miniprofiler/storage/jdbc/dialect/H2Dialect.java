@@ -24,7 +24,8 @@ import java.sql.SQLException;
 import java.util.UUID;
 
 /**
- * H2 database dialect. Uses native UUID type, TIMESTAMP, BOOLEAN, and CLOB.
+ * H2 database dialect. Uses native UUID type, TIMESTAMP, BOOLEAN, CLOB, and BLOB
+ * for encoded payloads.
  */
 public class H2Dialect implements DatabaseDialect {
 
@@ -43,7 +44,8 @@ public class H2Dialect implements DatabaseDialect {
             + "user_name VARCHAR(100), "
             + "has_user_viewed BOOLEAN NOT NULL DEFAULT FALSE, "
             + "machine_name VARCHAR(100), "
-            + "profile_json CLOB"
+            + "profile_json CLOB, "
+            + "profile_data BLOB"
             + ");\n"
             + "CREATE UNIQUE INDEX IF NOT EXISTS idx_" + tableName + "_profiler_id ON " + tableName + " (profiler_id);\n"
             + "CREATE INDEX IF NOT EXISTS idx_" + tableName + "_user_viewed ON " + tableName + " (user_name, has_user_viewed);\n"
@@ -58,11 +60,35 @@ public class H2Dialect implements DatabaseDialect {
             + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
     }
 
+    @Override
+    public String getSaveWithPayloadSql(String tableName) {
+        return "MERGE INTO " + tableName
+            + " (profiler_id, name, started, duration_milliseconds, user_name, has_user_viewed, machine_name,"
+            + " profile_json, profile_data)"
+            + " KEY (profiler_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    @Override
+    public String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE " + tableName + " ADD COLUMN IF NOT EXISTS profile_data BLOB";
+    }
+
     @Override
     public String getLoadSql(String tableName) {
         return "SELECT profile_json FROM " + tableName + " WHERE profiler_id = ?";
     }
 
+    @Override
+    public String getLoadWithPayloadSql(String tableName) {
+        return "SELECT profile_data, profile_json FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
+    @Override
+    public String getStartedSql(String tableName) {
+        return "SELECT started FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
     @Override
     public String getListSql(String tableName, ListResultsOrder order) {
         String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
@@ -72,6 +98,28 @@ public class H2Dialect implements DatabaseDialect {
             + " LIMIT ?";
     }
 
+    @Override
+    public String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started >= ? AND started <= ?"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
+    @Override
+    public String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started " + cmp + "= ? AND (started " + cmp + " ? OR profiler_id " + cmp + " ?)"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
     @Override
     public String getSetViewedSql(String tableName) {
         return "UPDATE " + tableName + " SET has_user_viewed = TRUE WHERE user_name = ? AND profiler_id = ?";
@@ -87,11 +135,17 @@ public class H2Dialect implements DatabaseDialect {
         return "SELECT profiler_id FROM " + tableName + " WHERE user_name = ? AND has_user_viewed = FALSE";
     }
 
+    @Deprecated
     @Override
     public String getExpireSql(String tableName) {
         return "DELETE FROM " + tableName + " WHERE started < ?";
     }
 
+    @Override
+    public String getExpireBatchSql(String tableName) {
+        return "DELETE FROM " + tableName + " WHERE started < ? LIMIT ?";
+    }
+
     @Override
     public String getClearSql(String tableName) {
         return "DELETE FROM " + tableName;
@@ -102,6 +156,11 @@ public class H2Dialect implements DatabaseDialect {
         return "profile_json";
     }
 
+    @Override
+    public String getPayloadColumnName() {
+        return "profile_data";
+    }
+
     @Override
     public String getProfilerIdColumnName() {
         return "profiler_id";
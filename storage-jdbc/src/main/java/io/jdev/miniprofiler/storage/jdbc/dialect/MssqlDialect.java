@@ -27,7 +27,8 @@ import java.util.UUID;
 /**
  * Microsoft SQL Server dialect. Uses PascalCase column names,
  * {@code uniqueidentifier} for UUIDs, {@code datetime2(6)} for timestamps,
- * {@code bit} for booleans, and {@code nvarchar(max)} for JSON.
+ * {@code bit} for booleans, {@code nvarchar(max)} for JSON, and {@code varbinary(max)}
+ * for encoded payloads.
  */
 public class MssqlDialect implements DatabaseDialect {
 
@@ -47,7 +48,8 @@ public class MssqlDialect implements DatabaseDialect {
             + "[UserName] NVARCHAR(100), "
             + "[HasUserViewed] BIT NOT NULL DEFAULT 0, "
             + "[MachineName] NVARCHAR(100), "
-            + "[ProfileJson] NVARCHAR(MAX)"
+            + "[ProfileJson] NVARCHAR(MAX), "
+            + "[ProfileData] VARBINARY(MAX)"
             + ");\n"
             + "IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_" + tableName + "_ProfilerId')\n"
             + "CREATE UNIQUE INDEX [idx_" + tableName + "_ProfilerId] ON [" + tableName + "] ([ProfilerId]);\n"
@@ -77,11 +79,47 @@ public class MssqlDialect implements DatabaseDialect {
             + " source.[MachineName], source.[ProfileJson]);";
     }
 
+    @Override
+    public String getSaveWithPayloadSql(String tableName) {
+        return "MERGE [" + tableName + "] WITH (HOLDLOCK) AS target"
+            + " USING (SELECT ? AS [ProfilerId], ? AS [Name], ? AS [Started],"
+            + " ? AS [DurationMilliseconds], ? AS [UserName], ? AS [HasUserViewed],"
+            + " ? AS [MachineName], ? AS [ProfileJson], ? AS [ProfileData]) AS source"
+            + " ON target.[ProfilerId] = source.[ProfilerId]"
+            + " WHEN MATCHED THEN UPDATE SET"
+            + " target.[Name] = source.[Name],"
+            + " target.[DurationMilliseconds] = source.[DurationMilliseconds],"
+            + " target.[MachineName] = source.[MachineName],"
+            + " target.[ProfileJson] = source.[ProfileJson],"
+            + " target.[ProfileData] = source.[ProfileData]"
+            + " WHEN NOT MATCHED THEN INSERT"
+            + " ([ProfilerId], [Name], [Started], [DurationMilliseconds],"
+            + " [UserName], [HasUserViewed], [MachineName], [ProfileJson], [ProfileData])"
+            + " VALUES (source.[ProfilerId], source.[Name], source.[Started],"
+            + " source.[DurationMilliseconds], source.[UserName], source.[HasUserViewed],"
+            + " source.[MachineName], source.[ProfileJson], source.[ProfileData]);";
+    }
+
+    @Override
+    public String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE [" + tableName + "] ADD [ProfileData] VARBINARY(MAX)";
+    }
+
     @Override
     public String getLoadSql(String tableName) {
         return "SELECT [ProfileJson] FROM [" + tableName + "] WHERE [ProfilerId] = ?";
     }
 
+    @Override
+    public String getLoadWithPayloadSql(String tableName) {
+        return "SELECT [ProfileData], [ProfileJson] FROM [" + tableName + "] WHERE [ProfilerId] = ?";
+    }
+
+    @Override
+    public String getStartedSql(String tableName) {
+        return "SELECT [Started] FROM [" + tableName + "] WHERE [ProfilerId] = ?";
+    }
+
     @Override
     public String getListSql(String tableName, ListResultsOrder order) {
         String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
@@ -90,6 +128,35 @@ public class MssqlDialect implements DatabaseDialect {
             + " ORDER BY [Started] " + dir;
     }
 
+    @Override
+    public String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        return "SELECT TOP (?) [ProfilerId], [Name], [Started], [DurationMilliseconds], [MachineName], [UserName]"
+            + " FROM [" + tableName + "]"
+            + " WHERE [Started] >= ? AND [Started] <= ?"
+            + " ORDER BY [Started] " + dir + ", [ProfilerId] " + dir;
+    }
+
+    @Override
+    public String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        return "SELECT TOP (?) [ProfilerId], [Name], [Started], [DurationMilliseconds], [MachineName], [UserName]"
+            + " FROM [" + tableName + "]"
+            + " WHERE [Started] " + cmp + "= ? AND ([Started] " + cmp + " ? OR [ProfilerId] " + cmp + " ?)"
+            + " ORDER BY [Started] " + dir + ", [ProfilerId] " + dir;
+    }
+
+    @Override
+    public void bindListAfterParameters(PreparedStatement ps, Timestamp started,
+                                        UUID profilerId, int maxResults) throws SQLException {
+        ps.setInt(1, maxResults);
+        ps.setTimestamp(2, started);
+        ps.setTimestamp(3, started);
+        setUuid(ps, 4, profilerId);
+    }
+
     @Override
     public void bindListParameters(PreparedStatement ps, Timestamp start,
                                    Timestamp finish, int maxResults) throws SQLException {
@@ -113,11 +180,23 @@ public class MssqlDialect implements DatabaseDialect {
         return "SELECT [ProfilerId] FROM [" + tableName + "] WHERE [UserName] = ? AND [HasUserViewed] = 0";
     }
 
+    @Deprecated
     @Override
     public String getExpireSql(String tableName) {
         return "DELETE FROM [" + tableName + "] WHERE [Started] < ?";
     }
 
+    @Override
+    public String getExpireBatchSql(String tableName) {
+        return "DELETE TOP (?) FROM [" + tableName + "] WHERE [Started] < ?";
+    }
+
+    @Override
+    public void bindExpireBatchParameters(PreparedStatement ps, Timestamp cutoff, int maxRows) throws SQLException {
+        ps.setInt(1, maxRows);
+        ps.setTimestamp(2, cutoff);
+    }
+
     @Override
     public String getClearSql(String tableName) {
         return "DELETE FROM [" + tableName + "]";
@@ -128,6 +207,11 @@ public class MssqlDialect implements DatabaseDialect {
         return "ProfileJson";
     }
 
+    @Override
+    public String getPayloadColumnName() {
+        return "ProfileData";
+    }
+
     @Override
     public String getProfilerIdColumnName() {
         return "ProfilerId";
@@ -25,7 +25,7 @@ import java.util.UUID;
 
 /**
  * MySQL database dialect. Uses {@code CHAR(36)} for UUIDs, {@code DATETIME(6)}
- * for timestamps, {@code BOOL}, and {@code LONGTEXT} for JSON. Tables are
+ * for timestamps, {@code BOOL}, {@code LONGTEXT} for JSON, and {@code LONGBLOB} for encoded payloads. Tables are
  * created with InnoDB engine and {@code utf8mb4} character set.
  */
 public class MysqlDialect implements DatabaseDialect {
@@ -45,7 +45,8 @@ public class MysqlDialect implements DatabaseDialect {
             + "user_name VARCHAR(100), "
             + "has_user_viewed BOOL NOT NULL DEFAULT FALSE, "
             + "machine_name VARCHAR(100), "
-            + "profile_json LONGTEXT"
+            + "profile_json LONGTEXT, "
+            + "profile_data LONGBLOB"
             + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n"
             + "CREATE UNIQUE INDEX idx_" + tableName + "_profiler_id ON " + tableName + " (profiler_id);\n"
             + "CREATE INDEX idx_" + tableName + "_user_viewed ON " + tableName + " (user_name, has_user_viewed);\n"
@@ -64,11 +65,40 @@ public class MysqlDialect implements DatabaseDialect {
             + " profile_json = VALUES(profile_json)";
     }
 
+    @Override
+    public String getSaveWithPayloadSql(String tableName) {
+        return "INSERT INTO " + tableName
+            + " (profiler_id, name, started, duration_milliseconds, user_name, has_user_viewed, machine_name,"
+            + " profile_json, profile_data)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE"
+            + " name = VALUES(name),"
+            + " duration_milliseconds = VALUES(duration_milliseconds),"
+            + " machine_name = VALUES(machine_name),"
+            + " profile_json = VALUES(profile_json),"
+            + " profile_data = VALUES(profile_data)";
+    }
+
+    @Override
+    public String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE " + tableName + " ADD COLUMN profile_data LONGBLOB";
+    }
+
     @Override
     public String getLoadSql(String tableName) {
         return "SELECT profile_json FROM " + tableName + " WHERE profiler_id = ?";
     }
 
+    @Override
+    public String getLoadWithPayloadSql(String tableName) {
+        return "SELECT profile_data, profile_json FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
+    @Override
+    public String getStartedSql(String tableName) {
+        return "SELECT started FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
     @Override
     public String getListSql(String tableName, ListResultsOrder order) {
         String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
@@ -78,6 +108,28 @@ public class MysqlDialect implements DatabaseDialect {
             + " LIMIT ?";
     }
 
+    @Override
+    public String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started >= ? AND started <= ?"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
+    @Override
+    public String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started " + cmp + "= ? AND (started " + cmp + " ? OR profiler_id " + cmp + " ?)"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
     @Override
     public String getSetViewedSql(String tableName) {
         return "UPDATE " + tableName + " SET has_user_viewed = TRUE WHERE user_name = ? AND profiler_id = ?";
@@ -93,11 +145,17 @@ public class MysqlDialect implements DatabaseDialect {
         return "SELECT profiler_id FROM " + tableName + " WHERE user_name = ? AND has_user_viewed = FALSE";
     }
 
+    @Deprecated
     @Override
     public String getExpireSql(String tableName) {
         return "DELETE FROM " + tableName + " WHERE started < ?";
     }
 
+    @Override
+    public String getExpireBatchSql(String tableName) {
+        return "DELETE FROM " + tableName + " WHERE started < ? ORDER BY started LIMIT ?";
+    }
+
     @Override
     public String getClearSql(String tableName) {
         return "DELETE FROM " + tableName;
@@ -108,6 +166,11 @@ public class MysqlDialect implements DatabaseDialect {
         return "profile_json";
     }
 
+    @Override
+    public String getPayloadColumnName() {
+        return "profile_data";
+    }
+
     @Override
     public String getProfilerIdColumnName() {
         return "profiler_id";
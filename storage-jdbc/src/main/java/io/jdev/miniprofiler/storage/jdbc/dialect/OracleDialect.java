@@ -29,7 +29,7 @@ import java.util.UUID;
 /**
  * Oracle database dialect. Uses {@code VARCHAR2(36)} for UUIDs,
  * {@code TIMESTAMP(6)} for timestamps, {@code NUMBER(1)} for booleans,
- * and {@code CLOB} for JSON. Requires Oracle 12c or later for
+ * {@code CLOB} for JSON and {@code BLOB} for encoded payloads. Requires Oracle 12c or later for
  * {@code FETCH FIRST N ROWS ONLY} syntax.
  */
 public class OracleDialect implements DatabaseDialect {
@@ -52,7 +52,8 @@ public class OracleDialect implements DatabaseDialect {
             + "user_name VARCHAR2(100), "
             + "has_user_viewed NUMBER(1) DEFAULT 0 NOT NULL, "
             + "machine_name VARCHAR2(100), "
-            + "profile_json CLOB"
+            + "profile_json CLOB, "
+            + "profile_data BLOB"
             + ");\n"
             + "CREATE UNIQUE INDEX idx_" + tableName + "_profiler_id ON " + tableName + " (profiler_id);\n"
             + "CREATE INDEX idx_" + tableName + "_user_viewed ON " + tableName + " (user_name, has_user_viewed);\n"
@@ -109,11 +110,46 @@ public class OracleDialect implements DatabaseDialect {
         ps.setString(8, profileJson);
     }
 
+    @Override
+    public String getSaveWithPayloadSql(String tableName) {
+        return "MERGE INTO " + tableName + " t"
+            + " USING (SELECT ? AS profiler_id, ? AS name, ? AS started,"
+            + " ? AS duration_milliseconds, ? AS user_name, ? AS has_user_viewed,"
+            + " ? AS machine_name, ? AS profile_json, ? AS profile_data FROM DUAL) s"
+            + " ON (t.profiler_id = s.profiler_id)"
+            + " WHEN MATCHED THEN UPDATE SET"
+            + " t.name = s.name,"
+            + " t.duration_milliseconds = s.duration_milliseconds,"
+            + " t.machine_name = s.machine_name,"
+            + " t.profile_json = s.profile_json,"
+            + " t.profile_data = s.profile_data"
+            + " WHEN NOT MATCHED THEN INSERT"
+            + " (profiler_id, name, started, duration_milliseconds, user_name, has_user_viewed, machine_name,"
+            + " profile_json, profile_data)"
+            + " VALUES (s.profiler_id, s.name, s.started, s.duration_milliseconds,"
+            + " s.user_name, s.has_user_viewed, s.machine_name, s.profile_json, s.profile_data)";
+    }
+
+    @Override
+    public String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE " + tableName + " ADD (profile_data BLOB)";
+    }
+
     @Override
     public String getLoadSql(String tableName) {
         return "SELECT profile_json FROM " + tableName + " WHERE profiler_id = ?";
     }
 
+    @Override
+    public String getLoadWithPayloadSql(String tableName) {
+        return "SELECT profile_data, profile_json FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
+    @Override
+    public String getStartedSql(String tableName) {
+        return "SELECT started FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
     @Override
     public String getListSql(String tableName, ListResultsOrder order) {
         String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
@@ -123,6 +159,28 @@ public class OracleDialect implements DatabaseDialect {
             + " FETCH FIRST ? ROWS ONLY";
     }
 
+    @Override
+    public String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started >= ? AND started <= ?"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " FETCH FIRST ? ROWS ONLY";
+    }
+
+    @Override
+    public String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started " + cmp + "= ? AND (started " + cmp + " ? OR profiler_id " + cmp + " ?)"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " FETCH FIRST ? ROWS ONLY";
+    }
+
     @Override
     public String getSetViewedSql(String tableName) {
         return "UPDATE " + tableName + " SET has_user_viewed = 1 WHERE user_name = ? AND profiler_id = ?";
@@ -138,11 +196,17 @@ public class OracleDialect implements DatabaseDialect {
         return "SELECT profiler_id FROM " + tableName + " WHERE user_name = ? AND has_user_viewed = 0";
     }
 
+    @Deprecated
     @Override
     public String getExpireSql(String tableName) {
         return "DELETE FROM " + tableName + " WHERE started < ?";
     }
 
+    @Override
+    public String getExpireBatchSql(String tableName) {
+        return "DELETE FROM " + tableName + " WHERE started < ? AND ROWNUM <= ?";
+    }
+
     @Override
     public String getClearSql(String tableName) {
         return "DELETE FROM " + tableName;
@@ -153,6 +217,11 @@ public class OracleDialect implements DatabaseDialect {
         return "profile_json";
     }
 
+    @Override
+    public String getPayloadColumnName() {
+        return "profile_data";
+    }
+
     @Override
     public String getProfilerIdColumnName() {
         return "profiler_id";
@@ -25,7 +25,7 @@ import java.util.UUID;
 
 /**
  * PostgreSQL database dialect. Uses native {@code uuid} type, {@code timestamp(3)},
- * {@code boolean}, and {@code text}.
+ * {@code boolean}, {@code text}, and {@code bytea} for encoded payloads.
  */
 public class PostgresDialect implements DatabaseDialect {
 
@@ -44,7 +44,8 @@ public class PostgresDialect implements DatabaseDialect {
             + "user_name VARCHAR(100), "
             + "has_user_viewed BOOLEAN NOT NULL DEFAULT FALSE, "
             + "machine_name VARCHAR(100), "
-            + "profile_json TEXT"
+            + "profile_json TEXT, "
+            + "profile_data BYTEA"
             + ");\n"
             + "CREATE UNIQUE INDEX IF NOT EXISTS idx_" + tableName + "_profiler_id ON " + tableName + " (profiler_id);\n"
             + "CREATE INDEX IF NOT EXISTS idx_" + tableName + "_user_viewed ON " + tableName + " (user_name, has_user_viewed);\n"
@@ -63,11 +64,40 @@ public class PostgresDialect implements DatabaseDialect {
             + " profile_json = EXCLUDED.profile_json";
     }
 
+    @Override
+    public String getSaveWithPayloadSql(String tableName) {
+        return "INSERT INTO " + tableName
+            + " (profiler_id, name, started, duration_milliseconds, user_name, has_user_viewed, machine_name,"
+            + " profile_json, profile_data)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON CONFLICT (profiler_id) DO UPDATE SET"
+            + " name = EXCLUDED.name,"
+            + " duration_milliseconds = EXCLUDED.duration_milliseconds,"
+            + " machine_name = EXCLUDED.machine_name,"
+            + " profile_json = EXCLUDED.profile_json,"
+            + " profile_data = EXCLUDED.profile_data";
+    }
+
+    @Override
+    public String getAddPayloadColumnDdl(String tableName) {
+        return "ALTER TABLE " + tableName + " ADD COLUMN IF NOT EXISTS profile_data BYTEA";
+    }
+
     @Override
     public String getLoadSql(String tableName) {
         return "SELECT profile_json FROM " + tableName + " WHERE profiler_id = ?";
     }
 
+    @Override
+    public String getLoadWithPayloadSql(String tableName) {
+        return "SELECT profile_data, profile_json FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
+    @Override
+    public String getStartedSql(String tableName) {
+        return "SELECT started FROM " + tableName + " WHERE profiler_id = ?";
+    }
+
     @Override
     public String getListSql(String tableName, ListResultsOrder order) {
         String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
@@ -77,6 +107,28 @@ public class PostgresDialect implements DatabaseDialect {
             + " LIMIT ?";
     }
 
+    @Override
+    public String getListSummariesSql(String tableName, ListResultsOrder order) {
+        String dir = order == ListResultsOrder.Descending ? "DESC" : "ASC";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started >= ? AND started <= ?"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
+    @Override
+    public String getListSummariesAfterSql(String tableName, ListResultsOrder order) {
+        boolean desc = order == ListResultsOrder.Descending;
+        String dir = desc ? "DESC" : "ASC";
+        String cmp = desc ? "<" : ">";
+        return "SELECT profiler_id, name, started, duration_milliseconds, machine_name, user_name"
+            + " FROM " + tableName
+            + " WHERE started " + cmp + "= ? AND (started " + cmp + " ? OR profiler_id " + cmp + " ?)"
+            + " ORDER BY started " + dir + ", profiler_id " + dir
+            + " LIMIT ?";
+    }
+
     @Override
     public String getSetViewedSql(String tableName) {
         return "UPDATE " + tableName + " SET has_user_viewed = TRUE WHERE user_name = ? AND profiler_id = ?";
@@ -92,11 +144,19 @@ public class PostgresDialect implements DatabaseDialect {
         return "SELECT profiler_id FROM " + tableName + " WHERE user_name = ? AND has_user_viewed = FALSE";
     }
 
+    @Deprecated
     @Override
     public String getExpireSql(String tableName) {
         return "DELETE FROM " + tableName + " WHERE started < ?";
     }
 
+    @Override
+    public String getExpireBatchSql(String tableName) {
+        // no LIMIT on DELETE, so pick the rows by primary key
+        return "DELETE FROM " + tableName + " WHERE id IN ("
+            + "SELECT id FROM " + tableName + " WHERE started < ? ORDER BY started LIMIT ?)";
+    }
+
     @Override
     public String getClearSql(String tableName) {
         return "DELETE FROM " + tableName;
@@ -107,6 +167,11 @@ public class PostgresDialect implements DatabaseDialect {
         return "profile_json";
     }
 
+    @Override
+    public String getPayloadColumnName() {
+        return "profile_data";
+    }
+
     @Override
     public String getProfilerIdColumnName() {
         return "profiler_id";
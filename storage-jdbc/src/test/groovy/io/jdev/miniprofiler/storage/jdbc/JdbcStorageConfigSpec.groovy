@@ -30,6 +30,7 @@ class JdbcStorageConfigSpec extends Specification {
         sysprops["miniprofiler.storage.jdbc.dialect"]   = "h2"
         sysprops["miniprofiler.storage.jdbc.jndiName"]  = "java:comp/env/jdbc/profiler"
         sysprops["miniprofiler.storage.jdbc.table.create"] = "true"
+        sysprops["miniprofiler.storage.jdbc.codec"]     = "gzip"
 
         when:
         def config = JdbcStorageConfig.create(sysprops, null)
@@ -43,6 +44,7 @@ class JdbcStorageConfigSpec extends Specification {
             dialect == "h2"
             jndiName == "java:comp/env/jdbc/profiler"
             tableCreate
+            codec == "gzip"
             configured
         }
     }
@@ -117,6 +119,7 @@ class JdbcStorageConfigSpec extends Specification {
             dialect == null
             jndiName == null
             !tableCreate
+            codec == null
         }
     }
 
@@ -18,8 +18,12 @@ package io.jdev.miniprofiler.storage.jdbc
 
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ClientTiming
 import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.ListCursor
+import io.jdev.miniprofiler.storage.PayloadCodec
 import io.jdev.miniprofiler.storage.Storage
+import io.jdev.miniprofiler.storage.jdbc.dialect.DatabaseDialect
 import io.jdev.miniprofiler.storage.jdbc.dialect.H2Dialect
 import org.h2.jdbcx.JdbcDataSource
 import spock.lang.AutoCleanup
@@ -27,6 +31,8 @@ import spock.lang.Shared
 import spock.lang.Specification
 
 import javax.sql.DataSource
+import java.sql.PreparedStatement
+import java.sql.ResultSet
 import java.time.Instant
 
 class JdbcStorageSpec extends Specification {
@@ -118,6 +124,93 @@ class JdbcStorageSpec extends Specification {
         ids.size() == 3
     }
 
+    void "listSummaries reads the list fields from the table"() {
+        given:
+        def p1 = profilerStartedAt(1000L)
+        def p2 = profilerStartedAt(2000L)
+        p2.user = "alice"
+        p2.clientTimings = [new ClientTiming("domComplete", 10L, 5L)]
+        [p1, p2].each { storage.save(it) }
+
+        when:
+        def summaries = storage.listSummaries(10, null, null, Storage.ListResultsOrder.Descending)
+
+        then:
+        summaries*.id == [p2.id, p1.id]
+        summaries[0].name == "test"
+        summaries[0].started == 2000L
+        summaries[0].user == "alice"
+        summaries[0].machineName == p2.machineName
+        Math.abs(summaries[0].durationMilliseconds - p2.toSummary().durationMilliseconds) <= 0.001d
+
+        and: 'client timings are only held in the JSON column'
+        summaries[0].clientTimings == null
+    }
+
+    void "listSummaries filters by date range and respects maxResults"() {
+        given:
+        (1..5).each { storage.save(profilerStartedAt(it * 1000L)) }
+
+        when:
+        def summaries = storage.listSummaries(2, new Date(2000L), new Date(4000L), Storage.ListResultsOrder.Ascending)
+
+        then:
+        summaries*.started == [2000L, 3000L]
+    }
+
+    void "listSummaries after a cursor seeks past sessions started in the same millisecond"() {
+        given:
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L),
+                         profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.each { storage.save(it) }
+        def ascending = storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList()
+
+        when:
+        def pages = []
+        ListCursor cursor = null
+        while (true) {
+            def page = storage.listSummaries(2, cursor, Storage.ListResultsOrder.Ascending)
+            if (page.empty) {
+                break
+            }
+            pages << page*.id
+            cursor = ListCursor.of(page.last())
+        }
+
+        then:
+        pages.size() == 3
+        pages.flatten() == ascending
+
+        when:
+        def descending = storage.list(10, storage.cursorFor(ascending[3]), Storage.ListResultsOrder.Descending).toList()
+
+        then:
+        descending == ascending[0..2].reverse()
+    }
+
+    void "listSummaries orders sessions started in the same millisecond by id, as cursors do"() {
+        given:
+        def profilers = (1..4).collect { profilerStartedAt(2000L) }
+        profilers.each { storage.save(it) }
+        def byId = profilers*.id.sort { it.toString() }
+
+        expect:
+        storage.listSummaries(10, null, null, Storage.ListResultsOrder.Ascending)*.id == byId
+        storage.listSummaries(10, null, null, Storage.ListResultsOrder.Descending)*.id == byId.reverse()
+        storage.listSummaries(2, null, null, Storage.ListResultsOrder.Ascending)*.id +
+            storage.listSummaries(2, storage.cursorFor(byId[1]), Storage.ListResultsOrder.Ascending)*.id == byId
+    }
+
+    void "cursorFor reads the stored start time"() {
+        given:
+        def p = profilerStartedAt(2000L)
+        storage.save(p)
+
+        expect:
+        storage.cursorFor(p.id) == ListCursor.of(2000L, p.id)
+        storage.cursorFor(UUID.randomUUID()) == null
+    }
+
     void "setViewed and setUnviewed update the viewed flag"() {
         given:
         def profiler = newProfiler("test")
@@ -137,6 +230,69 @@ class JdbcStorageSpec extends Specification {
         !storage.getUnviewedIds("alice").contains(profiler.id)
     }
 
+    void "saveAll inserts new sessions and updates stored ones"() {
+        given:
+        def stored = newProfiler("stored")
+        storage.save(stored)
+        stored.machineName = "updated-host"
+        def fresh = (1..3).collect { profilerStartedAt(it * 1000L) }
+
+        when:
+        storage.saveAll([stored] + fresh)
+
+        then:
+        storage.load(stored.id).machineName == "updated-host"
+        fresh.every { storage.load(it.id) != null }
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList() == fresh*.id + [stored.id]
+    }
+
+    void "setUnviewedAll and setViewedAll update the viewed flags"() {
+        given:
+        def profilers = (1..3).collect { newProfiler("test$it") }
+        profilers.each { it.user = "alice" }
+        storage.saveAll(profilers)
+
+        when:
+        storage.setUnviewedAll("alice", profilers*.id)
+
+        then:
+        storage.getUnviewedIds("alice") as Set == profilers*.id as Set
+
+        when:
+        storage.setViewedAll("alice", profilers[0..1]*.id)
+
+        then:
+        storage.getUnviewedIds("alice") as Set == [profilers[2].id] as Set
+    }
+
+    void "saveAll sends more sessions than fit in one batch"() {
+        given:
+        def profilers = (1..JdbcStorage.MAX_BATCH_SIZE + 1).collect { newProfiler("test$it") }
+
+        when:
+        storage.saveAll(profilers)
+
+        then:
+        storage.list(1000, null, null, Storage.ListResultsOrder.Ascending).size() == profilers.size()
+    }
+
+    void "saveAll saves none of the sessions if one fails"() {
+        given:
+        def good = newProfiler("good")
+        def bad = newProfiler("x" * 201)
+
+        when:
+        storage.saveAll([good, bad])
+
+        then:
+        thrown(RuntimeException)
+        storage.load(good.id) == null
+
+        and: "a later batch still saves"
+        storage.saveAll([good])
+        storage.load(good.id) != null
+    }
+
     void "getUnviewedIds returns only unviewed for given user"() {
         given:
         def p1 = newProfiler("test1")
@@ -257,6 +413,90 @@ class JdbcStorageSpec extends Specification {
         noExceptionThrown()
     }
 
+    void "sessions round-trip through each payload codec"() {
+        given:
+        def s = new JdbcStorage(dataSource, new H2Dialect(), JdbcStorage.DEFAULT_TABLE_NAME, codec)
+        def profiler = newProfiler("compressed")
+
+        when:
+        s.save(profiler)
+        s.saveAll([newProfiler("batched")])
+
+        then:
+        s.load(profiler.id).name == "compressed"
+        columnIsNull("profile_json", profiler.id) == (codec != PayloadCodec.NONE)
+        columnIsNull("profile_data", profiler.id) == (codec == PayloadCodec.NONE)
+
+        where:
+        codec << [PayloadCodec.NONE, PayloadCodec.GZIP, PayloadCodec.DEFLATE]
+    }
+
+    void "sessions saved with another codec still load"() {
+        given:
+        def plain = newProfiler("plain")
+        storage.save(plain)
+        def gzip = new JdbcStorage(dataSource, new H2Dialect(), JdbcStorage.DEFAULT_TABLE_NAME, PayloadCodec.GZIP)
+        def zipped = newProfiler("zipped")
+        gzip.save(zipped)
+
+        expect:
+        gzip.load(plain.id).name == "plain"
+        storage.load(zipped.id).name == "zipped"
+    }
+
+    void "tables without the payload column are still usable and upgraded by createTable"() {
+        given: "a table as created before the payload column existed"
+        def ds = new JdbcDataSource()
+        ds.url = "jdbc:h2:mem:legacy-${UUID.randomUUID()};DB_CLOSE_DELAY=-1"
+        def dialect = new H2Dialect()
+        def conn = ds.getConnection()
+        dialect.executeCreateTable(conn, "legacy")
+        conn.createStatement().execute("ALTER TABLE legacy DROP COLUMN profile_data")
+        conn.close()
+        def plain = new JdbcStorage(ds, dialect, "legacy")
+        def gzip = new JdbcStorage(ds, dialect, "legacy", PayloadCodec.GZIP)
+        def old = newProfiler("old")
+
+        when:
+        plain.save(old)
+        gzip.save(newProfiler("new"))
+
+        then:
+        plain.load(old.id).name == "old"
+        def e = thrown(IllegalStateException)
+        e.message.contains("createTable()")
+
+        when:
+        gzip.createTable()
+        def compressed = newProfiler("new")
+        gzip.save(compressed)
+
+        then:
+        gzip.load(old.id).name == "old"
+        gzip.load(compressed.id).name == "new"
+    }
+
+    void "a dialect implementing only the original methods uses the standard SQL defaults"() {
+        given:
+        storage.close()
+        storage = new JdbcStorage(dataSource, new MinimalDialect())
+        def old = profilerStartedAt(1000L)
+        def recent = profilerStartedAt(2000L)
+        [old, recent].each { storage.save(it) }
+
+        expect:
+        storage.load(recent.id).id == recent.id
+        storage.listSummaries(10, null, null, Storage.ListResultsOrder.Descending)*.id == [recent.id, old.id]
+        storage.listSummaries(10, storage.cursorFor(recent.id), Storage.ListResultsOrder.Descending)*.id == [old.id]
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(1500L))
+
+        then:
+        storage.load(old.id) == null
+        storage.load(recent.id) != null
+    }
+
     void "auto-detects H2 dialect from datasource"() {
         given:
         def ds = new JdbcDataSource()
@@ -272,6 +512,38 @@ class JdbcStorageSpec extends Specification {
         s?.close()
     }
 
+    // implements what DatabaseDialect required before the payload column, list summaries and batched expiry
+    static class MinimalDialect implements DatabaseDialect {
+        private final H2Dialect h2 = new H2Dialect()
+
+        String getCreateTableDdl(String tableName) { h2.getCreateTableDdl(tableName) }
+        String getSaveSql(String tableName) { h2.getSaveSql(tableName) }
+        String getSaveWithPayloadSql(String tableName) { h2.getSaveWithPayloadSql(tableName) }
+        String getLoadSql(String tableName) { h2.getLoadSql(tableName) }
+        String getListSql(String tableName, Storage.ListResultsOrder order) { h2.getListSql(tableName, order) }
+        String getSetViewedSql(String tableName) { h2.getSetViewedSql(tableName) }
+        String getSetUnviewedSql(String tableName) { h2.getSetUnviewedSql(tableName) }
+        String getGetUnviewedIdsSql(String tableName) { h2.getGetUnviewedIdsSql(tableName) }
+        String getClearSql(String tableName) { h2.getClearSql(tableName) }
+        String getJsonColumnName() { h2.jsonColumnName }
+        String getProfilerIdColumnName() { h2.profilerIdColumnName }
+        void setUuid(PreparedStatement ps, int index, UUID uuid) { h2.setUuid(ps, index, uuid) }
+        UUID getUuid(ResultSet rs, String columnName) { h2.getUuid(rs, columnName) }
+    }
+
+    private boolean columnIsNull(String column, UUID id) {
+        def conn = dataSource.getConnection()
+        try {
+            def rs = conn.createStatement().executeQuery(
+                "SELECT ${column} FROM mini_profiler_sessions WHERE profiler_id = '${id}'")
+            rs.next()
+            rs.getObject(1)
+            return rs.wasNull()
+        } finally {
+            conn.close()
+        }
+    }
+
     private ProfilerImpl newProfiler(String name) {
         def profiler = new ProfilerImpl(name, ProfileLevel.Info, profilerProvider)
         profiler.stop()
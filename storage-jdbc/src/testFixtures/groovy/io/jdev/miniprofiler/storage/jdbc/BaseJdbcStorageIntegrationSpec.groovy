@@ -18,7 +18,9 @@ package io.jdev.miniprofiler.storage.jdbc
 
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ClientTiming
 import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.ListCursor
 import io.jdev.miniprofiler.storage.Storage
 import spock.lang.Shared
 import spock.lang.Specification
@@ -107,6 +109,80 @@ abstract class BaseJdbcStorageIntegrationSpec extends Specification {
         ids.size() == 3
     }
 
+    void "listSummaries reads the list fields from the table"() {
+        given:
+        def p1 = profilerStartedAt(1000L)
+        def p2 = profilerStartedAt(2000L)
+        p2.user = "alice"
+        p2.clientTimings = [new ClientTiming("domComplete", 10L, 5L)]
+        [p1, p2].each { storage.save(it) }
+
+        when:
+        def summaries = storage.listSummaries(10, null, null, Storage.ListResultsOrder.Descending)
+
+        then:
+        summaries*.id == [p2.id, p1.id]
+        summaries[0].name == "test"
+        summaries[0].started == 2000L
+        summaries[0].user == "alice"
+        summaries[0].machineName == p2.machineName
+        Math.abs(summaries[0].durationMilliseconds - p2.toSummary().durationMilliseconds) <= 0.001d
+
+        and: 'client timings are only held in the JSON column'
+        summaries[0].clientTimings == null
+    }
+
+    void "listSummaries filters by date range and respects maxResults"() {
+        given:
+        (1..5).each { storage.save(profilerStartedAt(it * 1000L)) }
+
+        when:
+        def summaries = storage.listSummaries(2, new Date(2000L), new Date(4000L), Storage.ListResultsOrder.Ascending)
+
+        then:
+        summaries*.started == [2000L, 3000L]
+    }
+
+    void "listSummaries after a cursor seeks past sessions started in the same millisecond"() {
+        given:
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L),
+                         profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.each { storage.save(it) }
+        def ascending = storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList()
+
+        when:
+        def pages = []
+        ListCursor cursor = null
+        while (true) {
+            def page = storage.listSummaries(2, cursor, Storage.ListResultsOrder.Ascending)
+            if (page.empty) {
+                break
+            }
+            pages << page*.id
+            cursor = ListCursor.of(page.last())
+        }
+
+        then:
+        pages.size() == 3
+        pages.flatten() == ascending
+
+        when:
+        def descending = storage.list(10, storage.cursorFor(ascending[3]), Storage.ListResultsOrder.Descending).toList()
+
+        then:
+        descending == ascending[0..2].reverse()
+    }
+
+    void "cursorFor reads the stored start time"() {
+        given:
+        def p = profilerStartedAt(2000L)
+        storage.save(p)
+
+        expect:
+        storage.cursorFor(p.id) == ListCursor.of(2000L, p.id)
+        storage.cursorFor(UUID.randomUUID()) == null
+    }
+
     void "setViewed and setUnviewed update the viewed flag"() {
         given:
         def profiler = newProfiler("test")
@@ -126,6 +202,41 @@ abstract class BaseJdbcStorageIntegrationSpec extends Specification {
         !storage.getUnviewedIds("alice").contains(profiler.id)
     }
 
+    void "saveAll inserts new sessions and updates stored ones"() {
+        given:
+        def stored = newProfiler("stored")
+        storage.save(stored)
+        stored.machineName = "updated-host"
+        def fresh = (1..3).collect { profilerStartedAt(it * 1000L) }
+
+        when:
+        storage.saveAll([stored] + fresh)
+
+        then:
+        storage.load(stored.id).machineName == "updated-host"
+        fresh.every { storage.load(it.id) != null }
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList() == fresh*.id + [stored.id]
+    }
+
+    void "setUnviewedAll and setViewedAll update the viewed flags"() {
+        given:
+        def profilers = (1..3).collect { newProfiler("test$it") }
+        profilers.each { it.user = "alice" }
+        storage.saveAll(profilers)
+
+        when:
+        storage.setUnviewedAll("alice", profilers*.id)
+
+        then:
+        storage.getUnviewedIds("alice") as Set == profilers*.id as Set
+
+        when:
+        storage.setViewedAll("alice", profilers[0..1]*.id)
+
+        then:
+        storage.getUnviewedIds("alice") as Set == [profilers[2].id] as Set
+    }
+
     void "getUnviewedIds returns only unviewed for given user"() {
         given:
         def p1 = newProfiler("test1")
@@ -187,6 +298,21 @@ abstract class BaseJdbcStorageIntegrationSpec extends Specification {
         storage.load(recent.id) != null
     }
 
+    void "expireBatchOlderThan removes at most the batch size"() {
+        given:
+        def old = [1000L, 1100L, 1200L].collect { profilerStartedAt(it) }
+        def recent = profilerStartedAt(3000L)
+        (old + recent).each { storage.save(it) }
+        def cutoff = Instant.ofEpochMilli(2000L)
+
+        expect:
+        storage.expireBatchOlderThan(cutoff, 2) == 2
+        old.count { storage.load(it.id) != null } == 1
+        storage.expireBatchOlderThan(cutoff, 2) == 1
+        storage.expireBatchOlderThan(cutoff, 2) == 0
+        storage.load(recent.id) != null
+    }
+
     protected ProfilerImpl newProfiler(String name) {
         def profiler = new ProfilerImpl(name, ProfileLevel.Info, profilerProvider)
         profiler.stop()
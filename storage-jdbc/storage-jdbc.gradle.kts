@@ -18,6 +18,7 @@ plugins {
     id("build.java-module")
     id("build.cross-version-test")
     id("build.container-test")
+    id("build.jmh")
     id("build.publish")
     `java-test-fixtures`
 }
@@ -42,6 +43,9 @@ dependencies {
     // Default test suite exercises the Hikari-preferred happy path.
     testImplementation(libs.hikaricp.v4)
 
+    // the benchmarks write to an in-memory H2 database
+    "jmhRuntimeOnly"(libs.h2)
+
     // testFixtures holds the base integration spec — it needs Spock/Groovy.
     testFixturesImplementation(libs.h2)
     testFixturesImplementation(libs.groovy.v4)
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage.objectstorage.azureblob
+
+import com.azure.storage.blob.BlobServiceAsyncClient
+import com.azure.storage.blob.BlobServiceClientBuilder
+import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+
+// runs the Azure Blob specs against a storage that saves through a BlobServiceAsyncClient
+class AzureBlobAsyncStorageIntegrationSpec extends AzureBlobStorageIntegrationSpec {
+
+    @Shared @AutoCleanup AzureBlobStorage asyncStorage
+
+    @Override
+    BaseObjectStorage getStorage() {
+        if (asyncStorage == null) {
+            String endpoint = "http://${container.host}:${container.getMappedPort(PORT)}/${ACCOUNT_NAME}"
+            String connectionString = "DefaultEndpointsProtocol=http;" +
+                "AccountName=${ACCOUNT_NAME};" +
+                "AccountKey=${ACCOUNT_KEY};" +
+                "BlobEndpoint=${endpoint};"
+            BlobServiceAsyncClient asyncClient = new BlobServiceClientBuilder()
+                .connectionString(connectionString)
+                .buildAsyncClient()
+            def config = new AzureBlobStorageConfig(CONTAINER, null, null)
+            asyncStorage = new AzureBlobStorage(config, blobServiceClient, asyncClient)
+        }
+        asyncStorage
+    }
+}
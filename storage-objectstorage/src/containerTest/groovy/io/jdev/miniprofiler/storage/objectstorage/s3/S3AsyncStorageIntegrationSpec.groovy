@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage.objectstorage.s3
+
+import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider
+import software.amazon.awssdk.regions.Region
+import software.amazon.awssdk.services.s3.S3AsyncClient
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+
+// runs the S3 specs against a storage that saves through an S3AsyncClient
+class S3AsyncStorageIntegrationSpec extends S3StorageIntegrationSpec {
+
+    @Shared @AutoCleanup S3AsyncClient s3AsyncClient
+    @Shared @AutoCleanup S3Storage asyncStorage
+
+    @Override
+    BaseObjectStorage getStorage() {
+        if (asyncStorage == null) {
+            String endpoint = "http://${container.host}:${container.getMappedPort(PORT)}"
+            s3AsyncClient = S3AsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .region(Region.of("us-east-1"))
+                .endpointOverride(URI.create(endpoint))
+                .forcePathStyle(true)
+                .build()
+            def config = new S3StorageConfig(BUCKET, null, "us-east-1", endpoint)
+            asyncStorage = new S3Storage(config, s3Client, s3AsyncClient)
+        }
+        asyncStorage
+    }
+}
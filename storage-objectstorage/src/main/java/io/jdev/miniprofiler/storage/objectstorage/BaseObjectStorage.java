@@ -17,9 +17,19 @@
 package io.jdev.miniprofiler.storage.objectstorage;
 
 import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
 import io.jdev.miniprofiler.storage.BaseStorage;
+import io.jdev.miniprofiler.storage.BatchExpiringStorage;
+import io.jdev.miniprofiler.storage.ListCursor;
+import io.jdev.miniprofiler.storage.NonBlockingStorage;
+import io.jdev.miniprofiler.storage.PayloadCodec;
+import io.jdev.miniprofiler.storage.ProfilePayloads;
 import io.jdev.miniprofiler.storage.Storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -27,23 +37,42 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Abstract base class for object-storage-backed {@link Storage} implementations.
  *
  * <p>Implements all {@link Storage} methods in terms of five abstract protected
  * operations ({@link #putObject}, {@link #getObject}, {@link #deleteObject},
- * {@link #listKeys}, {@link #closeClient}) that subclasses must provide.</p>
+ * {@link #listKeys}, {@link #closeClient}) that subclasses must provide.
+ * {@link #openObject}, {@link #putObjectAsync}, {@link #deleteObjects}, {@link #listKeysAfter} and
+ * {@link #listPrefixes} have default implementations that subclasses may override with cheaper
+ * client calls.</p>
+ *
+ * <p>A session is saved as two objects, the session itself and its index marker. When the
+ * subclass overrides {@link #putObjectAsync} with an asynchronous client, both are written
+ * at once, by {@link #save} as well as by {@link #saveNonBlocking}, so a save costs one round trip
+ * rather than two. The index marker may then be written first, in which case the session is
+ * briefly listed before it can be loaded; if the session then fails to be written, the marker
+ * is deleted again before the save completes.</p>
  *
  * <p>Three key namespaces are used (see {@link ObjectStorageKeys}):</p>
  * <ul>
- *   <li>{@code profiler/{uuid}} — serialised profiler JSON</li>
- *   <li>{@code profiler-index/{timestamp}-{uuid}} — empty listing marker</li>
+ *   <li>{@code profiler/{uuid}} — serialised profiler JSON, compressed with the configured
+ *       {@link PayloadCodec} (see {@link ProfilePayloads})</li>
+ *   <li>{@code profiler-index/{timestamp}-{uuid}} — listing marker holding the session's results list JSON,
+ *       optionally grouped into day or hour partitions (see {@link IndexPartitioning})</li>
  *   <li>{@code unviewed/{user}/{uuid}} — empty unviewed marker</li>
  * </ul>
  */
-public abstract class BaseObjectStorage extends BaseStorage {
+public abstract class BaseObjectStorage extends BaseStorage implements NonBlockingStorage, BatchExpiringStorage {
+
+    /** Number of sessions deleted per batch by {@link #expireOlderThan(Instant)}. */
+    public static final int EXPIRE_BATCH_SIZE = 1000;
 
     private static final byte[] EMPTY_BYTES = new byte[0];
 
@@ -51,6 +80,7 @@ public abstract class BaseObjectStorage extends BaseStorage {
     protected final ObjectStorageKeys keys;
     /** The bucket or container name. */
     protected final String bucket;
+    private final PayloadCodec codec;
     private final boolean ownsClient;
     private volatile boolean closed;
 
@@ -62,8 +92,9 @@ public abstract class BaseObjectStorage extends BaseStorage {
      *                   close it when {@link #close()} is called
      */
     protected BaseObjectStorage(BaseObjectStorageConfig config, boolean ownsClient) {
-        this.keys = new ObjectStorageKeys(config.getPrefix());
+        this.keys = new ObjectStorageKeys(config.getPrefix(), config.getIndexPartitioning());
         this.bucket = config.getBucketName();
+        this.codec = config.getCodec();
         this.ownsClient = ownsClient;
     }
 
@@ -75,6 +106,28 @@ public abstract class BaseObjectStorage extends BaseStorage {
      */
     protected abstract void putObject(String key, byte[] content);
 
+    /**
+     * Starts storing the given bytes at the specified key, creating or overwriting the object.
+     *
+     * <p>The default implementation calls {@link #putObject} on the calling thread and returns
+     * a completed future; subclasses whose client has an asynchronous API should override it
+     * so that writes don't block the caller and can run concurrently.</p>
+     *
+     * @param key     the object key
+     * @param content the bytes to store
+     * @return a future completed once the object is stored
+     */
+    protected CompletableFuture<Void> putObjectAsync(String key, byte[] content) {
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        try {
+            putObject(key, content);
+            result.complete(null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     /**
      * Returns the bytes stored at the specified key, or {@code null} if the object
      * does not exist.
@@ -84,6 +137,22 @@ public abstract class BaseObjectStorage extends BaseStorage {
      */
     protected abstract byte[] getObject(String key);
 
+    /**
+     * Opens a stream over the object stored at the specified key, or returns {@code null} if
+     * the object does not exist. The caller closes the stream.
+     *
+     * <p>The default implementation wraps {@link #getObject}; subclasses whose client can
+     * stream the object body should override it so that large sessions are parsed as they
+     * are downloaded.</p>
+     *
+     * @param key the object key
+     * @return a stream over the stored bytes, or {@code null} if not found
+     */
+    protected InputStream openObject(String key) {
+        byte[] data = getObject(key);
+        return data != null ? new ByteArrayInputStream(data) : null;
+    }
+
     /**
      * Deletes the object at the specified key. No-op if the object does not exist.
      *
@@ -91,6 +160,20 @@ public abstract class BaseObjectStorage extends BaseStorage {
      */
     protected abstract void deleteObject(String key);
 
+    /**
+     * Deletes the objects at the specified keys, skipping any that do not exist.
+     *
+     * <p>The default implementation calls {@link #deleteObject} for each key; subclasses whose
+     * client can delete many objects in one request should override it.</p>
+     *
+     * @param keys the object keys
+     */
+    protected void deleteObjects(Collection<String> keys) {
+        for (String key : keys) {
+            deleteObject(key);
+        }
+    }
+
     /**
      * Lists all object keys whose names begin with the given prefix.
      *
@@ -99,6 +182,66 @@ public abstract class BaseObjectStorage extends BaseStorage {
      */
     protected abstract Collection<String> listKeys(String keyPrefix);
 
+    /**
+     * Lists, in lexicographic order, up to {@code limit} object keys beginning with the given
+     * prefix that sort after {@code startAfter}.
+     *
+     * <p>The default implementation sorts and filters {@link #listKeys}; subclasses whose client
+     * can start a listing part way through should override it so that paging through the index
+     * lists neither the keys before the cursor nor those after the page.</p>
+     *
+     * @param keyPrefix  the key prefix to filter by
+     * @param startAfter the key to list after, exclusive, or {@code null} to list from the start
+     * @param limit      the maximum number of keys to return
+     * @return the matching keys, in order
+     */
+    protected List<String> listKeysAfter(String keyPrefix, String startAfter, int limit) {
+        List<String> sorted = new ArrayList<String>(listKeys(keyPrefix));
+        Collections.sort(sorted);
+        List<String> result = new ArrayList<String>();
+        for (String key : sorted) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (startAfter == null || key.compareTo(startAfter) > 0) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the distinct prefixes one level below {@code keyPrefix}: each key's prefix up to and
+     * including the first {@code '/'} after {@code keyPrefix}, as returned by a delimiter listing.
+     *
+     * <p>The default implementation derives them from {@link #listKeys}; subclasses should
+     * override it with a delimiter listing so that finding the index partitions doesn't list
+     * every index marker.</p>
+     *
+     * @param keyPrefix the key prefix, ending with {@code '/'}
+     * @return the prefixes below it
+     */
+    protected Collection<String> listPrefixes(String keyPrefix) {
+        Set<String> result = new TreeSet<String>();
+        for (String key : listKeys(keyPrefix)) {
+            int slash = key.indexOf('/', keyPrefix.length());
+            if (slash >= 0) {
+                result.add(key.substring(0, slash + 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called when expiry has deleted every object under an index partition. Object stores have
+     * no directories to remove, so the default does nothing; stores that do should remove it.
+     *
+     * @param keyPrefix the partition prefix, ending with {@code '/'}
+     */
+    protected void prefixEmptied(String keyPrefix) {
+        // nothing to remove
+    }
+
     /**
      * Closes the underlying cloud client. Called by {@link #close()} only when
      * this instance owns the client.
@@ -107,59 +250,260 @@ public abstract class BaseObjectStorage extends BaseStorage {
 
     @Override
     public void save(ProfilerImpl profiler) {
-        byte[] data = profiler.toJSONString().getBytes(StandardCharsets.UTF_8);
-        putObject(keys.profilerKey(profiler.getId()), data);
-        putObject(keys.indexKey(profiler.getStarted(), profiler.getId()), EMPTY_BYTES);
+        try {
+            saveNonBlocking(profiler).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveNonBlocking(ProfilerImpl profiler) {
+        byte[] payload = ProfilePayloads.encode(profiler, codec);
+        // the index marker carries the results list fields, so listing summaries needn't fetch whole sessions
+        byte[] summary = profiler.asListJson().getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<Void> session = putObjectAsync(keys.profilerKey(profiler.getId()), payload);
+        if (session.isCompletedExceptionally()) {
+            // a synchronous put failed, so don't list a session that was never stored
+            return session;
+        }
+        String indexKey = keys.indexKey(profiler.getStarted(), profiler.getId());
+        CompletableFuture<Void> marker = putObjectAsync(indexKey, summary);
+        CompletableFuture<Void> result = new CompletableFuture<Void>();
+        CompletableFuture.allOf(session, marker).whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                result.complete(null);
+                return;
+            }
+            if (session.isCompletedExceptionally() && !marker.isCompletedExceptionally()) {
+                // the marker would list a session that can't be loaded
+                try {
+                    deleteObject(indexKey);
+                } catch (RuntimeException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            result.completeExceptionally(failure);
+        });
+        return result;
     }
 
     @Override
     public ProfilerImpl load(UUID id) {
-        byte[] data = getObject(keys.profilerKey(id));
-        if (data == null) {
-            return null;
+        try (InputStream data = openObject(keys.profilerKey(id))) {
+            return data != null ? ProfilePayloads.decode(data) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return ProfilerImpl.fromJson(new String(data, StandardCharsets.UTF_8));
     }
 
     @Override
     public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
-        long startMs = start != null ? start.getTime() : 0L;
-        long finishMs = finish != null ? finish.getTime() : Long.MAX_VALUE;
+        return extractIds(listIndexKeys(maxResults, start, finish, orderBy));
+    }
 
-        List<String> indexKeys = new ArrayList<String>(listKeys(keys.indexPrefix()));
-        Collections.sort(indexKeys);
-        if (orderBy == ListResultsOrder.Descending) {
-            Collections.reverse(indexKeys);
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Reads the summary held in each session's index marker rather than the session itself.
+     * Markers written by earlier versions are empty, and for those the session is loaded.</p>
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return readSummaries(listIndexKeys(maxResults, start, finish, orderBy));
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return extractIds(listIndexKeys(maxResults, after, orderBy));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Index keys sort in (started, id) order, so ascending pages start the listing at the
+     * cursor's key. Summaries are read from the index markers as for the date range variant.</p>
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return readSummaries(listIndexKeys(maxResults, after, orderBy));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Fetches the session object with a single request, but only reads the summary fields
+     * from it rather than building the session's timing tree.</p>
+     */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        if (id == null) {
+            return null;
         }
+        try (InputStream data = openObject(keys.profilerKey(id))) {
+            if (data == null) {
+                return null;
+            }
+            try (InputStream json = ProfilePayloads.open(data)) {
+                return ListCursor.of(ProfilerSummary.fromJson(json));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        String idxPfx = keys.indexPrefix();
+    private List<UUID> extractIds(List<String> indexKeys) {
         List<UUID> result = new ArrayList<UUID>();
         for (String key : indexKeys) {
-            if (result.size() >= maxResults) {
+            result.add(keys.extractIdFromIndexKey(key));
+        }
+        return result;
+    }
+
+    private List<ProfilerSummary> readSummaries(List<String> indexKeys) {
+        List<ProfilerSummary> result = new ArrayList<ProfilerSummary>();
+        for (String key : indexKeys) {
+            byte[] data = getObject(key);
+            if (data == null) {
+                // expired since listing
+                continue;
+            }
+            if (data.length > 0) {
+                result.add(ProfilerSummary.fromJson(new ByteArrayInputStream(data)));
+            } else {
+                ProfilerImpl profiler = load(keys.extractIdFromIndexKey(key));
+                if (profiler != null) {
+                    result.add(profiler.toSummary());
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<String> listIndexKeys(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        String lowerBound = start != null ? indexBound(start.getTime()) : null;
+        // '~' sorts after the '-' that follows the timestamp, so keys started at finish are included
+        String upperBound = finish != null ? indexBound(finish.getTime()) + "~" : null;
+        return listIndexKeysBetween(maxResults, lowerBound, upperBound, orderBy);
+    }
+
+    private List<String> listIndexKeys(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        if (after == null) {
+            return listIndexKeysBetween(maxResults, null, null, orderBy);
+        }
+        String cursorKey = keys.indexKey(after.getStarted(), after.getId());
+        return orderBy == ListResultsOrder.Descending
+            ? listIndexKeysBetween(maxResults, null, cursorKey, orderBy)
+            : listIndexKeysBetween(maxResults, cursorKey, null, orderBy);
+    }
+
+    /**
+     * Lists the index keys that sort strictly between the bounds, either of which may be
+     * {@code null}. Only the partitions overlapping the bounds are listed. Ascending listings
+     * page through them from the lower bound and stop once {@code maxResults} are found;
+     * descending ones can't list backwards, so list whole partitions, newest first.
+     */
+    private List<String> listIndexKeysBetween(int maxResults, String lowerBound, String upperBound,
+                                              ListResultsOrder orderBy) {
+        List<String> partitions = indexPartitions(lowerBound, upperBound);
+        List<String> result = new ArrayList<String>();
+        if (orderBy == ListResultsOrder.Descending) {
+            Collections.reverse(partitions);
+            for (String partition : partitions) {
+                if (result.size() >= maxResults) {
+                    break;
+                }
+                List<String> partitionKeys = new ArrayList<String>(listKeys(partition));
+                Collections.sort(partitionKeys, Collections.reverseOrder());
+                for (String key : partitionKeys) {
+                    if (result.size() >= maxResults) {
+                        break;
+                    }
+                    if ((upperBound == null || key.compareTo(upperBound) < 0)
+                        && (lowerBound == null || key.compareTo(lowerBound) > 0)
+                        && isIndexKey(partition, key)) {
+                        result.add(key);
+                    }
+                }
+            }
+            return result;
+        }
+        for (String partition : partitions) {
+            if (collectAscending(partition, lowerBound, upperBound, maxResults, result)) {
                 break;
             }
-            // extract timestamp from key: after prefix, first 19 chars
-            String afterPrefix = key.substring(idxPfx.length());
-            if (afterPrefix.length() < 19) {
-                continue;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the partition's index keys between the bounds to {@code result} in ascending order,
+     * until it holds {@code maxResults}. Returns whether the listing should stop there, because
+     * the upper bound or {@code maxResults} was reached.
+     */
+    private boolean collectAscending(String partition, String lowerBound, String upperBound, int maxResults,
+                                     List<String> result) {
+        String startAfter = lowerBound != null && lowerBound.startsWith(partition) ? lowerBound : null;
+        while (result.size() < maxResults) {
+            int limit = maxResults - result.size();
+            List<String> page = listKeysAfter(partition, startAfter, limit);
+            for (String key : page) {
+                if (upperBound != null && key.compareTo(upperBound) >= 0) {
+                    return true;
+                }
+                if (isIndexKey(partition, key)) {
+                    result.add(key);
+                }
             }
-            long timestamp;
-            try {
-                timestamp = Long.parseLong(afterPrefix.substring(0, 19));
-            } catch (NumberFormatException e) {
-                continue;
+            if (page.size() < limit) {
+                return false;
             }
-            if (timestamp < startMs || timestamp > finishMs) {
+            startAfter = page.get(page.size() - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the prefixes of the index partitions overlapping the bounds, oldest first. An
+     * unpartitioned index is a single partition.
+     */
+    private List<String> indexPartitions(String lowerBound, String upperBound) {
+        String partitionsPfx = keys.partitionsPrefix();
+        if (partitionsPfx == null) {
+            return new ArrayList<String>(Collections.singletonList(keys.indexPrefix()));
+        }
+        List<String> result = new ArrayList<String>();
+        for (String partition : listPrefixes(partitionsPfx)) {
+            String name = keys.partitionName(partition);
+            if (name == null || keys.getPartitioning().startOf(name) < 0) {
                 continue;
             }
-            UUID id = keys.extractIdFromIndexKey(key);
-            if (id != null) {
-                result.add(id);
+            boolean beforeLower = lowerBound != null && partition.compareTo(lowerBound) < 0
+                && !lowerBound.startsWith(partition);
+            boolean afterUpper = upperBound != null && partition.compareTo(upperBound) >= 0;
+            if (!beforeLower && !afterUpper) {
+                result.add(partition);
             }
         }
+        Collections.sort(result);
         return result;
     }
 
+    // keys of another layout may sit deeper below an unpartitioned index, so only direct children count
+    private boolean isIndexKey(String partition, String key) {
+        return key.indexOf('/', partition.length()) < 0
+            && keys.extractStartedFromIndexKey(key) != null
+            && keys.extractIdFromIndexKey(key) != null;
+    }
+
+    // sorts below the index keys of sessions started at the given time, and above those started earlier
+    private String indexBound(long startedMillis) {
+        return keys.indexPrefixFor(startedMillis) + String.format("%019d", startedMillis);
+    }
+
     @Override
     public void setUnviewed(String user, UUID id) {
         if (user == null || id == null) {
@@ -209,39 +553,59 @@ public abstract class BaseObjectStorage extends BaseStorage {
 
     @Override
     public void clear() {
-        for (String key : listKeys(keys.profilerPrefix())) {
-            deleteObject(key);
-        }
-        for (String key : listKeys(keys.indexPrefix())) {
-            deleteObject(key);
-        }
-        for (String key : listKeys(keys.allUnviewedPrefix())) {
-            deleteObject(key);
-        }
+        deleteObjects(listKeys(keys.profilerPrefix()));
+        deleteObjects(listKeys(keys.indexPrefix()));
+        deleteObjects(listKeys(keys.allUnviewedPrefix()));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Deletes the expired sessions in batches of {@link #EXPIRE_BATCH_SIZE}; see
+     * {@link #expireBatchOlderThan(Instant, int)}.</p>
+     */
     @Override
     public void expireOlderThan(Instant cutoff) {
+        int removed;
+        do {
+            removed = expireBatchOlderThan(cutoff, EXPIRE_BATCH_SIZE);
+        } while (removed >= EXPIRE_BATCH_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Lists the oldest index keys up to the cutoff, a page at a time and only in the index
+     * partitions that start before it, then deletes their index markers and then their sessions
+     * with {@link #deleteObjects}. Partitions that end before the cutoff and have been emptied
+     * are removed.</p>
+     */
+    @Override
+    public int expireBatchOlderThan(Instant cutoff, int maxSessions) {
         long cutoffMs = cutoff.toEpochMilli();
-        String idxPfx = keys.indexPrefix();
-        for (String key : listKeys(idxPfx)) {
-            String afterPrefix = key.substring(idxPfx.length());
-            if (afterPrefix.length() < 19) {
-                continue;
-            }
-            long timestamp;
-            try {
-                timestamp = Long.parseLong(afterPrefix.substring(0, 19));
-            } catch (NumberFormatException e) {
-                continue;
+        String upperBound = indexBound(cutoffMs);
+        IndexPartitioning partitioning = keys.getPartitioning();
+        List<String> expired = new ArrayList<String>();
+        List<String> emptied = new ArrayList<String>();
+        for (String partition : indexPartitions(null, upperBound)) {
+            if (collectAscending(partition, null, upperBound, maxSessions, expired)) {
+                break;
             }
-            if (timestamp < cutoffMs) {
-                UUID id = keys.extractIdFromIndexKey(key);
-                deleteObject(key);
-                if (id != null) {
-                    deleteObject(keys.profilerKey(id));
-                }
+            String name = keys.partitionName(partition);
+            if (name != null && partitioning.endOf(name) <= cutoffMs) {
+                emptied.add(partition);
             }
         }
+        List<String> sessions = new ArrayList<String>(expired.size());
+        for (String key : expired) {
+            sessions.add(keys.profilerKey(keys.extractIdFromIndexKey(key)));
+        }
+        // markers first, so that a failure part way leaves nothing listed that can't be loaded
+        deleteObjects(expired);
+        deleteObjects(sessions);
+        for (String partition : emptied) {
+            prefixEmptied(partition);
+        }
+        return expired.size();
     }
 }
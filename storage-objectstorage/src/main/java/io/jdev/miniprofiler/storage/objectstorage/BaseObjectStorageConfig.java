@@ -16,11 +16,13 @@
 
 package io.jdev.miniprofiler.storage.objectstorage;
 
+import io.jdev.miniprofiler.storage.PayloadCodec;
+
 /**
  * Base configuration for object storage backends.
  *
- * <p>Holds the bucket/container name, optional key prefix, region, and endpoint
- * override. Subclasses add provider-specific factory methods and property keys.</p>
+ * <p>Holds the bucket/container name, optional key prefix, region, endpoint
+ * override, index layout and payload codec. Subclasses add provider-specific factory methods and property keys.</p>
  */
 public abstract class BaseObjectStorageConfig {
 
@@ -28,9 +30,11 @@ public abstract class BaseObjectStorageConfig {
     private final String prefix;
     private final String region;
     private final String endpoint;
+    private final IndexPartitioning indexPartitioning;
+    private final PayloadCodec codec;
 
     /**
-     * Creates a new instance.
+     * Creates a new instance with an unpartitioned index.
      *
      * @param bucketName the name of the bucket or container; may be {@code null}
      * @param prefix     optional key prefix prepended to all object keys; may be {@code null}
@@ -39,10 +43,41 @@ public abstract class BaseObjectStorageConfig {
      */
     protected BaseObjectStorageConfig(String bucketName, String prefix, String region,
                                       String endpoint) {
+        this(bucketName, prefix, region, endpoint, IndexPartitioning.None);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bucketName        the name of the bucket or container; may be {@code null}
+     * @param prefix            optional key prefix prepended to all object keys; may be {@code null}
+     * @param region            optional cloud region; may be {@code null}
+     * @param endpoint          optional endpoint URL override; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means {@link IndexPartitioning#None}
+     */
+    protected BaseObjectStorageConfig(String bucketName, String prefix, String region,
+                                      String endpoint, IndexPartitioning indexPartitioning) {
+        this(bucketName, prefix, region, endpoint, indexPartitioning, PayloadCodec.NONE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bucketName        the name of the bucket or container; may be {@code null}
+     * @param prefix            optional key prefix prepended to all object keys; may be {@code null}
+     * @param region            optional cloud region; may be {@code null}
+     * @param endpoint          optional endpoint URL override; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means {@link IndexPartitioning#None}
+     * @param codec             the codec sessions are written with; {@code null} means {@link PayloadCodec#NONE}
+     */
+    protected BaseObjectStorageConfig(String bucketName, String prefix, String region,
+                                      String endpoint, IndexPartitioning indexPartitioning, PayloadCodec codec) {
         this.bucketName = bucketName;
         this.prefix = prefix;
         this.region = region;
         this.endpoint = endpoint;
+        this.indexPartitioning = indexPartitioning != null ? indexPartitioning : IndexPartitioning.None;
+        this.codec = codec != null ? codec : PayloadCodec.NONE;
     }
 
     /**
@@ -81,6 +116,25 @@ public abstract class BaseObjectStorageConfig {
         return endpoint;
     }
 
+    /**
+     * Returns how index markers are laid out.
+     *
+     * @return the index layout, never {@code null}
+     */
+    public IndexPartitioning getIndexPartitioning() {
+        return indexPartitioning;
+    }
+
+    /**
+     * Returns the codec that sessions are written with. Sessions are read with whichever codec
+     * they were written with.
+     *
+     * @return the codec, never {@code null}
+     */
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
     /**
      * Returns {@code true} if this configuration has a non-empty bucket name.
      *
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * How the object storages lay out their index markers.
+ *
+ * <p>Without partitioning every marker sits under one prefix, so listing the newest sessions or
+ * finding expired ones means listing every marker in the bucket. Partitioned layouts group the
+ * markers under a prefix per UTC day or hour, so that listing and expiry only touch the partitions
+ * they need.</p>
+ *
+ * <p>The layouts use separate key namespaces. Sessions indexed under one layout are not listed or
+ * expired under another, so switching layout on an existing bucket hides its older sessions
+ * until they are cleared.</p>
+ */
+public enum IndexPartitioning {
+
+    /** All markers under a single prefix: {@code profiler-index/{19digits}-{uuid}}. */
+    None(null, null, null),
+
+    /** One partition per UTC day: {@code profiler-index/daily/yyyy-MM-dd/{19digits}-{uuid}}. */
+    Daily("daily", "yyyy-MM-dd", ChronoUnit.DAYS),
+
+    /** One partition per UTC hour: {@code profiler-index/hourly/yyyy-MM-ddTHH/{19digits}-{uuid}}. */
+    Hourly("hourly", "yyyy-MM-dd'T'HH", ChronoUnit.HOURS);
+
+    private final String directory;
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit unit;
+
+    IndexPartitioning(String directory, String pattern, ChronoUnit unit) {
+        this.directory = directory;
+        this.formatter = pattern != null ? DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC) : null;
+        this.unit = unit;
+    }
+
+    /**
+     * Returns the directory below {@code profiler-index/} that holds this layout's partitions.
+     *
+     * @return the directory name, or {@code null} when not partitioned
+     */
+    String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the name of the partition holding sessions started at the given time.
+     *
+     * @param startedMillis the session start time in epoch milliseconds
+     * @return the partition name, or {@code null} when not partitioned
+     */
+    String partitionOf(long startedMillis) {
+        return formatter != null ? formatter.format(Instant.ofEpochMilli(startedMillis)) : null;
+    }
+
+    /**
+     * Returns the start of the partition with the given name.
+     *
+     * @param partition the partition name
+     * @return the partition start in epoch milliseconds, or {@code -1} if the name is malformed
+     */
+    long startOf(String partition) {
+        if (unit == null) {
+            return -1;
+        }
+        try {
+            String hour = unit == ChronoUnit.DAYS ? partition + "T00" : partition;
+            return LocalDateTime.parse(hour + ":00", DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the end of the partition with the given name, exclusive.
+     *
+     * @param partition the partition name
+     * @return the partition end in epoch milliseconds, or {@code -1} if the name is malformed
+     */
+    long endOf(String partition) {
+        long start = startOf(partition);
+        return start < 0 ? -1 : Instant.ofEpochMilli(start).plus(1, unit).toEpochMilli();
+    }
+}
@@ -25,21 +25,45 @@ import java.util.UUID;
  * Three key namespaces are used:</p>
  * <ul>
  *   <li>{@code {prefix}profiler/{uuid}} — the serialised profiler JSON</li>
- *   <li>{@code {prefix}profiler-index/{19digits}-{uuid}} — empty marker for listing/ordering</li>
+ *   <li>{@code {prefix}profiler-index/{19digits}-{uuid}} — marker for listing/ordering, holding the session summary</li>
  *   <li>{@code {prefix}unviewed/{user}/{uuid}} — empty marker for unviewed sessions</li>
  * </ul>
+ *
+ * <p>With an {@link IndexPartitioning} other than {@code None}, index markers are grouped by start
+ * time under {@code {prefix}profiler-index/{daily|hourly}/{partition}/{19digits}-{uuid}}.</p>
  */
 public class ObjectStorageKeys {
 
     private final String prefix;
+    private final IndexPartitioning partitioning;
 
     /**
-     * Creates a new instance with the given key prefix.
+     * Creates a new instance with the given key prefix and an unpartitioned index.
      *
      * @param prefix the prefix to prepend to all keys; {@code null} is treated as empty string
      */
     public ObjectStorageKeys(String prefix) {
+        this(prefix, IndexPartitioning.None);
+    }
+
+    /**
+     * Creates a new instance with the given key prefix and index layout.
+     *
+     * @param prefix       the prefix to prepend to all keys; {@code null} is treated as empty string
+     * @param partitioning the index layout; {@code null} is treated as {@link IndexPartitioning#None}
+     */
+    public ObjectStorageKeys(String prefix, IndexPartitioning partitioning) {
         this.prefix = prefix != null ? prefix : "";
+        this.partitioning = partitioning != null ? partitioning : IndexPartitioning.None;
+    }
+
+    /**
+     * Returns the index layout.
+     *
+     * @return the index layout
+     */
+    public IndexPartitioning getPartitioning() {
+        return partitioning;
     }
 
     /**
@@ -54,14 +78,37 @@ public class ObjectStorageKeys {
 
     /**
      * Returns the index key for a profiler session. Index keys sort lexicographically
-     * in chronological order because the timestamp is zero-padded to 19 digits.
+     * in chronological order because the timestamp is zero-padded to 19 digits, and
+     * partition names sort chronologically too.
      *
      * @param startedMillis the session start time in epoch milliseconds
      * @param id            the profiler session id
      * @return the index object key
      */
     public String indexKey(long startedMillis, UUID id) {
-        return prefix + "profiler-index/" + String.format("%019d", startedMillis) + "-" + id.toString();
+        return indexPrefixFor(startedMillis) + String.format("%019d", startedMillis) + "-" + id.toString();
+    }
+
+    /**
+     * Returns the prefix of the index keys of sessions started at the given time: the partition
+     * prefix, or {@link #indexPrefix()} when the index is not partitioned.
+     *
+     * @param startedMillis the session start time in epoch milliseconds
+     * @return the index key prefix
+     */
+    public String indexPrefixFor(long startedMillis) {
+        String partition = partitioning.partitionOf(startedMillis);
+        return partition != null ? partitionsPrefix() + partition + "/" : indexPrefix();
+    }
+
+    /**
+     * Returns the prefix below which the index partitions sit, each partition being the next
+     * {@code /}-terminated path segment.
+     *
+     * @return the partitions prefix, or {@code null} when the index is not partitioned
+     */
+    public String partitionsPrefix() {
+        return partitioning.getDirectory() != null ? indexPrefix() + partitioning.getDirectory() + "/" : null;
     }
 
     /**
@@ -74,7 +121,7 @@ public class ObjectStorageKeys {
     }
 
     /**
-     * Returns the prefix used when listing all index keys.
+     * Returns the prefix used when listing all index keys, of any layout.
      *
      * @return the index key prefix
      */
@@ -115,29 +162,67 @@ public class ObjectStorageKeys {
     /**
      * Extracts the session UUID from an index key.
      *
-     * <p>Index keys have the form {@code {prefix}profiler-index/{19digits}-{uuid}}.
+     * <p>Index keys end with {@code {19digits}-{uuid}} after the last {@code '/'}.
      * This method finds the first {@code '-'} character at position 19 or later
-     * (counting from after the prefix and {@code profiler-index/} segment) and
-     * parses the UUID that follows it.</p>
+     * of that last segment and parses the UUID that follows it.</p>
      *
      * @param key the full index key
      * @return the extracted UUID, or {@code null} if the key is malformed
      */
     public UUID extractIdFromIndexKey(String key) {
-        String indexPfx = indexPrefix();
-        if (!key.startsWith(indexPfx)) {
+        String leaf = indexLeaf(key);
+        if (leaf == null) {
             return null;
         }
-        String afterPrefix = key.substring(indexPfx.length());
         // format is {19digits}-{uuid}; find the '-' separator at position >= 19
-        int dashPos = afterPrefix.indexOf('-', 19);
+        int dashPos = leaf.indexOf('-', 19);
         if (dashPos < 0) {
             return null;
         }
         try {
-            return UUID.fromString(afterPrefix.substring(dashPos + 1));
+            return UUID.fromString(leaf.substring(dashPos + 1));
         } catch (IllegalArgumentException e) {
             return null;
         }
     }
+
+    /**
+     * Extracts the session start time from an index key.
+     *
+     * @param key the full index key
+     * @return the start time in epoch milliseconds, or {@code null} if the key is malformed
+     */
+    public Long extractStartedFromIndexKey(String key) {
+        String leaf = indexLeaf(key);
+        if (leaf == null || leaf.length() < 19) {
+            return null;
+        }
+        try {
+            return Long.parseLong(leaf.substring(0, 19));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name of the partition with the given prefix, as listed below {@link #partitionsPrefix()}.
+     *
+     * @param partitionPrefix the partition prefix
+     * @return the partition name, or {@code null} if the prefix isn't a partition of this layout
+     */
+    String partitionName(String partitionPrefix) {
+        String partitionsPfx = partitionsPrefix();
+        if (partitionsPfx == null || !partitionPrefix.startsWith(partitionsPfx) || !partitionPrefix.endsWith("/")) {
+            return null;
+        }
+        return partitionPrefix.substring(partitionsPfx.length(), partitionPrefix.length() - 1);
+    }
+
+    private String indexLeaf(String key) {
+        String indexPfx = indexPrefix();
+        if (!key.startsWith(indexPfx)) {
+            return null;
+        }
+        return key.substring(Math.max(indexPfx.length(), key.lastIndexOf('/') + 1));
+    }
 }
@@ -20,6 +20,7 @@ import com.azure.core.credential.TokenCredential;
 import com.azure.core.util.BinaryData;
 import com.azure.identity.DefaultAzureCredentialBuilder;
 import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobServiceAsyncClient;
 import com.azure.storage.blob.BlobServiceClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
 import com.azure.storage.blob.models.BlobItem;
@@ -27,21 +28,28 @@ import com.azure.storage.blob.models.BlobStorageException;
 import com.azure.storage.blob.models.ListBlobsOptions;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Azure Blob Storage-backed {@link io.jdev.miniprofiler.storage.Storage} implementation.
  *
  * <p>The Azure SDK ({@code com.azure:azure-storage-blob} and {@code com.azure:azure-identity})
  * is a {@code compileOnly} dependency — users must provide it on their own classpath.</p>
+ *
+ * <p>Given a {@link BlobServiceAsyncClient}, sessions are saved with it, uploading the session
+ * and its index marker concurrently without blocking the caller. Storage that builds its own
+ * clients always builds one.</p>
  */
 public class AzureBlobStorage extends BaseObjectStorage {
 
     private static final int HTTP_NOT_FOUND = 404;
 
     private final BlobServiceClient blobServiceClient;
+    private final BlobServiceAsyncClient blobServiceAsyncClient;
 
     /**
      * Creates storage using the given config and token credential; the client is owned by this
@@ -53,7 +61,9 @@ public class AzureBlobStorage extends BaseObjectStorage {
      */
     public AzureBlobStorage(AzureBlobStorageConfig config, TokenCredential credential) {
         super(config, true);
-        this.blobServiceClient = buildClient(config, credential);
+        BlobServiceClientBuilder builder = clientBuilder(config, credential);
+        this.blobServiceClient = builder.buildClient();
+        this.blobServiceAsyncClient = builder.buildAsyncClient();
     }
 
     /**
@@ -75,8 +85,23 @@ public class AzureBlobStorage extends BaseObjectStorage {
      * @param blobServiceClient the Azure Blob service client to use
      */
     public AzureBlobStorage(AzureBlobStorageConfig config, BlobServiceClient blobServiceClient) {
+        this(config, blobServiceClient, null);
+    }
+
+    /**
+     * Creates storage using provided Blob service clients, saving sessions with the asynchronous
+     * one; the clients will not be closed on {@link #close()}.
+     *
+     * @param config                 the Azure Blob storage configuration
+     * @param blobServiceClient      the Azure Blob service client to use
+     * @param blobServiceAsyncClient the asynchronous Azure Blob service client to save sessions with;
+     *                               may be {@code null}
+     */
+    public AzureBlobStorage(AzureBlobStorageConfig config, BlobServiceClient blobServiceClient,
+                            BlobServiceAsyncClient blobServiceAsyncClient) {
         super(config, false);
         this.blobServiceClient = blobServiceClient;
+        this.blobServiceAsyncClient = blobServiceAsyncClient;
     }
 
     /**
@@ -97,12 +122,12 @@ public class AzureBlobStorage extends BaseObjectStorage {
         this(AzureBlobStorageConfig.create());
     }
 
-    private static BlobServiceClient buildClient(AzureBlobStorageConfig config, TokenCredential credential) {
+    private static BlobServiceClientBuilder clientBuilder(AzureBlobStorageConfig config, TokenCredential credential) {
         BlobServiceClientBuilder builder = new BlobServiceClientBuilder().credential(credential);
         if (config.getEndpoint() != null) {
             builder.endpoint(config.getEndpoint());
         }
-        return builder.buildClient();
+        return builder;
     }
 
     @Override
@@ -110,6 +135,17 @@ public class AzureBlobStorage extends BaseObjectStorage {
         getBlobClient(key).upload(BinaryData.fromBytes(content), true);
     }
 
+    @Override
+    protected CompletableFuture<Void> putObjectAsync(String key, byte[] content) {
+        if (blobServiceAsyncClient == null) {
+            return super.putObjectAsync(key, content);
+        }
+        return blobServiceAsyncClient.getBlobContainerAsyncClient(bucket).getBlobAsyncClient(key)
+            .upload(BinaryData.fromBytes(content), true)
+            .then()
+            .toFuture();
+    }
+
     @Override
     protected byte[] getObject(String key) {
         try {
@@ -122,6 +158,18 @@ public class AzureBlobStorage extends BaseObjectStorage {
         }
     }
 
+    @Override
+    protected InputStream openObject(String key) {
+        try {
+            return getBlobClient(key).openInputStream();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     @Override
     protected void deleteObject(String key) {
         try {
@@ -144,6 +192,18 @@ public class AzureBlobStorage extends BaseObjectStorage {
         return result;
     }
 
+    @Override
+    protected Collection<String> listPrefixes(String keyPrefix) {
+        List<String> result = new ArrayList<String>();
+        for (BlobItem item : blobServiceClient.getBlobContainerClient(bucket)
+            .listBlobsByHierarchy("/", new ListBlobsOptions().setPrefix(keyPrefix), null)) {
+            if (Boolean.TRUE.equals(item.isPrefix())) {
+                result.add(item.getName());
+            }
+        }
+        return result;
+    }
+
     /**
      * No-op — {@link BlobServiceClient} does not implement {@code Closeable}.
      */
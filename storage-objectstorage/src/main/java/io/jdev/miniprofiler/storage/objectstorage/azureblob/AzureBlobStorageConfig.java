@@ -17,7 +17,9 @@
 package io.jdev.miniprofiler.storage.objectstorage.azureblob;
 
 import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.storage.PayloadCodec;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorageConfig;
+import io.jdev.miniprofiler.storage.objectstorage.IndexPartitioning;
 
 import java.util.Properties;
 
@@ -28,7 +30,8 @@ import java.util.Properties;
  * (prefix {@code miniprofiler.}) take precedence over {@code miniprofiler.properties} on the classpath.</p>
  *
  * <p>Supported keys: {@code storage.azure-blob.container}, {@code storage.azure-blob.prefix},
- * {@code storage.azure-blob.endpoint}.
+ * {@code storage.azure-blob.endpoint}, {@code storage.azure-blob.indexPartitioning},
+ * {@code storage.azure-blob.codec}.
  * The {@code container} property maps to the base class {@code bucketName} field.</p>
  */
 public class AzureBlobStorageConfig extends BaseObjectStorageConfig {
@@ -44,6 +47,33 @@ public class AzureBlobStorageConfig extends BaseObjectStorageConfig {
         super(container, prefix, null, endpoint);
     }
 
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param container         the Azure Blob container name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param endpoint          the Azure Blob endpoint URL; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     */
+    public AzureBlobStorageConfig(String container, String prefix, String endpoint,
+                                  IndexPartitioning indexPartitioning) {
+        super(container, prefix, null, endpoint, indexPartitioning);
+    }
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param container         the Azure Blob container name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param endpoint          the Azure Blob endpoint URL; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     * @param codec             the codec sessions are written with; {@code null} means uncompressed
+     */
+    public AzureBlobStorageConfig(String container, String prefix, String endpoint,
+                                  IndexPartitioning indexPartitioning, PayloadCodec codec) {
+        super(container, prefix, null, endpoint, indexPartitioning, codec);
+    }
+
     /**
      * Convenience accessor that returns the container name.
      *
@@ -71,6 +101,9 @@ public class AzureBlobStorageConfig extends BaseObjectStorageConfig {
         String container = props.getProperty("storage.azure-blob.container", (String) null);
         String prefix    = props.getProperty("storage.azure-blob.prefix",    (String) null);
         String endpoint  = props.getProperty("storage.azure-blob.endpoint",  (String) null);
-        return new AzureBlobStorageConfig(container, prefix, endpoint);
+        IndexPartitioning partitioning = props.getProperty("storage.azure-blob.indexPartitioning",
+            IndexPartitioning.class, IndexPartitioning.None);
+        PayloadCodec codec = PayloadCodec.forName(props.getProperty("storage.azure-blob.codec", (String) null));
+        return new AzureBlobStorageConfig(container, prefix, endpoint, partitioning, codec);
     }
 }
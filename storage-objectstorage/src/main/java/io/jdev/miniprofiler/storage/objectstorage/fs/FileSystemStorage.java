@@ -18,7 +18,11 @@ package io.jdev.miniprofiler.storage.objectstorage.fs;
 
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -73,6 +77,17 @@ public class FileSystemStorage extends BaseObjectStorage {
         }
     }
 
+    @Override
+    protected InputStream openObject(String key) {
+        try {
+            return new BufferedInputStream(Files.newInputStream(rootDir.resolve(key)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read object: " + key, e);
+        }
+    }
+
     @Override
     protected void deleteObject(String key) {
         try {
@@ -103,6 +118,34 @@ public class FileSystemStorage extends BaseObjectStorage {
         return result;
     }
 
+    @Override
+    protected Collection<String> listPrefixes(String keyPrefix) {
+        Path prefixDir = rootDir.resolve(keyPrefix);
+        List<String> result = new ArrayList<String>();
+        if (!Files.isDirectory(prefixDir)) {
+            return result;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(prefixDir, Files::isDirectory)) {
+            for (Path child : children) {
+                result.add(rootDir.relativize(child).toString() + "/");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list prefixes below: " + keyPrefix, e);
+        }
+        return result;
+    }
+
+    @Override
+    protected void prefixEmptied(String keyPrefix) {
+        try {
+            Files.deleteIfExists(rootDir.resolve(keyPrefix));
+        } catch (DirectoryNotEmptyException e) {
+            // written to since it was listed
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete directory: " + keyPrefix, e);
+        }
+    }
+
     @Override
     protected void closeClient() {
         // nothing to close
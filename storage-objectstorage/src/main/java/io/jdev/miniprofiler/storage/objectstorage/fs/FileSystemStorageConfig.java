@@ -17,7 +17,9 @@
 package io.jdev.miniprofiler.storage.objectstorage.fs;
 
 import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.storage.PayloadCodec;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorageConfig;
+import io.jdev.miniprofiler.storage.objectstorage.IndexPartitioning;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -30,7 +32,8 @@ import java.util.Properties;
  * (prefix {@code miniprofiler.}) take precedence over {@code miniprofiler.properties}
  * on the classpath.</p>
  *
- * <p>Supported keys: {@code storage.fs.directory}, {@code storage.fs.prefix}.</p>
+ * <p>Supported keys: {@code storage.fs.directory}, {@code storage.fs.prefix},
+ * {@code storage.fs.indexPartitioning}, {@code storage.fs.codec}.</p>
  */
 public class FileSystemStorageConfig extends BaseObjectStorageConfig {
 
@@ -43,7 +46,31 @@ public class FileSystemStorageConfig extends BaseObjectStorageConfig {
      * @param prefix    the optional key prefix; may be {@code null}
      */
     public FileSystemStorageConfig(Path rootDir, String prefix) {
-        super(rootDir != null ? rootDir.toString() : null, prefix, null, null);
+        this(rootDir, prefix, IndexPartitioning.None);
+    }
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param rootDir           the root directory for storing objects; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     */
+    public FileSystemStorageConfig(Path rootDir, String prefix, IndexPartitioning indexPartitioning) {
+        this(rootDir, prefix, indexPartitioning, PayloadCodec.NONE);
+    }
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param rootDir           the root directory for storing objects; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     * @param codec             the codec sessions are written with; {@code null} means uncompressed
+     */
+    public FileSystemStorageConfig(Path rootDir, String prefix, IndexPartitioning indexPartitioning,
+                                   PayloadCodec codec) {
+        super(rootDir != null ? rootDir.toString() : null, prefix, null, null, indexPartitioning, codec);
         this.rootDir = rootDir;
     }
 
@@ -73,7 +100,10 @@ public class FileSystemStorageConfig extends BaseObjectStorageConfig {
     static FileSystemStorageConfig create(MiniProfilerConfig props) {
         String directory = props.getProperty("storage.fs.directory", (String) null);
         String prefix    = props.getProperty("storage.fs.prefix",   (String) null);
+        IndexPartitioning partitioning = props.getProperty("storage.fs.indexPartitioning",
+            IndexPartitioning.class, IndexPartitioning.None);
         Path rootDir = directory != null ? Paths.get(directory) : null;
-        return new FileSystemStorageConfig(rootDir, prefix);
+        PayloadCodec codec = PayloadCodec.forName(props.getProperty("storage.fs.codec", (String) null));
+        return new FileSystemStorageConfig(rootDir, prefix, partitioning, codec);
     }
 }
@@ -0,0 +1,652 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage.fs;
+
+import io.jdev.miniprofiler.internal.ProfilerImpl;
+import io.jdev.miniprofiler.internal.ProfilerSummary;
+import io.jdev.miniprofiler.storage.BaseStorage;
+import io.jdev.miniprofiler.storage.ListCursor;
+import io.jdev.miniprofiler.storage.PayloadCodec;
+import io.jdev.miniprofiler.storage.ProfilePayloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Local-disk {@link io.jdev.miniprofiler.storage.Storage} implementation that appends sessions
+ * to rolling segment files rather than writing a file per session.
+ *
+ * <p>Each segment is a pair of files in the configured directory. {@code segment-N.log} holds the
+ * {@linkplain ProfilePayloads encoded} sessions one after another, and {@code segment-N.idx} is a
+ * memory-mapped array of fixed-size entries giving the type, id, start time, offset and length of
+ * each record. A segment is rolled when its log reaches the configured size or its index is
+ * full. Unviewed and viewed flags and expiry cutoffs are appended as records too, so that the
+ * storage is rebuilt on startup by reading the indexes alone.</p>
+ *
+ * <p>Saves are a single append. Sessions are looked up through an id map and listed through a
+ * skip list ordered by start time and id, both rebuilt from the indexes. Each entry also keeps
+ * the session's results list fields, so listing summaries only reads the log for sessions
+ * replayed from disk, and then only once. Expiry drops sessions from those and deletes whole
+ * segments whose newest record is older than the cutoff. Flags carry their session's start time
+ * and expiry records their cutoff, so neither goes while it is still needed; the current
+ * segment is only ever deleted by {@link #clear()}.</p>
+ */
+public class SegmentLogStorage extends BaseStorage {
+
+    // type (1), padding (3), length (4), offset (8), started (8), id (16)
+    private static final int ENTRY_BYTES = 40;
+    // a guess at the smallest likely session, for sizing segment indexes
+    private static final int MIN_RECORD_BYTES = 512;
+    private static final int MIN_SEGMENT_ENTRIES = 1024;
+
+    private static final byte SESSION = 1;
+    private static final byte UNVIEWED = 2;
+    private static final byte VIEWED = 3;
+    private static final byte EXPIRED = 4;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int segmentEntries;
+    private final PayloadCodec codec;
+    private final Object writeLock = new Object();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<UUID, Location> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<TimeKey, Location> byStarted = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Set<UUID>> unviewedByUser = new ConcurrentHashMap<>();
+    private Segment active;
+    private boolean closed;
+
+    /**
+     * Opens the storage in the configured directory, creating it if needed and reading the
+     * indexes of any segments already there.
+     *
+     * @param config the storage configuration
+     */
+    public SegmentLogStorage(SegmentLogStorageConfig config) {
+        this.directory = config.getDirectory();
+        this.segmentBytes = config.getSegmentBytes();
+        this.segmentEntries = (int) Math.min(Integer.MAX_VALUE / ENTRY_BYTES,
+            Math.max(MIN_SEGMENT_ENTRIES, segmentBytes / MIN_RECORD_BYTES));
+        this.codec = config.getCodec();
+        try {
+            Files.createDirectories(directory);
+            for (long seq : existingSegments()) {
+                Segment segment = openSegment(seq);
+                segments.put(seq, segment);
+                replay(segment);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open segments in " + directory, e);
+        }
+        synchronized (writeLock) {
+            active = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * Returns the number of segments on disk.
+     *
+     * @return the segment count
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void save(ProfilerImpl profiler) {
+        byte[] payload = ProfilePayloads.encode(profiler, codec);
+        ProfilerSummary summary = profiler.toSummary();
+        synchronized (writeLock) {
+            Location location = append(SESSION, profiler.getId(), profiler.getStarted(), payload);
+            if (location != null) {
+                location.summary = summary;
+                put(location);
+            }
+        }
+    }
+
+    @Override
+    public ProfilerImpl load(UUID id) {
+        Location location = byId.get(id);
+        return location != null ? load(location) : null;
+    }
+
+    private ProfilerImpl load(Location location) {
+        byte[] payload;
+        try {
+            payload = location.segment.read(location.offset, location.length);
+        } catch (ClosedChannelException e) {
+            // the segment was expired or the storage closed
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read session: " + location.key.id, e);
+        }
+        return ProfilePayloads.decode(new ByteArrayInputStream(payload));
+    }
+
+    /** {@inheritDoc} Answered from the index, without reading the session. */
+    @Override
+    public ListCursor cursorFor(UUID id) {
+        Location location = id != null ? byId.get(id) : null;
+        return location != null ? ListCursor.of(location.key.started, id) : null;
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return select(maxResults, range(start, finish), orderBy);
+    }
+
+    @Override
+    public Collection<UUID> list(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return select(maxResults, range(after, orderBy), orderBy);
+    }
+
+    /**
+     * {@inheritDoc} Answered from the index; a session replayed from disk is only decoded the
+     * first time it is listed.
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, Date start, Date finish, ListResultsOrder orderBy) {
+        return summarize(maxResults, range(start, finish), orderBy);
+    }
+
+    /**
+     * {@inheritDoc} Answered from the index; a session replayed from disk is only decoded the
+     * first time it is listed.
+     */
+    @Override
+    public List<ProfilerSummary> listSummaries(int maxResults, ListCursor after, ListResultsOrder orderBy) {
+        return summarize(maxResults, range(after, orderBy), orderBy);
+    }
+
+    private NavigableMap<TimeKey, Location> range(Date start, Date finish) {
+        long startMs = start != null ? start.getTime() : Long.MIN_VALUE;
+        if (finish == null || finish.getTime() == Long.MAX_VALUE) {
+            return byStarted.tailMap(TimeKey.first(startMs), true);
+        } else if (finish.getTime() < startMs) {
+            return Collections.emptyNavigableMap();
+        } else {
+            return byStarted.subMap(TimeKey.first(startMs), true, TimeKey.first(finish.getTime() + 1), false);
+        }
+    }
+
+    private NavigableMap<TimeKey, Location> range(ListCursor after, ListResultsOrder orderBy) {
+        if (after == null) {
+            return byStarted;
+        }
+        TimeKey key = new TimeKey(after.getStarted(), after.getId());
+        return orderBy == ListResultsOrder.Descending ? byStarted.headMap(key, false) : byStarted.tailMap(key, false);
+    }
+
+    private static Collection<Location> ordered(NavigableMap<TimeKey, Location> range, ListResultsOrder orderBy) {
+        return orderBy == ListResultsOrder.Descending ? range.descendingMap().values() : range.values();
+    }
+
+    private List<UUID> select(int maxResults, NavigableMap<TimeKey, Location> range, ListResultsOrder orderBy) {
+        Collection<TimeKey> keys = orderBy == ListResultsOrder.Descending ? range.descendingKeySet() : range.keySet();
+        List<UUID> result = new ArrayList<>();
+        for (TimeKey key : keys) {
+            if (result.size() >= maxResults) {
+                break;
+            }
+            result.add(key.id);
+        }
+        return result;
+    }
+
+    private List<ProfilerSummary> summarize(int maxResults, NavigableMap<TimeKey, Location> range,
+                                            ListResultsOrder orderBy) {
+        List<ProfilerSummary> result = new ArrayList<>();
+        for (Location location : ordered(range, orderBy)) {
+            if (result.size() >= maxResults) {
+                break;
+            }
+            ProfilerSummary summary = summaryOf(location);
+            if (summary != null) {
+                result.add(summary);
+            }
+        }
+        return result;
+    }
+
+    // sessions saved since startup carry their summary; replayed ones are decoded once and kept
+    private ProfilerSummary summaryOf(Location location) {
+        ProfilerSummary summary = location.summary;
+        if (summary == null) {
+            ProfilerImpl profiler = load(location);
+            if (profiler == null) {
+                return null;
+            }
+            summary = profiler.toSummary();
+            location.summary = summary;
+        }
+        return summary;
+    }
+
+    @Override
+    public void setUnviewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            append(UNVIEWED, id, flagStarted(id), user.getBytes(StandardCharsets.UTF_8));
+            unviewedByUser.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    @Override
+    public void setViewed(String user, UUID id) {
+        if (user == null || id == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            Set<UUID> set = unviewedByUser.get(user);
+            if (set != null && set.remove(id)) {
+                append(VIEWED, id, flagStarted(id), user.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Override
+    public Collection<UUID> getUnviewedIds(String user) {
+        if (user == null) {
+            return Collections.emptyList();
+        }
+        Set<UUID> set = unviewedByUser.get(user);
+        if (set == null) {
+            return Collections.emptyList();
+        }
+        List<UUID> result = new ArrayList<>();
+        Iterator<UUID> it = set.iterator();
+        while (it.hasNext()) {
+            UUID uid = it.next();
+            if (byId.containsKey(uid)) {
+                result.add(uid);
+            } else {
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /** Deletes every segment and starts a new one. */
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            for (Segment segment : segments.values()) {
+                delete(segment);
+            }
+            byId.clear();
+            byStarted.clear();
+            unviewedByUser.clear();
+            active = roll();
+        }
+    }
+
+    @Override
+    public void expireOlderThan(Instant cutoff) {
+        long cutoffMs = cutoff.toEpochMilli();
+        synchronized (writeLock) {
+            // recorded so that sessions left in surviving segments stay expired after a restart
+            append(EXPIRED, new UUID(0, 0), cutoffMs, new byte[0]);
+            Set<UUID> removed = dropOlderThan(cutoffMs);
+            // an older expiry record deleted here is superseded by the one just appended
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.maxStarted < cutoffMs) {
+                    delete(segment);
+                }
+            }
+            if (!removed.isEmpty()) {
+                unviewedByUser.values().forEach(set -> set.removeAll(removed));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+
+    // flags are stamped with their session's start time, so that expiry keeps their segment as
+    // long as the session; a flag for a session not stored yet is kept for as long as a new one
+    private long flagStarted(UUID id) {
+        Location location = byId.get(id);
+        return location != null ? location.key.started : System.currentTimeMillis();
+    }
+
+    private Set<UUID> dropOlderThan(long cutoffMs) {
+        Set<UUID> removed = new HashSet<>();
+        Map.Entry<TimeKey, Location> first;
+        while ((first = byStarted.firstEntry()) != null && first.getKey().started < cutoffMs) {
+            byStarted.remove(first.getKey());
+            if (byId.remove(first.getKey().id, first.getValue())) {
+                removed.add(first.getKey().id);
+            }
+        }
+        return removed;
+    }
+
+    private void put(Location location) {
+        Location previous = byId.put(location.key.id, location);
+        if (previous != null) {
+            byStarted.remove(previous.key, previous);
+        }
+        byStarted.put(location.key, location);
+    }
+
+    // called with writeLock held; returns null once closed
+    private Location append(byte type, UUID id, long started, byte[] data) {
+        if (closed) {
+            return null;
+        }
+        if (active.count == active.capacity || (active.size > 0 && active.size + data.length > segmentBytes)) {
+            active = roll();
+        }
+        Segment segment = active;
+        long offset = segment.size;
+        try {
+            segment.write(data, offset);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to segment " + segment.log, e);
+        }
+        segment.size += data.length;
+        int pos = segment.count * ENTRY_BYTES;
+        segment.entries.putInt(pos + 4, data.length);
+        segment.entries.putLong(pos + 8, offset);
+        segment.entries.putLong(pos + 16, started);
+        segment.entries.putLong(pos + 24, id.getMostSignificantBits());
+        segment.entries.putLong(pos + 32, id.getLeastSignificantBits());
+        // written last, so that a torn entry reads as the end of the index
+        segment.entries.put(pos, type);
+        segment.count++;
+        segment.maxStarted = Math.max(segment.maxStarted, started);
+        return new Location(segment, offset, data.length, started, id);
+    }
+
+    private void replay(Segment segment) throws IOException {
+        long logSize = segment.channel.size();
+        int i = 0;
+        for (; i < segment.capacity; i++) {
+            int pos = i * ENTRY_BYTES;
+            byte type = segment.entries.get(pos);
+            int length = segment.entries.getInt(pos + 4);
+            long offset = segment.entries.getLong(pos + 8);
+            if (type == 0 || length < 0 || offset < 0 || offset + length > logSize) {
+                break;
+            }
+            long started = segment.entries.getLong(pos + 16);
+            UUID id = new UUID(segment.entries.getLong(pos + 24), segment.entries.getLong(pos + 32));
+            segment.maxStarted = Math.max(segment.maxStarted, started);
+            if (type == SESSION) {
+                put(new Location(segment, offset, length, started, id));
+            } else if (type == UNVIEWED || type == VIEWED) {
+                String user = new String(segment.read(offset, length), StandardCharsets.UTF_8);
+                if (type == UNVIEWED) {
+                    unviewedByUser.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(id);
+                } else {
+                    Set<UUID> set = unviewedByUser.get(user);
+                    if (set != null) {
+                        set.remove(id);
+                    }
+                }
+            } else if (type == EXPIRED) {
+                dropOlderThan(started);
+            }
+        }
+        segment.count = i;
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path log : logs) {
+                String name = log.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    // called with writeLock held
+    private Segment roll() {
+        long seq = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        try {
+            Segment segment = openSegment(seq);
+            segments.put(seq, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create segment " + seq + " in " + directory, e);
+        }
+    }
+
+    private Segment openSegment(long seq) throws IOException {
+        String name = SEGMENT_PREFIX + String.format("%020d", seq);
+        Path log = directory.resolve(name + LOG_SUFFIX);
+        Path index = directory.resolve(name + INDEX_SUFFIX);
+        FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            // an index written with a bigger segment size keeps its own length
+            long length = Math.max(indexChannel.size() / ENTRY_BYTES, segmentEntries) * ENTRY_BYTES;
+            MappedByteBuffer entries = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            return new Segment(seq, log, index, channel, entries, (int) (length / ENTRY_BYTES));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // called with writeLock held
+    private void delete(Segment segment) {
+        segments.remove(segment.seq, segment);
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.log);
+            Files.deleteIfExists(segment.index);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete segment " + segment.log, e);
+        }
+    }
+
+    private static final class Segment {
+        final long seq;
+        final Path log;
+        final Path index;
+        final MappedByteBuffer entries;
+        final int capacity;
+        // replaced when an interrupt closes it; guarded by this segment's lock
+        volatile FileChannel channel;
+        private boolean closed;
+        // guarded by writeLock once the storage is open
+        int count;
+        long size;
+        long maxStarted = Long.MIN_VALUE;
+
+        Segment(long seq, Path log, Path index, FileChannel channel, MappedByteBuffer entries, int capacity)
+            throws IOException {
+            this.seq = seq;
+            this.log = log;
+            this.index = index;
+            this.channel = channel;
+            this.entries = entries;
+            this.capacity = capacity;
+            this.size = channel.size();
+        }
+
+        byte[] read(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            boolean interrupted = false;
+            try {
+                while (buffer.hasRemaining()) {
+                    FileChannel current = channel;
+                    try {
+                        if (current.read(buffer, offset + buffer.position()) < 0) {
+                            throw new IOException("Unexpected end of segment " + log);
+                        }
+                    } catch (ClosedChannelException e) {
+                        interrupted |= Thread.interrupted();
+                        reopen(current, e);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return buffer.array();
+        }
+
+        void write(byte[] data, long offset) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            boolean interrupted = false;
+            try {
+                while (buffer.hasRemaining()) {
+                    FileChannel current = channel;
+                    try {
+                        current.write(buffer, offset + buffer.position());
+                    } catch (ClosedChannelException e) {
+                        interrupted |= Thread.interrupted();
+                        reopen(current, e);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        // interrupting any thread blocked on a channel closes it for every thread, so a channel
+        // closed other than by close() is opened again and the interrupt kept for its caller
+        private synchronized void reopen(FileChannel failed, ClosedChannelException cause) throws IOException {
+            if (closed) {
+                throw cause;
+            }
+            if (channel == failed) {
+                channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing more to do with it
+            }
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final TimeKey key;
+        // null until first listed when replayed from disk
+        volatile ProfilerSummary summary;
+
+        Location(Segment segment, long offset, int length, long started, UUID id) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.key = new TimeKey(started, id);
+        }
+    }
+
+    // ordered as ListCursor orders sessions: by start time, then by id as a string
+    private static final class TimeKey implements Comparable<TimeKey> {
+        final long started;
+        final UUID id;
+        final String idString;
+
+        TimeKey(long started, UUID id) {
+            this(started, id, id.toString());
+        }
+
+        private TimeKey(long started, UUID id, String idString) {
+            this.started = started;
+            this.id = id;
+            this.idString = idString;
+        }
+
+        // sorts before every session started at the given time
+        static TimeKey first(long started) {
+            return new TimeKey(started, null, "");
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int cmp = Long.compare(started, other.started);
+            return cmp != 0 ? cmp : idString.compareTo(other.idString);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TimeKey && compareTo((TimeKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(started) + idString.hashCode();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage.fs;
+
+import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.storage.PayloadCodec;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Configuration for the segment log storage backend.
+ *
+ * <p>Properties are read via {@link MiniProfilerConfig}: system properties
+ * (prefix {@code miniprofiler.}) take precedence over {@code miniprofiler.properties}
+ * on the classpath.</p>
+ *
+ * <p>Supported keys: {@code storage.segmentlog.directory}, {@code storage.segmentlog.segmentMegabytes},
+ * {@code storage.segmentlog.codec}.</p>
+ */
+public class SegmentLogStorageConfig {
+
+    /** Default size at which a segment is rolled, in megabytes. */
+    public static final int DEFAULT_SEGMENT_MEGABYTES = 64;
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final PayloadCodec codec;
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param directory    the directory to keep segments in; may be {@code null}
+     * @param segmentBytes the size at which a segment is rolled, in bytes
+     * @param codec        the codec sessions are written with; {@code null} means uncompressed
+     */
+    public SegmentLogStorageConfig(Path directory, long segmentBytes, PayloadCodec codec) {
+        if (segmentBytes < 1) {
+            throw new IllegalArgumentException("segmentBytes must be at least 1");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.codec = codec != null ? codec : PayloadCodec.NONE;
+    }
+
+    /**
+     * Returns the directory to keep segments in.
+     *
+     * @return the directory, or {@code null} if not configured
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the size at which a segment is rolled.
+     *
+     * @return the size in bytes
+     */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Returns the codec sessions are written with.
+     *
+     * @return the codec
+     */
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns whether a directory has been configured.
+     *
+     * @return {@code true} if the directory is set
+     */
+    public boolean isConfigured() {
+        return directory != null;
+    }
+
+    /**
+     * Creates a new {@link SegmentLogStorageConfig} from system properties and
+     * {@code miniprofiler.properties}, falling back to defaults for each unset property.
+     *
+     * @return a new config populated from the environment
+     */
+    public static SegmentLogStorageConfig create() {
+        return create(new MiniProfilerConfig());
+    }
+
+    static SegmentLogStorageConfig create(Properties systemProps, Properties fileProps) {
+        return create(new MiniProfilerConfig(systemProps, fileProps));
+    }
+
+    static SegmentLogStorageConfig create(MiniProfilerConfig props) {
+        String directory = props.getProperty("storage.segmentlog.directory", (String) null);
+        int megabytes = props.getProperty("storage.segmentlog.segmentMegabytes", DEFAULT_SEGMENT_MEGABYTES);
+        PayloadCodec codec = PayloadCodec.forName(props.getProperty("storage.segmentlog.codec", (String) null));
+        return new SegmentLogStorageConfig(directory != null ? Paths.get(directory) : null,
+            megabytes * BYTES_PER_MEGABYTE, codec);
+    }
+}
@@ -41,6 +41,9 @@ import java.util.List;
  */
 public class GcsStorage extends BaseObjectStorage {
 
+    // the most keys a single list request returns
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+
     private final com.google.cloud.storage.Storage gcsClient;
 
     /**
@@ -126,6 +129,18 @@ public class GcsStorage extends BaseObjectStorage {
         gcsClient.delete(BlobId.of(bucket, key));
     }
 
+    @Override
+    protected void deleteObjects(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<BlobId> blobIds = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            blobIds.add(BlobId.of(bucket, key));
+        }
+        gcsClient.delete(blobIds);
+    }
+
     @Override
     protected Collection<String> listKeys(String keyPrefix) {
         List<String> result = new ArrayList<>();
@@ -136,6 +151,41 @@ public class GcsStorage extends BaseObjectStorage {
         return result;
     }
 
+    @Override
+    protected List<String> listKeysAfter(String keyPrefix, String startAfter, int limit) {
+        List<com.google.cloud.storage.Storage.BlobListOption> options = new ArrayList<>();
+        options.add(com.google.cloud.storage.Storage.BlobListOption.prefix(keyPrefix));
+        options.add(com.google.cloud.storage.Storage.BlobListOption.pageSize(Math.min(limit, MAX_KEYS_PER_PAGE)));
+        if (startAfter != null) {
+            options.add(com.google.cloud.storage.Storage.BlobListOption.startOffset(startAfter));
+        }
+        List<String> result = new ArrayList<>();
+        for (com.google.cloud.storage.Blob blob : gcsClient.list(bucket,
+            options.toArray(new com.google.cloud.storage.Storage.BlobListOption[0])).iterateAll()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            // startOffset is inclusive, so the cursor's own key comes back first when it still exists
+            if (!blob.getName().equals(startAfter)) {
+                result.add(blob.getName());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Collection<String> listPrefixes(String keyPrefix) {
+        List<String> result = new ArrayList<>();
+        for (com.google.cloud.storage.Blob blob : gcsClient.list(bucket,
+            com.google.cloud.storage.Storage.BlobListOption.prefix(keyPrefix),
+            com.google.cloud.storage.Storage.BlobListOption.currentDirectory()).iterateAll()) {
+            if (blob.isDirectory()) {
+                result.add(blob.getName());
+            }
+        }
+        return result;
+    }
+
     @Override
     protected void closeClient() {
         try {
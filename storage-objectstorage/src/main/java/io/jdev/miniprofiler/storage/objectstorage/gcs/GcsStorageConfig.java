@@ -17,7 +17,9 @@
 package io.jdev.miniprofiler.storage.objectstorage.gcs;
 
 import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.storage.PayloadCodec;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorageConfig;
+import io.jdev.miniprofiler.storage.objectstorage.IndexPartitioning;
 
 import java.util.Properties;
 
@@ -28,7 +30,7 @@ import java.util.Properties;
  * (prefix {@code miniprofiler.}) take precedence over {@code miniprofiler.properties} on the classpath.</p>
  *
  * <p>Supported keys: {@code storage.gcs.bucket}, {@code storage.gcs.prefix},
- * {@code storage.gcs.endpoint}.
+ * {@code storage.gcs.endpoint}, {@code storage.gcs.indexPartitioning}, {@code storage.gcs.codec}.
  * GCS is a global service so no {@code region} property is used.</p>
  */
 public class GcsStorageConfig extends BaseObjectStorageConfig {
@@ -44,6 +46,32 @@ public class GcsStorageConfig extends BaseObjectStorageConfig {
         super(bucket, prefix, null, endpoint);
     }
 
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param bucket            the GCS bucket name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param endpoint          the optional host override for the GCS client; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     */
+    public GcsStorageConfig(String bucket, String prefix, String endpoint, IndexPartitioning indexPartitioning) {
+        super(bucket, prefix, null, endpoint, indexPartitioning);
+    }
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param bucket            the GCS bucket name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param endpoint          the optional host override for the GCS client; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     * @param codec             the codec sessions are written with; {@code null} means uncompressed
+     */
+    public GcsStorageConfig(String bucket, String prefix, String endpoint, IndexPartitioning indexPartitioning,
+                            PayloadCodec codec) {
+        super(bucket, prefix, null, endpoint, indexPartitioning, codec);
+    }
+
     /**
      * Creates a new {@link GcsStorageConfig} from system properties and
      * {@code miniprofiler.properties}, falling back to {@code null} for each unset property.
@@ -62,6 +90,9 @@ public class GcsStorageConfig extends BaseObjectStorageConfig {
         String bucket   = props.getProperty("storage.gcs.bucket",   (String) null);
         String prefix   = props.getProperty("storage.gcs.prefix",   (String) null);
         String endpoint = props.getProperty("storage.gcs.endpoint", (String) null);
-        return new GcsStorageConfig(bucket, prefix, endpoint);
+        IndexPartitioning partitioning = props.getProperty("storage.gcs.indexPartitioning",
+            IndexPartitioning.class, IndexPartitioning.None);
+        PayloadCodec codec = PayloadCodec.forName(props.getProperty("storage.gcs.codec", (String) null));
+        return new GcsStorageConfig(bucket, prefix, endpoint, partitioning, codec);
     }
 }
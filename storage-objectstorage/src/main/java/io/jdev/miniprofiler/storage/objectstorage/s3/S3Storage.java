@@ -19,32 +19,54 @@ package io.jdev.miniprofiler.storage.objectstorage.s3;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * AWS S3-backed {@link io.jdev.miniprofiler.storage.Storage} implementation.
  *
  * <p>The AWS SDK ({@code software.amazon.awssdk:s3} and {@code software.amazon.awssdk:auth})
  * is a {@code compileOnly} dependency — users must provide it on their own classpath.</p>
+ *
+ * <p>Given an {@link S3AsyncClient}, sessions are saved with it, writing the session and its
+ * index marker concurrently without blocking the caller. Storage that builds its own clients
+ * builds one whenever an asynchronous HTTP client, such as {@code netty-nio-client}, is on the
+ * classpath. Everything else uses the synchronous client.</p>
  */
 public class S3Storage extends BaseObjectStorage {
 
+    // the most keys a single list request returns
+    private static final int MAX_KEYS_PER_PAGE = 1000;
+
+    // the most keys a single multi-object delete request accepts
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
     private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
 
     /**
      * Creates storage using the given config and credentials provider; the client is owned
@@ -56,6 +78,7 @@ public class S3Storage extends BaseObjectStorage {
     public S3Storage(S3StorageConfig config, AwsCredentialsProvider credentials) {
         super(config, true);
         this.s3Client = buildClient(config, credentials);
+        this.s3AsyncClient = buildAsyncClient(config, credentials);
     }
 
     /**
@@ -76,8 +99,21 @@ public class S3Storage extends BaseObjectStorage {
      * @param s3Client the S3 client to use
      */
     public S3Storage(S3StorageConfig config, S3Client s3Client) {
+        this(config, s3Client, null);
+    }
+
+    /**
+     * Creates storage using provided S3 clients, saving sessions with the asynchronous one;
+     * the clients will not be closed on {@link #close()}.
+     *
+     * @param config        the S3 storage configuration
+     * @param s3Client      the S3 client to use
+     * @param s3AsyncClient the asynchronous S3 client to save sessions with; may be {@code null}
+     */
+    public S3Storage(S3StorageConfig config, S3Client s3Client, S3AsyncClient s3AsyncClient) {
         super(config, false);
         this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
     }
 
     /**
@@ -109,6 +145,22 @@ public class S3Storage extends BaseObjectStorage {
         return builder.build();
     }
 
+    private static S3AsyncClient buildAsyncClient(S3StorageConfig config, AwsCredentialsProvider credentials) {
+        try {
+            S3AsyncClientBuilder builder = S3AsyncClient.builder().credentialsProvider(credentials);
+            if (config.getRegion() != null) {
+                builder.region(Region.of(config.getRegion()));
+            }
+            if (config.getEndpoint() != null) {
+                builder.endpointOverride(URI.create(config.getEndpoint()));
+            }
+            return builder.build();
+        } catch (SdkClientException | NoClassDefFoundError e) {
+            // no asynchronous HTTP client on the classpath
+            return null;
+        }
+    }
+
     @Override
     protected void putObject(String key, byte[] content) {
         s3Client.putObject(
@@ -117,6 +169,17 @@ public class S3Storage extends BaseObjectStorage {
         );
     }
 
+    @Override
+    protected CompletableFuture<Void> putObjectAsync(String key, byte[] content) {
+        if (s3AsyncClient == null) {
+            return super.putObjectAsync(key, content);
+        }
+        return s3AsyncClient.putObject(
+            PutObjectRequest.builder().bucket(bucket).key(key).build(),
+            AsyncRequestBody.fromBytes(content)
+        ).thenApply(response -> null);
+    }
+
     @Override
     protected byte[] getObject(String key) {
         try {
@@ -128,11 +191,47 @@ public class S3Storage extends BaseObjectStorage {
         }
     }
 
+    @Override
+    protected InputStream openObject(String key) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        }
+    }
+
     @Override
     protected void deleteObject(String key) {
         s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
     }
 
+    /**
+     * Deletes the objects with multi-object delete requests of up to 1000 keys each.
+     *
+     * @param keys the object keys
+     */
+    @Override
+    protected void deleteObjects(Collection<String> keys) {
+        List<ObjectIdentifier> chunk = new ArrayList<ObjectIdentifier>(Math.min(keys.size(), MAX_KEYS_PER_DELETE));
+        for (String key : keys) {
+            chunk.add(ObjectIdentifier.builder().key(key).build());
+            if (chunk.size() == MAX_KEYS_PER_DELETE) {
+                deleteChunk(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            deleteChunk(chunk);
+        }
+    }
+
+    private void deleteChunk(List<ObjectIdentifier> chunk) {
+        s3Client.deleteObjects(DeleteObjectsRequest.builder()
+            .bucket(bucket)
+            .delete(Delete.builder().objects(chunk).quiet(true).build())
+            .build());
+    }
+
     @Override
     protected Collection<String> listKeys(String keyPrefix) {
         ListObjectsV2Iterable pages = s3Client.listObjectsV2Paginator(
@@ -145,8 +244,41 @@ public class S3Storage extends BaseObjectStorage {
         return result;
     }
 
+    @Override
+    protected List<String> listKeysAfter(String keyPrefix, String startAfter, int limit) {
+        ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+            .bucket(bucket).prefix(keyPrefix).maxKeys(Math.min(limit, MAX_KEYS_PER_PAGE));
+        if (startAfter != null) {
+            request.startAfter(startAfter);
+        }
+        List<String> result = new ArrayList<String>();
+        // pages are fetched lazily, so stopping at the limit stops the listing
+        for (S3Object obj : s3Client.listObjectsV2Paginator(request.build()).contents()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(obj.key());
+        }
+        return result;
+    }
+
+    @Override
+    protected Collection<String> listPrefixes(String keyPrefix) {
+        ListObjectsV2Iterable pages = s3Client.listObjectsV2Paginator(
+            ListObjectsV2Request.builder().bucket(bucket).prefix(keyPrefix).delimiter("/").build()
+        );
+        List<String> result = new ArrayList<String>();
+        for (CommonPrefix commonPrefix : pages.commonPrefixes()) {
+            result.add(commonPrefix.prefix());
+        }
+        return result;
+    }
+
     @Override
     protected void closeClient() {
         s3Client.close();
+        if (s3AsyncClient != null) {
+            s3AsyncClient.close();
+        }
     }
 }
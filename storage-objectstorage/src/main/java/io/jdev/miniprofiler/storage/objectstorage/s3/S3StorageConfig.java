@@ -17,7 +17,9 @@
 package io.jdev.miniprofiler.storage.objectstorage.s3;
 
 import io.jdev.miniprofiler.MiniProfilerConfig;
+import io.jdev.miniprofiler.storage.PayloadCodec;
 import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorageConfig;
+import io.jdev.miniprofiler.storage.objectstorage.IndexPartitioning;
 
 import java.util.Properties;
 
@@ -28,7 +30,8 @@ import java.util.Properties;
  * (prefix {@code miniprofiler.}) take precedence over {@code miniprofiler.properties} on the classpath.</p>
  *
  * <p>Supported keys: {@code storage.s3.bucket}, {@code storage.s3.prefix},
- * {@code storage.s3.region}, {@code storage.s3.endpoint}.</p>
+ * {@code storage.s3.region}, {@code storage.s3.endpoint}, {@code storage.s3.indexPartitioning},
+ * {@code storage.s3.codec}.</p>
  */
 public class S3StorageConfig extends BaseObjectStorageConfig {
 
@@ -44,6 +47,35 @@ public class S3StorageConfig extends BaseObjectStorageConfig {
         super(bucket, prefix, region, endpoint);
     }
 
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param bucket            the S3 bucket name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param region            the AWS region; may be {@code null}
+     * @param endpoint          the endpoint URL override; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     */
+    public S3StorageConfig(String bucket, String prefix, String region, String endpoint,
+                           IndexPartitioning indexPartitioning) {
+        super(bucket, prefix, region, endpoint, indexPartitioning);
+    }
+
+    /**
+     * Creates a new instance with explicit values.
+     *
+     * @param bucket            the S3 bucket name; may be {@code null}
+     * @param prefix            the optional key prefix; may be {@code null}
+     * @param region            the AWS region; may be {@code null}
+     * @param endpoint          the endpoint URL override; may be {@code null}
+     * @param indexPartitioning the index layout; {@code null} means unpartitioned
+     * @param codec             the codec sessions are written with; {@code null} means uncompressed
+     */
+    public S3StorageConfig(String bucket, String prefix, String region, String endpoint,
+                           IndexPartitioning indexPartitioning, PayloadCodec codec) {
+        super(bucket, prefix, region, endpoint, indexPartitioning, codec);
+    }
+
     /**
      * Creates a new {@link S3StorageConfig} from system properties and
      * {@code miniprofiler.properties}, falling back to {@code null} for each unset property.
@@ -63,6 +95,9 @@ public class S3StorageConfig extends BaseObjectStorageConfig {
         String prefix   = props.getProperty("storage.s3.prefix",   (String) null);
         String region   = props.getProperty("storage.s3.region",   (String) null);
         String endpoint = props.getProperty("storage.s3.endpoint", (String) null);
-        return new S3StorageConfig(bucket, prefix, region, endpoint);
+        IndexPartitioning partitioning = props.getProperty("storage.s3.indexPartitioning",
+            IndexPartitioning.class, IndexPartitioning.None);
+        PayloadCodec codec = PayloadCodec.forName(props.getProperty("storage.s3.codec", (String) null));
+        return new S3StorageConfig(bucket, prefix, region, endpoint, partitioning, codec);
     }
 }
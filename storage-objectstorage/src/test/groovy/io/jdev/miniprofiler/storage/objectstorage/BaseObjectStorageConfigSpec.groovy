@@ -68,6 +68,26 @@ abstract class BaseObjectStorageConfigSpec extends Specification {
         config.bucketName == "sys-bucket"
     }
 
+    def "reads index partitioning case-insensitively"() {
+        given:
+        def sysprops = new Properties()
+        sysprops["${systemPropPrefix}indexPartitioning"] = "hourly"
+
+        when:
+        def config = createConfig(sysprops, null)
+
+        then:
+        config.indexPartitioning == IndexPartitioning.Hourly
+    }
+
+    def "index is unpartitioned by default"() {
+        when:
+        def config = createConfig(new Properties(), null)
+
+        then:
+        config.indexPartitioning == IndexPartitioning.None
+    }
+
     def "null bucket means not configured"() {
         when:
         def config = createConfig(new Properties(), null)
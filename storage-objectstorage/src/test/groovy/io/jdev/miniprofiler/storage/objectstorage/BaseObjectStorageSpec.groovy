@@ -18,11 +18,16 @@ package io.jdev.miniprofiler.storage.objectstorage
 
 import io.jdev.miniprofiler.ProfileLevel
 import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ClientTiming
 import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.ListCursor
+import io.jdev.miniprofiler.storage.PayloadCodec
 import io.jdev.miniprofiler.storage.Storage
 import spock.lang.Specification
 
 import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
 import java.util.concurrent.ConcurrentHashMap
 
 class BaseObjectStorageSpec extends Specification {
@@ -131,6 +136,246 @@ class BaseObjectStorageSpec extends Specification {
         ids.size() == 3
     }
 
+    def "listSummaries reads summaries from the index markers"() {
+        given:
+        def p1 = profilerStartedAt(1000L)
+        def p2 = profilerStartedAt(2000L)
+        p2.clientTimings = [new ClientTiming("domComplete", 10L, 5L)]
+        [p1, p2].each { storage.save(it) }
+        // only the index should be read
+        storage.store.keySet().removeAll { it.startsWith("profiler/") }
+
+        when:
+        def summaries = storage.listSummaries(10, null, null, Storage.ListResultsOrder.Descending)
+
+        then:
+        summaries*.id == [p2.id, p1.id]
+        summaries[0].asListJson() == p2.asListJson()
+        summaries[0].clientTimings*.name == ["domComplete"]
+    }
+
+    def "listSummaries loads sessions whose index marker is empty"() {
+        given:
+        def p = profilerStartedAt(1000L)
+        storage.save(p)
+        def indexKey = storage.store.keySet().find { it.startsWith("profiler-index/") }
+        storage.store[indexKey] = new byte[0]
+
+        when:
+        def summaries = storage.listSummaries(10, null, null, Storage.ListResultsOrder.Ascending)
+
+        then:
+        summaries*.asListJson() == [p.asListJson()]
+    }
+
+    def "list after a cursor pages through the index in key order"() {
+        given:
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.each { storage.save(it) }
+        def ascending = storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList()
+
+        when:
+        def firstPage = storage.list(2, null, Storage.ListResultsOrder.Ascending).toList()
+        def secondPage = storage.list(2, storage.cursorFor(firstPage.last()), Storage.ListResultsOrder.Ascending).toList()
+
+        then:
+        firstPage + secondPage == ascending
+        storage.listedAfter == [storage.keys.indexKey(2000L, firstPage.last())]
+
+        when:
+        def cursor = storage.cursorFor(ascending[2])
+
+        then:
+        storage.listSummaries(10, cursor, Storage.ListResultsOrder.Descending)*.id == ascending[0..1].reverse()
+    }
+
+    def "cursorFor reads the session's start time without listing the index"() {
+        given:
+        def p = profilerStartedAt(2000L)
+        storage.save(p)
+        storage.listedPrefixes.clear()
+
+        expect:
+        storage.cursorFor(p.id) == ListCursor.of(2000L, p.id)
+        storage.cursorFor(UUID.randomUUID()) == null
+        storage.listedPrefixes.empty
+        storage.listedAfter.empty
+    }
+
+    def "partitioned list only lists the partitions overlapping the date range"() {
+        given:
+        def hour = 3600_000L
+        storage = new InMemoryObjectStorage(new TestConfig("test-bucket", null, IndexPartitioning.Hourly), true)
+        def profilers = [profilerStartedAt(hour), profilerStartedAt(2 * hour + 10), profilerStartedAt(2 * hour + 20),
+                         profilerStartedAt(5 * hour)]
+        profilers.each { storage.save(it) }
+        storage.listedPrefixes.clear()
+
+        when:
+        def ids = storage.list(10, new Date(2 * hour), new Date(3 * hour), Storage.ListResultsOrder.Descending)
+
+        then:
+        ids as List == [profilers[2].id, profilers[1].id]
+        storage.listedPrefixes == ["profiler-index/hourly/1970-01-01T02/"]
+
+        when: 'the newest partition holds enough'
+        storage.listedPrefixes.clear()
+        ids = storage.list(1, null, null, Storage.ListResultsOrder.Descending)
+
+        then:
+        ids as List == [profilers[3].id]
+        storage.listedPrefixes == ["profiler-index/hourly/1970-01-01T05/"]
+    }
+
+    def "partitioned expiry doesn't list partitions after the cutoff"() {
+        given:
+        def hour = 3600_000L
+        storage = new InMemoryObjectStorage(new TestConfig("test-bucket", null, IndexPartitioning.Hourly), true)
+        def old = profilerStartedAt(hour)
+        def straddling = profilerStartedAt(2 * hour + 10)
+        def kept = profilerStartedAt(2 * hour + 30)
+        def recent = profilerStartedAt(5 * hour)
+        [old, straddling, kept, recent].each { storage.save(it) }
+        storage.listedPrefixes.clear()
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(2 * hour + 20))
+
+        then: 'partitions after the cutoff are not listed'
+        storage.listedPrefixes == ["profiler-index/hourly/1970-01-01T01/", "profiler-index/hourly/1970-01-01T02/"]
+
+        and:
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending) as List == [kept.id, recent.id]
+        storage.load(old.id) == null
+        storage.load(straddling.id) == null
+        !storage.store.keySet().any { it.contains("1970-01-01T01") }
+    }
+
+    def "unpartitioned storage ignores index markers of a partitioned layout"() {
+        given:
+        def partitioned = new InMemoryObjectStorage(new TestConfig("test-bucket", null, IndexPartitioning.Daily), true)
+        def p = profilerStartedAt(1000L)
+        partitioned.save(p)
+        storage.store.putAll(partitioned.store)
+
+        expect:
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending).empty
+        storage.list(10, null, null, Storage.ListResultsOrder.Descending).empty
+        partitioned.list(10, null, null, Storage.ListResultsOrder.Descending) as List == [p.id]
+    }
+
+    def "sessions are stored with the configured codec"() {
+        given:
+        storage = new InMemoryObjectStorage(new TestConfig("test-bucket", null, IndexPartitioning.None, codec), true)
+        def p = profilerStartedAt(1000L)
+
+        when:
+        storage.save(p)
+        byte[] stored = storage.store["profiler/${p.id}".toString()]
+
+        then:
+        storage.load(p.id).id == p.id
+        (stored[0] == (byte) '{') == (codec == PayloadCodec.NONE)
+
+        where:
+        codec << [PayloadCodec.NONE, PayloadCodec.GZIP, PayloadCodec.DEFLATE]
+    }
+
+    def "sessions stored without a codec still load after one is configured"() {
+        given:
+        def p = profilerStartedAt(1000L)
+        storage.save(p)
+        def gzip = new InMemoryObjectStorage(new TestConfig("test-bucket", null, IndexPartitioning.None,
+            PayloadCodec.GZIP), true)
+        gzip.store.putAll(storage.store)
+
+        expect:
+        gzip.load(p.id).id == p.id
+    }
+
+    def "saveNonBlocking writes the session and its index marker at once"() {
+        given:
+        def deferred = new DeferredObjectStorage(new TestConfig("test-bucket", null))
+        def p = profilerStartedAt(1000L)
+
+        when:
+        def saved = deferred.saveNonBlocking(p)
+
+        then: 'both writes are in flight before either finishes'
+        deferred.pending.keySet() as Set == ["profiler/${p.id}".toString(), deferred.keys.indexKey(1000L, p.id)] as Set
+        !saved.done
+
+        when:
+        deferred.finish()
+
+        then:
+        saved.done
+        !saved.completedExceptionally
+        deferred.load(p.id).id == p.id
+    }
+
+    def "save waits for asynchronous writes and rethrows their failures"() {
+        given:
+        def deferred = new DeferredObjectStorage(new TestConfig("test-bucket", null))
+        def p = profilerStartedAt(1000L)
+        def failure = new IllegalStateException("put failed")
+
+        when:
+        Thread.start {
+            while (deferred.pending.size() < 2) {
+                Thread.sleep(1)
+            }
+            deferred.fail(failure)
+        }
+        deferred.save(p)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.is(failure)
+    }
+
+    def "an index marker is deleted again when its session fails to be written"() {
+        given:
+        def deferred = new DeferredObjectStorage(new TestConfig("test-bucket", null))
+        def p = profilerStartedAt(1000L)
+        def indexKey = deferred.keys.indexKey(1000L, p.id)
+        def failure = new IllegalStateException("put failed")
+
+        when:
+        def saved = deferred.saveNonBlocking(p)
+        deferred.finish(indexKey)
+
+        then: 'the marker is written while the session is still in flight'
+        deferred.store.containsKey(indexKey)
+        !saved.done
+
+        when:
+        deferred.fail("profiler/${p.id}".toString(), failure)
+
+        then:
+        saved.completedExceptionally
+        deferred.store.isEmpty()
+        deferred.list(10, null, null, Storage.ListResultsOrder.Ascending).isEmpty()
+    }
+
+    def "a session that fails to be written synchronously isn't indexed"() {
+        given:
+        def failing = new InMemoryObjectStorage(new TestConfig("test-bucket", null), true) {
+            @Override
+            protected void putObject(String key, byte[] content) {
+                throw new IllegalStateException("put failed")
+            }
+        }
+
+        when:
+        failing.saveNonBlocking(profilerStartedAt(1000L)).join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof IllegalStateException
+        failing.store.isEmpty()
+    }
+
     def "setUnviewed marks session as unviewed"() {
         given:
         def id = UUID.randomUUID()
@@ -266,10 +511,56 @@ class BaseObjectStorageSpec extends Specification {
         TestConfig(String bucket, String prefix) {
             super(bucket, prefix, null, null)
         }
+
+        TestConfig(String bucket, String prefix, IndexPartitioning indexPartitioning) {
+            super(bucket, prefix, null, null, indexPartitioning)
+        }
+
+        TestConfig(String bucket, String prefix, IndexPartitioning indexPartitioning, PayloadCodec codec) {
+            super(bucket, prefix, null, null, indexPartitioning, codec)
+        }
+    }
+
+    // holds each asynchronous put until the test finishes or fails it
+    static class DeferredObjectStorage extends InMemoryObjectStorage {
+        final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>()
+        final Map<String, byte[]> written = new ConcurrentHashMap<>()
+
+        DeferredObjectStorage(BaseObjectStorageConfig config) {
+            super(config, true)
+        }
+
+        @Override
+        protected CompletableFuture<Void> putObjectAsync(String key, byte[] content) {
+            def future = new CompletableFuture<Void>()
+            written[key] = content
+            pending[key] = future
+            return future
+        }
+
+        void finish() {
+            store.putAll(written)
+            pending.values()*.complete(null)
+        }
+
+        void finish(String key) {
+            store[key] = written[key]
+            pending[key].complete(null)
+        }
+
+        void fail(Throwable failure) {
+            pending.values()*.completeExceptionally(failure)
+        }
+
+        void fail(String key, Throwable failure) {
+            pending[key].completeExceptionally(failure)
+        }
     }
 
     static class InMemoryObjectStorage extends BaseObjectStorage {
         final Map<String, byte[]> store = new ConcurrentHashMap<>()
+        final List<String> listedAfter = []
+        final List<String> listedPrefixes = []
         int closeClientCallCount = 0
 
         InMemoryObjectStorage(BaseObjectStorageConfig config, boolean ownsClient) {
@@ -293,9 +584,25 @@ class BaseObjectStorageSpec extends Specification {
 
         @Override
         protected Collection<String> listKeys(String keyPrefix) {
+            listedPrefixes << keyPrefix
             return store.keySet().findAll { it.startsWith(keyPrefix) }
         }
 
+        @Override
+        protected Collection<String> listPrefixes(String keyPrefix) {
+            return store.keySet().findAll { it.startsWith(keyPrefix) && it.indexOf('/', keyPrefix.length()) >= 0 }
+                .collect { it.substring(0, it.indexOf('/', keyPrefix.length()) + 1) }
+                .toSet()
+        }
+
+        @Override
+        protected List<String> listKeysAfter(String keyPrefix, String startAfter, int limit) {
+            if (startAfter != null) {
+                listedAfter << startAfter
+            }
+            return super.listKeysAfter(keyPrefix, startAfter, limit)
+        }
+
         @Override
         protected void closeClient() {
             closeClientCallCount++
@@ -18,6 +18,8 @@ package io.jdev.miniprofiler.storage.objectstorage
 
 import spock.lang.Specification
 
+import java.time.Instant
+
 class ObjectStorageKeysSpec extends Specification {
 
     def "profilerKey with prefix"() {
@@ -116,6 +118,52 @@ class ObjectStorageKeysSpec extends Specification {
         keys.extractIdFromIndexKey("other/key") == null
     }
 
+    def "partitioned indexKey groups sessions by UTC hour or day"() {
+        given:
+        def id = UUID.fromString("77777777-7777-7777-7777-777777777777")
+        def started = Instant.parse("2026-03-04T05:06:07Z").toEpochMilli()
+
+        expect:
+        new ObjectStorageKeys("ns/", IndexPartitioning.Hourly).indexKey(started, id) ==
+            "ns/profiler-index/hourly/2026-03-04T05/" + String.format("%019d", started) + "-" + id
+        new ObjectStorageKeys("ns/", IndexPartitioning.Daily).indexKey(started, id) ==
+            "ns/profiler-index/daily/2026-03-04/" + String.format("%019d", started) + "-" + id
+        new ObjectStorageKeys("ns/", IndexPartitioning.Hourly).partitionsPrefix() == "ns/profiler-index/hourly/"
+        new ObjectStorageKeys("ns/").partitionsPrefix() == null
+    }
+
+    def "partitioned index keys sort chronologically"() {
+        given:
+        def keys = new ObjectStorageKeys("", IndexPartitioning.Hourly)
+        def id = UUID.fromString("88888888-8888-8888-8888-888888888888")
+        def times = ["2026-03-04T23:59:59.999Z", "2026-03-05T00:00:00Z", "2026-03-05T09:00:00Z", "2026-03-05T10:00:00Z"]
+            .collect { Instant.parse(it).toEpochMilli() }
+
+        expect:
+        times.collect { keys.indexKey(it, id) }.sort(false) == times.collect { keys.indexKey(it, id) }
+    }
+
+    def "extracts id and start time from partitioned index keys"() {
+        given:
+        def keys = new ObjectStorageKeys("ns/", IndexPartitioning.Daily)
+        def id = UUID.fromString("99999999-9999-9999-9999-999999999999")
+        String key = keys.indexKey(1234567L, id)
+
+        expect:
+        keys.extractIdFromIndexKey(key) == id
+        keys.extractStartedFromIndexKey(key) == 1234567L
+        keys.extractStartedFromIndexKey("ns/profiler-index/daily/1970-01-01/notakey") == null
+    }
+
+    def "partition bounds"() {
+        expect:
+        IndexPartitioning.Hourly.startOf("2026-03-05T09") == Instant.parse("2026-03-05T09:00:00Z").toEpochMilli()
+        IndexPartitioning.Hourly.endOf("2026-03-05T09") == Instant.parse("2026-03-05T10:00:00Z").toEpochMilli()
+        IndexPartitioning.Daily.endOf("2026-03-05") == Instant.parse("2026-03-06T00:00:00Z").toEpochMilli()
+        IndexPartitioning.Daily.startOf("2026-03-05T09") == -1
+        IndexPartitioning.Hourly.startOf("junk") == -1
+    }
+
     def "profilerPrefix"() {
         given:
         def keys = new ObjectStorageKeys("ns/")
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage.fs
+
+import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorage
+import io.jdev.miniprofiler.storage.objectstorage.BaseObjectStorageIntegrationSpec
+import io.jdev.miniprofiler.storage.objectstorage.IndexPartitioning
+import spock.lang.Shared
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Instant
+
+class PartitionedFileSystemStorageSpec extends BaseObjectStorageIntegrationSpec {
+
+    @TempDir
+    @Shared
+    Path tempDir
+
+    @Shared FileSystemStorage fsStorage
+
+    BaseObjectStorage getStorage() { fsStorage }
+
+    void setupSpec() {
+        def config = new FileSystemStorageConfig(tempDir, null, IndexPartitioning.Hourly)
+        fsStorage = new FileSystemStorage(config)
+    }
+
+    void cleanupSpec() {
+        fsStorage?.close()
+    }
+
+    void "expiry removes the directories of expired partitions"() {
+        given:
+        def hour = 3600_000L
+        storage.save(profilerStartedAt(hour))
+        storage.save(profilerStartedAt(5 * hour))
+        def partitions = tempDir.resolve("profiler-index/hourly")
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(2 * hour))
+
+        then:
+        Files.list(partitions).withCloseable { it.collect { it.fileName.toString() } } == ["1970-01-01T05"]
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage.fs
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class SegmentLogStorageLocatorSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "locate returns empty when directory not configured"() {
+        given:
+        def saved = System.getProperty("miniprofiler.storage.segmentlog.directory")
+        System.clearProperty("miniprofiler.storage.segmentlog.directory")
+
+        when:
+        def result = new SegmentLogStorageLocator().locate()
+
+        then:
+        !result.present
+
+        cleanup:
+        if (saved != null) {
+            System.setProperty("miniprofiler.storage.segmentlog.directory", saved)
+        }
+    }
+
+    def "config reads the segment size and codec"() {
+        given:
+        def props = new Properties()
+        props.setProperty("miniprofiler.storage.segmentlog.directory", tempDir.toString())
+        props.setProperty("miniprofiler.storage.segmentlog.segmentMegabytes", "8")
+        props.setProperty("miniprofiler.storage.segmentlog.codec", "gzip")
+
+        when:
+        def config = SegmentLogStorageConfig.create(props, null)
+
+        then:
+        config.directory == tempDir
+        config.segmentBytes == 8 * 1024 * 1024
+        config.codec.name == "gzip"
+    }
+}
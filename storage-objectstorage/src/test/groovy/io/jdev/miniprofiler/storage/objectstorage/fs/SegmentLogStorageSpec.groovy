@@ -0,0 +1,245 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.jdev.miniprofiler.storage.objectstorage.fs
+
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import io.jdev.miniprofiler.storage.ListCursor
+import io.jdev.miniprofiler.storage.PayloadCodec
+import io.jdev.miniprofiler.storage.Storage.ListResultsOrder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Instant
+
+class SegmentLogStorageSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    ProfilerProvider profilerProvider = Mock(ProfilerProvider)
+    SegmentLogStorage storage
+
+    void cleanup() {
+        storage?.close()
+    }
+
+    void "a saved session is read back from its segment"() {
+        given:
+        storage = open(64 * 1024, codec)
+        def profiler = profilerStartedAt(1000L)
+
+        when:
+        storage.save(profiler)
+        def loaded = storage.load(profiler.id)
+
+        then:
+        loaded.id == profiler.id
+        loaded.root.name == 'test'
+        storage.load(UUID.randomUUID()) == null
+
+        where:
+        codec << [null, PayloadCodec.GZIP]
+    }
+
+    void "segments are rolled when full"() {
+        given:
+        storage = open(2000)
+
+        when:
+        def profilers = (1..20).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+
+        then:
+        storage.segmentCount > 1
+        profilers.every { storage.load(it.id).id == it.id }
+    }
+
+    void "list and cursors are answered from the time index"() {
+        given:
+        storage = open(64 * 1024)
+        def profilers = [profilerStartedAt(1000L), profilerStartedAt(2000L), profilerStartedAt(2000L), profilerStartedAt(3000L)]
+        profilers.reverse().each { storage.save(it) }
+        def ascending = profilers.sort(false) { a, b -> a.started <=> b.started ?: a.id.toString() <=> b.id.toString() }*.id
+
+        expect:
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == ascending
+        storage.list(2, new Date(2000L), null, ListResultsOrder.Descending).toList() == ascending[3..2]
+        storage.list(10, null, new Date(2000L), ListResultsOrder.Ascending).toList() == ascending[0..2]
+        storage.cursorFor(ascending[1]) == ListCursor.of(2000L, ascending[1])
+        storage.list(10, storage.cursorFor(ascending[1]), ListResultsOrder.Ascending).toList() == ascending[2..3]
+        storage.listSummaries(10, storage.cursorFor(ascending[2]), ListResultsOrder.Descending)*.id == ascending[1..0]
+    }
+
+    void "summaries are kept in the index, and replayed sessions are only decoded once"() {
+        given:
+        storage = open(64 * 1024)
+        def replayed = profilerStartedAt(1000L)
+        storage.save(replayed)
+        storage.close()
+        storage = open(64 * 1024)
+        def saved = profilerStartedAt(2000L)
+        storage.save(saved)
+        def first = storage.listSummaries(10, null, null, ListResultsOrder.Ascending)
+
+        when: 'the logs are truncated'
+        tempDir.toFile().listFiles().findAll { it.name.endsWith('.log') }.each {
+            new RandomAccessFile(it, 'rw').withCloseable { it.setLength(0) }
+        }
+        def summaries = storage.listSummaries(10, null, null, ListResultsOrder.Ascending)
+
+        then:
+        first*.id == [replayed.id, saved.id]
+        summaries*.id == [replayed.id, saved.id]
+        summaries*.name == ['test', 'test']
+        summaries[1].durationMilliseconds == saved.toSummary().durationMilliseconds
+    }
+
+    void "resaving a session replaces it"() {
+        given:
+        storage = open(64 * 1024)
+        def profiler = profilerStartedAt(1000L)
+        storage.save(profiler)
+
+        when:
+        storage.save(profiler)
+
+        then:
+        storage.list(10, null, null, ListResultsOrder.Ascending).toList() == [profiler.id]
+        storage.load(profiler.id).id == profiler.id
+    }
+
+    void "expiry deletes whole segments older than the cutoff"() {
+        given:
+        storage = open(2000)
+        def profilers = (1..20).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+        def segmentsBefore = storage.segmentCount
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(10500L))
+
+        then:
+        storage.segmentCount < segmentsBefore
+        storage.list(100, null, null, ListResultsOrder.Ascending).toList() == profilers[10..19]*.id
+        profilers[0..9].every { storage.load(it.id) == null }
+        storage.load(profilers[10].id).id == profilers[10].id
+    }
+
+    void "sessions, flags and expiry survive reopening"() {
+        given:
+        storage = open(2000)
+        def profilers = (1..10).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+        storage.setUnviewed('alice', profilers[9].id)
+        storage.setUnviewed('alice', profilers[8].id)
+        storage.setViewed('alice', profilers[8].id)
+        storage.expireOlderThan(Instant.ofEpochMilli(3500L))
+        storage.close()
+
+        when:
+        storage = open(2000)
+
+        then:
+        storage.list(100, null, null, ListResultsOrder.Ascending).toList() == profilers[3..9]*.id
+        storage.load(profilers[5].id).id == profilers[5].id
+        storage.getUnviewedIds('alice') == [profilers[9].id]
+    }
+
+    void "expiry keeps the segments holding flags and cutoffs still in force"() {
+        given: 'a segment per record, so that each expiry record rolls a new segment'
+        storage = open(1)
+        def profilers = (1..3).collect { profilerStartedAt(it * 1000L) }
+        profilers.each { storage.save(it) }
+        storage.setUnviewed('alice', profilers[2].id)
+        storage.setUnviewed('alice', profilers[1].id)
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(1500L))
+        storage.close()
+        storage = open(1)
+
+        then:
+        storage.list(100, null, null, ListResultsOrder.Ascending).toList() == profilers[1..2]*.id
+        storage.getUnviewedIds('alice') as Set == profilers[1..2]*.id as Set
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(2500L))
+        storage.close()
+        storage = open(1)
+
+        then:
+        storage.list(100, null, null, ListResultsOrder.Ascending).toList() == [profilers[2].id]
+        storage.getUnviewedIds('alice') == [profilers[2].id]
+        storage.segmentCount == 3
+    }
+
+    void "interrupting a loading thread doesn't close the segment for later loads and saves"() {
+        given:
+        storage = open(64 * 1024)
+        def profiler = profilerStartedAt(1000L)
+        storage.save(profiler)
+        def loaded = null
+        def stillInterrupted = false
+
+        when:
+        def thread = Thread.start {
+            Thread.currentThread().interrupt()
+            loaded = storage.load(profiler.id)
+            stillInterrupted = Thread.currentThread().interrupted
+        }
+        thread.join()
+        def later = profilerStartedAt(2000L)
+        storage.save(later)
+
+        then:
+        loaded.id == profiler.id
+        stillInterrupted
+        storage.load(profiler.id).id == profiler.id
+        storage.load(later.id).id == later.id
+    }
+
+    void "clear deletes every segment"() {
+        given:
+        storage = open(2000)
+        (1..10).each { storage.save(profilerStartedAt(it * 1000L)) }
+
+        when:
+        storage.clear()
+
+        then:
+        storage.segmentCount == 1
+        storage.list(100, null, null, ListResultsOrder.Ascending).empty
+        tempDir.toFile().list().length == 2
+    }
+
+    private SegmentLogStorage open(long segmentBytes, PayloadCodec codec = null) {
+        new SegmentLogStorage(new SegmentLogStorageConfig(tempDir, segmentBytes, codec))
+    }
+
+    private ProfilerImpl profilerStartedAt(long startedMs) {
+        ProfilerImpl p = new ProfilerImpl("test", ProfileLevel.Info, profilerProvider)
+        def field = ProfilerImpl.getDeclaredField("started")
+        field.accessible = true
+        field.set(p, startedMs)
+        p.stop(true)
+        return p
+    }
+}
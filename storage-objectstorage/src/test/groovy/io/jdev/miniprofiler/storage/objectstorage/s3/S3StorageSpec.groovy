@@ -0,0 +1,198 @@
+/*
+ * Copyright 2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdev.miniprofiler.storage.objectstorage.s3
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import io.jdev.miniprofiler.ProfileLevel
+import io.jdev.miniprofiler.ProfilerProvider
+import io.jdev.miniprofiler.internal.ProfilerImpl
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider
+import software.amazon.awssdk.regions.Region
+import software.amazon.awssdk.services.s3.S3AsyncClient
+import software.amazon.awssdk.services.s3.S3Client
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+// runs S3Storage against an in-process fake S3 endpoint, which only needs to handle object puts and gets
+class S3StorageSpec extends Specification {
+
+    static final String BUCKET = "test-bucket"
+
+    @AutoCleanup("stop")
+    FakeS3 fakeS3 = new FakeS3()
+
+    @AutoCleanup
+    S3Client s3Client
+
+    @AutoCleanup
+    S3AsyncClient s3AsyncClient
+
+    S3Storage storage
+
+    void setup() {
+        def endpoint = URI.create("http://localhost:${fakeS3.port}")
+        def credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test"))
+        s3Client = S3Client.builder().credentialsProvider(credentials).region(Region.US_EAST_1)
+            .endpointOverride(endpoint).forcePathStyle(true).build()
+        s3AsyncClient = S3AsyncClient.builder().credentialsProvider(credentials).region(Region.US_EAST_1)
+            .endpointOverride(endpoint).forcePathStyle(true).build()
+        storage = new S3Storage(new S3StorageConfig(BUCKET, null, "us-east-1", endpoint.toString()),
+            s3Client, s3AsyncClient)
+    }
+
+    void "saves write the session and its index marker concurrently"() {
+        given:
+        fakeS3.putsToAwait = 2
+        def profiler = newProfiler()
+
+        when:
+        storage.saveNonBlocking(profiler).get(10, TimeUnit.SECONDS)
+
+        then:
+        fakeS3.maxPutsInFlight.get() == 2
+        fakeS3.objects.keySet() == ["profiler/${profiler.id}".toString(),
+                                    "profiler-index/${String.format('%019d', profiler.started)}-${profiler.id}".toString()] as Set
+    }
+
+    void "sessions saved with the asynchronous client load with the synchronous one"() {
+        given:
+        def profiler = newProfiler()
+
+        when:
+        storage.save(profiler)
+
+        then:
+        storage.load(profiler.id).id == profiler.id
+    }
+
+    void "without an asynchronous client sessions are written one at a time"() {
+        given:
+        def syncOnly = new S3Storage(new S3StorageConfig(BUCKET, null, "us-east-1", null), s3Client)
+        def profiler = newProfiler()
+
+        when:
+        syncOnly.save(profiler)
+
+        then:
+        fakeS3.maxPutsInFlight.get() == 1
+        syncOnly.load(profiler.id).id == profiler.id
+    }
+
+    private ProfilerImpl newProfiler() {
+        def profiler = new ProfilerImpl("test", ProfileLevel.Info, Mock(ProfilerProvider))
+        profiler.stop()
+        profiler
+    }
+
+    static class FakeS3 {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>()
+        final AtomicInteger putsInFlight = new AtomicInteger()
+        final AtomicInteger maxPutsInFlight = new AtomicInteger()
+        final ExecutorService executor = Executors.newCachedThreadPool()
+        final HttpServer server
+        volatile CountDownLatch arrivals = new CountDownLatch(0)
+
+        FakeS3() {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+            server.executor = executor
+            server.createContext("/") { HttpExchange exchange -> handle(exchange) }
+            server.start()
+        }
+
+        int getPort() {
+            server.address.port
+        }
+
+        // holds each put until this many have arrived, or a few seconds have passed
+        void setPutsToAwait(int count) {
+            arrivals = new CountDownLatch(count)
+        }
+
+        void stop() {
+            server.stop(0)
+            executor.shutdownNow()
+        }
+
+        private void handle(HttpExchange exchange) {
+            String key = exchange.requestURI.path.substring("/${BUCKET}/".length())
+            if (exchange.requestMethod == "PUT") {
+                maxPutsInFlight.accumulateAndGet(putsInFlight.incrementAndGet(), { a, b -> Math.max(a, b) })
+                try {
+                    objects[key] = readBody(exchange)
+                    arrivals.countDown()
+                    arrivals.await(5, TimeUnit.SECONDS)
+                } finally {
+                    putsInFlight.decrementAndGet()
+                }
+                exchange.responseHeaders.add("ETag", '"etag"')
+                exchange.sendResponseHeaders(200, -1)
+            } else if (exchange.requestMethod == "GET" && objects.containsKey(key)) {
+                byte[] content = objects[key]
+                exchange.sendResponseHeaders(200, content.length)
+                exchange.responseBody.write(content)
+            } else {
+                byte[] error = "<Error><Code>NoSuchKey</Code></Error>".getBytes(StandardCharsets.UTF_8)
+                exchange.responseHeaders.add("Content-Type", "application/xml")
+                exchange.sendResponseHeaders(404, error.length)
+                exchange.responseBody.write(error)
+            }
+            exchange.close()
+        }
+
+        // over plain HTTP the SDK may sign the body in aws-chunked framing, which S3 strips
+        private static byte[] readBody(HttpExchange exchange) {
+            byte[] body = exchange.requestBody.bytes
+            if (!exchange.requestHeaders.getFirst("x-amz-decoded-content-length")) {
+                return body
+            }
+            def decoded = new ByteArrayOutputStream()
+            int pos = 0
+            while (true) {
+                int lineEnd = indexOfCrlf(body, pos)
+                String header = new String(body, pos, lineEnd - pos, StandardCharsets.US_ASCII)
+                int size = Integer.parseInt(header.split(';')[0], 16)
+                if (size == 0) {
+                    return decoded.toByteArray()
+                }
+                decoded.write(body, lineEnd + 2, size)
+                pos = lineEnd + 2 + size + 2
+            }
+        }
+
+        private static final byte CR = 13
+        private static final byte LF = 10
+
+        private static int indexOfCrlf(byte[] bytes, int from) {
+            for (int i = from; i < bytes.length - 1; i++) {
+                if (bytes[i] == CR && bytes[i + 1] == LF) {
+                    return i
+                }
+            }
+            throw new IllegalStateException("Malformed aws-chunked body")
+        }
+    }
+}
@@ -24,6 +24,7 @@ import spock.lang.Shared
 import spock.lang.Specification
 
 import java.time.Instant
+import java.util.concurrent.TimeUnit
 
 abstract class BaseObjectStorageIntegrationSpec extends Specification {
 
@@ -172,6 +173,72 @@ abstract class BaseObjectStorageIntegrationSpec extends Specification {
         storage.load(recent.id) != null
     }
 
+    void "expireBatchOlderThan removes at most the batch size, oldest first"() {
+        given:
+        def hour = 3600_000L
+        def old = [profilerStartedAt(hour), profilerStartedAt(2 * hour), profilerStartedAt(26 * hour)]
+        def recent = profilerStartedAt(30 * hour)
+        (old + recent).each { storage.save(it) }
+
+        expect:
+        storage.expireBatchOlderThan(Instant.ofEpochMilli(28 * hour), 2) == 2
+        storage.load(old[0].id) == null
+        storage.load(old[1].id) == null
+        storage.load(old[2].id) != null
+        storage.expireBatchOlderThan(Instant.ofEpochMilli(28 * hour), 2) == 1
+        storage.expireBatchOlderThan(Instant.ofEpochMilli(28 * hour), 2) == 0
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList() == [recent.id]
+    }
+
+    void "list pages across sessions started hours apart"() {
+        given:
+        def hour = 3600_000L
+        def profilers = [profilerStartedAt(hour), profilerStartedAt(hour + 1), profilerStartedAt(3 * hour),
+                         profilerStartedAt(27 * hour)]
+        profilers.each { storage.save(it) }
+
+        when:
+        def firstPage = storage.list(2, null, Storage.ListResultsOrder.Descending).toList()
+        def secondPage = storage.list(2, storage.cursorFor(firstPage.last()), Storage.ListResultsOrder.Descending).toList()
+
+        then:
+        firstPage + secondPage == profilers.reverse()*.id
+        storage.list(10, new Date(hour + 1), new Date(3 * hour), Storage.ListResultsOrder.Ascending).toList() ==
+            profilers[1..2]*.id
+
+        when:
+        storage.expireOlderThan(Instant.ofEpochMilli(3 * hour))
+
+        then:
+        storage.list(10, null, null, Storage.ListResultsOrder.Ascending).toList() == profilers[2..3]*.id
+    }
+
+    void "saveNonBlocking stores the session and its index marker"() {
+        given:
+        def profiler = profilerStartedAt(1000L)
+
+        when:
+        storage.saveNonBlocking(profiler).get(10, TimeUnit.SECONDS)
+
+        then:
+        storage.load(profiler.id).id == profiler.id
+        storage.listSummaries(10, null, null, Storage.ListResultsOrder.Ascending)*.id == [profiler.id]
+    }
+
+    void "listKeysAfter lists keys in order after the given key, up to the limit"() {
+        given:
+        def keys = ["listing/a", "listing/b", "listing/c", "listing/d/e"]
+        keys.each { storage.putObject(it, new byte[1]) }
+
+        expect:
+        storage.listKeysAfter("listing/", null, 10) == keys
+        storage.listKeysAfter("listing/", "listing/a", 2) == ["listing/b", "listing/c"]
+        storage.listPrefixes("listing/") as List == ["listing/d/"]
+
+        cleanup:
+        keys.each { storage.deleteObject(it) }
+    }
+
     protected ProfilerImpl profilerStartedAt(long startedMs) {
         ProfilerImpl p = new ProfilerImpl("test", ProfileLevel.Info, profilerProvider)
         def field = ProfilerImpl.getDeclaredField("started")
@@ -32,6 +32,10 @@ dependencies {
     compileOnly(libs.azure.storage.blob)
     compileOnly(libs.azure.identity)
 
+    // S3StorageSpec runs the S3 clients against an in-process fake endpoint.
+    testImplementation(libs.aws.s3)
+    testImplementation(libs.aws.auth)
+
     // testFixtures holds the base integration spec — it needs Spock/Groovy.
     testFixturesImplementation(libs.groovy.v4)
     testFixturesImplementation(libs.spock.groovy4)
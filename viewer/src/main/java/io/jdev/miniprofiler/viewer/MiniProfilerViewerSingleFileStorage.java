@@ -19,8 +19,10 @@ package io.jdev.miniprofiler.viewer;
 import io.jdev.miniprofiler.internal.ProfilerImpl;
 import io.jdev.miniprofiler.storage.Storage;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -49,12 +51,10 @@ public class MiniProfilerViewerSingleFileStorage implements Storage {
         if (!path.toFile().isFile()) {
             throw new IllegalArgumentException("File not found: " + path);
         }
-        try {
-            byte[] bytes = Files.readAllBytes(path);
-            String json = new String(bytes, StandardCharsets.UTF_8);
-            ProfilerImpl profiler = ProfilerImpl.fromJson(json);
+        try (InputStream json = Files.newInputStream(path)) {
+            ProfilerImpl profiler = ProfilerImpl.fromJson(new BufferedInputStream(json));
             return new MiniProfilerViewerSingleFileStorage(profiler.getId(), profiler);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new RuntimeException("Failed to read profile file: " + path, e);
         }
     }